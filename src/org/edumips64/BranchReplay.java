@@ -0,0 +1,246 @@
+/* BranchReplay.java
+ *
+ * Records branch traces and replays them through many predictor configurations.
+ *
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64;
+
+import org.edumips64.core.*;
+import org.edumips64.core.is.HaltException;
+import org.edumips64.utils.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Command line tool for branch predictor studies.
+ *
+ *  <pre>
+ *  BranchReplay record program.s trace.embt
+ *  BranchReplay replay trace.embt [LH:LC:GH:GC ...]
+ *  </pre>
+ *
+ *  "record" runs the program once, stores every resolved branch and
+ *  prints the speed of the simulation;
+ *  "replay" drives one BranchPredictor per configuration over the stored
+ *  trace, one configuration per task on a pool as large as the number of
+ *  available processors. A configuration is given as local history bits,
+ *  local counter bits, global history bits and global counter bits; without
+ *  configurations a default sweep is run.
+ */
+public class BranchReplay {
+  private static final Logger logger = Logger.getLogger(BranchReplay.class.getName());
+
+  /** Result of the replay of a trace through a single predictor configuration */
+  public static class Result {
+    public final String config;
+    public long hits, misses, unknown;
+
+    Result(String config) {
+      this.config = config;
+    }
+
+    public double getAccuracy() {
+      long known = hits + misses;
+      return known == 0 ? 0 : (double) hits / known;
+    }
+  }
+
+  public static void main(String args[]) {
+    CurrentLocale.setLanguage("en");
+
+    // Disable logging message whose level is less than WARNING.
+    for (Handler h : logger.getParent().getHandlers()) {
+      h.setLevel(Level.WARNING);
+    }
+
+    try {
+      if (args.length == 3 && args[0].equals("record")) {
+        long n = record(args[1], args[2]);
+        System.out.println("Recorded " + n + " branches to " + args[2]);
+        System.out.println(CPU.getInstance().getThroughputMeter());
+      } else if (args.length >= 2 && args[0].equals("replay")) {
+        long start = System.currentTimeMillis();
+        BranchTrace trace = BranchTrace.read(args[1]);
+        List<int[]> configs = new ArrayList<int[]>();
+
+        for (int i = 2; i < args.length; ++i) {
+          configs.add(parseConfig(args[i]));
+        }
+
+        if (configs.isEmpty()) {
+          configs = defaultSweep();
+        }
+
+        List<Result> results = replay(trace, configs, Runtime.getRuntime().availableProcessors());
+        System.out.println(String.format("%-14s %12s %12s %12s %9s", "config", "hits", "misses", "unknown", "accuracy"));
+
+        for (Result r : results) {
+          System.out.println(String.format("%-14s %12d %12d %12d %8.2f%%", r.config, r.hits, r.misses, r.unknown, r.getAccuracy() * 100));
+        }
+
+        System.out.println(trace.size() + " branches, " + results.size() + " configurations, " + (System.currentTimeMillis() - start) + " ms");
+      } else {
+        System.err.println("Usage: BranchReplay record <program.s> <trace>");
+        System.err.println("       BranchReplay replay <trace> [LH:LC:GH:GC ...]");
+        System.exit(1);
+      }
+    } catch (Exception e) {
+      System.err.println("Error: " + e);
+      System.exit(2);
+    }
+  }
+
+  /** Runs a program to completion writing its branch trace.
+   * @param program path of the assembly source
+   * @param traceFile path of the trace to write
+   * @return the number of recorded branches
+   */
+  public static long record(String program, String traceFile) throws Exception {
+    CPU cpu = CPU.getInstance();
+    cpu.reset();
+
+    try {
+      Parser.getInstance().parse(program);
+    } catch (ParserMultiWarningException e) {
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    BranchTraceWriter writer = new BranchTraceWriter(traceFile);
+    cpu.setBranchTraceWriter(writer);
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      return writer.getRecords();
+    } finally {
+      cpu.setBranchTraceWriter(null);
+      writer.close();
+      cpu.reset();
+    }
+  }
+
+  /** Replays a trace through the given predictor configurations.
+   * @param trace the branch trace
+   * @param configs one {LH, LC, GH, GC} array per configuration
+   * @param threads number of worker threads
+   * @return the results, in the same order as the configurations
+   */
+  public static List<Result> replay(final BranchTrace trace, List<int[]> configs, int threads) throws InterruptedException, ExecutionException {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+
+    try {
+      List<Future<Result>> futures = new ArrayList<Future<Result>>();
+
+      for (final int[] c : configs) {
+        futures.add(pool.submit(new Callable<Result>() {
+          public Result call() {
+            return replay(trace, new BranchPredictor(c[0], c[1], c[2], c[3]));
+          }
+        }));
+      }
+
+      List<Result> results = new ArrayList<Result>();
+
+      for (Future<Result> f : futures) {
+        results.add(f.get());
+      }
+
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Replays a trace through a single predictor, in the same order the CPU
+   *  would have predicted and resolved the branches.
+   */
+  public static Result replay(BranchTrace trace, BranchPredictor predictor) {
+    Result r = new Result(predictor.toString());
+
+    for (int i = 0; i < trace.size(); ++i) {
+      if (!trace.getKind(i).isPredicted()) {
+        continue;
+      }
+
+      String pc = Long.toHexString(trace.getPC(i));
+      ShiftRegister.branchDecision predicted = predictor.predict(pc);
+
+      switch (predictor.resolve(pc, predicted, trace.isTaken(i))) {
+        case HIT:
+          r.hits++;
+          break;
+        case MISS:
+          r.misses++;
+          break;
+        default:
+          r.unknown++;
+      }
+    }
+
+    return r;
+  }
+
+  static int[] parseConfig(String s) {
+    String[] tokens = s.split(":");
+
+    if (tokens.length != 4) {
+      throw new IllegalArgumentException("Bad predictor configuration " + s);
+    }
+
+    int[] c = new int[4];
+
+    for (int i = 0; i < 4; ++i) {
+      c[i] = Integer.parseInt(tokens[i]);
+    }
+
+    // The pattern tables seed new counters from the last history bits.
+    if (c[0] < 1 || c[2] < 1 || c[1] < 1 || c[3] < 1 || c[1] > c[0] || c[3] > c[2]) {
+      throw new IllegalArgumentException("Bad predictor configuration " + s);
+    }
+
+    return c;
+  }
+
+  static List<int[]> defaultSweep() {
+    List<int[]> configs = new ArrayList<int[]>();
+
+    for (int lh : new int[] {4, 6, 8, 10, 12}) {
+      for (int lc : new int[] {2, 3}) {
+        for (int gh : new int[] {4, 8, 12, 16}) {
+          for (int gc : new int[] {2, 3}) {
+            configs.add(new int[] {lh, lc, gh, gc});
+          }
+        }
+      }
+    }
+
+    return configs;
+  }
+}
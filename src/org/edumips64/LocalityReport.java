@@ -0,0 +1,114 @@
+/* LocalityReport.java
+ *
+ * Runs a program and writes the locality analysis of its memory accesses as JSON.
+ *
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64;
+
+import org.edumips64.core.*;
+import org.edumips64.core.is.HaltException;
+import org.edumips64.utils.*;
+
+import java.io.*;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Command line tool for batch locality studies.
+ *
+ *  <pre>
+ *  LocalityReport program.s [out.json] [block size]
+ *  </pre>
+ *
+ *  Runs the program to completion and writes the LocalityAnalyzer results
+ *  as JSON to the given file, or to the standard output. The block size
+ *  defaults to the localityBlockSize setting.
+ */
+public class LocalityReport {
+  private static final Logger logger = Logger.getLogger(LocalityReport.class.getName());
+
+  public static void main(String args[]) {
+    // Run with the default settings, and keep the block size given on the
+    // command line out of the preferences of the user.
+    ConfigManager.setConfig(ConfigManager.getTmpConfig());
+    CurrentLocale.setLanguage("en");
+
+    // Disable logging message whose level is less than WARNING.
+    for (Handler h : logger.getParent().getHandlers()) {
+      h.setLevel(Level.WARNING);
+    }
+
+    if (args.length < 1 || args.length > 3) {
+      System.err.println("Usage: LocalityReport <program.s> [out.json] [block size]");
+      System.exit(1);
+    }
+
+    try {
+      if (args.length == 3) {
+        ConfigManager.getConfig().putInt("localityBlockSize", Integer.parseInt(args[2]));
+      }
+
+      Writer w = args.length > 1 ? new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8") : new OutputStreamWriter(System.out, "UTF-8");
+
+      try {
+        run(args[0], w);
+      } finally {
+        if (args.length > 1) {
+          w.close();
+        }
+      }
+    } catch (Exception e) {
+      System.err.println("Error: " + e);
+      System.exit(2);
+    }
+  }
+
+  /** Runs a program to completion and writes its locality analysis.
+   * @param program path of the assembly source
+   * @param w destination of the JSON object
+   */
+  public static void run(String program, Writer w) throws Exception {
+    CPU cpu = CPU.getInstance();
+    cpu.reset();
+
+    try {
+      Parser.getInstance().parse(program);
+    } catch (ParserMultiWarningException e) {
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      cpu.getLocalityAnalyzer().writeJSON(w);
+    } finally {
+      cpu.reset();
+    }
+  }
+}
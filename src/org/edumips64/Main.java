@@ -1092,6 +1092,12 @@ public class Main extends JApplet {
     System.out.println("Unsuccessful Prediction: " + cpu.predictionUnsuccessful);
     System.out.println("Known Prediction: " + cpu.predictionKnown);
     System.out.println("Unknown Prediction: " + cpu.predictionUnknown);
+    System.out.print(cpu.getBranchStatistics().toReport(BranchStatistics.SortKey.MISPREDICTIONS, 10));
+
+    if (cpu.getCacheHierarchy().isEnabled()) {
+      System.out.println("Cache statistics (" + cpu.getCacheStalls() + " stall cycles):");
+      System.out.print(cpu.getCacheHierarchy().toReport());
+    }
     cpu.resetBranchPredictionStatistics();
   }
 }
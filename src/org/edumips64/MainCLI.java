@@ -76,6 +76,20 @@ public class MainCLI {
           help += "show memory\t\tmostra il contenuto della memoria\n";
           help += "show symbols\t\tmostra il contenuto della symbol table\n";
           help += "show pipeline\t\tmostra il contenuto della pipeline\n";
+          help += "show branches [k]\tmostra le statistiche di predizione per salto, ordinate per k\n";
+          help += "\t\t\t(address, executions, mispredictions, mispredictionrate, takenrate)\n";
+          help += "show cache\t\tmostra gli stalli e le statistiche delle cache\n";
+          help += "show throughput\t\tmostra la velocita' della simulazione (cicli/s, istruzioni/s, allocazioni)\n";
+          help += "show statistics [n]\tmostra le statistiche della CPU (le n istruzioni con piu' cicli)\n";
+          help += "save statistics f\tsalva le statistiche della CPU nel file f (.json o .csv)\n";
+          help += "show profile [n]\tmostra le n regioni del programma con piu' cicli\n";
+          help += "save profile f\t\tsalva il listato annotato con il profilo nel file f\n";
+          help += "show dataflow [n]\tmostra il limite dataflow (IPC) e le n istruzioni piu' spesso sul cammino critico\n";
+          help += "show locality [n]\tmostra distanze di riuso, miss ratio previsto, stride delle n load/store piu' eseguite e heatmap\n";
+          help += "save locality f\t\tsalva l'analisi di localita' in JSON nel file f\n";
+          help += "save flamegraph f\tsalva il profilo come stack compressi (flame graph) nel file f\n";
+          help += "trace f\t\t\tscrive la traccia della pipeline dei prossimi cicli nel file f (formato Konata)\n";
+          help += "trace off\t\tchiude la traccia della pipeline\n";
           System.out.println(help);
         } else if (tokens[0].compareToIgnoreCase("show") == 0) {
           if (tokens.length == 1) {
@@ -95,10 +109,73 @@ public class MainCLI {
               System.out.println(c.getSymbolTable());
             } else if (tokens[1].compareToIgnoreCase("pipeline") == 0) {
               System.out.println(c.pipeLineString());
+            } else if (tokens[1].compareToIgnoreCase("branches") == 0) {
+              BranchStatistics.SortKey key = BranchStatistics.SortKey.MISPREDICTIONS;
+
+              if (tokens.length > 2) {
+                for (BranchStatistics.SortKey k : BranchStatistics.SortKey.values()) {
+                  if (k.name().replace("_", "").compareToIgnoreCase(tokens[2]) == 0) {
+                    key = k;
+                  }
+                }
+              }
+
+              System.out.print(c.getBranchStatistics().toReport(key, 0));
+            } else if (tokens[1].compareToIgnoreCase("cache") == 0) {
+              if (c.getCacheHierarchy().isEnabled()) {
+                System.out.println(c.getCacheStalls() + " stalli di cache");
+                System.out.print(c.getCacheHierarchy().toReport());
+              } else {
+                System.out.println("Cache disabilitata (cacheEnabled)");
+              }
+            } else if (tokens[1].compareToIgnoreCase("throughput") == 0) {
+              System.out.println(c.getThroughputMeter());
+            } else if (tokens[1].compareToIgnoreCase("statistics") == 0) {
+              System.out.print(c.getStatistics().toReport(tokens.length > 2 ? Integer.parseInt(tokens[2]) : 0));
+            } else if (tokens[1].compareToIgnoreCase("profile") == 0) {
+              System.out.print(c.getProfiler().toReport(tokens.length > 2 ? Integer.parseInt(tokens[2]) : 0));
+            } else if (tokens[1].compareToIgnoreCase("dataflow") == 0) {
+              System.out.print(c.getDataflowAnalyzer().toReport(tokens.length > 2 ? Integer.parseInt(tokens[2]) : 0));
+            } else if (tokens[1].compareToIgnoreCase("locality") == 0) {
+              System.out.print(c.getLocalityAnalyzer().toReport(tokens.length > 2 ? Integer.parseInt(tokens[2]) : 0));
             } else {
               System.out.println("Bisogna fornire almeno un parametro al comando show");
             }
           }
+        } else if (tokens[0].compareToIgnoreCase("save") == 0) {
+          if (tokens.length < 3 || !tokens[1].matches("(?i)statistics|profile|flamegraph|locality")) {
+            System.out.println("Uso: save statistics|profile|flamegraph|locality <file>");
+          } else {
+            Writer w = new OutputStreamWriter(new FileOutputStream(tokens[2]), "UTF-8");
+
+            try {
+              if (tokens[1].compareToIgnoreCase("profile") == 0) {
+                c.getProfiler().writeListing(w);
+              } else if (tokens[1].compareToIgnoreCase("flamegraph") == 0) {
+                c.getProfiler().writeFolded(w);
+              } else if (tokens[1].compareToIgnoreCase("locality") == 0) {
+                c.getLocalityAnalyzer().writeJSON(w);
+              } else if (tokens[2].toLowerCase().endsWith(".csv")) {
+                c.getStatistics().snapshot().writeCSV(w);
+              } else {
+                c.getStatistics().snapshot().writeJSON(w);
+              }
+            } finally {
+              w.close();
+            }
+
+            System.out.println("Salvato " + tokens[2]);
+          }
+        } else if (tokens[0].compareToIgnoreCase("trace") == 0) {
+          if (tokens.length < 2) {
+            System.out.println("Uso: trace <file>|off");
+          } else if (tokens[1].compareToIgnoreCase("off") == 0) {
+            c.stopPipelineTrace();
+            System.out.println("Traccia della pipeline chiusa");
+          } else {
+            c.startPipelineTrace(tokens[1]);
+            System.out.println("Traccia della pipeline in " + tokens[1]);
+          }
         } else if (tokens[0].compareTo("step") == 0) {
           try {
             int num = 1;
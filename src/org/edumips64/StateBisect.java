@@ -0,0 +1,209 @@
+/* StateBisect.java
+ *
+ * Records state checkpoints and finds the first cycle where two runs differ.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64;
+
+import org.edumips64.core.*;
+import org.edumips64.core.is.HaltException;
+import org.edumips64.utils.*;
+
+import java.io.IOException;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Command line tool to check that two runs of a program go through the
+ *  same architectural states.
+ *
+ *  <pre>
+ *  StateBisect record program.s run.emsc [interval]
+ *  StateBisect compare a.emsc b.emsc
+ *  </pre>
+ *
+ *  "record" runs the program once writing the state digest every interval
+ *  cycles (1000 by default);
+ *  "compare" walks two checkpoint files side by side and prints the last
+ *  cycle where the runs agree and the first one where they differ. If the
+ *  two cycles are not consecutive, recording again with a smaller interval
+ *  narrows the window down to the first divergent cycle.
+ *
+ *  The exit status is 0 if the runs agree, 1 if they differ, 2 on errors.
+ */
+public class StateBisect {
+  private static final Logger logger = Logger.getLogger(StateBisect.class.getName());
+
+  /** Outcome of the comparison of two checkpoint files */
+  public static class Result {
+    /** Last cycle checked in both runs with the same digest, 0 if none */
+    public long lastEqual;
+    /** First cycle checked in both runs with different digests, or where
+     *  only one of the runs ended; -1 if the runs agree */
+    public long firstDifferent = -1;
+    /** Number of cycles checked in both runs */
+    public long compared;
+
+    public boolean isEqual() {
+      return firstDifferent < 0;
+    }
+  }
+
+  public static void main(String args[]) {
+    // Run with the default settings: the preferences of the user (e.g. a
+    // pipeline trace or checkpoint file) must not affect the runs.
+    ConfigManager.setConfig(ConfigManager.getTmpConfig());
+    CurrentLocale.setLanguage("en");
+
+    // Disable logging message whose level is less than WARNING.
+    for (Handler h : logger.getParent().getHandlers()) {
+      h.setLevel(Level.WARNING);
+    }
+
+    try {
+      if ((args.length == 3 || args.length == 4) && args[0].equals("record")) {
+        int interval = args.length == 4 ? Integer.parseInt(args[3]) : 1000;
+        long n = record(args[1], args[2], interval);
+        System.out.println("Recorded " + n + " checkpoints to " + args[2]);
+      } else if (args.length == 3 && args[0].equals("compare")) {
+        Result r = compare(args[1], args[2]);
+
+        if (r.isEqual()) {
+          System.out.println("The runs agree on " + r.compared + " checkpoints, up to cycle " + r.lastEqual);
+        } else {
+          System.out.println("Last equal cycle: " + r.lastEqual);
+          System.out.println("First different cycle: " + r.firstDifferent);
+
+          if (r.firstDifferent - r.lastEqual > 1) {
+            System.out.println("Record again with an interval of at most " + Math.max(1, (r.firstDifferent - r.lastEqual) / 64)
+                               + " cycles to narrow the window");
+          }
+
+          System.exit(1);
+        }
+      } else {
+        System.err.println("Usage: StateBisect record <program.s> <checkpoints> [interval]");
+        System.err.println("       StateBisect compare <checkpoints> <checkpoints>");
+        System.exit(2);
+      }
+    } catch (Exception e) {
+      System.err.println("Error: " + e);
+      System.exit(2);
+    }
+  }
+
+  /** Runs a program to completion writing its state checkpoints.
+   * @param program path of the assembly source
+   * @param checkpointFile path of the checkpoints to write
+   * @param interval cycles between two checkpoints
+   * @return the number of checkpoints written
+   */
+  public static long record(String program, String checkpointFile, int interval) throws Exception {
+    CPU cpu = CPU.getInstance();
+    cpu.reset();
+
+    try {
+      Parser.getInstance().parse(program);
+    } catch (ParserMultiWarningException e) {
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+    cpu.startStateCheckpoints(checkpointFile, interval);
+    StateCheckpointWriter writer = cpu.getStateCheckpointWriter();
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      return writer.getRecords();
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /** Compares two checkpoint files. Only the cycles found in both files are
+   *  compared, so the intervals may differ; the end of each run is always
+   *  compared with the other run.
+   * @param a first checkpoint file
+   * @param b second checkpoint file
+   * @return the outcome of the comparison
+   */
+  public static Result compare(String a, String b) throws IOException {
+    StateCheckpointReader ra = new StateCheckpointReader(a);
+
+    try {
+      StateCheckpointReader rb = new StateCheckpointReader(b);
+
+      try {
+        return compare(ra, rb);
+      } finally {
+        rb.close();
+      }
+    } finally {
+      ra.close();
+    }
+  }
+
+  static Result compare(StateCheckpointReader a, StateCheckpointReader b) throws IOException {
+    Result r = new Result();
+    boolean moreA = a.next(), moreB = b.next();
+
+    while (moreA && moreB) {
+      if (a.getCycle() < b.getCycle()) {
+        moreA = a.next();
+
+        // The end of a run must be found in the other one too.
+        if (!moreA) {
+          r.firstDifferent = a.getCycle();
+          return r;
+        }
+      } else if (b.getCycle() < a.getCycle()) {
+        moreB = b.next();
+
+        if (!moreB) {
+          r.firstDifferent = b.getCycle();
+          return r;
+        }
+      } else {
+        if (a.getDigest() != b.getDigest()) {
+          r.firstDifferent = a.getCycle();
+          return r;
+        }
+
+        r.lastEqual = a.getCycle();
+        r.compared++;
+        moreA = a.next();
+        moreB = b.next();
+      }
+    }
+
+    if (moreA != moreB) {
+      r.firstDifferent = moreA ? a.getCycle() : b.getCycle();
+    }
+
+    return r;
+  }
+}
@@ -0,0 +1,512 @@
+/* Benchmarks.java
+ *
+ * The JMH benchmark suite of the simulator hot paths.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.bench;
+
+import org.edumips64.core.*;
+import org.edumips64.core.fpu.FPInstructionUtils;
+import org.edumips64.core.is.HaltException;
+import org.edumips64.ui.CycleBuilder;
+import org.edumips64.utils.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/** The benchmark suite, run by JMH (ant bench): the run loop of the CPU on
+ *  the test programs, the parser on generated sources, and the helpers the
+ *  run loop spends most of its time in (BitSet64, Converter,
+ *  FPInstructionUtils, the Dinero trace and the CycleBuilder of the GUI).
+ *
+ *  The scores are operations per second. The benchmarks doing a variable
+ *  amount of work also count it (cycles, lines or accesses), and JMH
+ *  reports its rate next to the score.
+ *
+ *  The test programs are read from the directory in the
+ *  edumips64.bench.data system property, src/org/edumips64/tests/data/ by
+ *  default, relative to the working directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Benchmarks {
+  /** Directory of the test programs */
+  static final String DATA = System.getProperty("edumips64.bench.data", "src/org/edumips64/tests/data/");
+
+  /** Number of accesses emitted by one operation of the Dinero benchmark */
+  static final int DINERO_ACCESSES = 1 << 16;
+
+  /** Number of precomputed operands of the conversion benchmarks */
+  static final int OPERANDS = 256;
+
+  static {
+    // The benchmarks must not touch the preferences of the user.
+    ConfigManager.setConfig(ConfigManager.getTmpConfig());
+    CurrentLocale.setLanguage("en");
+
+    // Disable logging message whose level is less than SEVERE: the
+    // benchmarks parse the same programs over and over.
+    for (Handler h : Logger.getLogger("").getHandlers()) {
+      h.setLevel(java.util.logging.Level.SEVERE);
+    }
+  }
+
+  /** Simulated cycles, counted next to the score */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Cycles {
+    public long cycles;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      cycles = 0;
+    }
+  }
+
+  /** Assembled lines, counted next to the score */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Lines {
+    public long lines;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      lines = 0;
+    }
+  }
+
+  /** Accesses of the Dinero trace, counted next to the score */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Accesses {
+    public long accesses;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      accesses = 0;
+    }
+  }
+
+  /** Parses a program, failing only on errors */
+  static void load(String filename) throws Exception {
+    try {
+      Parser.getInstance().parse(filename);
+    } catch (ParserMultiWarningException e) {
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+  }
+
+  /** Generates a program with the given number of data lines, each one
+   *  holding 4 doublewords, and of code lines. Labels start with prefix, so
+   *  that generated files can be included in the same program.
+   */
+  static String generate(String prefix, int dataLines, int codeLines) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(".data\n");
+
+    for (int i = 0; i < dataLines; ++i) {
+      sb.append(String.format("%sd%d: .word64 %d, %d, %d, %d%n", prefix, i, i, -i, i * 3, i << 8));
+    }
+
+    sb.append(".code\n");
+
+    for (int i = 0; i < codeLines; ++i) {
+      String data = prefix + "d" + (i % Math.max(1, dataLines));
+
+      switch (i % 5) {
+      case 0:
+        sb.append(String.format("%sc%d: daddi r1, r1, %d%n", prefix, i, i % 100));
+        break;
+      case 1:
+        sb.append(String.format("  ld r2, %s(r0)%n", data));
+        break;
+      case 2:
+        sb.append("  dadd r3, r1, r2\n");
+        break;
+      case 3:
+        sb.append(String.format("  sd r3, %s(r0)%n", data));
+        break;
+      default:
+        sb.append(String.format("  bne r1, r0, %sc%d%n", prefix, i - 4));
+      }
+    }
+
+    return sb.toString();
+  }
+
+  static int countLines(String s) {
+    int n = 0;
+
+    for (int i = 0; i < s.length(); ++i) {
+      if (s.charAt(i) == '\n') {
+        n++;
+      }
+    }
+
+    return n;
+  }
+
+  /** A test program, reset and parsed (untimed) before every run */
+  @State(Scope.Thread)
+  public static class Program {
+    @Param({"test-strcmp.s", "test-strlen.s", "forwarding.s", "fpu-waw.s"})
+    public String program;
+
+    CPU cpu;
+    CycleBuilder builder;
+
+    @Setup(Level.Invocation)
+    public void load() throws Exception {
+      cpu = CPU.getInstance();
+      cpu.reset();
+      Benchmarks.load(DATA + program);
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+      builder = new CycleBuilder();
+    }
+
+    @TearDown(Level.Trial)
+    public void reset() {
+      cpu.reset();
+    }
+  }
+
+  /** Runs a program from reset to HALT. */
+  @Benchmark
+  public long cpuStep(Program p, Cycles c) throws Exception {
+    try {
+      while (true) {
+        p.cpu.step();
+      }
+    } catch (HaltException e) {
+      c.cycles += p.cpu.getCycles();
+      return p.cpu.getCycles();
+    }
+  }
+
+  /** Runs a program from reset to HALT, stepping the cycle builder too, as
+   *  the GUI does. */
+  @Benchmark
+  public long cycleBuilderStep(Program p, Cycles c) throws Exception {
+    try {
+      while (true) {
+        p.cpu.step();
+        p.builder.step();
+      }
+    } catch (HaltException e) {
+      c.cycles += p.cpu.getCycles();
+      return p.cpu.getCycles();
+    }
+  }
+
+  /** A generated source in memory, without includes */
+  @State(Scope.Thread)
+  public static class Source {
+    @Param({"small", "large"})
+    public String size;
+
+    char[] source;
+    int lines;
+
+    @Setup(Level.Trial)
+    public void generate() {
+      String s = size.equals("small") ? Benchmarks.generate("p", 4, 20) : Benchmarks.generate("p", 100, 250);
+      s += "  syscall 0\n";
+      source = s.toCharArray();
+      lines = countLines(s);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+      CPU.getInstance().reset();
+    }
+  }
+
+  /** Assembles a generated source. */
+  @Benchmark
+  public void parserParse(Source s, Lines l) throws Exception {
+    try {
+      Parser.getInstance().parse(s.source);
+    } catch (ParserMultiWarningException e) {
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    l.lines += s.lines;
+  }
+
+  /** Two copies of a generated program, each made of a main file and four
+   *  included files */
+  @State(Scope.Thread)
+  public static class Includes {
+    private List<File> files = new ArrayList<File>();
+    String[] mains = new String[2];
+    int lines, turn;
+
+    @Setup(Level.Trial)
+    public void write() throws Exception {
+      File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+      lines = 0;
+
+      for (int copy = 0; copy < mains.length; ++copy) {
+        StringBuilder main = new StringBuilder(generate("m", 20, 40));
+
+        for (int i = 0; i < 4; ++i) {
+          String unit = generate("u" + i, 20, 50);
+          File f = write(tmpDir, "bench-includes-" + copy + "-" + i + ".s", unit);
+          main.append("#include ").append(f.getName()).append("\n");
+          lines += copy == 0 ? countLines(unit) : 0;
+        }
+
+        main.append("  syscall 0\n");
+        mains[copy] = write(tmpDir, "bench-includes-" + copy + ".s", main.toString()).getPath();
+        lines += copy == 0 ? countLines(main.toString()) : 0;
+      }
+    }
+
+    private File write(File dir, String name, String text) throws IOException {
+      File f = new File(dir, name);
+      Writer w = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+
+      try {
+        w.write(text);
+      } finally {
+        w.close();
+      }
+
+      files.add(f);
+      return f;
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+      CPU.getInstance().reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+      CPU.getInstance().reset();
+
+      for (File f : files) {
+        f.delete();
+      }
+    }
+  }
+
+  /** Parses the two copies of the program in turn, so that every parse goes
+   *  through the whole assembler. */
+  @Benchmark
+  public void parserParseIncludes(Includes s, Lines l) throws Exception {
+    s.turn ^= 1;
+    load(s.mains[s.turn]);
+    l.lines += s.lines;
+  }
+
+  /** Parses the same copy of the program every time, which takes the
+   *  incremental path of the parser. */
+  @Benchmark
+  public void parserReparseIncludes(Includes s, Lines l) throws Exception {
+    load(s.mains[0]);
+    l.lines += s.lines;
+  }
+
+  @State(Scope.Thread)
+  public static class Bits {
+    BitSet64 bs = new BitSet64();
+    long value = 1;
+    int offset;
+
+    @Setup(Level.Trial)
+    public void fill() throws Exception {
+      bs.writeDoubleWord(0x0123456789ABCDEFL);
+    }
+  }
+
+  @Benchmark
+  public long bitSet64WriteDoubleWord(Bits s) throws Exception {
+    s.value = s.value * 6364136223846793005L + 1442695040888963407L;
+    s.bs.writeDoubleWord(s.value);
+    return s.bs.getBits();
+  }
+
+  @Benchmark
+  public long bitSet64WriteByte(Bits s) throws Exception {
+    s.offset = (s.offset + 1) & 7;
+    s.bs.writeByte(s.offset * 31 - 100, s.offset);
+    return s.bs.getBits();
+  }
+
+  @Benchmark
+  public long bitSet64ReadWord(Bits s) throws Exception {
+    s.offset ^= 4;
+    return s.bs.readWord(s.offset);
+  }
+
+  @Benchmark
+  public long bitSet64ReadByte(Bits s) throws Exception {
+    s.offset = (s.offset + 1) & 7;
+    return s.bs.readByte(s.offset);
+  }
+
+  /** Precomputed operands of the conversions, used in turn */
+  @State(Scope.Thread)
+  public static class Operands {
+    long[] longs = new long[OPERANDS];
+    String[] bins = new String[OPERANDS];
+    String[] hexes = new String[OPERANDS];
+    String[] doubles = new String[OPERANDS];
+    String[] decimals = new String[OPERANDS];
+    private int index;
+
+    @Setup(Level.Trial)
+    public void compute() throws Exception {
+      Random random = new Random(42);
+
+      for (int i = 0; i < OPERANDS; ++i) {
+        longs[i] = random.nextLong();
+        bins[i] = Converter.positiveIntToBin(64, longs[i] & Long.MAX_VALUE);
+        hexes[i] = "0x" + Long.toHexString(longs[i] & Long.MAX_VALUE);
+        double d = (random.nextDouble() + 0.5) * Math.pow(10, random.nextInt(20) - 10);
+        doubles[i] = Converter.positiveIntToBin(64, Double.doubleToLongBits(d));
+        decimals[i] = Double.toString(d);
+      }
+    }
+
+    int next() {
+      index = (index + 1) % OPERANDS;
+      return index;
+    }
+  }
+
+  @Benchmark
+  public long converterBinToLong(Operands s) throws Exception {
+    return Converter.binToLong(s.bins[s.next()], false);
+  }
+
+  @Benchmark
+  public String converterPositiveIntToBin(Operands s) throws Exception {
+    return Converter.positiveIntToBin(64, s.longs[s.next()] & Long.MAX_VALUE);
+  }
+
+  @Benchmark
+  public String converterBinToHex(Operands s) throws Exception {
+    return Converter.binToHex(s.bins[s.next()]);
+  }
+
+  @Benchmark
+  public String converterHexToLong(Operands s) throws Exception {
+    return Converter.hexToLong(s.hexes[s.next()]);
+  }
+
+  @Benchmark
+  public String fpInstructionUtilsDoubleSum(Operands s) throws Exception {
+    int i = s.next();
+    return FPInstructionUtils.doubleSum(s.doubles[i], s.doubles[(i + 1) % OPERANDS]);
+  }
+
+  @Benchmark
+  public String fpInstructionUtilsDoubleMultiplication(Operands s) throws Exception {
+    int i = s.next();
+    return FPInstructionUtils.doubleMultiplication(s.doubles[i], s.doubles[(i + 1) % OPERANDS]);
+  }
+
+  @Benchmark
+  public String fpInstructionUtilsDoubleDivision(Operands s) throws Exception {
+    int i = s.next();
+    return FPInstructionUtils.doubleDivision(s.doubles[i], s.doubles[(i + 1) % OPERANDS]);
+  }
+
+  @Benchmark
+  public String fpInstructionUtilsDoubleToBin(Operands s) throws Exception {
+    return FPInstructionUtils.doubleToBin(s.decimals[s.next()]);
+  }
+
+  /** The Dinero trace, kept in memory or streamed to a file. A test program
+   *  is loaded first, so that the data offset is computed only once per
+   *  trace. */
+  @State(Scope.Thread)
+  public static class Trace {
+    @Param({"memory", "xdin", "binary"})
+    public String format;
+
+    Dinero dinero;
+    private File trace;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+      CPU.getInstance().reset();
+      Benchmarks.load(DATA + "test-strlen.s");
+      dinero = Dinero.getInstance();
+
+      if (!format.equals("memory")) {
+        trace = File.createTempFile("bench-dinero", "." + format);
+      }
+    }
+
+    @Setup(Level.Invocation)
+    public void open() throws Exception {
+      dinero.reset();
+
+      if (trace != null) {
+        dinero.openSink(trace.getPath(), format.equals("xdin") ? Dinero.Format.XDIN : Dinero.Format.BINARY, false);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+      dinero.reset();
+      CPU.getInstance().reset();
+
+      if (trace != null) {
+        trace.delete();
+      }
+    }
+  }
+
+  /** Emits instruction fetches, loads and stores to the Dinero trace. */
+  @Benchmark
+  public void dineroTrace(Trace s, Accesses a) {
+    Dinero dinero = s.dinero;
+    long pc = 0, address = 0;
+
+    for (int i = 0; i < DINERO_ACCESSES; i += 4) {
+      dinero.IF(pc);
+      dinero.IF(pc + 4);
+      dinero.Load(address, 8);
+      dinero.Store(address + 8, 4);
+      pc = (pc + 8) & 0xFFF;
+      address = (address + 16) & 0x7FF;
+    }
+
+    dinero.closeSink();
+    a.accesses += DINERO_ACCESSES;
+  }
+}
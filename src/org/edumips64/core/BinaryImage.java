@@ -0,0 +1,204 @@
+/* BinaryImage.java
+ *
+ * Loads and saves raw binary code and data images.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+/** Raw binary images of a program, loaded straight into Memory without
+ *  going through the assembler.
+ *
+ *  A program is made of a code image (<code>name.bin</code>), the sequence
+ *  of its 32-bit big-endian machine words starting from address 0, and of
+ *  an optional data image (<code>name.dat</code>), the bytes of the data
+ *  memory starting from address 0. The words are decoded by
+ *  InstructionEncoding; there are no labels, so instructions show their
+ *  operands as numbers. Words that are not supported instructions are
+ *  reported with their address.
+ */
+public class BinaryImage {
+  public static final String CODE_EXTENSION = ".bin";
+  public static final String DATA_EXTENSION = ".dat";
+
+  private static final Logger logger = Logger.getLogger(BinaryImage.class.getName());
+
+  private BinaryImage() {}
+
+  /** Checks whether a file name denotes a code image */
+  public static boolean isImage(String filename) {
+    return filename.toLowerCase().endsWith(CODE_EXTENSION);
+  }
+
+  /** Gets the name of the data image that goes with a code image */
+  public static String dataFile(String codeFile) {
+    return codeFile.substring(0, codeFile.length() - CODE_EXTENSION.length()) + DATA_EXTENSION;
+  }
+
+  /** Loads a code image, and the data image next to it if there is one.
+   * @param codeFile path of the code image
+   * @throws ParserMultiException if a word is not a known instruction or an
+   *         image does not fit in memory; the rest of the program is loaded anyway
+   */
+  public static void load(String codeFile) throws IOException, ParserMultiException {
+    String dataFile = dataFile(codeFile);
+    load(codeFile, new File(dataFile).isFile() ? dataFile : null);
+  }
+
+  /** Loads a code image and a data image.
+   * @param codeFile path of the code image
+   * @param dataFile path of the data image, or null if the program has no data
+   */
+  public static void load(String codeFile, String dataFile) throws IOException, ParserMultiException {
+    ParserMultiException error = new ParserMultiException();
+    Memory mem = Memory.getInstance();
+    ByteBuffer code = map(codeFile);
+    int words = code.remaining() / 4;
+
+    if (code.remaining() % 4 != 0) {
+      error.add("INVALIDCODE", words + 1, 0, "");
+    }
+
+    if (words > CPU.CODELIMIT) {
+      error.add("OUTOFINSTRUCTIONMEMORY", CPU.CODELIMIT + 1, 0, "");
+      words = CPU.CODELIMIT;
+    }
+
+    Instruction[] instructions = mem.getInstructions().toArray(new Instruction[CPU.CODELIMIT]);
+    decode(code, words, instructions, 0, 0, error);
+    mem.setInstructions(instructions);
+    mem.setInstructionsNumber(words);
+
+    if (dataFile != null) {
+      ByteBuffer data = map(dataFile);
+      int length = data.remaining();
+
+      if (length > CPU.DATALIMIT * 8) {
+        error.add("OUTOFMEMORY", 0, 0, "");
+        length = CPU.DATALIMIT * 8;
+      }
+
+      byte[] bytes = new byte[length];
+      data.get(bytes);
+
+      try {
+        mem.writeBytes(0, bytes, 0, length);
+      } catch (MemoryElementNotFoundException e) {
+        // Cannot happen, the length has been checked above.
+        throw new IOException(e);
+      }
+    }
+
+    logger.info("Loaded " + words + " instructions from " + codeFile);
+
+    if (error.hasErrors()) {
+      throw error;
+    }
+  }
+
+  /** Saves the program in Memory as a code image and a data image; the data
+   *  image stops at the last cell that is not zero.
+   * @param codeFile path of the code image
+   * @param dataFile path of the data image
+   */
+  public static void save(String codeFile, String dataFile) throws IOException {
+    Memory mem = Memory.getInstance();
+    int words = mem.getInstructionsNumber();
+    ByteBuffer code = ByteBuffer.allocate(words * 4).order(ByteOrder.BIG_ENDIAN);
+
+    for (int k = 0; k < words; ++k) {
+      code.putInt((int) mem.getInstruction(k * 4).getRepr().getBits());
+    }
+
+    int cells = CPU.DATALIMIT;
+
+    try {
+      while (cells > 0 && mem.getCellByIndex(cells - 1).isZero()) {
+        cells--;
+      }
+
+      ByteBuffer data = ByteBuffer.allocate(cells * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+      for (int k = 0; k < cells; ++k) {
+        data.putLong(mem.getCellByIndex(k).getBits());
+      }
+
+      write(codeFile, code.array());
+      write(dataFile, data.array());
+    } catch (MemoryElementNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /** Decodes consecutive machine words into consecutive instruction slots.
+   * @param code buffer positioned on the first word, in the right byte order
+   * @param words number of words to decode
+   * @param instructions the code memory
+   * @param slot index of the slot of the first word
+   * @param address address of the first word in the file, for the report
+   * @param error collects the words that are not supported instructions
+   */
+  static void decode(ByteBuffer code, int words, Instruction[] instructions, int slot, long address,
+                     ParserMultiException error) {
+    for (int k = 0; k < words; ++k) {
+      int word = code.getInt();
+      Instruction i = InstructionEncoding.decode(word);
+
+      if (i == null) {
+        error.add("UNSUPPORTEDINSTRUCTION", slot + k + 1, 0, String.format("%08X: %08X", address + 4L * k, word));
+        continue;
+      }
+
+      instructions[slot + k] = i;
+    }
+  }
+
+  static ByteBuffer map(String filename) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(filename, "r");
+
+    try {
+      FileChannel channel = file.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      return buffer;
+    } finally {
+      file.close();
+    }
+  }
+
+  private static void write(String filename, byte[] bytes) throws IOException {
+    OutputStream out = new FileOutputStream(filename);
+
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/* BranchPredictor.java
+ *
+ * Tournament (local/global) branch predictor.
+ * (c) 2016 Ramakrishnan Kalyanaraman
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+/** Tournament branch predictor made of a local two-level predictor (per-PC
+ *  history table + pattern table), a global two-level predictor (global
+ *  history register + pattern table) and a saturating counter that selects
+ *  which of the two is used for the next prediction.
+ *
+ *  The CPU owns one instance with the default geometry; the offline replay
+ *  tool builds as many instances as there are configurations to evaluate.
+ */
+public class BranchPredictor {
+    /** Outcome of a resolved branch with respect to its prediction. */
+    public enum Outcome {HIT, MISS, UNKNOWN}
+
+    public static final int DEFAULT_LOCAL_HISTORY_BITS = 10;
+    public static final int DEFAULT_LOCAL_COUNTER_BITS = 3;
+    public static final int DEFAULT_GLOBAL_HISTORY_BITS = 12;
+    public static final int DEFAULT_GLOBAL_COUNTER_BITS = 2;
+
+    private HistoryTable localHistoryTable;
+    private PatternTable localPatternTable;
+    private ShiftRegister globalHistoryRegister;
+    private PatternTable globalPatternTable;
+
+    // Global or Local prediction selection saturating counter
+    // '00' -> Strongly take Global Predictor
+    // '01' -> Weakly take Global Predictor
+    // '10' -> Weakly take Local Predictor
+    // '11' -> Strongly take Local Predictor
+    private SaturatingCounter predictorSelectionCounter;
+    private boolean selectGlobal;
+
+    private int localHistoryBits, localCounterBits, globalHistoryBits, globalCounterBits;
+
+    /** Creates a predictor with the geometry used by the CPU. */
+    public BranchPredictor() {
+        this(DEFAULT_LOCAL_HISTORY_BITS, DEFAULT_LOCAL_COUNTER_BITS, DEFAULT_GLOBAL_HISTORY_BITS, DEFAULT_GLOBAL_COUNTER_BITS);
+    }
+
+    /** Creates a predictor with the given geometry.
+     * @param localHistoryBits length of the per-PC history shift registers
+     * @param localCounterBits size of the saturating counters of the local pattern table
+     * @param globalHistoryBits length of the global history register
+     * @param globalCounterBits size of the saturating counters of the global pattern table
+     */
+    public BranchPredictor(int localHistoryBits, int localCounterBits, int globalHistoryBits, int globalCounterBits) {
+        this.localHistoryBits = localHistoryBits;
+        this.localCounterBits = localCounterBits;
+        this.globalHistoryBits = globalHistoryBits;
+        this.globalCounterBits = globalCounterBits;
+        reset();
+    }
+
+    /** Discards all the history and pattern information. */
+    public void reset() {
+        localHistoryTable = new HistoryTable(localHistoryBits);
+        localPatternTable = new PatternTable(localCounterBits, localHistoryBits);
+        globalHistoryRegister = new ShiftRegister(globalHistoryBits);
+        globalPatternTable = new PatternTable(globalCounterBits, globalHistoryBits);
+        predictorSelectionCounter = new SaturatingCounter(2, "00");
+        updateSelectGlobal();
+    }
+
+    public void updateLocalHistoryTable(String pc, ShiftRegister.branchDecision decision) {
+        localHistoryTable.updateEntryToLocalHistoryTable(pc, decision);
+        String decisionBuffer = new String(localHistoryTable.getDecisionBufferOf(pc));
+        if (decisionBuffer != Character.toString('X')) {
+            localPatternTable.updateEntryToPatternTable(decisionBuffer, decision);
+        }
+    }
+
+    public void updateGlobalHistoryRegister(ShiftRegister.branchDecision decision) {
+        globalHistoryRegister.addDecision(decision);
+        String decisionBuffer = new String(globalHistoryRegister.toBinString());
+        globalPatternTable.updateEntryToPatternTable(decisionBuffer, decision);
+    }
+
+    public ShiftRegister.branchDecision predictFromLocalPatternTable(String pc) {
+        String decisionBuffer = new String(localHistoryTable.getDecisionBufferOf(pc));
+        if (decisionBuffer != Character.toString('X')) {
+            return localPatternTable.predictBranchDecision(decisionBuffer);
+        } else {
+            return ShiftRegister.branchDecision.Unknown;
+        }
+    }
+
+    public ShiftRegister.branchDecision predictFromGlobalPatternTable() {
+        String decisionBuffer = new String(globalHistoryRegister.toBinString());
+        return globalPatternTable.predictBranchDecision(decisionBuffer);
+    }
+
+    /** Predicts the branch at the given PC using the currently selected component. */
+    public ShiftRegister.branchDecision predict(String pc) {
+        if (selectGlobal) {
+            return predictFromGlobalPatternTable();
+        } else {
+            return predictFromLocalPatternTable(pc);
+        }
+    }
+
+    /** Trains the predictor with the actual outcome of a branch, and moves
+     *  the selection counter towards the component that was right.
+     * @param pc the address of the branch, used as key for the local tables
+     * @param predicted the decision returned by predict() for this branch
+     * @param taken the actual outcome of the branch
+     * @return whether the prediction was right, wrong or not available
+     */
+    public Outcome resolve(String pc, ShiftRegister.branchDecision predicted, boolean taken) {
+        ShiftRegister.branchDecision actual = taken ? ShiftRegister.branchDecision.Taken : ShiftRegister.branchDecision.NotTaken;
+        updateLocalHistoryTable(pc, actual);
+        updateGlobalHistoryRegister(actual);
+
+        if (predicted == ShiftRegister.branchDecision.Unknown) {
+            return Outcome.UNKNOWN;
+        }
+
+        boolean hit = predicted == actual;
+        if (hit == selectGlobal) {
+            decrementPredictorSelectionCounter();
+        } else {
+            incrementPredictorSelectionCounter();
+        }
+        return hit ? Outcome.HIT : Outcome.MISS;
+    }
+
+    public void incrementPredictorSelectionCounter() {
+        predictorSelectionCounter.incrementSaturatingCounter();
+        updateSelectGlobal();
+    }
+
+    public void decrementPredictorSelectionCounter() {
+        predictorSelectionCounter.decrementSaturatingCounter();
+        updateSelectGlobal();
+    }
+
+    private void updateSelectGlobal() {
+        selectGlobal = predictorSelectionCounter.getSaturatingCounter() <= 1;
+    }
+
+    public boolean getSelectGlobalFlag() {
+        return selectGlobal;
+    }
+
+    public int getLocalHistoryTableSize() {
+        return localHistoryTable.getSize();
+    }
+
+    public void printLocalTables() {
+        localHistoryTable.printHistoryTable();
+        localPatternTable.printPatternTable();
+    }
+
+    public String toString() {
+        return "L" + localHistoryBits + "/" + localCounterBits + " G" + globalHistoryBits + "/" + globalCounterBits;
+    }
+}
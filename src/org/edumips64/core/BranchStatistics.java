@@ -0,0 +1,245 @@
+/* BranchStatistics.java
+ *
+ * Per-static-branch prediction statistics.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import java.util.*;
+
+/** Prediction statistics of every static branch of the program, kept in
+ *  arrays indexed by instruction slot (address / 4).
+ *
+ *  Both components of the tournament predictor are queried for every
+ *  branch, so that the mispredictions of the local and of the global
+ *  predictor can be counted separately from the ones of the selected
+ *  prediction.
+ */
+public class BranchStatistics {
+  /** Sort orders for the report */
+  public enum SortKey {ADDRESS, EXECUTIONS, MISPREDICTIONS, MISPREDICTION_RATE, TAKEN_RATE}
+
+  /** One row of the report, i.e. the statistics of a single static branch */
+  public static class Entry {
+    public final int address;
+    /** Nearest label at or before the branch, with the offset from it */
+    public final String symbol;
+    public final String instruction;
+    public final long executions, taken, mispredictions, unknown, localMisses, globalMisses, globalChosen;
+
+    Entry(int address, String symbol, String instruction, long executions, long taken, long mispredictions, long unknown,
+          long localMisses, long globalMisses, long globalChosen) {
+      this.address = address;
+      this.symbol = symbol;
+      this.instruction = instruction;
+      this.executions = executions;
+      this.taken = taken;
+      this.mispredictions = mispredictions;
+      this.unknown = unknown;
+      this.localMisses = localMisses;
+      this.globalMisses = globalMisses;
+      this.globalChosen = globalChosen;
+    }
+
+    public double getTakenRate() {
+      return (double) taken / executions;
+    }
+
+    public double getMispredictionRate() {
+      return (double) mispredictions / executions;
+    }
+
+    public double getGlobalChosenRate() {
+      return (double) globalChosen / executions;
+    }
+  }
+
+  private long[] executions, taken, mispredictions, unknown, localMisses, globalMisses, globalChosen;
+  /** Slots of the branches recorded since the last reset */
+  private BitSet recorded;
+  /** Mispredictions of all the branches */
+  private long totalMispredictions;
+
+  public BranchStatistics() {
+    executions = new long[CPU.CODELIMIT];
+    taken = new long[CPU.CODELIMIT];
+    mispredictions = new long[CPU.CODELIMIT];
+    unknown = new long[CPU.CODELIMIT];
+    localMisses = new long[CPU.CODELIMIT];
+    globalMisses = new long[CPU.CODELIMIT];
+    globalChosen = new long[CPU.CODELIMIT];
+    recorded = new BitSet(CPU.CODELIMIT);
+  }
+
+  /** Records the outcome of a branch.
+   * @param address address of the branch instruction
+   * @param isTaken actual outcome of the branch
+   * @param selectedGlobal whether the global predictor was selected
+   * @param local prediction of the local predictor
+   * @param global prediction of the global predictor
+   */
+  public void record(long address, boolean isTaken, boolean selectedGlobal,
+                     ShiftRegister.branchDecision local, ShiftRegister.branchDecision global) {
+    int slot = (int)(address / 4);
+
+    if (slot < 0 || slot >= CPU.CODELIMIT) {
+      return;
+    }
+
+    ShiftRegister.branchDecision actual = isTaken ? ShiftRegister.branchDecision.Taken : ShiftRegister.branchDecision.NotTaken;
+    ShiftRegister.branchDecision selected = selectedGlobal ? global : local;
+
+    executions[slot]++;
+    recorded.set(slot);
+
+    if (isTaken) {
+      taken[slot]++;
+    }
+
+    if (selectedGlobal) {
+      globalChosen[slot]++;
+    }
+
+    if (selected == ShiftRegister.branchDecision.Unknown) {
+      unknown[slot]++;
+    } else if (selected != actual) {
+      mispredictions[slot]++;
+      totalMispredictions++;
+    }
+
+    if (local != ShiftRegister.branchDecision.Unknown && local != actual) {
+      localMisses[slot]++;
+    }
+
+    if (global != ShiftRegister.branchDecision.Unknown && global != actual) {
+      globalMisses[slot]++;
+    }
+  }
+
+  /** Clears the statistics of the branches recorded since the last reset */
+  public void reset() {
+    for (int i = recorded.nextSetBit(0); i >= 0; i = recorded.nextSetBit(i + 1)) {
+      executions[i] = 0;
+      taken[i] = 0;
+      mispredictions[i] = 0;
+      unknown[i] = 0;
+      localMisses[i] = 0;
+      globalMisses[i] = 0;
+      globalChosen[i] = 0;
+    }
+
+    recorded.clear();
+    totalMispredictions = 0;
+  }
+
+  /** Mispredictions of all the branches since the last reset */
+  public long getMispredictions() {
+    return totalMispredictions;
+  }
+
+  public long getExecutions(int address) {
+    return executions[address / 4];
+  }
+
+  public long getTaken(int address) {
+    return taken[address / 4];
+  }
+
+  public long getMispredictions(int address) {
+    return mispredictions[address / 4];
+  }
+
+  public long getUnknownPredictions(int address) {
+    return unknown[address / 4];
+  }
+
+  public long getLocalMisses(int address) {
+    return localMisses[address / 4];
+  }
+
+  public long getGlobalMisses(int address) {
+    return globalMisses[address / 4];
+  }
+
+  public long getGlobalChosen(int address) {
+    return globalChosen[address / 4];
+  }
+
+  /** Builds the report of all the executed branches.
+   * @param key sort order; every order but ADDRESS is descending
+   * @return one entry for each branch executed at least once
+   */
+  public List<Entry> getReport(final SortKey key) {
+    List<Entry> report = new ArrayList<Entry>();
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+
+    for (int i = 0; i < CPU.CODELIMIT; ++i) {
+      if (executions[i] > 0) {
+        SymbolTable.Symbol symbol = symTab.getCodeSymbol(i * 4);
+        report.add(new Entry(i * 4, symbol == null ? "" : symbol.toString(), mem.getInstruction(i * 4).getFullName(), executions[i], taken[i], mispredictions[i],
+                             unknown[i], localMisses[i], globalMisses[i], globalChosen[i]));
+      }
+    }
+
+    if (key != SortKey.ADDRESS) {
+      Collections.sort(report, new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+          switch (key) {
+          case EXECUTIONS:
+            return Long.compare(b.executions, a.executions);
+          case MISPREDICTIONS:
+            return Long.compare(b.mispredictions, a.mispredictions);
+          case MISPREDICTION_RATE:
+            return Double.compare(b.getMispredictionRate(), a.getMispredictionRate());
+          default:
+            return Double.compare(b.getTakenRate(), a.getTakenRate());
+          }
+        }
+      });
+    }
+
+    return report;
+  }
+
+  /** Formats the report as a text table.
+   * @param key sort order
+   * @param limit maximum number of rows, 0 for all of them
+   */
+  public String toReport(SortKey key, int limit) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-8s %-20s %-24s %10s %7s %10s %7s %10s %10s %7s%n", "Address", "Symbol", "Instruction", "Execs", "Taken",
+                            "Mispred", "Rate", "LocalMiss", "GlobMiss", "Global"));
+    int rows = 0;
+
+    for (Entry e : getReport(key)) {
+      if (limit > 0 && rows++ == limit) {
+        break;
+      }
+
+      sb.append(String.format("%08X %-20s %-24s %10d %6.1f%% %10d %6.1f%% %10d %10d %6.1f%%%n", e.address, e.symbol, e.instruction, e.executions,
+                              e.getTakenRate() * 100, e.mispredictions, e.getMispredictionRate() * 100, e.localMisses,
+                              e.globalMisses, e.getGlobalChosenRate() * 100));
+    }
+
+    return sb.toString();
+  }
+}
@@ -0,0 +1,175 @@
+/* BranchTrace.java
+ *
+ * In-memory representation of a binary branch trace.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import java.io.*;
+import java.util.Arrays;
+
+/** Branch trace loaded in primitive arrays, so that it can be replayed many
+ *  times (and by many threads at once) without touching the file again.
+ *
+ *  File format: the 4 bytes "EMBT", one version byte, then one record per
+ *  resolved branch as written by BranchTraceWriter.
+ */
+public class BranchTrace {
+  /** Class of the branch instruction that produced a record */
+  public enum Kind {
+    /** PC-relative conditional branch on integer registers (BEQ, BNE, ...) */
+    CONDITIONAL,
+    /** PC-relative unconditional branch (B) */
+    UNCONDITIONAL,
+    /** PC-relative branch on a FP condition code (BC1T, BC1F) */
+    FP_CONDITIONAL,
+    /** Absolute jump (J) */
+    JUMP,
+    /** Jump to register (JR) */
+    JUMP_REGISTER,
+    /** Absolute jump and link (JAL) */
+    CALL,
+    /** Jump to register and link (JALR) */
+    CALL_REGISTER;
+
+    /** Whether the branch direction goes through the branch predictor */
+    public boolean isPredicted() {
+      return this == CONDITIONAL || this == UNCONDITIONAL || this == FP_CONDITIONAL;
+    }
+  }
+
+  static final byte[] MAGIC = {'E', 'M', 'B', 'T'};
+  static final int VERSION = 1;
+
+  private static final Kind[] KINDS = Kind.values();
+
+  private long[] pcs, targets;
+  private byte[] flags;
+  private int size;
+
+  private BranchTrace() {
+    pcs = new long[1024];
+    targets = new long[1024];
+    flags = new byte[1024];
+    size = 0;
+  }
+
+  /** Reads a whole branch trace file.
+   * @param filename path of the trace
+   * @return the decoded trace
+   */
+  public static BranchTrace read(String filename) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(filename), 64 * 1024);
+
+    try {
+      return read(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Reads a branch trace from a stream, up to its end.
+   * @param in stream positioned on the trace header
+   * @return the decoded trace
+   */
+  public static BranchTrace read(InputStream in) throws IOException {
+    for (byte b : MAGIC) {
+      if (in.read() != b) {
+        throw new IOException("Not a branch trace file");
+      }
+    }
+
+    int version = in.read();
+
+    if (version != VERSION) {
+      throw new IOException("Unsupported branch trace version " + version);
+    }
+
+    BranchTrace trace = new BranchTrace();
+    long pc = 0;
+    int flag;
+
+    while ((flag = in.read()) != -1) {
+      if ((flag >> 1) >= KINDS.length) {
+        throw new IOException("Corrupted branch trace at record " + trace.size);
+      }
+
+      pc += readVarLong(in);
+      long target = pc + readVarLong(in);
+      trace.add(pc, target, (byte) flag);
+    }
+
+    return trace;
+  }
+
+  private void add(long pc, long target, byte flag) {
+    if (size == pcs.length) {
+      int capacity = size * 2;
+      pcs = Arrays.copyOf(pcs, capacity);
+      targets = Arrays.copyOf(targets, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+    }
+
+    pcs[size] = pc;
+    targets[size] = target;
+    flags[size] = flag;
+    size++;
+  }
+
+  private static long readVarLong(InputStream in) throws IOException {
+    long v = 0;
+    int shift = 0;
+    int b;
+
+    do {
+      b = in.read();
+
+      if (b == -1 || shift > 63) {
+        throw new EOFException("Truncated branch trace");
+      }
+
+      v |= (long)(b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getPC(int i) {
+    return pcs[i];
+  }
+
+  public long getTarget(int i) {
+    return targets[i];
+  }
+
+  public boolean isTaken(int i) {
+    return (flags[i] & 1) != 0;
+  }
+
+  public Kind getKind(int i) {
+    return KINDS[flags[i] >> 1];
+  }
+}
@@ -0,0 +1,87 @@
+/* BranchTraceWriter.java
+ *
+ * Compact binary writer for the stream of resolved branches.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import java.io.*;
+
+/** Writes resolved branches in the format described in BranchTrace.
+ *  Each record is one flag byte followed by the zigzag varint of the PC
+ *  delta from the previous record and the zigzag varint of target - PC,
+ *  so that a loop branch usually takes three or four bytes.
+ */
+public class BranchTraceWriter implements Closeable {
+  private OutputStream out;
+  private long lastPC;
+  private long records;
+
+  public BranchTraceWriter(OutputStream stream) throws IOException {
+    out = new BufferedOutputStream(stream, 64 * 1024);
+    out.write(BranchTrace.MAGIC);
+    out.write(BranchTrace.VERSION);
+    lastPC = 0;
+    records = 0;
+  }
+
+  public BranchTraceWriter(String filename) throws IOException {
+    this(new FileOutputStream(filename));
+  }
+
+  /** Appends a resolved branch to the trace.
+   * @param pc address of the branch instruction
+   * @param target address the branch goes to when taken
+   * @param taken actual outcome of the branch
+   * @param kind class of the branch instruction
+   */
+  public void write(long pc, long target, boolean taken, BranchTrace.Kind kind) throws IOException {
+    out.write((kind.ordinal() << 1) | (taken ? 1 : 0));
+    writeVarLong(pc - lastPC);
+    writeVarLong(target - pc);
+    lastPC = pc;
+    records++;
+  }
+
+  /** Number of records written so far */
+  public long getRecords() {
+    return records;
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    long v = (value << 1) ^ (value >> 63);
+
+    while ((v & ~0x7FL) != 0) {
+      out.write((int)((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+
+    out.write((int) v);
+  }
+}
@@ -23,6 +23,8 @@
 
 package org.edumips64.core;
 import org.edumips64.core.fpu.*;
+import org.edumips64.core.cache.CacheHierarchy;
+import java.io.IOException;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -54,6 +56,19 @@ public class CPU {
   /** Pipeline status*/
   public enum PipeStatus {IF, ID, EX, MEM, WB}
 
+  /** Performance counters the program can read with SYSCALL 8 and 9, in
+   *  the order of their numbers. Like the statistics, they only advance
+   *  inside the region of interest. */
+  public enum Counter {
+    CYCLES, INSTRUCTIONS, RAW_STALLS, WAW_STALLS,
+    /** Divider, functional unit, EX and memory stalls */
+    STRUCTURAL_STALLS,
+    BRANCH_MISPREDICTIONS,
+    /** Misses of the caches, zero when the caches are disabled */
+    L1I_MISSES, L1D_MISSES, L2_MISSES,
+    CACHE_STALLS
+  }
+
   /** CPU status.
    *  READY - the CPU has been initialized but the symbol table hasn't been
    *  already filled by the Parser. This means that you can't call the step()
@@ -90,24 +105,49 @@ public class CPU {
 
   private static CPU cpu;
 
+  /** Cycles and instructions of the whole run, inside and outside the
+   *  region of interest */
+  private long cycles, instructions;
+
   /** Statistics */
-  private int cycles, instructions, RAWStalls, WAWStalls, dividerStalls, funcUnitStalls, memoryStalls, exStalls;
+  private Statistics stats;
+  private Profiler profiler;
+  private DataflowAnalyzer dataflow;
+  private LocalityAnalyzer locality;
+
+  /** Whether the current cycle is inside the region of interest, and the
+   *  change requested by a marker for the next cycle, if any */
+  private boolean inROI;
+  private Boolean pendingROI;
+  /** Whether the caches are left out outside the region of interest */
+  private boolean roiFastMode;
+
+  /** Cycles still to be waited for the caches, and slot of the instruction
+   *  that missed */
+  private int pendingCacheStalls, cacheStallSlot;
+
+  /** Instruction and data caches */
+  private CacheHierarchy caches;
 
-  /** Declaration of localHistoryTable */
-  private HistoryTable localHistoryTable;
+  /** Tournament branch predictor */
+  private BranchPredictor predictor;
 
-  /** Declaration of localPatternTable */
-  private PatternTable localPatternTable;
+  /** Per-branch prediction statistics */
+  private BranchStatistics branchStats;
 
-  /** Declaration of globalHistoryRegister */
-  private ShiftRegister globalHistoryRegister;
+  /** Optional sink for the resolved branches */
+  private BranchTraceWriter branchTrace;
 
-  /** Declaration of globalPatternTable */
-  private PatternTable globalPatternTable;
+  /** Optional sink for the stages of every instruction */
+  private PipelineTraceWriter pipeTrace;
 
-  private SaturatingCounter predictorSelectionCounter;
+  /** Digest of the architectural state, and optional sink for its
+   *  checkpoints */
+  private StateDigest digest;
+  private StateCheckpointWriter checkpoints;
 
-  private boolean selectGlobal;
+  /** Speed of the simulation */
+  private ThroughputMeter meter;
 
   public long predictionSuccessful;
   public long predictionUnsuccessful;
@@ -124,12 +164,18 @@ public class CPU {
     Instruction.buildInstruction("BUBBLE");
     logger.setLevel(Level.ALL);
     logger.info("Creating the CPU...");
-    cycles = 0;
+    stats = new Statistics();
+    profiler = new Profiler(stats);
+    dataflow = new DataflowAnalyzer(stats);
+    locality = new LocalityAnalyzer();
+    inROI = true;
+    cacheStallSlot = -1;
     status = CPUStatus.READY;
     mem = Memory.getInstance();
     logger.info("Got Memory instance..");
     symTable = SymbolTable.getInstance();
     logger.info("Got SymbolTable instance..");
+    caches = CacheHierarchy.getInstance();
 
     // Registers initialization
     gpr = new Register[32];
@@ -154,6 +200,30 @@ public class CPU {
 
     FCSR = new FCSRRegister();
     configFPExceptionsAndRM();
+
+    // Every later write to the architectural state updates the digest.
+    digest = new StateDigest();
+
+    for (int i = 1; i < 32; i++) {
+      digest.track(gpr[i], StateDigest.GPR + i);
+    }
+
+    for (int i = 0; i < 32; i++) {
+      digest.track(fpr[i], StateDigest.FPR + i);
+    }
+
+    digest.track(FCSR, StateDigest.FCSR);
+    digest.track(HI, StateDigest.HI);
+    digest.track(LO, StateDigest.LO);
+    digest.track(pc, StateDigest.PC);
+
+    try {
+      for (int i = 0; i < mem.getMemorySize(); i++) {
+        digest.track(mem.getCellByIndex(i), StateDigest.MEMORY + i);
+      }
+    } catch (MemoryElementNotFoundException e) {
+      throw new RuntimeException(e);
+    }
     fpPipe = new FPPipeline();
     fpPipe.reset();
 
@@ -169,30 +239,10 @@ public class CPU {
     knownFPInstructions = conf.getFPArithmeticInstructions();
     terminatingInstructionsOPCodes = conf.getTerminatingInstructions();
 
-    // Local History Table initialization
-    localHistoryTable = new HistoryTable(10);
-
-    // Local Pattern Table initialization
-    localPatternTable = new PatternTable(3, 10);
-
-    // Global History Register
-    globalHistoryRegister = new ShiftRegister(12);
-
-    // Global Pattern Table initialization
-    globalPatternTable = new PatternTable(2, 12);
-
-    // Global or Local prediction selection saturating counter
-    // '00' -> Strongly take Global Predictor
-    // '01' -> Weakly take Global Predictor
-    // '10' -> Weakly take Local Predictor
-    // '00' -> Strongly take Local Predictor
-    predictorSelectionCounter = new SaturatingCounter(2, "00");
-
-    if (predictorSelectionCounter.getSaturatingCounter() > 1) {
-        selectGlobal = false;
-    } else {
-        selectGlobal = true;
-    }
+    // Tournament branch predictor initialization
+    predictor = new BranchPredictor();
+    branchStats = new BranchStatistics();
+    meter = new ThroughputMeter();
 
     // Branch prediction statistics
     predictionSuccessful = 0;
@@ -211,6 +261,36 @@ public class CPU {
    */
   public  void setStatus(CPUStatus status) {
     logger.info("Changing CPU status to " + status.name());
+
+    // The streaming Dinero trace and the throughput meter cover a whole run.
+    if (status == CPUStatus.RUNNING && this.status == CPUStatus.READY) {
+      Dinero.getInstance().openConfiguredSink();
+      meter.reset();
+      roiFastMode = config.getBoolean("roiFastMode");
+      setROI(!hasROIMarkers());
+      String trace = config.getString("pipelineTraceFile");
+
+      if (trace.length() > 0) {
+        try {
+          startPipelineTrace(trace);
+        } catch (IOException e) {
+          logger.severe("Cannot open the pipeline trace " + trace + ": " + e.getMessage());
+        }
+      }
+
+      String checkpointFile = config.getString("stateCheckpointFile");
+
+      if (checkpointFile.length() > 0) {
+        try {
+          startStateCheckpoints(checkpointFile, config.getInt("stateCheckpointInterval"));
+        } catch (IOException e) {
+          logger.severe("Cannot open the state checkpoints " + checkpointFile + ": " + e.getMessage());
+        }
+      }
+    } else if (status == CPUStatus.HALTED) {
+      Dinero.getInstance().closeSink();
+    }
+
     this.status = status;
   }
 
@@ -352,60 +432,93 @@ public class CPU {
     return pipe;
   }
 
-  /** Returns the number of cycles performed by the CPU.
-   *  @return an integer
+  /** Returns the statistics of the run: 64-bit counters, per-opcode and
+   *  per-instruction metrics and stall histograms.
+   *  @return the statistics
+   */
+  public Statistics getStatistics() {
+    return stats;
+  }
+
+  /** Returns the hotspot profiler of the current (or last) run.
+   * @return the profiler
+   */
+  public Profiler getProfiler() {
+    return profiler;
+  }
+
+  /** Returns the dataflow limit analysis of the current (or last) run.
+   * @return the analyzer
+   */
+  public DataflowAnalyzer getDataflowAnalyzer() {
+    return dataflow;
+  }
+
+  /** Returns the locality analysis of the memory accesses of the current
+   *  (or last) run.
+   * @return the analyzer
    */
-  public int getCycles() {
+  public LocalityAnalyzer getLocalityAnalyzer() {
+    return locality;
+  }
+
+  /** Returns the number of cycles performed by the CPU, inside and
+   *  outside the region of interest. getStatistics() holds the counters of
+   *  the region of interest.
+   *  @return a long
+   */
+  public long getCycles() {
     return cycles;
   }
 
-  /** Returns the number of instructions executed by the CPU
-   *  @return an integer
+  /** Returns the number of instructions executed by the CPU, inside and
+   *  outside the region of interest.
+   *  @return a long
    */
-  public int getInstructions() {
+  public long getInstructions() {
     return instructions;
   }
 
   /** Returns the number of RAW Stalls that happened inside the pipeline
-   * @return an integer
+   * @return a long
    */
-  public int getRAWStalls() {
-    return RAWStalls;
+  public long getRAWStalls() {
+    return stats.getStalls(Statistics.Stall.RAW);
   }
 
   /** Returns the number of WAW stalls that happened inside the pipeline
-   * @return an integer
+   * @return a long
    */
-  public int getWAWStalls() {
-    return WAWStalls;
+  public long getWAWStalls() {
+    return stats.getStalls(Statistics.Stall.WAW);
   }
 
   /** Returns the number of Structural Stalls (Divider not available) that happened inside the pipeline
-   * @return an integer
+   * @return a long
    */
-  public int getStructuralStallsDivider() {
-    return dividerStalls;
+  public long getStructuralStallsDivider() {
+    return stats.getStalls(Statistics.Stall.DIVIDER);
   }
 
   /** Returns the number of Structural Stalls (Memory not available) that happened inside the pipeline
-   * @return an integer
+   * @return a long
    */
-  public int getStructuralStallsMemory() {
-    return memoryStalls;
+  public long getStructuralStallsMemory() {
+    return stats.getStalls(Statistics.Stall.MEMORY);
   }
 
   /** Returns the number of Structural Stalls (EX not available) that happened inside the pipeline
-   * @return an integer
+   * @return a long
    */
-  public int getStructuralStallsEX() {
-    return exStalls;
+  public long getStructuralStallsEX() {
+    return stats.getStalls(Statistics.Stall.EX);
   }
 
   /** Returns the number of Structural Stalls (FP Adder and FP Multiplier not available) that happened inside the pipeline
-   * @return an integer
+   * @return a long
    */
-  public int getStructuralStallsFuncUnit() {
-    return funcUnitStalls;
+  public long getStructuralStallsFuncUnit() {
+    return stats.getStalls(Statistics.Stall.FUNC_UNIT);
   }
 
   /** Gets the floating point unit enabled exceptions
@@ -445,21 +558,153 @@ public class CPU {
   /** Gets the structural stall counter
    *@return the memory stall counter
    */
-  public int getMemoryStalls() {
-    return memoryStalls;
+  public long getMemoryStalls() {
+    return stats.getStalls(Statistics.Stall.MEMORY);
+  }
+
+  /** Returns the number of cycles in which the pipeline was frozen waiting
+   *  for an instruction fetch or a data access that missed in the caches
+   * @return a long
+   */
+  public long getCacheStalls() {
+    return stats.getStalls(Statistics.Stall.CACHE);
   }
 
+  /** Returns the cache hierarchy used by fetches, loads and stores
+   * @return the cache hierarchy
+   */
+  public CacheHierarchy getCacheHierarchy() {
+    return caches;
+  }
+
+  /** Sends a data access to the caches; the pipeline is frozen for the
+   *  cycles the access takes in excess of the MEM stage. Invoked by the
+   *  MEM stage of loads and stores.
+   * @param pc address of the load or store instruction
+   * @param address the byte address
+   * @param write true for stores
+   */
+  public void accessDataCache(long pc, long address, boolean write) {
+    if (roiFastMode && !inROI) {
+      return;
+    }
+
+    int stalls = write ? caches.store(pc, address, cycles) : caches.load(pc, address, cycles);
+
+    if (stalls > 0) {
+      pendingCacheStalls += stalls;
+      cacheStallSlot = pc >= 0 && pc / 4 < CODELIMIT ? (int)(pc / 4) : -1;
+    }
+  }
+
+  /** Fetches through the caches the instruction the PC points to */
+  private void fetchThroughCaches(Instruction fetched) {
+    if (roiFastMode && !inROI) {
+      return;
+    }
+
+    int stalls = caches.fetch(pc.getValue());
+
+    if (stalls > 0) {
+      pendingCacheStalls += stalls;
+      cacheStallSlot = Statistics.slotOf(fetched);
+    }
+  }
+
+  /** Reads a performance counter.
+   * @param counter the counter
+   * @return its current value
+   */
+  public long readCounter(Counter counter) {
+    switch (counter) {
+    case CYCLES:
+      return stats.getCycles();
+    case INSTRUCTIONS:
+      return stats.getInstructions();
+    case RAW_STALLS:
+      return stats.getStalls(Statistics.Stall.RAW);
+    case WAW_STALLS:
+      return stats.getStalls(Statistics.Stall.WAW);
+    case STRUCTURAL_STALLS:
+      return stats.getStalls(Statistics.Stall.DIVIDER) + stats.getStalls(Statistics.Stall.FUNC_UNIT)
+             + stats.getStalls(Statistics.Stall.EX) + stats.getStalls(Statistics.Stall.MEMORY);
+    case BRANCH_MISPREDICTIONS:
+      return branchStats.getMispredictions();
+    case L1I_MISSES:
+      return caches.isEnabled() ? caches.getL1I().getMisses() : 0;
+    case L1D_MISSES:
+      return caches.isEnabled() ? caches.getL1D().getMisses() : 0;
+    case L2_MISSES:
+      return caches.isEnabled() && caches.getL2() != null ? caches.getL2().getMisses() : 0;
+    default:
+      return stats.getStalls(Statistics.Stall.CACHE);
+    }
+  }
+
+  /** Whether the current cycle is inside the region of interest. Without
+   *  markers the whole run is; otherwise statistics, profile, branch
+   *  statistics, cache statistics and traces cover only the cycles from
+   *  a SYSCALL 6 to the next SYSCALL 7.
+   */
+  public boolean isInROI() {
+    return inROI;
+  }
+
+  /** Begins or ends the region of interest from the next cycle. Invoked
+   *  by the WB stage of SYSCALL 6 and 7.
+   * @param begin true to begin the region, false to end it
+   */
+  public void markROI(boolean begin) {
+    pendingROI = begin;
+  }
+
+  private void setROI(boolean active) {
+    inROI = active;
+    stats.setRecording(active);
+    caches.setRecording(active);
+    Dinero.getInstance().setRecording(active);
+  }
+
+  /** Whether the program holds a SYSCALL 6, so that the run starts outside
+   *  the region of interest */
+  private boolean hasROIMarkers() {
+    for (int i = 0; i < mem.getCodeSize(); ++i) {
+      Instruction instr = mem.getInstruction(i * 4);
+
+      if (instr instanceof SYSCALL && ((SYSCALL) instr).getNumber() == SYSCALL.ROI_BEGIN) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** Instruction held back by a stall raised in the current stage */
+  private Instruction stalled() {
+    return currentPipeStatus == PipeStatus.ID ? pipe.get(PipeStatus.ID) : null;
+  }
+
+
+  /** Returns the tournament branch predictor used by branch instructions
+   * @return the branch predictor
+   */
+  public BranchPredictor getBranchPredictor() {
+    return predictor;
+  }
+
+  /** Returns the prediction statistics of the single branches
+   * @return the per-branch statistics
+   */
+  public BranchStatistics getBranchStatistics() {
+    return branchStats;
+  }
 
   /** Updates the localHistoryTable initialized in the CPU
    * invoked by branch instructions
    * @return void
    */
   public void updateLocalHistoryTable(String pc, ShiftRegister.branchDecision decision) {
-      localHistoryTable.updateEntryToLocalHistoryTable(pc, decision);
-      String decisionBuffer = new String(localHistoryTable.getDecisionBufferOf(pc));
-      if (decisionBuffer != Character.toString('X')) {
-        localPatternTable.updateEntryToPatternTable(decisionBuffer, decision);
-      }
+      predictor.updateLocalHistoryTable(pc, decision);
   }
 
   /** Updates the globalHistoryRegister initialized in the CPU
@@ -467,21 +712,11 @@ public class CPU {
    * @return void
   */
   public void updateGlobalHistoryRegister(ShiftRegister.branchDecision decision) {
-      globalHistoryRegister.addDecision(decision);
-      String decisionBuffer = new String(globalHistoryRegister.toBinString());
-      globalPatternTable.updateEntryToPatternTable(decisionBuffer, decision);
+      predictor.updateGlobalHistoryRegister(decision);
   }
 
-  /** Updates the globalHistoryTable initialized in the CPU
-   * invoked by branch instructions
-   * @return void
-   */
-  // public void updateGlobalHistoryTable(String pc, ShiftRegister.branchDecision decision) {
-  //     globalHistoryTable.updateEntryToTable(pc, decision);
-  // }
-
   public int getLocalHistoryTableSize() {
-      return localHistoryTable.getSize();
+      return predictor.getLocalHistoryTableSize();
   }
 
   /** Prints the current localHistoryTable
@@ -489,8 +724,7 @@ public class CPU {
    * @return void
    */
   public void printLocalTables() {
-      localHistoryTable.printHistoryTable();
-      localPatternTable.printPatternTable();
+      predictor.printLocalTables();
   }
 
   /** Predicts decision from the current localPatternTable
@@ -498,39 +732,118 @@ public class CPU {
    * @return ShiftRegister.branchDecision
    */
   public ShiftRegister.branchDecision predictFromLocalPatternTable(String pc) {
-      String decisionBuffer = new String(localHistoryTable.getDecisionBufferOf(pc));
-      if (decisionBuffer != Character.toString('X')) {
-          return localPatternTable.predictBranchDecision(decisionBuffer);
-      } else {
-        return ShiftRegister.branchDecision.Unknown;
-      }
+      return predictor.predictFromLocalPatternTable(pc);
   }
 
   public ShiftRegister.branchDecision predictFromGlobalPatternTable() {
-      String decisionBuffer = new String(globalHistoryRegister.toBinString());
-      return globalPatternTable.predictBranchDecision(decisionBuffer);
+      return predictor.predictFromGlobalPatternTable();
   }
 
   public void incrementPredictorSelectionCounter () {
-      predictorSelectionCounter.incrementSaturatingCounter();
-      if (predictorSelectionCounter.getSaturatingCounter() > 1) {
-          selectGlobal = false;
-      } else {
-          selectGlobal = true;
-      }
+      predictor.incrementPredictorSelectionCounter();
   }
 
   public void decrementPredictorSelectionCounter () {
-      predictorSelectionCounter.decrementSaturatingCounter();
-      if (predictorSelectionCounter.getSaturatingCounter() > 1) {
-          selectGlobal = false;
-      } else {
-          selectGlobal = true;
-      }
+      predictor.decrementPredictorSelectionCounter();
   }
 
   public boolean getSelectGlobalFlag () {
-      return selectGlobal;
+      return predictor.getSelectGlobalFlag();
+  }
+
+  /** Sets the writer that receives every resolved branch, or null to
+   *  disable branch tracing. The caller owns the writer and closes it.
+   * @param writer the branch trace writer
+   */
+  public void setBranchTraceWriter(BranchTraceWriter writer) {
+    branchTrace = writer;
+  }
+
+  /** Starts writing the pipeline trace of the following cycles of the
+   *  region of interest to a file, replacing the current one if any. The
+   *  trace is closed when the program ends or the CPU is reset.
+   * @param filename the trace file, compressed if its name ends in ".gz"
+   */
+  public void startPipelineTrace(String filename) throws IOException {
+    stopPipelineTrace();
+    pipeTrace = new PipelineTraceWriter(filename);
+    logger.info("Writing the pipeline trace to " + filename);
+  }
+
+  /** Closes the pipeline trace, if any */
+  public void stopPipelineTrace() {
+    if (pipeTrace != null) {
+      try {
+        pipeTrace.close();
+      } catch (IOException e) {
+        logger.severe("Cannot close the pipeline trace: " + e.getMessage());
+      }
+
+      pipeTrace = null;
+    }
+  }
+
+  /** Returns the current pipeline trace writer, or null if the pipeline is
+   *  not traced.
+   * @return the pipeline trace writer
+   */
+  public PipelineTraceWriter getPipelineTraceWriter() {
+    return pipeTrace;
+  }
+
+  /** Returns the digest of the architectural state, kept up to date by
+   *  every write.
+   * @return the state digest
+   */
+  public StateDigest getStateDigest() {
+    return digest;
+  }
+
+  /** Starts writing the state digest to a file every given number of
+   *  cycles, replacing the current checkpoint file if any. The last
+   *  checkpoint is the end of the program.
+   * @param filename the checkpoint file
+   * @param interval cycles between two checkpoints
+   */
+  public void startStateCheckpoints(String filename, int interval) throws IOException {
+    stopStateCheckpoints();
+    checkpoints = new StateCheckpointWriter(filename, interval);
+    logger.info("Writing the state checkpoints to " + filename + " every " + interval + " cycles");
+  }
+
+  /** Returns the current checkpoint writer, or null if no checkpoints are
+   *  written.
+   * @return the state checkpoint writer
+   */
+  public StateCheckpointWriter getStateCheckpointWriter() {
+    return checkpoints;
+  }
+
+  /** Closes the checkpoint file, if any */
+  public void stopStateCheckpoints() {
+    if (checkpoints != null) {
+      try {
+        checkpoints.close();
+      } catch (IOException e) {
+        logger.severe("Cannot close the state checkpoints: " + e.getMessage());
+      }
+
+      checkpoints = null;
+    }
+  }
+
+  /** Returns the meter of the simulation speed of the current (or last) run.
+   * @return the throughput meter
+   */
+  public ThroughputMeter getThroughputMeter() {
+    return meter;
+  }
+
+  /** Returns the current branch trace writer, or null if tracing is disabled.
+   * @return the branch trace writer
+   */
+  public BranchTraceWriter getBranchTraceWriter() {
+    return branchTrace;
   }
 
   public void resetBranchPredictionStatistics() {
@@ -540,9 +853,20 @@ public class CPU {
       predictionUnknown = 0;
   }
 
-  /** This method performs a single pipeline step
-  */
+  /** This method performs a single pipeline step, measured by the
+   *  throughput meter.
+   */
   public void step() throws AddressErrorException, HaltException, IrregularWriteOperationException, StoppedCPUException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, SynchronousException, BreakException, NotAlignException, WAWException, MemoryNotAvailableException, FPDividerNotAvailableException, FPFunctionalUnitNotAvailableException {
+    meter.stepStarted(cycles, instructions);
+
+    try {
+      stepPipeline();
+    } finally {
+      meter.stepFinished(cycles, instructions);
+    }
+  }
+
+  private void stepPipeline() throws AddressErrorException, HaltException, IrregularWriteOperationException, StoppedCPUException, MemoryElementNotFoundException, IrregularStringOfBitsException, TwosComplementSumException, SynchronousException, BreakException, NotAlignException, WAWException, MemoryNotAvailableException, FPDividerNotAvailableException, FPFunctionalUnitNotAvailableException {
     /* The integer "breaking" is used to keep track of the BREAK
      * instruction. When the BREAK instruction enters ID, the BreakException
      * is thrown. We continue the normal cpu step flow, and at the end of
@@ -562,11 +886,33 @@ public class CPU {
       throw new StoppedCPUException();
     }
 
+    // A region of interest marker completed WB in the previous cycle.
+    if (pendingROI != null) {
+      setROI(pendingROI);
+      pendingROI = null;
+    }
+
+    cycles++;
+
+    // A cache access of the previous cycles is still in progress: the whole
+    // pipeline waits.
+    if (pendingCacheStalls > 0) {
+      stats.startCycle();
+      stats.stall(Statistics.Stall.CACHE, cacheStallSlot);
+      stats.endCycle();
+      sample();
+      pendingCacheStalls--;
+      logger.info("Cycle " + cycles + ": waiting for the caches, " + pendingCacheStalls + " cycles left");
+      return;
+    }
+
+    stats.startCycle();
+
     try {
       // Stages are executed from the last one (WB) to the first one (IF). After the
       // logic for the given stage is executed, the instruction is moved to the next
       // stage (except for WB, where the instruction is discarded.
-      logger.info("\n\nStarting cycle " + ++cycles + "\n---------------------------------------------");
+      logger.info("\n\nStarting cycle " + cycles + "\n---------------------------------------------");
       logger.info("WB STAGE: " + pipe.get(PipeStatus.WB) + "\n================================");
       currentPipeStatus = PipeStatus.WB;
 
@@ -583,6 +929,12 @@ public class CPU {
 
         if (!pipe.get(PipeStatus.WB).getName().equals(" ")) {
           instructions++;
+          stats.retire(pipe.get(PipeStatus.WB));
+
+          if (inROI) {
+            dataflow.retire(pipe.get(PipeStatus.WB));
+            locality.retire(pipe.get(PipeStatus.WB));
+          }
         }
 
         if (!notWBable) {
@@ -657,7 +1009,7 @@ public class CPU {
       } else {
         //a structural stall has to be raised if the EX stage contains an instruction different from a bubble or other fu's contain instructions (counter of structural stalls must be incremented)
         if ((pipe.get(PipeStatus.EX) != null && !(pipe.get(PipeStatus.EX).getName().compareTo(" ") == 0)) || fpPipe.getNReadyToExitInstr() > 1) {
-          memoryStalls++;
+          stats.stall(Statistics.Stall.MEMORY, pipe.get(PipeStatus.EX));
         }
 
         //the fpPipe is issuing an instruction and the EX method has to be called on it
@@ -769,6 +1121,7 @@ public class CPU {
         logger.info("Moving " + pipe.get(PipeStatus.IF) + " to ID");
         pipe.put(PipeStatus.ID, pipe.get(PipeStatus.IF));
         Instruction next_if = mem.getInstruction(pc);
+        fetchThroughCaches(next_if);
         logger.info("Fetched new instruction " + next_if);
         String[] check_instr = next_if.toString().split("\\s+");
         // logger.info(pc);
@@ -810,6 +1163,7 @@ public class CPU {
       // A J-Type instruction has just modified the Program Counter. We need to
       // put in the IF state the instruction the PC points to
       pipe.put(PipeStatus.IF, mem.getInstruction(pc));
+      fetchThroughCaches(pipe.get(PipeStatus.IF));
       pipe.put(PipeStatus.EX, pipe.get(PipeStatus.ID));
       pipe.put(PipeStatus.ID, Instruction.buildInstruction("BUBBLE"));
       old_pc.writeDoubleWord((pc.getValue()));
@@ -824,8 +1178,8 @@ public class CPU {
         pipe.put(PipeStatus.EX, Instruction.buildInstruction("BUBBLE"));
       }
 
-      RAWStalls++;
-      logger.info("RAW stalls incremented to " + RAWStalls);
+      stats.stall(Statistics.Stall.RAW, stalled());
+      logger.info("RAW stalls incremented to " + stats.getStalls(Statistics.Stall.RAW));
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -838,8 +1192,8 @@ public class CPU {
         pipe.put(PipeStatus.EX, Instruction.buildInstruction("BUBBLE"));
       }
 
-      WAWStalls++;
-      logger.info("WAW stalls incremented to " + RAWStalls);
+      stats.stall(Statistics.Stall.WAW, stalled());
+      logger.info("WAW stalls incremented to " + stats.getStalls(Statistics.Stall.WAW));
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -849,7 +1203,7 @@ public class CPU {
         pipe.put(PipeStatus.EX, Instruction.buildInstruction("BUBBLE"));
       }
 
-      dividerStalls++;
+      stats.stall(Statistics.Stall.DIVIDER, stalled());
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -860,13 +1214,13 @@ public class CPU {
         pipe.put(PipeStatus.EX, Instruction.buildInstruction("BUBBLE"));
       }
 
-      funcUnitStalls++;
+      stats.stall(Statistics.Stall.FUNC_UNIT, stalled());
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
       }
     } catch (EXNotAvailableException ex) {
-      exStalls++;
+      stats.stall(Statistics.Stall.EX, stalled());
 
       if (syncex != null) {
         throw new SynchronousException(syncex);
@@ -878,11 +1232,47 @@ public class CPU {
       pipe.put(PipeStatus.WB, null);
       throw ex;
     } finally {
+      stats.endCycle();
+      sample();
       logger.info("End of cycle " + cycles + "\n---------------------------------------------\n" + pipeLineString() + "\n");
     }
   }
 
 
+  /** Feeds the pipeline at the end of a cycle of the region of interest to
+   *  the profiler and to the pipeline trace, and writes the state checkpoint
+   *  if due. The traces are closed after the last cycle, so that they see
+   *  the last instruction retire.
+   */
+  private void sample() {
+    if (checkpoints != null && (checkpoints.isDue(cycles) || status == CPUStatus.HALTED)) {
+      try {
+        checkpoints.write(cycles, digest.getValue());
+      } catch (IOException e) {
+        logger.severe("Cannot write the state checkpoints, disabling them: " + e.getMessage());
+        stopStateCheckpoints();
+      }
+    }
+
+    if (inROI) {
+      profiler.sample(pipe, fpPipe);
+
+      if (pipeTrace != null) {
+        try {
+          pipeTrace.sample(cycles, pipe, fpPipe, stats.getCycleStalls());
+        } catch (IOException e) {
+          logger.severe("Cannot write the pipeline trace, disabling it: " + e.getMessage());
+          stopPipelineTrace();
+        }
+      }
+    }
+
+    if (status == CPUStatus.HALTED) {
+      stopPipelineTrace();
+      stopStateCheckpoints();
+    }
+  }
+
   /** This method resets the CPU components (GPRs, memory,statistics,
    *   PC, pipeline and Symbol table).
    *   It resets also the Dinero Tracefile object associated to the current
@@ -891,14 +1281,18 @@ public class CPU {
   public void reset() {
     // Reset CPU state.
     status = CPUStatus.READY;
-    cycles = 0;
-    instructions = 0;
-    RAWStalls = 0;
-    WAWStalls = 0;
-    dividerStalls = 0;
-    funcUnitStalls = 0;
-    exStalls = 0;
-    memoryStalls = 0;
+    cycles = instructions = 0;
+    stats.reset();
+    profiler.reset();
+    dataflow.reset();
+    locality.reset();
+    stopPipelineTrace();
+    stopStateCheckpoints();
+    inROI = true;
+    pendingROI = null;
+    pendingCacheStalls = 0;
+    cacheStallSlot = -1;
+    branchStats.reset();
 
     // Reset registers.
     for (int i = 0; i < 32; i++) {
@@ -911,27 +1305,8 @@ public class CPU {
     }
 
 
-    try {
-      // Reset the FCSR condition codes.
-      for (int cc = 0; cc < 8; cc++) {
-        setFCSRConditionCode(cc, 0);
-      }
-
-      // Reset the FCSR flags.
-      setFCSRFlags("V", 0);
-      setFCSRFlags("O", 0);
-      setFCSRFlags("U", 0);
-      setFCSRFlags("Z", 0);
-
-      // Reset the FCSR cause bits.
-      setFCSRCause("V", 0);
-      setFCSRCause("O", 0);
-      setFCSRCause("U", 0);
-      setFCSRCause("Z", 0);
-    } catch (IrregularStringOfBitsException ex) {
-      ex.printStackTrace();
-    }
-
+    // Reset the FCSR condition codes, flags and cause bits.
+    FCSR.clearStatus();
 
     LO.reset();
     HI.reset();
@@ -954,8 +1329,12 @@ public class CPU {
     // Reset tracefile
     Dinero.getInstance().reset();
 
-    logger.info("CPU Resetted");
     config = ConfigManager.getConfig();
+
+    // Rebuild the caches, their geometry may have changed
+    caches.reset();
+
+    logger.info("CPU Resetted");
   }
 
   /** Test method that returns a string containing the status of the pipeline.
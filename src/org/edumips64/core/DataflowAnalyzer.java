@@ -0,0 +1,320 @@
+/* DataflowAnalyzer.java
+ *
+ * Streaming dataflow-limit and critical path analysis of the retired instructions.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+import org.edumips64.core.is.LDSTInstructions;
+
+import java.util.*;
+
+/** Dataflow limit of the executed program.
+ *
+ *  Every retired instruction is scheduled on an ideal machine with perfect
+ *  branch prediction, perfect register renaming and unlimited functional
+ *  units: it completes getLatency() cycles after the last of its sources
+ *  (registers and, for loads, the memory cell written by the last store) is
+ *  ready. The completion time of the last instruction is the dataflow
+ *  height of the run, and instructions / height is the dataflow-limited IPC.
+ *
+ *  Only the ready time and the producer of every register and memory cell
+ *  are kept, plus the dependence edges of a window of the last WINDOW
+ *  instructions. When the window is full, its critical path (the chain of
+ *  producers ending at the latest completion) is charged to the static
+ *  instructions on it and the window starts again, so that memory does not
+ *  grow with the length of the run; chains crossing a window boundary are
+ *  cut there.
+ */
+public class DataflowAnalyzer {
+  /** Instructions whose dependence edges are kept at once */
+  public static final int WINDOW = 4096;
+  /** Number of longest chains kept for the report */
+  public static final int MAX_CHAINS = 5;
+  /** Instructions of a chain listed in the report, counted from its end */
+  public static final int MAX_CHAIN_LENGTH = 32;
+
+  /** Critical path of one window */
+  public static class Chain {
+    /** Cycles from the start of the first instruction to the end of the last one */
+    public final long cycles;
+    public final int instructions;
+    /** Addresses of the last (up to MAX_CHAIN_LENGTH) instructions, in program order */
+    public final int[] addresses;
+
+    Chain(long cycles, int instructions, int[] addresses) {
+      this.cycles = cycles;
+      this.instructions = instructions;
+      this.addresses = addresses;
+    }
+  }
+
+  private Statistics stats;
+  private long[] regReady, memReady;
+  /** Window index of the last writer of every location, -1 if outside the window */
+  private int[] regProducer, memProducer;
+  private int[] nodeSlot, nodeParent;
+  private long[] nodeStart, nodeFinish;
+  private int size;
+  private long instructions, height;
+  /** Times every slot was found on the critical path of a window */
+  private long[] critical;
+  private List<Chain> chains;
+
+  public DataflowAnalyzer(Statistics stats) {
+    this.stats = stats;
+    regReady = new long[Instruction.DATAFLOW_REGISTERS];
+    regProducer = new int[Instruction.DATAFLOW_REGISTERS];
+    memReady = new long[CPU.DATALIMIT];
+    memProducer = new int[CPU.DATALIMIT];
+    nodeSlot = new int[WINDOW];
+    nodeParent = new int[WINDOW];
+    nodeStart = new long[WINDOW];
+    nodeFinish = new long[WINDOW];
+    critical = new long[CPU.CODELIMIT];
+    chains = new ArrayList<Chain>();
+    reset();
+  }
+
+  public void reset() {
+    Arrays.fill(regReady, 0);
+    Arrays.fill(memReady, 0);
+    Arrays.fill(regProducer, -1);
+    Arrays.fill(memProducer, -1);
+    Arrays.fill(critical, 0);
+    chains.clear();
+    size = 0;
+    instructions = 0;
+    height = 0;
+  }
+
+  /** Adds a retired instruction to the dependence graph. */
+  public void retire(Instruction instr) {
+    if (size == WINDOW) {
+      trace(critical, chains);
+      Arrays.fill(regProducer, -1);
+      Arrays.fill(memProducer, -1);
+      size = 0;
+    }
+
+    long start = 0;
+    int parent = -1;
+
+    for (int r : instr.getReadRegisters()) {
+      if (regReady[r] > start) {
+        start = regReady[r];
+        parent = regProducer[r];
+      }
+    }
+
+    int cell = -1;
+    boolean store = false;
+
+    if (instr instanceof LDSTInstructions) {
+      LDSTInstructions ldst = (LDSTInstructions) instr;
+      long address = ldst.getMemoryAddress() / 8;
+      store = ldst.isStore();
+
+      if (address >= 0 && address < CPU.DATALIMIT) {
+        cell = (int) address;
+
+        if (!store && memReady[cell] > start) {
+          start = memReady[cell];
+          parent = memProducer[cell];
+        }
+      }
+    }
+
+    long finish = start + instr.getLatency();
+    int slot = instr.getAddress() / 4;
+    nodeSlot[size] = slot >= 0 && slot < CPU.CODELIMIT ? slot : -1;
+    nodeParent[size] = parent;
+    nodeStart[size] = start;
+    nodeFinish[size] = finish;
+
+    for (int r : instr.getWrittenRegisters()) {
+      regReady[r] = finish;
+      regProducer[r] = size;
+    }
+
+    if (store && cell != -1) {
+      memReady[cell] = finish;
+      memProducer[cell] = size;
+    }
+
+    size++;
+    instructions++;
+    height = Math.max(height, finish);
+  }
+
+  /** Charges the critical path of the current window to the given counters
+   *  and adds it to the given list of longest chains.
+   */
+  private void trace(long[] counts, List<Chain> longest) {
+    if (size == 0) {
+      return;
+    }
+
+    int end = 0;
+
+    for (int i = 1; i < size; ++i) {
+      if (nodeFinish[i] > nodeFinish[end]) {
+        end = i;
+      }
+    }
+
+    int[] tail = new int[MAX_CHAIN_LENGTH];
+    int length = 0, first = end;
+
+    for (int n = end; n != -1; n = nodeParent[n]) {
+      if (nodeSlot[n] != -1) {
+        counts[nodeSlot[n]]++;
+      }
+
+      if (length < MAX_CHAIN_LENGTH) {
+        tail[length] = nodeSlot[n] * 4;
+      }
+
+      length++;
+      first = n;
+    }
+
+    int[] addresses = new int[Math.min(length, MAX_CHAIN_LENGTH)];
+
+    for (int i = 0; i < addresses.length; ++i) {
+      addresses[i] = tail[addresses.length - 1 - i];
+    }
+
+    Chain chain = new Chain(nodeFinish[end] - nodeStart[first], length, addresses);
+    int pos = 0;
+
+    while (pos < longest.size() && longest.get(pos).cycles >= chain.cycles) {
+      pos++;
+    }
+
+    if (pos < MAX_CHAINS) {
+      longest.add(pos, chain);
+
+      if (longest.size() > MAX_CHAINS) {
+        longest.remove(MAX_CHAINS);
+      }
+    }
+  }
+
+  /** Instructions analyzed since the last reset */
+  public long getInstructions() {
+    return instructions;
+  }
+
+  /** Cycles the ideal machine needs for all the analyzed instructions */
+  public long getHeight() {
+    return height;
+  }
+
+  /** Dataflow-limited instructions per cycle */
+  public double getIPC() {
+    return height == 0 ? 0 : (double) instructions / height;
+  }
+
+  /** Times the instruction at the given address was on a critical path,
+   *  the current window included.
+   */
+  public long getCriticalCount(int address) {
+    return getCriticalCounts()[address / 4];
+  }
+
+  /** Longest critical paths of the windows, the current one included,
+   *  longest first.
+   */
+  public List<Chain> getLongestChains() {
+    List<Chain> longest = new ArrayList<Chain>(chains);
+    trace(new long[CPU.CODELIMIT], longest);
+    return longest;
+  }
+
+  private long[] getCriticalCounts() {
+    long[] counts = critical.clone();
+    trace(counts, new ArrayList<Chain>());
+    return counts;
+  }
+
+  /** Formats the dataflow limit, the static instructions most often on the
+   *  critical path and the longest chains.
+   * @param limit maximum number of instructions listed, 0 for all of them
+   */
+  public String toReport(int limit) {
+    StringBuilder sb = new StringBuilder();
+    double ipc = stats.getCycles() == 0 ? 0 : (double) stats.getInstructions() / stats.getCycles();
+    sb.append(String.format("Instructions          %d%n", instructions));
+    sb.append(String.format("Dataflow height       %d cycles%n", height));
+    sb.append(String.format("Dataflow-limited IPC  %.3f%n", getIPC()));
+    sb.append(String.format("Pipeline IPC          %.3f (%.1f%% of the limit)%n", ipc, getIPC() == 0 ? 0 : ipc * 100 / getIPC()));
+
+    final long[] counts = getCriticalCounts();
+    long total = 0;
+    List<Integer> slots = new ArrayList<Integer>();
+
+    for (int i = 0; i < counts.length; ++i) {
+      if (counts[i] > 0) {
+        slots.add(i);
+        total += counts[i];
+      }
+    }
+
+    Collections.sort(slots, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Long.compare(counts[b], counts[a]);
+      }
+    });
+
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+    sb.append(String.format("%n%-8s %-20s %-24s %10s %7s%n", "Address", "Symbol", "Instruction", "Critical", "Share"));
+    int rows = 0;
+
+    for (int slot : slots) {
+      if (limit > 0 && rows++ == limit) {
+        break;
+      }
+
+      SymbolTable.Symbol symbol = symTab.getCodeSymbol(slot * 4);
+      sb.append(String.format("%08X %-20s %-24s %10d %6.2f%%%n", slot * 4, symbol == null ? "" : symbol.toString(),
+                              mem.getInstruction(slot * 4).getFullName(), counts[slot], counts[slot] * 100.0 / total));
+    }
+
+    sb.append(String.format("%nLongest chains:%n"));
+    int n = 1;
+
+    for (Chain c : getLongestChains()) {
+      sb.append(String.format("%d. %d cycles, %d instructions:", n++, c.cycles, c.instructions));
+
+      for (int address : c.addresses) {
+        sb.append(String.format(" %08X", address));
+      }
+
+      sb.append(String.format("%n"));
+    }
+
+    return sb.toString();
+  }
+}
@@ -21,6 +21,7 @@
 * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 */
 
+
 /** This Class create a File compatible with dinaroIV, a cache Simulator
  * @author Andrea Milazzo
  */
@@ -29,19 +30,42 @@ package org.edumips64.core;
 
 import org.edumips64.utils.*;
 import java.util.*;
+import java.util.logging.Logger;
 import java.io.*;
 
 public class Dinero {
+  /** Output formats: the DineroIV "din" text format and a compact binary one */
+  public enum Format {XDIN, BINARY}
+
+  /** Access types, with the same codes used by the din format */
+  static final int READ = 0;
+  static final int WRITE = 1;
+  static final int IFETCH = 2;
+
+  private static final Logger logger = Logger.getLogger(Dinero.class.getName());
 
   /** Instance of the Dinero */
   private static Dinero dinero;
 
   int offset = 0;
-  private LinkedList <String> dineroData;
+
+  /** Largest buffers kept from a run to the next one */
+  private static final int MAX_KEPT = 1 << 16;
+
+  /** Accesses kept in memory: address and (type << 4 | size) */
+  private long[] addresses;
+  private byte[] accesses;
+  private int size;
+
+  /** Streaming sink, if any; when open accesses are not kept in memory */
+  private DineroSink sink;
+
+  /** Whether accesses are traced; cleared outside the region of interest */
+  private boolean recording = true;
 
   /**Singlethon constructor */
   private Dinero() {
-    dineroData = new LinkedList <String>();
+    clear();
   }
   public static Dinero getInstance() {
     if (dinero == null) {
@@ -50,53 +74,160 @@ public class Dinero {
 
     return dinero;
   }
-  /**
+  /** Discards the trace and closes the streaming sink, if any.
    */
   public void reset() {
     offset = 0;
-    dineroData = new LinkedList <String>();
+    recording = true;
+    closeSink();
+    clear();
+  }
+
+  /** Starts or stops tracing the accesses */
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+
+  /** Empties the trace. The buffers are kept for the next run, unless a
+   *  long trace made them grow past MAX_KEPT entries. */
+  private void clear() {
+    if (addresses == null || addresses.length > MAX_KEPT) {
+      addresses = new long[1024];
+      accesses = new byte[1024];
+    }
+
+    size = 0;
+  }
+
+  /** Starts streaming the trace to a file instead of keeping it in memory.
+   *  Called at the start of the run, the sink is closed when the CPU halts
+   *  or is reset.
+   * @param filename the trace file
+   * @param format text (din) or binary format
+   * @param gzip whether to compress the file
+   */
+  public void openSink(String filename, Format format, boolean gzip) throws IOException {
+    closeSink();
+    sink = new DineroSink(filename, format, gzip);
+    logger.info("Streaming the Dinero trace to " + filename);
+  }
+
+  /** Opens the streaming sink described by the configuration, if any. */
+  public void openConfiguredSink() {
+    ConfigStore config = ConfigManager.getConfig();
+    String filename = config.getString("dineroStreamFile");
+
+    if (filename == null || filename.length() == 0) {
+      return;
+    }
+
+    try {
+      Format format = config.getString("dineroStreamFormat").equalsIgnoreCase("binary") ? Format.BINARY : Format.XDIN;
+      openSink(filename, format, config.getBoolean("dineroStreamGzip"));
+    } catch (IOException e) {
+      logger.severe("Cannot open the Dinero trace " + filename + ": " + e.getMessage());
+    }
+  }
+
+  /** Flushes and closes the streaming sink, if any. */
+  public void closeSink() {
+    if (sink != null) {
+      try {
+        sink.close();
+      } catch (IOException e) {
+        logger.severe("Cannot close the Dinero trace: " + e.getMessage());
+      }
+
+      sink = null;
+    }
+  }
+
+  public boolean isStreaming() {
+    return sink != null;
+  }
+
+  /** Number of accesses kept in memory */
+  public int size() {
+    return size;
+  }
+
+  private void add(int type, long address, int nByte) {
+    if (!recording) {
+      return;
+    }
+
+    if (sink != null) {
+      try {
+        sink.write(type, address, nByte);
+      } catch (IOException e) {
+        logger.severe("Cannot write the Dinero trace, closing it: " + e.getMessage());
+        closeSink();
+      }
+
+      return;
+    }
+
+    if (size == addresses.length) {
+      addresses = Arrays.copyOf(addresses, size * 2);
+      accesses = Arrays.copyOf(accesses, size * 2);
+    }
+
+    addresses[size] = address;
+    accesses[size] = (byte)((type << 4) | nByte);
+    size++;
   }
+
   /** Add a read Instruction
    * @param address address of the read Instruction
    */
+  public void IF(long address) {
+    add(IFETCH, address, 4);
+  }
+  /** Add a read Instruction
+   * @param address hexadecimal address of the read Instruction
+   */
   public void IF(String address) {
-    dineroData.add("i " + address + " 4");
+    IF(parseHex(address));
   }
-  /**
+  /** Add a memory read
+   * @param address address of the data
+   * @param nByte size of the access
    */
-  public void Load(String address, int nByte) {
+  public void Load(long address, int nByte) {
     if (offset == 0) {
       findOffset();
     }
 
-    try {
-      long addr = Long.parseLong(Converter.hexToLong("0x" + address));
-      addr += offset;
-      dineroData.add("r " + Converter.binToHex(Converter.intToBin(64, addr)) + " " + nByte);
-    } catch (IrregularStringOfHexException ex) {
-      ex.printStackTrace();
-    } catch (IrregularStringOfBitsException ex) {
-      ex.printStackTrace();
-    }
+    add(READ, address + offset, nByte);
+  }
+  public void Load(String address, int nByte) {
+    Load(parseHex(address), nByte);
   }
-  /**
+  /** Add a memory write
+   * @param address address of the data
+   * @param nByte size of the access
    */
-  public void Store(String address, int nByte) {
+  public void Store(long address, int nByte) {
     if (offset == 0) {
       findOffset();
     }
 
-    try {
-      long addr = Long.parseLong(Converter.hexToLong("0x" + address));
-      addr += offset;
-      dineroData.add("w " + Converter.binToHex(Converter.intToBin(64, addr)) + " " + nByte);
-    } catch (IrregularStringOfHexException ex) {
-      ex.printStackTrace();
-    } catch (IrregularStringOfBitsException ex) {
-      ex.printStackTrace();
+    add(WRITE, address + offset, nByte);
+  }
+  public void Store(String address, int nByte) {
+    Store(parseHex(address), nByte);
+  }
+
+  private static long parseHex(String s) {
+    long v = 0;
+
+    for (int i = 0; i < s.length(); i++) {
+      v = (v << 4) | Character.digit(s.charAt(i), 16);
     }
 
+    return v;
   }
+
   /** Write a file comatible with DineroIV cache simulator
    * @param filename A String with the system-dependent file name
    */
@@ -125,9 +256,29 @@ public class Dinero {
    *  @param buff the Writer to output the data to
    */
   public void writeTraceData(Writer buff) throws java.io.IOException {
-    for (int i = 0; i < dineroData.size(); i++) {
-      String tmp = dineroData.get(i) + "\n";
-      buff.write(tmp, 0, tmp.length());
+    if (sink != null) {
+      logger.warning("The Dinero trace is being streamed to a file, nothing is kept in memory.");
     }
+
+    byte[] line = new byte[DineroSink.MAX_LINE];
+    char[] chars = new char[DineroSink.MAX_LINE];
+
+    for (int i = 0; i < size; i++) {
+      int len = DineroSink.encodeXdin(accesses[i] >> 4, addresses[i], accesses[i] & 0xF, line, 0);
+
+      for (int j = 0; j < len; j++) {
+        chars[j] = (char) line[j];
+      }
+
+      buff.write(chars, 0, len);
+    }
+  }
+
+  /** Converts a binary trace written by the streaming sink to din text.
+   * @param in the binary trace, already decompressed
+   * @param out where to write the din records
+   */
+  public static void binaryToXdin(InputStream in, Writer out) throws IOException {
+    DineroSink.binaryToXdin(in, out);
   }
 }
@@ -0,0 +1,183 @@
+/* DineroSink.java
+*
+* Streaming writer for the Dinero trace.
+* (c) 2016 EduMIPS64 project
+*
+* This file is part of the EduMIPS64 project, and is released under the GNU
+* General Public License.
+*
+* This program is free software; you can redistribute it and/or modify
+* it under the terms of the GNU General Public License as published by
+* the Free Software Foundation; either version 2 of the License, or
+* (at your option) any later version.
+*
+* This program is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+* GNU General Public License for more details.
+*
+* You should have received a copy of the GNU General Public License
+* along with this program; if not, write to the Free Software
+* Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+
+
+package org.edumips64.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPOutputStream;
+
+/** Writes Dinero accesses to a file as they happen, through a buffer that
+ *  is drained to a FileChannel (or to a gzip stream on top of it).
+ *
+ *  The binary format starts with "EMDT" and a version byte, followed by one
+ *  record per access: a byte with (type << 4 | size) and the zigzag varint
+ *  of the difference between the address and the previous one.
+ */
+class DineroSink implements Closeable {
+  static final byte[] MAGIC = {'E', 'M', 'D', 'T'};
+  static final int VERSION = 1;
+
+  /** Longest din line: "t " + 16 hex digits + " " + 2 digits + "\n" */
+  static final int MAX_LINE = 22;
+
+  private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+  private static final byte[] TYPES = {'r', 'w', 'i'};
+
+  private FileChannel channel;
+  private OutputStream gzip;
+  private ByteBuffer buffer;
+  private Dinero.Format format;
+  private long lastAddress;
+
+  DineroSink(String filename, Dinero.Format format, boolean compress) throws IOException {
+    channel = new FileOutputStream(filename).getChannel();
+    gzip = compress ? new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024) : null;
+    buffer = ByteBuffer.allocate(64 * 1024);
+    this.format = format;
+    lastAddress = 0;
+
+    if (format == Dinero.Format.BINARY) {
+      buffer.put(MAGIC);
+      buffer.put((byte) VERSION);
+    }
+  }
+
+  void write(int type, long address, int size) throws IOException {
+    if (buffer.remaining() < MAX_LINE) {
+      drain();
+    }
+
+    if (format == Dinero.Format.XDIN) {
+      int pos = buffer.position();
+      int len = encodeXdin(type, address, size, buffer.array(), pos);
+      buffer.position(pos + len);
+    } else {
+      buffer.put((byte)((type << 4) | size));
+      long delta = address - lastAddress;
+      long v = (delta << 1) ^ (delta >> 63);
+
+      while ((v & ~0x7FL) != 0) {
+        buffer.put((byte)((v & 0x7F) | 0x80));
+        v >>>= 7;
+      }
+
+      buffer.put((byte) v);
+      lastAddress = address;
+    }
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+
+    if (gzip != null) {
+      gzip.write(buffer.array(), 0, buffer.limit());
+    } else {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    buffer.clear();
+  }
+
+  public void close() throws IOException {
+    try {
+      drain();
+
+      if (gzip != null) {
+        gzip.close();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /** Encodes an access as a din line ("t AAAAAAAAAAAAAAAA s\n").
+   * @return the number of bytes written to dst
+   */
+  static int encodeXdin(int type, long address, int size, byte[] dst, int pos) {
+    int p = pos;
+    dst[p++] = TYPES[type];
+    dst[p++] = ' ';
+
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      dst[p++] = HEX[(int)(address >>> shift) & 0xF];
+    }
+
+    dst[p++] = ' ';
+
+    if (size >= 10) {
+      dst[p++] = (byte)('0' + size / 10);
+    }
+
+    dst[p++] = (byte)('0' + size % 10);
+    dst[p++] = '\n';
+    return p - pos;
+  }
+
+  static void binaryToXdin(InputStream in, Writer out) throws IOException {
+    in = new BufferedInputStream(in);
+
+    for (byte b : MAGIC) {
+      if (in.read() != b) {
+        throw new IOException("Not a binary Dinero trace");
+      }
+    }
+
+    if (in.read() != VERSION) {
+      throw new IOException("Unsupported binary Dinero trace version");
+    }
+
+    byte[] line = new byte[MAX_LINE];
+    long address = 0;
+    int access;
+
+    while ((access = in.read()) != -1) {
+      long v = 0;
+      int shift = 0;
+      int b;
+
+      do {
+        if ((b = in.read()) == -1) {
+          throw new EOFException("Truncated binary Dinero trace");
+        }
+
+        v |= (long)(b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+
+      address += (v >>> 1) ^ -(v & 1);
+      int len = encodeXdin(access >> 4, address, access & 0xF, line, 0);
+
+      for (int i = 0; i < len; i++) {
+        out.write(line[i]);
+      }
+    }
+
+    out.flush();
+  }
+}
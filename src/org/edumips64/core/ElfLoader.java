@@ -0,0 +1,445 @@
+/* ElfLoader.java
+ *
+ * Loader of 64-bit MIPS ELF executables.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import org.edumips64.core.is.*;
+import org.edumips64.utils.IrregularStringOfBitsException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.logging.Logger;
+
+/** Loads a 64-bit MIPS ELF executable into Memory.
+ *
+ *  The loadable segments are read through a memory-mapped view of the file:
+ *  executable segments go to the code memory, the others to the data memory,
+ *  whose bytes are stored with the layout EduMIPS64 uses (the least
+ *  significant byte of a doubleword first). For big-endian executables the
+ *  bytes of every doubleword are therefore reversed, so that doubleword
+ *  loads and stores see the values the program was compiled with. Smaller
+ *  accesses do not: a byte, halfword or word load reads the mirrored
+ *  position of its doubleword (LW at an aligned address gets the low word
+ *  instead of the high one, and strings come out reversed eight bytes at a
+ *  time). The simulated memory has a single byte order, so big-endian
+ *  executables with data segments load with an ELFBIGENDIAN warning.
+ *
+ *  Code and data keep their addresses when they fit in the memories of the
+ *  simulator; otherwise they are moved to address 0 and a warning is given,
+ *  since only jump targets and the global pointer are relocated. The
+ *  symbol table of the executable is imported, the PC is set to the entry
+ *  point, GP to the _gp symbol and SP to the end of the data memory.
+ *
+ *  Every machine word that is not a supported instruction is reported as
+ *  an error together with its address.
+ */
+public class ElfLoader {
+  private static final int EM_MIPS = 8;
+  private static final int ET_EXEC = 2;
+  private static final int PT_LOAD = 1;
+  private static final int PF_X = 1;
+  private static final int SHT_SYMTAB = 2;
+  private static final int STT_OBJECT = 1;
+  private static final int STT_FUNC = 2;
+  private static final int STT_NOTYPE = 0;
+
+  private static final Logger logger = Logger.getLogger(ElfLoader.class.getName());
+
+  /** A PT_LOAD program header */
+  private static class Segment {
+    long offset, vaddr, filesz, memsz;
+  }
+
+  private ByteBuffer elf;
+  private ParserMultiException error;
+  private List<Segment> code, data;
+  private long codeBase, dataBase;
+  private long codeEnd, dataEnd;
+
+  private ElfLoader(ByteBuffer elf) {
+    this.elf = elf;
+    error = new ParserMultiException();
+    code = new ArrayList<Segment>();
+    data = new ArrayList<Segment>();
+  }
+
+  /** Checks whether a file starts with the ELF magic number */
+  public static boolean isElf(String filename) throws IOException {
+    InputStream in = new FileInputStream(filename);
+
+    try {
+      return in.read() == 0x7F && in.read() == 'E' && in.read() == 'L' && in.read() == 'F';
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Loads an executable.
+   * @param filename path of the executable
+   * @throws ParserMultiException if the file is not a 64-bit MIPS executable
+   *         or contains unsupported instructions; only warnings are thrown as
+   *         a ParserMultiWarningException
+   */
+  public static void load(String filename) throws IOException, ParserMultiException {
+    new ElfLoader(BinaryImage.map(filename)).load();
+  }
+
+  private void load() throws ParserMultiException {
+    if (elf.limit() < 64 || elf.get(4) != 2 || (elf.get(5) != 1 && elf.get(5) != 2)) {
+      error.add("INVALIDELF", 0, 0, "");
+      throw error;
+    }
+
+    elf.order(elf.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+    if (elf.getShort(0x10) != ET_EXEC || elf.getShort(0x12) != EM_MIPS) {
+      error.add("INVALIDELF", 0, 0, "");
+      throw error;
+    }
+
+    try {
+      readSegments();
+      checkSections();
+    } catch (IndexOutOfBoundsException e) {
+      error.add("INVALIDELF", 0, 0, "");
+    } catch (IllegalArgumentException e) {
+      error.add("INVALIDELF", 0, 0, "");
+    }
+
+    if (error.hasErrors()) {
+      throw error;
+    }
+
+    if (elf.order() == ByteOrder.BIG_ENDIAN && !data.isEmpty()) {
+      error.addWarning("ELFBIGENDIAN", 0, 0, "");
+    }
+
+    codeBase = place(code, CPU.CODELIMIT * 4L, "OUTOFINSTRUCTIONMEMORY");
+    dataBase = place(data, CPU.DATALIMIT * 8L, "OUTOFMEMORY");
+    codeEnd = end(code) - codeBase;
+    dataEnd = end(data) - dataBase;
+
+    if (error.hasErrors()) {
+      throw error;
+    }
+
+    loadCode();
+    loadData();
+    Map<String, Long> symbols = importSymbols();
+
+    try {
+      CPU cpu = CPU.getInstance();
+      long entry = elf.getLong(0x18);
+      cpu.getPC().writeDoubleWord(inCode(entry) ? entry - codeBase : 0);
+      cpu.getRegister(29).writeDoubleWord(CPU.DATALIMIT * 8L);
+
+      if (symbols.containsKey("_gp")) {
+        cpu.getRegister(28).writeDoubleWord(symbols.get("_gp") - dataBase);
+      }
+    } catch (IrregularWriteOperationException e) {
+      // Cannot happen, these values fit in a doubleword.
+      logger.severe("Cannot initialize the registers: " + e);
+    }
+
+    if (error.hasErrors()) {
+      throw error;
+    }
+
+    if (!error.getExceptionList().isEmpty()) {
+      ParserMultiWarningException warnings = new ParserMultiWarningException();
+
+      for (ParserException e : error.getExceptionList()) {
+        warnings.add(e.getCode(), e.getRow(), e.getColumn(), e.getLine());
+      }
+
+      throw warnings;
+    }
+  }
+
+  /** Whether a range of bytes lies inside the file */
+  private boolean inFile(long offset, long length) {
+    return offset >= 0 && length >= 0 && offset <= elf.limit() && length <= elf.limit() - offset;
+  }
+
+  private void readSegments() {
+    long phoff = elf.getLong(0x20);
+    int phentsize = elf.getShort(0x36) & 0xFFFF;
+    int phnum = elf.getShort(0x38) & 0xFFFF;
+
+    if (phnum > 0 && (phentsize < 56 || !inFile(phoff, (long) phnum * phentsize))) {
+      error.add("INVALIDELF", 0, 0, "");
+      return;
+    }
+
+    for (int k = 0; k < phnum; ++k) {
+      int ph = (int)(phoff + (long) k * phentsize);
+
+      if (elf.getInt(ph) != PT_LOAD) {
+        continue;
+      }
+
+      Segment s = new Segment();
+      s.offset = elf.getLong(ph + 8);
+      s.vaddr = elf.getLong(ph + 16);
+      s.filesz = elf.getLong(ph + 32);
+      s.memsz = elf.getLong(ph + 40);
+
+      if (s.memsz == 0) {
+        continue;
+      }
+
+      if (s.filesz < 0 || s.memsz < 0 || !inFile(s.offset, Math.min(s.filesz, s.memsz))) {
+        error.add("INVALIDELF", 0, 0, String.format("%08X", s.vaddr));
+        continue;
+      }
+
+      if ((elf.getInt(ph + 4) & PF_X) != 0) {
+        code.add(s);
+      } else {
+        data.add(s);
+      }
+    }
+  }
+
+  /** Chooses the base address of a group of segments.
+   * @return 0 if the segments fit in a memory of the given size, otherwise their lowest address
+   */
+  private long place(List<Segment> segments, long size, String overflow) {
+    long low = Long.MAX_VALUE;
+
+    for (Segment s : segments) {
+      low = Math.min(low, s.vaddr);
+    }
+
+    long high = end(segments);
+
+    if (segments.isEmpty() || high <= size) {
+      return 0;
+    }
+
+    if (high - low > size) {
+      error.add(overflow, 0, 0, String.format("%08X-%08X", low, high));
+    } else {
+      error.addWarning("ELFRELOCATED", 0, 0, String.format("%08X", low));
+    }
+
+    return low;
+  }
+
+  private static long end(List<Segment> segments) {
+    long high = 0;
+
+    for (Segment s : segments) {
+      high = Math.max(high, s.vaddr + s.memsz);
+    }
+
+    return high;
+  }
+
+  private boolean inCode(long vaddr) {
+    return vaddr >= codeBase && vaddr - codeBase < codeEnd;
+  }
+
+  private boolean inData(long vaddr) {
+    return vaddr >= dataBase && vaddr - dataBase < dataEnd;
+  }
+
+  private void loadCode() {
+    Memory mem = Memory.getInstance();
+    Instruction[] instructions = mem.getInstructions().toArray(new Instruction[CPU.CODELIMIT]);
+    int count = 0;
+
+    for (Segment s : code) {
+      int slot = (int)((s.vaddr - codeBase) / 4);
+      int words = (int)(Math.min(s.filesz, s.memsz) / 4);
+      ByteBuffer b = slice(s.offset, words * 4);
+      BinaryImage.decode(b, words, instructions, slot, s.vaddr, error);
+
+      // Absolute jumps keep the low 28 bits of their target.
+      for (int k = slot; k < slot + words && codeBase != 0; ++k) {
+        Instruction i = instructions[k];
+
+        if (i.getName().equals("J") || i.getName().equals("JAL")) {
+          int target = (int)(i.getParams().get(0) - (codeBase & 0x0FFFFFFF));
+          i.getParams().set(0, target);
+          i.setFullName(i.getName() + " " + target);
+
+          try {
+            i.pack();
+          } catch (IrregularStringOfBitsException e) {
+            logger.severe("Irregular string of bits: " + e.getMessage());
+          }
+        }
+      }
+
+      count = Math.max(count, slot + words);
+    }
+
+    mem.setInstructions(instructions);
+    mem.setInstructionsNumber(count);
+  }
+
+  private void loadData() {
+    Memory mem = Memory.getInstance();
+    boolean reverse = elf.order() == ByteOrder.BIG_ENDIAN;
+
+    for (Segment s : data) {
+      int length = (int) Math.min(s.filesz, s.memsz);
+      long address = s.vaddr - dataBase;
+      byte[] bytes = new byte[length];
+      slice(s.offset, length).get(bytes);
+
+      try {
+        if (reverse) {
+          // Byte k of the file goes to the byte 7 - k of its doubleword.
+          for (int k = 0; k < length; ++k) {
+            long a = address + k;
+            mem.writeBytes((a & ~7) | (7 - (a & 7)), bytes, k, 1);
+          }
+        } else {
+          mem.writeBytes(address, bytes, 0, length);
+        }
+      } catch (MemoryElementNotFoundException e) {
+        // Cannot happen, the segment has been placed in memory.
+        error.add("OUTOFMEMORY", 0, 0, String.format("%08X", s.vaddr));
+      }
+    }
+  }
+
+  /** Checks that the section headers, the symbol tables and their string
+   *  tables lie inside the file, so that importSymbols() can read them
+   *  after the memory has been loaded.
+   */
+  private void checkSections() {
+    long shoff = elf.getLong(0x28);
+    int shentsize = elf.getShort(0x3A) & 0xFFFF;
+    int shnum = elf.getShort(0x3C) & 0xFFFF;
+
+    if (shnum == 0) {
+      return;
+    }
+
+    if (shentsize < 64 || !inFile(shoff, (long) shnum * shentsize)) {
+      error.add("INVALIDELF", 0, 0, "");
+      return;
+    }
+
+    for (int k = 0; k < shnum; ++k) {
+      int sh = (int)(shoff + (long) k * shentsize);
+
+      if (elf.getInt(sh + 4) != SHT_SYMTAB) {
+        continue;
+      }
+
+      long link = elf.getInt(sh + 40) & 0xFFFFFFFFL;
+
+      long entsize = elf.getLong(sh + 56);
+
+      if (!inFile(elf.getLong(sh + 24), elf.getLong(sh + 32)) || (entsize != 0 && entsize < 24) || link >= shnum
+          || !inFile(elf.getLong((int)(shoff + link * shentsize) + 24), 0)) {
+        error.add("INVALIDELF", 0, 0, "");
+        return;
+      }
+    }
+  }
+
+  /** Imports the functions and objects of the symbol table.
+   * @return the value of every symbol, by name, including the ones that are not imported
+   */
+  private Map<String, Long> importSymbols() {
+    Map<String, Long> values = new HashMap<String, Long>();
+    long shoff = elf.getLong(0x28);
+    int shentsize = elf.getShort(0x3A) & 0xFFFF;
+    int shnum = elf.getShort(0x3C) & 0xFFFF;
+    SymbolTable symTab = SymbolTable.getInstance();
+
+    for (int k = 0; k < shnum; ++k) {
+      int sh = (int)(shoff + (long) k * shentsize);
+
+      if (elf.getInt(sh + 4) != SHT_SYMTAB) {
+        continue;
+      }
+
+      long offset = elf.getLong(sh + 24);
+      long size = elf.getLong(sh + 32);
+      long entsize = elf.getLong(sh + 56);
+      int strtab = (int)(shoff + (long) elf.getInt(sh + 40) * shentsize);
+      long strings = elf.getLong(strtab + 24);
+
+      for (long sym = offset; entsize > 0 && sym + entsize <= offset + size; sym += entsize) {
+        int type = elf.get((int) sym + 4) & 0xF;
+        int shndx = elf.getShort((int) sym + 6) & 0xFFFF;
+        long value = elf.getLong((int) sym + 8);
+        String name = readString(strings + (elf.getInt((int) sym) & 0xFFFFFFFFL));
+
+        if (name.isEmpty() || shndx == 0) {
+          continue;
+        }
+
+        values.put(name, value);
+
+        if (type != STT_FUNC && type != STT_OBJECT && type != STT_NOTYPE) {
+          continue;
+        }
+
+        try {
+          if (type != STT_OBJECT && inCode(value) && value % 4 == 0) {
+            symTab.setInstructionLabel((int)(value - codeBase), name.toUpperCase());
+          } else if (type != STT_FUNC && inData(value)) {
+            symTab.setCellLabel((int)(value - dataBase), name.toUpperCase());
+          }
+        } catch (SameLabelsException e) {
+          // Local symbols of different files may share their names.
+          logger.info("Duplicate symbol " + name);
+        } catch (MemoryElementNotFoundException e) {
+          logger.info("Symbol " + name + " out of memory");
+        }
+      }
+    }
+
+    return values;
+  }
+
+  private ByteBuffer slice(long offset, int length) {
+    ByteBuffer b = elf.duplicate().order(elf.order());
+    b.position((int) offset);
+    b.limit((int) offset + length);
+    return b;
+  }
+
+  private String readString(long offset) {
+    StringBuilder sb = new StringBuilder();
+
+    if (offset < 0 || offset >= elf.limit()) {
+      return "";
+    }
+
+    for (int k = (int) offset; k < elf.limit() && elf.get(k) != 0; ++k) {
+      sb.append((char) elf.get(k));
+    }
+
+    return sb.toString();
+  }
+}
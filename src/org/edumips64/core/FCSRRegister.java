@@ -28,6 +28,24 @@ import org.edumips64.utils.*;
  * */
 
 public class FCSRRegister extends BitSet32 {
+  /** Condition codes, and V Z O U flags and cause bits, as in getBits() */
+  private static final long STATUS_MASK;
+  static {
+    long mask = 0;
+
+    for (int i : new int[] {0, 1, 2, 3, 4, 5, 6, 8, 15, 16, 17, 18, 25, 26, 27, 28}) {
+      mask |= 1L << (31 - i);
+    }
+
+    STATUS_MASK = mask;
+  }
+
+  /** Clears the condition codes and the V, Z, O and U flags and cause bits,
+   *  leaving the enables and the rounding mode as they are. */
+  public void clearStatus() {
+    setBits(getBits() & ~STATUS_MASK);
+  }
+
 //SETTING PROPERTIES ----------------------------------------------------------
   /** Sets the FCSR Enables bits (the numeration of the bitset bits goes in this way  0 1 .... 30 31
   *    31 30 29 28 27 26 25  | 24 | 23 | 22 21 | 20 19 18 |17 16 15 14 13 12 | 11 10 9 8 7 | 6 5 4 3 2 | 1 0
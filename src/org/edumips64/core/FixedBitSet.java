@@ -31,6 +31,10 @@ import org.edumips64.utils.*;
 public abstract class FixedBitSet {
   private BitSet bitset;
   protected int size;
+  /** Digest of the architectural state this bit set is part of, if any,
+   *  and its location in the state */
+  private StateDigest digest;
+  private int location;
 
   /** Creates a default new instance of FixedBitSet with zero size. */
   public FixedBitSet() {
@@ -43,11 +47,36 @@ public abstract class FixedBitSet {
    * @param value if true bits will be set to '1', if false bits will be set to '0'
    * */
   public void reset(boolean value) {
+    long old = digest == null ? 0 : getBits();
+
     if (!value) {
       bitset.clear();
     } else {
       bitset.set(0, size);   //imposta tutto a true
     }
+
+    changed(old);
+  }
+
+  /** Makes every later change of this bit set update a state digest.
+   * @param digest the digest
+   * @param location location of this bit set in the state
+   */
+  void track(StateDigest digest, int location) {
+    this.digest = digest;
+    this.location = location;
+  }
+
+  private void changed(long old) {
+    if (digest != null) {
+      digest.update(location, old, getBits());
+    }
+
+    written();
+  }
+
+  /** Called after every write of the bits of this FixedBitSet */
+  void written() {
   }
 
   /** Using a string containg binary digits (bits) this method sets the bit
@@ -60,27 +89,72 @@ public abstract class FixedBitSet {
   public void setBits(String bits, int start) throws IrregularStringOfBitsException {
     //System.err.println("setBits() " + bits + ", " + start);
     int index = 0;
+    long old = digest == null ? 0 : getBits();
 
-    for (int i = 0; i < bits.length(); i++) {
-      index = i + start;
+    try {
+      for (int i = 0; i < bits.length(); i++) {
+        index = i + start;
 
-      if (index >= size) {
-        return;
-      }
+        if (index >= size) {
+          return;
+        }
 
-      char c = bits.charAt(i);
-
-      switch (c) {
-      case '1':
-        bitset.set(index, true);
-        break;
-      case '0':
-        bitset.set(index, false);
-        break;
-      default:
-        throw new IrregularStringOfBitsException();
+        char c = bits.charAt(i);
+
+        switch (c) {
+        case '1':
+          bitset.set(index, true);
+          break;
+        case '0':
+          bitset.set(index, false);
+          break;
+        default:
+          throw new IrregularStringOfBitsException();
+        }
       }
+    } finally {
+      changed(old);
+    }
+  }
+
+  /** Sets the whole FixedBitSet from the lowest <code>size</code> bits of
+   * a long, the most significant one going to position 0.
+   * @param value bits to be stored
+   */
+  public void setBits(long value) {
+    long old = digest == null ? 0 : getBits();
+    bitset.clear();
+
+    if (size < 64) {
+      value &= (1L << size) - 1;
+    }
+
+    for (; value != 0; value &= value - 1) {
+      bitset.set(size - 1 - Long.numberOfTrailingZeros(value));
     }
+
+    changed(old);
+  }
+
+  /** Returns the bits of this FixedBitSet packed in a long, position 0 being
+   * the most significant bit.
+   * @return the bits, right-aligned
+   */
+  public long getBits() {
+    long value = 0;
+
+    for (int i = bitset.nextSetBit(0); i >= 0 && i < size; i = bitset.nextSetBit(i + 1)) {
+      value |= 1L << (size - 1 - i);
+    }
+
+    return value;
+  }
+
+  /** Checks whether every bit of this FixedBitSet is zero.
+   * @return true if no bit is set
+   */
+  public boolean isZero() {
+    return bitset.isEmpty();
   }
 
   /** Returns the bit sequence of this FixedBitSet as a string containing "0"s and "1"s.
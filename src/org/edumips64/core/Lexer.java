@@ -0,0 +1,295 @@
+/* Lexer.java
+ *
+ * Source reader and token classes of the MIPS64 assembler.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+/** Reads the source code of a program, expanding the #include directives.
+ *
+ *  The files of a program are read concurrently: every file is read by a
+ *  task of its own, that submits the reading of the files it includes as
+ *  soon as it meets them. The program comes back as a list of units, the
+ *  runs of lines of a single file between two #include directives, in the
+ *  order the old preprocessor spliced them.
+ *
+ *  The lines of files are normalized (see clean()) and blank lines are
+ *  skipped, so that the row numbers seen by the parser are the same of the
+ *  old preprocessor. Buffers passed directly to the parser are returned as
+ *  they are, one line at a time.
+ *
+ *  The class also holds the token classes shared by the parser: the table
+ *  of the directives and the precompiled patterns of the literals.
+ */
+class Lexer implements Closeable {
+  /** Assembler directives */
+  enum Directive {
+    DATA, TEXT, CODE, ASCII, ASCIIZ, SPACE, WORD, WORD64, WORD32, WORD16, BYTE, DOUBLE;
+
+    private static final Map<String, Directive> table = new HashMap<String, Directive>();
+    static {
+      for (Directive d : values()) {
+        table.put("." + d.name(), d);
+      }
+    }
+
+    /** Looks up a directive, ignoring the case.
+     * @param token the directive, including the leading dot
+     * @return the directive, or null if the token is not a directive
+     */
+    static Directive lookup(String token) {
+      Directive d = table.get(token);
+      return d != null ? d : table.get(token.toUpperCase());
+    }
+  }
+
+  /** Floating point literals accepted by .double */
+  static final Pattern DOUBLE = Pattern.compile("-?[0-9]+.[0-9]+");
+  static final Pattern DOUBLE_EXP = Pattern.compile("-?[0-9]+.[0-9]+E-?[0-9]+");
+
+  private static final String INCLUDE = "#include ";
+
+  /** Run of consecutive lines of a file, up to an #include directive or to
+   *  the end of the file */
+  static class Unit {
+    final String file;
+    final List<String> lines = new ArrayList<String>();
+
+    Unit(String file) {
+      this.file = file;
+    }
+  }
+
+  /** Lines of a file, and the files it includes */
+  private static class FileText {
+    final String name;
+    final List<String> lines = new ArrayList<String>();
+    /** Positions in lines of the #include directives */
+    final List<Integer> at = new ArrayList<Integer>();
+    final List<Future<FileText>> includes = new ArrayList<Future<FileText>>();
+
+    FileText(String name) {
+      this.name = name;
+    }
+  }
+
+  private final BufferedReader reader;
+
+  /** Creates a lexer for an in-memory program, returning its lines as they
+   *  are and ignoring the #include directives. */
+  Lexer(Reader in) {
+    reader = new BufferedReader(in);
+  }
+
+  /** Reads the next line of the program.
+   * @return the line, or null at the end of the program
+   */
+  String nextLine() throws IOException {
+    return reader.readLine();
+  }
+
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /** Reads a program from the file system.
+   * @param filename path of the main file
+   * @param includePath directory relative #include paths are resolved against
+   * @param pool executor of the reading tasks
+   * @return the units of the program, none of them empty
+   */
+  static List<Unit> read(String filename, String includePath, ExecutorService pool) throws IOException, ParserMultiException {
+    String name = new File(filename).getAbsolutePath();
+    Future<FileText> main = submit(name, includePath, Collections.<String>emptyList(), pool);
+    List<Unit> units = new ArrayList<Unit>();
+    flatten(get(main), false, units);
+    return units;
+  }
+
+  /** Joins the lines of the units */
+  static List<String> join(List<Unit> units) {
+    List<String> lines = new ArrayList<String>();
+
+    for (Unit u : units) {
+      lines.addAll(u.lines);
+    }
+
+    return lines;
+  }
+
+  private static Future<FileText> submit(final String name, final String includePath, List<String> parents, final ExecutorService pool) {
+    final List<String> chain = new ArrayList<String>(parents);
+    chain.add(name);
+    return pool.submit(new Callable<FileText>() {
+      public FileText call() throws IOException, ParserMultiException {
+        return readFile(name, includePath, chain, pool);
+      }
+    });
+  }
+
+  /** Reads a single file, starting the reading of the included ones.
+   * @param chain the file and the files that include it, to detect loops
+   */
+  private static FileText readFile(String name, String includePath, List<String> chain, ExecutorService pool) throws IOException, ParserMultiException {
+    FileText text = new FileText(name);
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(name), "ISO-8859-1"), 64 * 1024);
+
+    try {
+      String line;
+
+      while ((line = in.readLine()) != null) {
+        line = clean(line);
+
+        if (line == null) {
+          continue;
+        }
+
+        if (!line.startsWith(INCLUDE)) {
+          text.lines.add(line);
+          continue;
+        }
+
+        String filename = line.substring(INCLUDE.length()).split(";") [0].trim();
+        File file = new File(filename);
+
+        if (!file.isAbsolute()) {
+          file = new File(includePath + filename);
+        }
+
+        String included = file.getAbsolutePath();
+
+        if (chain.contains(included)) {
+          ParserMultiException error = new ParserMultiException();
+          error.add("INCLUDE_LOOP", 0, 0, INCLUDE + filename);
+          throw error;
+        }
+
+        text.at.add(text.lines.size());
+        text.includes.add(submit(included, includePath, chain, pool));
+      }
+    } finally {
+      in.close();
+    }
+
+    return text;
+  }
+
+  /** Appends the units of a file, and of the files it includes, in the
+   *  order of the text. */
+  private static void flatten(FileText text, boolean resumed, List<Unit> units) throws IOException, ParserMultiException {
+    int from = 0;
+
+    for (int k = 0; k < text.includes.size(); ++k) {
+      int to = text.at.get(k);
+      addUnit(text.name, text.lines.subList(from, to), resumed, units);
+      flatten(get(text.includes.get(k)), false, units);
+      from = to;
+      // The old preprocessor left the newline of the #include line after
+      // the spliced file.
+      resumed = true;
+    }
+
+    addUnit(text.name, text.lines.subList(from, text.lines.size()), resumed, units);
+  }
+
+  /** Waits for the reading of a file, passing on its errors */
+  private static FileText get(Future<FileText> f) throws IOException, ParserMultiException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while reading the program");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof ParserMultiException) {
+        throw (ParserMultiException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+
+      throw new IOException(cause);
+    }
+  }
+
+  private static void addUnit(String name, List<String> lines, boolean resumed, List<Unit> units) {
+    if (lines.isEmpty() && !resumed) {
+      return;
+    }
+
+    Unit u = new Unit(name);
+
+    if (resumed) {
+      u.lines.add("");
+    }
+
+    u.lines.addAll(lines);
+    units.add(u);
+  }
+  /** Normalizes a line of code in a single pass: leading and trailing
+   *  blanks are removed, tabs become spaces, runs of spaces are collapsed
+   *  and the spaces around commas are dropped.
+   * @param s the line
+   * @return the cleaned line, or null if the line is empty or starts with a comment
+   */
+  static String clean(String s) {
+    if (s.length() == 0 || s.charAt(0) == ';' || s.charAt(0) == '\n') {
+      return null;
+    }
+
+    s = s.trim();
+    int length = s.length();
+
+    if (length == 0) {
+      return null;
+    }
+
+    char[] out = new char[length];
+    int n = 0;
+
+    for (int i = 0; i < length; ++i) {
+      char c = s.charAt(i);
+
+      if (c == '\t') {
+        c = ' ';
+      }
+
+      if (c == ' ' && n > 0 && (out[n - 1] == ' ' || out[n - 1] == ',')) {
+        continue;
+      }
+
+      if (c == ',' && n > 0 && out[n - 1] == ' ') {
+        n--;
+      }
+
+      out[n++] = c;
+    }
+
+    return new String(out, 0, n);
+  }
+}
@@ -0,0 +1,522 @@
+/* LocalityAnalyzer.java
+ *
+ * Streaming locality analysis of the memory accesses: reuse distance, strides and heatmap.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+import org.edumips64.core.is.LDSTInstructions;
+import org.edumips64.utils.ConfigManager;
+
+import java.io.*;
+import java.util.*;
+
+/** Locality of the memory accesses of the retired instructions.
+ *
+ *  Every retired instruction is one fetch from code memory and every load
+ *  or store one access to data memory; both streams are analyzed at the
+ *  granularity of localityBlockSize bytes:
+ *  <ul>
+ *  <li>the reuse (LRU stack) distance of every access, so that the miss
+ *  ratio of a fully associative LRU cache of any size can be read from a
+ *  single run;</li>
+ *  <li>the stride between consecutive accesses of every load and store;</li>
+ *  <li>the number of accesses to every block (the heatmap).</li>
+ *  </ul>
+ *  Fetches of squashed instructions are not counted.
+ */
+public class LocalityAnalyzer {
+  /** Bytes of data memory and of code memory */
+  public static final int DATA_BYTES = CPU.DATALIMIT * 8, CODE_BYTES = CPU.CODELIMIT * 4;
+
+  /** Blocks in a row of the text heatmap, and its shades from cold to hot */
+  private static final int HEATMAP_ROW = 32;
+  private static final String SHADES = " .:-=+*#%@";
+
+  /** Reuse distances of a stream of block accesses.
+   *
+   *  The stack distance of an access is the number of distinct blocks
+   *  accessed since the previous access to the same block. Every block is
+   *  marked in a Fenwick tree at the time of its last access, so the
+   *  distance is the number of marks after that time, found in O(log n).
+   *  When the times run past the tree they are renumbered in order, which
+   *  keeps the tree at a few times the number of blocks.
+   */
+  public static class ReuseDistance {
+    private int[] last, tree;
+    private int time;
+    /** Accesses by exact distance */
+    private long[] distances;
+    private long accesses, cold;
+
+    public ReuseDistance(int blocks) {
+      last = new int[blocks];
+      tree = new int[Math.max(64, 4 * blocks) + 1];
+      distances = new long[blocks];
+    }
+
+    public void reset() {
+      Arrays.fill(last, 0);
+      Arrays.fill(tree, 0);
+      Arrays.fill(distances, 0);
+      time = 0;
+      accesses = cold = 0;
+    }
+
+    /** Records an access and returns its distance, -1 for the first
+     *  access to the block. */
+    public int access(int block) {
+      if (time + 1 == tree.length) {
+        compact();
+      }
+
+      int t = ++time;
+      int prev = last[block];
+      int distance = -1;
+      accesses++;
+
+      if (prev == 0) {
+        cold++;
+      } else {
+        distance = sum(t - 1) - sum(prev);
+        distances[distance]++;
+        add(prev, -1);
+      }
+
+      add(t, 1);
+      last[block] = t;
+      return distance;
+    }
+
+    private void compact() {
+      long[] live = new long[last.length];
+      int n = 0;
+
+      for (int b = 0; b < last.length; ++b) {
+        if (last[b] != 0) {
+          live[n++] = ((long) last[b] << 32) | b;
+        }
+      }
+
+      Arrays.sort(live, 0, n);
+      Arrays.fill(tree, 0);
+
+      for (int i = 0; i < n; ++i) {
+        last[(int) live[i]] = i + 1;
+        add(i + 1, 1);
+      }
+
+      time = n;
+    }
+
+    private void add(int i, int delta) {
+      for (; i < tree.length; i += i & -i) {
+        tree[i] += delta;
+      }
+    }
+
+    private int sum(int i) {
+      int s = 0;
+
+      for (; i > 0; i -= i & -i) {
+        s += tree[i];
+      }
+
+      return s;
+    }
+
+    public long getAccesses() {
+      return accesses;
+    }
+
+    /** First accesses to a block */
+    public long getColdMisses() {
+      return cold;
+    }
+
+    /** Accesses at the given distance */
+    public long getAccesses(int distance) {
+      return distances[distance];
+    }
+
+    /** Distinct blocks accessed */
+    public int getFootprint() {
+      return (int) cold;
+    }
+
+    /** Misses of a fully associative LRU cache of the given size.
+     * @param blocks capacity of the cache, in blocks
+     */
+    public long getMisses(int blocks) {
+      long misses = cold;
+
+      for (int d = Math.max(0, blocks); d < distances.length; ++d) {
+        misses += distances[d];
+      }
+
+      return misses;
+    }
+
+    public double getMissRatio(int blocks) {
+      return accesses == 0 ? 0 : (double) getMisses(blocks) / accesses;
+    }
+
+    /** Accesses by distance in power of two buckets: bucket 0 holds the
+     *  distance 0, bucket k the distances from 2^(k-1) to 2^k - 1. */
+    public long[] getHistogram() {
+      long[] histogram = new long[bucket(distances.length - 1) + 1];
+
+      for (int d = 0; d < distances.length; ++d) {
+        histogram[bucket(d)] += distances[d];
+      }
+
+      return histogram;
+    }
+
+    /** Label of a bucket of getHistogram() */
+    public static String bucketName(int bucket) {
+      if (bucket < 2) {
+        return Integer.toString(bucket);
+      }
+
+      return (1 << (bucket - 1)) + "-" + ((1 << bucket) - 1);
+    }
+
+    private static int bucket(int distance) {
+      return 32 - Integer.numberOfLeadingZeros(distance);
+    }
+  }
+
+  /** Access pattern of a static load or store */
+  public static class Stride {
+    public final int address;
+    public final String symbol, instruction;
+    public final long accesses;
+    /** Last stride, in bytes */
+    public final long stride;
+    /** Accesses whose stride was the same as the one before */
+    public final long repeated;
+
+    Stride(int address, String symbol, String instruction, long accesses, long stride, long repeated) {
+      this.address = address;
+      this.symbol = symbol;
+      this.instruction = instruction;
+      this.accesses = accesses;
+      this.stride = stride;
+      this.repeated = repeated;
+    }
+
+    /** Share of the strides equal to the previous one */
+    public double getRegularity() {
+      return accesses < 3 ? 0 : (double) repeated / (accesses - 2);
+    }
+  }
+
+  private int blockSize;
+  private ReuseDistance data, fetch;
+  private long[] reads, writes, fetches;
+  private long[] lastAddress, strides, accesses, repeated;
+  /** Slots of the loads and stores seen since the last reset */
+  private BitSet recorded;
+
+  public LocalityAnalyzer() {
+    lastAddress = new long[CPU.CODELIMIT];
+    strides = new long[CPU.CODELIMIT];
+    accesses = new long[CPU.CODELIMIT];
+    repeated = new long[CPU.CODELIMIT];
+    recorded = new BitSet(CPU.CODELIMIT);
+    reset();
+  }
+
+  /** Clears the analysis, and takes the block size from the configuration.
+   *  Sizes that are not a power of two between 8 and 4096 bytes are
+   *  rounded down into that range. */
+  public void reset() {
+    int size = ConfigManager.getConfig().getInt("localityBlockSize");
+    size = Integer.highestOneBit(Math.min(Math.max(size, 8), DATA_BYTES));
+
+    if (size != blockSize) {
+      blockSize = size;
+      data = new ReuseDistance(DATA_BYTES / size);
+      fetch = new ReuseDistance(CODE_BYTES / size);
+      reads = new long[DATA_BYTES / size];
+      writes = new long[DATA_BYTES / size];
+      fetches = new long[CODE_BYTES / size];
+    } else {
+      data.reset();
+      fetch.reset();
+      Arrays.fill(reads, 0);
+      Arrays.fill(writes, 0);
+      Arrays.fill(fetches, 0);
+    }
+
+    for (int i = recorded.nextSetBit(0); i >= 0; i = recorded.nextSetBit(i + 1)) {
+      accesses[i] = 0;
+      repeated[i] = 0;
+    }
+
+    recorded.clear();
+  }
+
+  /** Adds the accesses of a retired instruction. */
+  public void retire(Instruction instr) {
+    int pc = instr.getAddress();
+
+    if (pc < 0 || pc >= CODE_BYTES) {
+      return;
+    }
+
+    fetch.access(pc / blockSize);
+    fetches[pc / blockSize]++;
+
+    if (!(instr instanceof LDSTInstructions)) {
+      return;
+    }
+
+    LDSTInstructions ldst = (LDSTInstructions) instr;
+    long address = ldst.getMemoryAddress();
+
+    if (address < 0 || address >= DATA_BYTES) {
+      return;
+    }
+
+    int block = (int)(address / blockSize);
+    data.access(block);
+
+    if (ldst.isStore()) {
+      writes[block]++;
+    } else {
+      reads[block]++;
+    }
+
+    int slot = pc / 4;
+
+    if (accesses[slot] > 0) {
+      long stride = address - lastAddress[slot];
+
+      if (accesses[slot] > 1 && stride == strides[slot]) {
+        repeated[slot]++;
+      }
+
+      strides[slot] = stride;
+    } else {
+      strides[slot] = 0;
+    }
+
+    lastAddress[slot] = address;
+    accesses[slot]++;
+    recorded.set(slot);
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /** Reuse distances of the loads and stores */
+  public ReuseDistance getData() {
+    return data;
+  }
+
+  /** Reuse distances of the instruction fetches */
+  public ReuseDistance getFetch() {
+    return fetch;
+  }
+
+  /** Loads from every data block, by block index */
+  public long[] getReads() {
+    return reads.clone();
+  }
+
+  /** Stores to every data block, by block index */
+  public long[] getWrites() {
+    return writes.clone();
+  }
+
+  /** Fetches from every code block, by block index */
+  public long[] getFetches() {
+    return fetches.clone();
+  }
+
+  /** Strides of the loads and stores executed at least once, the most
+   *  executed first. */
+  public List<Stride> getStrides() {
+    List<Stride> list = new ArrayList<Stride>();
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+
+    for (int i = recorded.nextSetBit(0); i >= 0; i = recorded.nextSetBit(i + 1)) {
+      SymbolTable.Symbol symbol = symTab.getCodeSymbol(i * 4);
+      list.add(new Stride(i * 4, symbol == null ? "" : symbol.toString(), mem.getInstruction(i * 4).getFullName(), accesses[i], strides[i], repeated[i]));
+    }
+
+    Collections.sort(list, new Comparator<Stride>() {
+      public int compare(Stride a, Stride b) {
+        return Long.compare(b.accesses, a.accesses);
+      }
+    });
+
+    return list;
+  }
+
+  /** Formats the analysis as text.
+   * @param limit maximum number of loads and stores listed, 0 for all of them
+   */
+  public String toReport(int limit) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Block size %d bytes%n%n", blockSize));
+    sb.append(String.format("%-16s %12s %12s%n", "", "Data", "Fetch"));
+    sb.append(String.format("%-16s %12d %12d%n", "Accesses", data.getAccesses(), fetch.getAccesses()));
+    sb.append(String.format("%-16s %12d %12d%n", "Blocks", data.getFootprint(), fetch.getFootprint()));
+    sb.append(String.format("%nReuse distance (blocks)%n"));
+    long[] dataHist = data.getHistogram(), fetchHist = fetch.getHistogram();
+
+    for (int b = 0; b < Math.max(dataHist.length, fetchHist.length); ++b) {
+      sb.append(String.format("%-16s %12d %12d%n", ReuseDistance.bucketName(b), b < dataHist.length ? dataHist[b] : 0,
+                              b < fetchHist.length ? fetchHist[b] : 0));
+    }
+
+    sb.append(String.format("%-16s %12d %12d%n", "cold", data.getColdMisses(), fetch.getColdMisses()));
+    sb.append(String.format("%nMiss ratio of a fully associative LRU cache%n"));
+
+    for (int size = blockSize; size <= Math.max(DATA_BYTES, CODE_BYTES); size *= 2) {
+      sb.append(String.format("%-16s %11.2f%% %11.2f%%%n", size + " bytes", data.getMissRatio(size / blockSize) * 100,
+                              fetch.getMissRatio(size / blockSize) * 100));
+    }
+
+    sb.append(String.format("%n%-8s %-20s %-24s %10s %8s %8s%n", "Address", "Symbol", "Instruction", "Accesses", "Stride", "Regular"));
+    int rows = 0;
+
+    for (Stride s : getStrides()) {
+      if (limit > 0 && rows++ == limit) {
+        break;
+      }
+
+      sb.append(String.format("%08X %-20s %-24s %10d %8d %7.1f%%%n", s.address, s.symbol, s.instruction, s.accesses, s.stride,
+                              s.getRegularity() * 100));
+    }
+
+    long[] dataAccesses = new long[reads.length];
+
+    for (int i = 0; i < reads.length; ++i) {
+      dataAccesses[i] = reads[i] + writes[i];
+    }
+
+    sb.append(String.format("%nData heatmap (%d blocks per row)%n", HEATMAP_ROW));
+    appendHeatmap(sb, dataAccesses);
+    sb.append(String.format("%nCode heatmap (%d blocks per row)%n", HEATMAP_ROW));
+    appendHeatmap(sb, fetches);
+    return sb.toString();
+  }
+
+  /** One character per block, darker for more accesses on a log scale */
+  private void appendHeatmap(StringBuilder sb, long[] counts) {
+    long max = 0;
+
+    for (long c : counts) {
+      max = Math.max(max, c);
+    }
+
+    for (int i = 0; i < counts.length; i += HEATMAP_ROW) {
+      sb.append(String.format("%08X |", i * blockSize));
+
+      for (int j = i; j < Math.min(counts.length, i + HEATMAP_ROW); ++j) {
+        sb.append(SHADES.charAt(shade(counts[j], max, SHADES.length() - 1)));
+      }
+
+      sb.append(String.format("|%n"));
+    }
+  }
+
+  /** Level from 0 to levels of a count, on a log scale up to max */
+  public static int shade(long count, long max, int levels) {
+    if (count == 0 || max == 0) {
+      return 0;
+    }
+
+    return 1 + (int)((levels - 1) * Math.log(count) / Math.log(Math.max(2, max)));
+  }
+
+  /** Writes the analysis as a JSON object */
+  public void writeJSON(Writer w) throws IOException {
+    w.write("{\n  \"blockSize\": " + blockSize + ",\n");
+    writeStream(w, "data", data);
+    w.write(",\n    \"heatmap\": [");
+    boolean first = true;
+
+    for (int i = 0; i < reads.length; ++i) {
+      if (reads[i] + writes[i] > 0) {
+        w.write((first ? "" : ", ") + "{\"address\": " + i * blockSize + ", \"reads\": " + reads[i] + ", \"writes\": " + writes[i] + "}");
+        first = false;
+      }
+    }
+
+    w.write("]\n  },\n");
+    writeStream(w, "fetch", fetch);
+    w.write(",\n    \"heatmap\": [");
+    first = true;
+
+    for (int i = 0; i < fetches.length; ++i) {
+      if (fetches[i] > 0) {
+        w.write((first ? "" : ", ") + "{\"address\": " + i * blockSize + ", \"fetches\": " + fetches[i] + "}");
+        first = false;
+      }
+    }
+
+    w.write("]\n  },\n  \"strides\": [");
+    first = true;
+
+    for (Stride s : getStrides()) {
+      w.write((first ? "" : ",") + "\n    {\"address\": " + s.address + ", \"symbol\": " + Statistics.quote(s.symbol) + ", \"instruction\": "
+              + Statistics.quote(s.instruction) + ", \"accesses\": " + s.accesses + ", \"stride\": " + s.stride + ", \"repeated\": " + s.repeated + "}");
+      first = false;
+    }
+
+    w.write("\n  ]\n}\n");
+    w.flush();
+  }
+
+  /** Writes the counters, the reuse distances and the miss ratio curve of
+   *  a stream, leaving its object open */
+  private void writeStream(Writer w, String name, ReuseDistance rd) throws IOException {
+    w.write("  " + Statistics.quote(name) + ": {\n");
+    w.write("    \"accesses\": " + rd.getAccesses() + ",\n");
+    w.write("    \"blocks\": " + rd.getFootprint() + ",\n");
+    w.write("    \"cold\": " + rd.getColdMisses() + ",\n");
+    w.write("    \"reuseDistance\": {");
+    long[] histogram = rd.getHistogram();
+
+    for (int b = 0; b < histogram.length; ++b) {
+      w.write((b > 0 ? ", " : "") + Statistics.quote(ReuseDistance.bucketName(b)) + ": " + histogram[b]);
+    }
+
+    w.write("},\n    \"missRatio\": {");
+    int blocks = rd.distances.length;
+
+    for (int size = 1; size <= blocks; size *= 2) {
+      w.write((size > 1 ? ", " : "") + Statistics.quote(Integer.toString(size * blockSize)) + ": "
+              + String.format(Locale.ROOT, "%.6f", rd.getMissRatio(size)));
+    }
+
+    w.write("}");
+  }
+}
@@ -41,22 +41,34 @@ public class Memory {
   private int instr_num;
   private static Memory memory = null;
 
+  /** Cells written since the last reset, the only ones that may hold
+   *  anything to clear. The cells record their own writes, so reading
+   *  them, as the views and the snapshots do, costs nothing at reset. */
+  private BitSet touched;
+  /** Slots of code memory after the last instruction stored since the last
+   *  reset hold the empty slot */
+  private int codeTop;
+  /** Content of the empty slots of code memory, shared by every memory */
+  private static Instruction empty;
+
   private static final Logger logger = Logger.getLogger(Memory.class.getName());
 
-  private Memory() {
+  /** Creates a memory apart from the one of the CPU, used by the parser
+   *  to hold the fragment assembled from a single unit of a program. */
+  Memory() {
     logger.info("Building Memory: " + this.hashCode());
     mem_comments = new HashMap<Integer, String>();
-    cells = new ArrayList<MemoryElement>();
+    cells = new ArrayList<MemoryElement>(CPU.DATALIMIT);
     instr_num = 0;
-    instructions = new LinkedList<Instruction>();
+    instructions = new ArrayList<Instruction>(CPU.CODELIMIT);
+    touched = new BitSet(CPU.DATALIMIT);
+    codeTop = 0;
 
     for (int i = 0; i < CPU.DATALIMIT; i++) {
-      cells.add(new MemoryElement(i * 8));
+      cells.add(new MemoryElement(i * 8, touched));
     }
 
-    for (int i = 0; i < CPU.CODELIMIT; i++) {
-      instructions.add(Instruction.buildInstruction("BUBBLE"));
-    }
+    instructions.addAll(Collections.nCopies(CPU.CODELIMIT, emptySlot()));
 
     logger.info("Memory built: " + this.hashCode());
   }
@@ -75,6 +87,42 @@ public class Memory {
     return instr_num;
   }
 
+  /** Number of slots of code memory up to the last stored instruction */
+  public int getCodeSize() {
+    return codeTop;
+  }
+
+  void setInstructionsNumber(int n) {
+    instr_num = n;
+  }
+
+  /** Replaces the whole code memory */
+  void setInstructions(Instruction[] code) {
+    codeTop = 0;
+
+    for (int i = 0; i < code.length; ++i) {
+      instructions.set(i, code[i]);
+
+      if (code[i] != empty) {
+        if (code[i] != null) {
+          code[i].setAddress(i * 4);
+        }
+
+        codeTop = i + 1;
+      }
+    }
+  }
+
+  /** Returns the BUBBLE held by the empty slots of code memory. It is
+   *  never changed, so a single one is shared by all of them. */
+  static Instruction emptySlot() {
+    if (empty == null) {
+      empty = Instruction.buildInstruction("BUBBLE");
+    }
+
+    return empty;
+  }
+
   /** Singleton pattern: since the unique constructor of this class is private, this static method
    * returns the unique allowed instance of Memory, thus subsequent calls of this method will return exactly
    * the same object.
@@ -89,9 +137,21 @@ public class Memory {
   }
 
   /** Gets the index of the given instruction
-   * @return the position of the instruction in the list, or -1 if the instruction doesn't exist.
+   * @return the position of the instruction in the list, or -1 if the instruction doesn't exist or is a bubble.
    */
   public int getInstructionIndex(Instruction i) {
+    if (i == null || i.isBubble()) {
+      return -1;
+    }
+
+    // Instructions know where they were stored; an equal one found
+    // elsewhere is looked up.
+    int slot = i.getAddress() / 4;
+
+    if (i.getAddress() >= 0 && slot < CPU.CODELIMIT && instructions.get(slot) == i) {
+      return slot;
+    }
+
     return instructions.indexOf(i);
   }
 
@@ -120,21 +180,119 @@ public class Memory {
     return cells.get(index);
   }
 
-  /** This method resets the memory*/
+  /** Returns the indexes of the cells written since the last reset
+   * @return a copy of the set of the written cells
+   */
+  public BitSet getWrittenCells() {
+    return (BitSet) touched.clone();
+  }
+
+  /** Checks that a region of data memory exists.
+   * @param address address of the first byte
+   * @param length number of bytes
+   * @throws MemoryElementNotFoundException if the region is not entirely
+   * inside the data memory
+   */
+  private void checkRegion(long address, long length) throws MemoryElementNotFoundException {
+    if (address < 0 || length < 0 || address + length > (long) CPU.DATALIMIT * 8) {
+      throw new MemoryElementNotFoundException();
+    }
+  }
+
+  /** Zero-fills a region of data memory. Only the cells holding some data
+   * are written, so a large region costs as much as the cells in use.
+   * @param address address of the first byte
+   * @param length number of bytes to clear
+   * @throws MemoryElementNotFoundException if the region does not fit in
+   * the data memory; nothing is written in that case
+   */
+  public void zero(long address, int length) throws MemoryElementNotFoundException {
+    checkRegion(address, length);
+    long end = address + length;
+
+    while (address < end) {
+      MemoryElement cell = cells.get((int)(address / 8));
+      int first = (int)(address % 8);
+      int last = (int) Math.min(8, first + end - address);
+
+      if (!cell.isZero()) {
+        if (first == 0 && last == 8) {
+          cell.reset(false);
+        } else {
+          long mask = (last == 8 ? -1L : (1L << (8 * last)) - 1) & ~((1L << (8 * first)) - 1);
+          cell.setBits(cell.getBits() & ~mask);
+        }
+      }
+
+      address += last - first;
+    }
+  }
+
+  /** Copies a block of bytes in data memory. Within a cell, the byte at the
+   * lowest address is the least significant one, as in writeByte().
+   * @param address address of the first byte
+   * @param data bytes to be written
+   * @param offset index in data of the first byte to write
+   * @param length number of bytes to write
+   * @throws MemoryElementNotFoundException if the region does not fit in
+   * the data memory; nothing is written in that case
+   */
+  public void writeBytes(long address, byte[] data, int offset, int length) throws MemoryElementNotFoundException {
+    checkRegion(address, length);
+    int written = 0;
+
+    while (written < length) {
+      MemoryElement cell = cells.get((int)((address + written) / 8));
+      int first = (int)((address + written) % 8);
+      long value = (first == 0 && length - written >= 8) ? 0 : cell.getBits();
+
+      for (int b = first; b < 8 && written < length; ++b, ++written) {
+        value &= ~(0xFFL << (8 * b));
+        value |= (data[offset + written] & 0xFFL) << (8 * b);
+      }
+
+      cell.setBits(value);
+    }
+  }
+
+  /** Copies a block of doublewords in data memory.
+   * @param address address of the first doubleword; as in getCellByAddress(),
+   * the cell containing it is the first one written
+   * @param values doublewords to be written
+   * @param offset index in values of the first doubleword to write
+   * @param length number of doublewords to write
+   * @throws MemoryElementNotFoundException if the region does not fit in
+   * the data memory; nothing is written in that case
+   */
+  public void writeDoubleWords(long address, long[] values, int offset, int length) throws MemoryElementNotFoundException {
+    address -= address % 8;
+    checkRegion(address, (long) length * 8);
+
+    for (int i = 0; i < length; ++i) {
+      cells.get((int)(address / 8) + i).setBits(values[offset + i]);
+    }
+  }
+
+  /** This method resets the memory. Only the cells and the code slots used
+   * since the last reset are cleared, so that the cost of a reset does not
+   * depend on the size of the memory. */
   public void reset() {
-    for (int i = 0; i < CPU.DATALIMIT; i++) {
-      cells.get(i).reset(false);
-      cells.get(i).setComment("");
-      cells.get(i).setCode("");
-      cells.get(i).setLabel("");
+    for (int i = touched.nextSetBit(0); i >= 0; i = touched.nextSetBit(i + 1)) {
+      MemoryElement cell = cells.get(i);
+      cell.reset(false);
+      cell.setComment("");
+      cell.setCode("");
+      cell.setLabel("");
     }
 
-    instructions.clear();
+    touched.clear();
 
-    for (int i = 0; i < CPU.CODELIMIT; i++) {
-      instructions.add(Instruction.buildInstruction("BUBBLE"));
+    for (int i = 0; i < codeTop; i++) {
+      instructions.set(i, empty);
     }
 
+    codeTop = 0;
+
     mem_comments.clear();
     instr_num = 0;
     // TODO sistemare il reset
@@ -153,12 +311,14 @@ public class Memory {
   public void addInstruction(Instruction i, int address) throws SymbolTableOverflowException {
     instr_num++;
 
-    if (address > CPU.CODELIMIT) {
+    if (address < 0 || address / 4 >= CPU.CODELIMIT) {
       throw new SymbolTableOverflowException();
     }
 
     int listIndex = address / 4;
     instructions.set(listIndex, i);
+    i.setAddress(listIndex * 4);
+    codeTop = Math.max(codeTop, listIndex + 1);
   }
 
   public Instruction getInstruction(int address) {
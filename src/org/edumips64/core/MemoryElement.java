@@ -24,6 +24,8 @@
 package org.edumips64.core;
 
 import org.edumips64.utils.*;
+
+import java.util.BitSet;
 /** This class models a 64-bit memory location with a given address.
  * @author Salvatore Scellato
  * */
@@ -32,6 +34,9 @@ public class MemoryElement extends BitSet64 {
   private String comment;
   private String label;
   private String code;
+  /** Cells of the Memory this element belongs to that were written since
+   *  its last reset, or null */
+  private BitSet writtenCells;
 
   /** Creates a new MemoryElement with given address.
    * @param address address of the MemoryElement
@@ -44,6 +49,22 @@ public class MemoryElement extends BitSet64 {
     code = "";
   }
 
+  /** Creates a new MemoryElement of a Memory, that records in written the
+   * index of the element whenever it is written.
+   * @param address address of the MemoryElement
+   * @param written cells of the Memory written since its last reset
+   */
+  MemoryElement(int address, BitSet written) {
+    this(address);
+    this.writtenCells = written;
+  }
+
+  void written() {
+    if (writtenCells != null) {
+      writtenCells.set(address / 8);
+    }
+  }
+
   /** Returns the address of this MemoryElement
    * @return address of the MemoryElement
    */
@@ -63,6 +84,11 @@ public class MemoryElement extends BitSet64 {
    */
   public void setComment(String comment) {
     this.comment = comment;
+
+    // An empty string leaves an element as a reset would.
+    if (!"".equals(comment)) {
+      written();
+    }
   }
 
   /** Returns the label of this MemoryElement
@@ -77,6 +103,10 @@ public class MemoryElement extends BitSet64 {
    */
   public void setLabel(String label) {
     this.label = label;
+
+    if (!"".equals(label)) {
+      written();
+    }
   }
 
 
@@ -93,6 +123,10 @@ public class MemoryElement extends BitSet64 {
 
   public void setCode(String code) {
     this.code = code;
+
+    if (!"".equals(code)) {
+      written();
+    }
   }
 
   /** Returns the signed numeric decimal value stored in the 64 bits of this MemoryElement: basically
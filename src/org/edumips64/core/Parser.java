@@ -32,20 +32,30 @@ package org.edumips64.core;
 import org.edumips64.utils.*;
 import org.edumips64.core.is.*;
 import org.edumips64.core.fpu.*;
-import java.util.regex.*;
 import java.util.logging.Logger;
 
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.lang.reflect.Array;
 
 public class Parser {
   private static final Logger logger = Logger.getLogger(Parser.class.getName());
   private enum AliasRegister
   {zero, at, v0, v1, a0, a1, a2, a3, t0, t1, t2, t3, t4, t5, t6, t7, s0, s1, s2, s3, s4, s5, s6, s7, t8, t9, k0, k1, gp, sp, fp, ra}
-  private static final String deprecateInstruction[] = {"BNEZ", "BEQZ", "HALT", "DADDUI", "L.D", "S.D"};
+  private static final Set<String> deprecateInstruction = new HashSet<String>(Arrays.asList("BNEZ", "BEQZ", "HALT", "DADDUI", "L.D", "S.D"));
+  private static final Map<String, Integer> aliases = new HashMap<String, Integer>();
+  static {
+    for (AliasRegister x : AliasRegister.values()) {
+      aliases.put(x.name(), x.ordinal());
+    }
+  }
 
+  /** Reference to an instruction label not yet defined. The references to
+   *  the same label are chained through next, and the chain is resolved as
+   *  soon as the label is defined.
+   */
   private class VoidJump {
     public Instruction instr;
     public String label;
@@ -54,7 +64,87 @@ public class Parser {
     int instrCount;
     String line;
     boolean isBranch = false;
+    VoidJump next;
+  }
+  /** Heads of the fixup chains, by label */
+  private Map<String, VoidJump> voidJumps;
+
+  /** Use of a label in a parameter of an instruction assembled in a unit
+   *  of a program: the parameter holds the value computed with the given
+   *  contribution of the label, and is corrected by the linker once the
+   *  label has its final address.
+   */
+  private static class Relocation {
+    final Instruction instr;
+    final int param;
+    final String label;
+    /** Whether the label is of a memory cell or of an instruction */
+    final boolean cell;
+    /** Whether the label is not defined in the unit (so far) */
+    final boolean external;
+    final int sign;
+    final int contribution;
+
+    Relocation(Instruction instr, int param, String label, boolean cell, boolean external, int sign, int contribution) {
+      this.instr = instr;
+      this.param = param;
+      this.label = label;
+      this.cell = cell;
+      this.external = external;
+      this.sign = sign;
+      this.contribution = contribution;
+    }
   }
+  /** Uses of labels of the unit being assembled, or null if assembling a
+   *  whole program */
+  private List<Relocation> relocations;
+
+  /** Output of a line of a program parsed from a file, and state of the
+   *  parser before and after it. Used to assemble again only the lines that
+   *  changed when the same file is loaded again.
+   */
+  private static class LineRecord {
+    final String text;
+    int status, memoryCount, instrCount;
+    String lastLabel;
+    int statusAfter, memoryCountAfter, instrCountAfter;
+    String lastLabelAfter;
+    boolean halt;
+    List<String> instrLabels = new ArrayList<String>();
+    List<String> cellLabels = new ArrayList<String>();
+    List<ParserException> warnings = new ArrayList<ParserException>();
+
+    LineRecord(String text) {
+      this.text = text;
+    }
+
+    /** Whether the line leaves the parser in the same state and defines
+     *  the same labels of another one, so that no other line depends on
+     *  which one of the two is in the program. */
+    boolean sameOutputAs(LineRecord r) {
+      return statusAfter == r.statusAfter && memoryCountAfter == r.memoryCountAfter && instrCountAfter == r.instrCountAfter
+             && lastLabelAfter.equals(r.lastLabelAfter) && halt == r.halt && instrLabels.equals(r.instrLabels)
+             && cellLabels.equals(r.cellLabels);
+    }
+  }
+  /** Records of the lines parsed so far, or null if not recording */
+  private List<LineRecord> records;
+  private LineRecord current;
+  private int warningsBefore;
+  /** Last program parsed from a file without errors */
+  private String lastFile;
+  private List<LineRecord> lastRecords;
+  private List<ParserException> lastTailWarnings;
+  private ProgramSnapshot snapshot;
+  /** Rows defining the cell labels, when assembling single lines */
+  private Map<String, Integer> cellLabelRows;
+
+  // State carried from a line to the next one.
+  private boolean isFirstOutOfInstructionMemory;
+  private boolean halt;
+  private int row;
+  private int instrCount;
+  private String lastLabel;
   ParserMultiWarningException warning;
   ParserMultiException error;
   boolean isFirstOutOfMemory;
@@ -67,19 +157,23 @@ public class Parser {
   /** 0 null, 1 .data, 2 .text or .code
   */
   private int status;
-  /** File to be parsed
-  */
-  private BufferedReader in;
   int memoryCount;
   String filename;
+  private Memory mem;
   private SymbolTable symTab;
 
   /** Singleton pattern constructor
   */
   private Parser() {
-    symTab = SymbolTable.getInstance();
+    this(Memory.getInstance(), SymbolTable.getInstance());
     CPU.getInstance();
   }
+
+  /** Creates a parser writing in the given memory and symbol table */
+  private Parser(Memory mem, SymbolTable symTab) {
+    this.mem = mem;
+    this.symTab = symTab;
+  }
   /** Singleton Pattern implementation
    *  @return get the Singleton instance of the Parser
    */
@@ -91,574 +185,1121 @@ public class Parser {
     return instance;
   }
 
-  private String fileToString(String filename) throws IOException {
-    String tmp;
-    try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "ISO-8859-1"))) {
-      tmp = fileToString(r);
-    } catch (IOException e) {
-      throw e;
-    }
-    return tmp;
-  }
-
-  private String fileToString(BufferedReader in) throws IOException {
-    String ret = "";
-    String line;
+  /** Loading from File; code images (see BinaryImage) and ELF executables are loaded without assembling them
+   * @param filename A String with the system-dependent file name
+   * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some other reason cannot be opened for reading
+   * @throws SecurityException if a security manager exists and its checkRead method denies read access to the file.
+   */
+  public void parse(String filename) throws FileNotFoundException, SecurityException, IOException, ParserMultiException
 
-    while ((line = in.readLine()) != null) {
-      String tmp = cleanFormat(line);
+  {
+    logger.info("About to parse " + filename);
+    this.filename = filename;
 
-      if (tmp != null) {
-        ret += tmp + "\n";
-      }
+    if (BinaryImage.isImage(filename)) {
+      lastFile = null;
+      BinaryImage.load(filename);
+      return;
     }
 
-    return ret;
-  }
+    if (ElfLoader.isElf(filename)) {
+      lastFile = null;
+      ElfLoader.load(filename);
+      return;
+    }
 
-  /**
-   *
-   */
-  private void checkLoop(String data, Stack<String> included) throws IOException, ParserMultiException {
-    int i = 0;
+    int oldindex = 0;
+    int index = 0;
 
-    do {
-      i = data.indexOf("#include ", i);
+    String absolute = new File(filename).getAbsolutePath() ;
 
-      if (i != -1) {
-        int end = data.indexOf("\n", i);
+    while ((index = absolute.indexOf(File.separator, index)) != -1) {
+      oldindex = index;
+      index ++;
+    }
 
-        if (end == -1) {
-          end = data.length();
-        }
+    path = absolute.substring(0, oldindex + 1);
+    parse(absolute, workers());
+  }
 
-        int a = included.search(data.substring(i + 9, end).trim());
+  /** Threads reading and assembling the units of the programs */
+  private static ExecutorService workers;
 
-        if (a != -1) {
-          error = new ParserMultiException();
-          error.add("INCLUDE_LOOP", 0, 0, "#include " + data.substring(i + 9, end).trim());
-          throw error;
+  /** Returns the threads reading and assembling the units of the programs,
+   *  starting them the first time. They are daemons, so that they do not
+   *  keep the JVM alive.
+   */
+  private static synchronized ExecutorService workers() {
+    if (workers == null) {
+      workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "edumips64-parser");
+          t.setDaemon(true);
+          return t;
         }
+      });
+    }
 
-        String filename = data.substring(i + 9, end).split(";") [0].trim();
-
-        if (!(new File(filename)).isAbsolute()) {
-          filename = path + filename;
-        }
-        
-        String filetmp = fileToString(filename);
-        checkLoop(filetmp , included);
-        i ++;
-      }
-    } while (i != -1);
+    return workers;
   }
 
-  /** Process the #include (Syntax #include file.ext )
+  /** Reads, and then assembles or loads from the program cache, a program
+   *  of the file system.
+   * @param absolute absolute path of the main file
+   * @param pool executor of the reading and assembling tasks
    */
-  private String preprocessor() throws IOException, ParserMultiException {
-    String filetmp = "";
-
-    filetmp = fileToString(in);
-
-    int i = 0;
-
-    //check loop
-    Stack<String> included = new Stack<String>();
-    included.push(this.filename);
-
-    checkLoop(filetmp, included);
+  private void parse(String absolute, ExecutorService pool) throws IOException, ParserMultiException {
+    List<Lexer.Unit> units = Lexer.read(absolute, path, pool);
+    List<String> text = Lexer.join(units);
+    ProgramCache cache = ProgramCache.fromConfig();
+    String key = cache != null ? ProgramCache.key(text) : null;
+
+    if (absolute.equals(lastFile) && reassemble(text)) {
+      logger.info(absolute + " assembled again incrementally.");
+      ParserMultiWarningException warnings = lastWarnings();
+
+      if (cache != null && !cache.contains(key)) {
+        cache.store(key, warnings);
+      }
 
-    // include
-    do {
-      i = filetmp.indexOf("#include ", i);
+      if (warnings != null) {
+        throw warnings;
+      }
 
-      if (i != -1) {
-        int end = filetmp.indexOf("\n", i);
+      return;
+    }
 
-        if (end == -1) {
-          end = filetmp.length();
-        }
+    lastFile = null;
 
-        logger.info("Open by #include: " + filetmp.substring(i + 9, end).trim());
-        String filename = filetmp.substring(i + 9, end).split(";") [0].trim();
+    if (cache != null && cache.load(key)) {
+      logger.info(absolute + " loaded from the program cache.");
+      return;
+    }
 
-        if (!(new File(filename)).isAbsolute()) {
-          filename = path + filename;
-        }
+    records = new ArrayList<LineRecord>();
 
-        String fileContents = fileToString(filename);
-        filetmp = filetmp.substring(0, i) + fileContents + filetmp.substring(end);
+    try {
+      if (units.size() < 2 || !assembleUnits(units, pool)) {
+        records.clear();
+        doParsing(text.iterator());
       }
 
-    } while (i != -1);
-
-    return filetmp;
-  }
-
-
-  /** Loading from File
-   * @param filename A String with the system-dependent file name
-   * @throws FileNotFoundException if the file does not exist, is a directory rather than a regular file, or for some other reason cannot be opened for reading
-   * @throws SecurityException if a security manager exists and its checkRead method denies read access to the file.
-   */
-  public void parse(String filename) throws FileNotFoundException, SecurityException, IOException, ParserMultiException
+      remember(absolute);
+    } catch (ParserMultiWarningException e) {
+      remember(absolute);
 
-  {
-    logger.info("About to parse " + filename);
-    in = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "ISO-8859-1"));
-    this.filename = filename;
-    int oldindex = 0;
-    int index = 0;
+      if (cache != null) {
+        cache.store(key, e);
+      }
 
-    filename = new File(filename).getAbsolutePath() ;
+      throw e;
+    } finally {
+      records = null;
+    }
 
-    while ((index = filename.indexOf(File.separator, index)) != -1) {
-      oldindex = index;
-      index ++;
+    if (cache != null) {
+      cache.store(key, null);
     }
 
-    path = filename.substring(0, oldindex + 1);
-    String code = preprocessor();
-    parse(code.toCharArray());
-    logger.info(filename + " correctly parsed.");
+    logger.info(absolute + " correctly parsed.");
   }
   /** Loading from buffer
    * @param buffer An Array of char with the MIPS code
    * */
   public void parse(char[] buffer)  throws  IOException, ParserMultiException {
-    in = new BufferedReader(new CharArrayReader(buffer));
-    doParsing();
+    lastFile = null;
+    doParsing(readLines(new Lexer(new CharArrayReader(buffer))).iterator());
+  }
+
+  private static List<String> readLines(Lexer in) throws IOException, ParserMultiException {
+    List<String> lines = new ArrayList<String>();
+
+    try {
+      String line;
+
+      while ((line = in.nextLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      in.close();
+    }
+
+    return lines;
   }
+
   /** commit the parsing (public or private?)
-  */
-  private void doParsing() throws IOException, ParserMultiException {
+   * @param lines the lines of the program
+   */
+  private void doParsing(Iterator<String> lines) throws IOException, ParserMultiException {
+    begin();
 
-    boolean isFirstOutOfInstructionMemory = false;
+    while (lines.hasNext()) {  //read all file
+      String line = lines.next();
+      row++;
+      startLine(line);
+      parseLine(line);
+      endLine();
+    }
+
+    end();
+  }
+
+  /** Resets the state carried from a line to the next one */
+  private void begin() {
+    isFirstOutOfInstructionMemory = false;
     isFirstOutOfMemory = true;
-    boolean halt = false;
-    int row = 0;
-    int nline = 0;
+    halt = false;
+    row = 0;
     numError = 0;
     numWarning = 0;
-    int instrCount = -4;    // Hack fituso by Andrea
-    String line;
+    instrCount = -4;    // Hack fituso by Andrea
     error = new ParserMultiException();
     warning = new ParserMultiWarningException();
 
-    LinkedList<VoidJump> voidJump = new LinkedList<VoidJump>();
+    voidJumps = new HashMap<String, VoidJump>();
+    memoryCount = 0;
+    lastLabel = "";
+  }
+
+  /** Reports the labels never defined and adds the terminating instruction
+   *  if missing, then throws the errors and warnings of the program.
+   */
+  private void end() throws ParserMultiException {
+    // Whatever is left in the chains refers to labels never defined.
+    List<VoidJump> unresolved = new ArrayList<VoidJump>();
 
-    Memory mem = Memory.getInstance();
+    for (VoidJump head : voidJumps.values()) {
+      for (VoidJump j = head; j != null; j = j.next) {
+        unresolved.add(j);
+      }
+    }
 
-    memoryCount = 0;
-    String lastLabel = "";
+    Collections.sort(unresolved, new Comparator<VoidJump>() {
+      public int compare(VoidJump a, VoidJump b) {
+        return a.row - b.row;
+      }
+    });
 
-    while ((line = in.readLine()) != null) {  //read all file
-      row++;
+    for (VoidJump j : unresolved) {
+      numError++;
+      error.add("LABELNOTFOUND", j.row, j.column , j.line);
+    }
 
-      for (int i = 0; i < line.length(); i++) {
-        if (line.charAt(i) == ';') {  //comments
-          break;
-        }
+    int warningsAfterLines = warning.getExceptionList().size();
 
-        if (line.charAt(i) == ' ' || line.charAt(i) == '\t') {
-          continue;
-        }
+    if (!halt) { //if Halt is not present in code
+      numWarning++;
+      warning.add("HALT_NOT_PRESENT", row, 0, "");
+      error.addWarning("HALT_NOT_PRESENT", row, 0, "");
 
-        int tab = line.indexOf('\t', i);
-        int space = line.indexOf(' ', i);
+      try {
+        logger.warning("No terminating instruction detected, adding one.");
+        Instruction tmpInst = Instruction.buildInstruction("SYSCALL");
+        tmpInst.getParams().add(0);
+        tmpInst.setFullName("SYSCALL 0");
 
-        if (tab == -1) {
-          tab = line.length();
+        try {
+          tmpInst.pack();
+        } catch (IrregularStringOfBitsException ex) {
+          logger.severe("Irregular string of bits: " + ex.getMessage());
         }
 
-        if (space == -1) {
-          space = line.length();
+        mem.addInstruction(tmpInst, (instrCount + 4));
+        symTab.setInstructionLabel((instrCount + 4), "");
+      } catch (SymbolTableOverflowException ex) {
+        if (isFirstOutOfInstructionMemory) { //is first out of memory?
+          isFirstOutOfInstructionMemory = false;
+          numError++;
+          error.add("OUTOFINSTRUCTIONMEMORY", row, 0, "Halt");
         }
+      } catch (SameLabelsException ex) {
+        logger.severe("Same labels: " + ex);
+      } // impossible
+    }
 
-        int end = Math.min(tab, space) - 1;
+    if (records != null) {
+      lastTailWarnings = new ArrayList<ParserException>(warning.getExceptionList().subList(warningsAfterLines, warning.getExceptionList().size()));
+    }
 
-        String instr = line.substring(i, end + 1);
-        String parameters = null;
+    if (numError > 0) {
+      throw error;
+    } else if (numWarning > 0) {
+      throw warning;
+    }
+  }
 
-        try {
-          if (line.charAt(i) == '.') {
-            logger.info("Processing " + instr);
+  /** Assembles the units of a program in parallel, each one in a memory
+   *  of its own starting from address 0, then links them: the code and the
+   *  data of the units are laid out in the order of the text, and the
+   *  labels used by the instructions get their final addresses.
+   *
+   *  The parser state at the start of a unit is guessed from the section
+   *  directives of the units before it. Whenever the program might not
+   *  come out as if it were parsed as a whole (a wrong guess, a label left
+   *  pending at the end of a unit, any error, a cell label used before its
+   *  definition) nothing is linked, and the caller parses the whole text,
+   *  getting the right errors.
+   * @return false if the program must be parsed as a whole; Memory and the
+   * SymbolTable are empty in that case
+   */
+  private boolean assembleUnits(List<Lexer.Unit> units, ExecutorService pool) throws IOException, ParserMultiException {
+    final boolean recording = records != null;
+    List<Future<Parser>> futures = new ArrayList<Future<Parser>>();
+    int[] startStatus = new int[units.size()];
+    int guess = status;
+    int firstRow = 0;
+
+    for (int k = 0; k < units.size(); ++k) {
+      final List<String> lines = units.get(k).lines;
+      final int unitRow = firstRow;
+      final int unitStatus = guess;
+      startStatus[k] = guess;
+      guess = sectionAfter(lines, guess);
+      firstRow += lines.size();
+      futures.add(pool.submit(new Callable<Parser>() {
+        public Parser call() throws IOException {
+          Memory fragment = new Memory();
+          Parser p = new Parser(fragment, new SymbolTable(fragment));
+          p.assembleUnit(lines, unitRow, unitStatus, recording);
+          return p;
+        }
+      }));
+    }
 
-            if (instr.compareToIgnoreCase(".DATA") == 0) {
-              status = 1;
-            } else if (instr.compareToIgnoreCase(".TEXT") == 0 || instr.compareToIgnoreCase(".CODE") == 0) {
-              status = 2;
-            } else {
-              String name = instr.substring(1);   // The name, without the dot.
+    List<Parser> parsed = new ArrayList<Parser>();
 
-              if (status != 1) {
-                numError++;
-                error.add(name.toUpperCase() + "INCODE", row, i + 1, line);
-                i = line.length();
-                continue;
-              }
+    try {
+      for (Future<Parser> f : futures) {
+        parsed.add(f.get());
+      }
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while assembling the program");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
 
-              try {
-                if (!((instr.compareToIgnoreCase(".ASCII") == 0) || instr.compareToIgnoreCase(".ASCIIZ") == 0)) {
-                  // We don't want strings to be uppercase, do we?
-                  parameters = cleanFormat(line.substring(end + 2));
-                  parameters = parameters.toUpperCase();
-                  parameters = parameters.split(";") [0];
-                  logger.info("parameters: " + parameters);
-                } else {
-                  parameters = line.substring(end + 2);
-                }
+      throw new IOException(e.getCause());
+    }
 
-                parameters = parameters.split(";") [0].trim();
-                logger.info("parameters: " + parameters);
-              } catch (StringIndexOutOfBoundsException e) {
-                numWarning++;
-                warning.add("VALUE_MISS", row, i + 1, line);
-                error.addWarning("VALUE_MISS", row, i + 1, line);
-                memoryCount++;
-                i = line.length();
-                continue;
-              }
+    // Layout of the units, checking that the guesses were right.
+    int[] codeBase = new int[parsed.size()];
+    int[] dataBase = new int[parsed.size()];
+    int code = 0, data = 0, expected = status;
 
-              if (instr == null) {
-                numWarning++;
-                warning.add("VALUE_MISS", row, i + 1, line);
-                error.addWarning("VALUE_MISS", row, i + 1, line);
-                memoryCount++;
-                i = line.length();
-                continue;
-              }
+    for (int k = 0; k < parsed.size(); ++k) {
+      Parser p = parsed.get(k);
 
-              MemoryElement tmpMem = null;
-              tmpMem = mem.getCellByIndex(memoryCount);
-              logger.info("line: " + line);
-              String[] comment = (line.substring(i)).split(";", 2);
+      if (p.numError > 0 || startStatus[k] != expected || (k < parsed.size() - 1 && !p.lastLabel.equals(""))) {
+        logger.info("Unit " + k + " cannot be linked, parsing the whole program");
+        return false;
+      }
 
-              if (Array.getLength(comment) == 2) {
-                logger.info("found comments: " + comment[1]);
-                tmpMem.setComment(comment[1]);
-              }
+      codeBase[k] = code;
+      dataBase[k] = data;
+      code += p.instrCount + 4;
+      data += p.memoryCount;
+      expected = p.status;
+    }
 
-              tmpMem.setCode(comment[0]);
+    // code counts bytes, data counts cells.
+    if (code > CPU.CODELIMIT * 4 || data > CPU.DATALIMIT) {
+      logger.info("Linked program out of memory, parsing the whole program");
+      return false;
+    }
 
-              if (instr.compareToIgnoreCase(".ASCII") == 0 || instr.compareToIgnoreCase(".ASCIIZ") == 0) {
-                logger.info(".ascii(z): parameters = " + parameters);
-                boolean auto_terminate = false;
+    begin();
 
-                if (instr.compareToIgnoreCase(".ASCIIZ") == 0) {
-                  auto_terminate = true;
-                }
+    try {
+      for (int k = 0; k < parsed.size(); ++k) {
+        Parser p = parsed.get(k);
 
-                try {
-                  List<String> pList = splitStringParameters(parameters, auto_terminate);
-
-                  for (String current_string : pList) {
-                    logger.info("Current string: [" + current_string + "]");
-                    logger.info(".ascii(z): requested new memory cell (" + memoryCount + ")");
-                    tmpMem = mem.getCellByIndex(memoryCount);
-                    memoryCount++;
-                    int posInWord = 0;
-                    // TODO: Controllo sui parametri (es. virgolette?)
-                    int num = current_string.length();
-                    boolean escape = false;
-                    boolean placeholder = false;
-                    int escaped = 0;    // to avoid escape sequences to count as two bytes
-
-                    for (int tmpi = 0; tmpi < num; tmpi++) {
-                      if ((tmpi - escaped) % 8 == 0 && (tmpi - escaped) != 0 && !escape) {
-                        logger.info(".ascii(z): requested new memory cell (" + memoryCount + ")");
-                        tmpMem = mem.getCellByIndex(memoryCount);
-                        memoryCount++;
-                        posInWord = 0;
-                      }
+        for (int a = 0; a <= p.instrCount; a += 4) {
+          mem.addInstruction(p.mem.getInstruction(a), codeBase[k] + a);
+        }
 
-                      char c = current_string.charAt(tmpi);
-                      int to_write = (int) c;
-                      logger.info("Char: " + c + " (" + to_write + ") [" + Integer.toHexString(to_write) + "]");
-
-                      if (escape) {
-                        switch (c) {
-                        case '0':
-                          to_write = 0;
-                          break;
-                        case 'n':
-                          to_write = 10;
-                          break;
-                        case 't':
-                          to_write = 9;
-                          break;
-                        case '\\':
-                          to_write = 92;
-                          break;
-                        case '"':
-                          to_write = 34;
-                          break;
-                        default:
-                          throw new StringFormatException();
-                        }
+        for (int c = 0; c < p.memoryCount; ++c) {
+          MemoryElement from = p.mem.getCellByIndex(c);
+          MemoryElement to = mem.getCellByIndex(dataBase[k] + c);
+          to.setBits(from.getValue());
+          to.setCode(from.getCode());
+          to.setComment(from.getComment());
+        }
 
-                        logger.info("(escaped to [" + Integer.toHexString(to_write) + "])");
-                        escape = false;
-                        c = 0;  // to avoid re-entering the escape if branch.
-                      }
+        for (Map.Entry<String, Integer> e : p.symTab.getInstructionLabels().entrySet()) {
+          symTab.setInstructionLabel(codeBase[k] + e.getValue(), e.getKey());
+        }
 
-                      if (placeholder) {
-                        if (c != '%' && c != 's' && c != 'd' && c != 'i') {
-                          logger.info("Invalid placeholder: %" + c);
-                          // Invalid placeholder
-                          throw new StringFormatException();
-                        }
+        for (Map.Entry<String, Integer> e : p.symTab.getCellLabels().entrySet()) {
+          symTab.setCellLabel(dataBase[k] * 8 + e.getValue(), e.getKey());
+        }
+      }
 
-                        placeholder = false;
-                      }
+      for (int k = 0; k < parsed.size(); ++k) {
+        if (!relocate(parsed.get(k), codeBase[k], dataBase[k])) {
+          logger.info("Unit " + k + " uses an undefined label, parsing the whole program");
+          mem.reset();
+          symTab.reset();
+          return false;
+        }
+      }
+    } catch (SymbolTableOverflowException e) {
+      logger.info("Linked program out of memory, parsing the whole program");
+      mem.reset();
+      symTab.reset();
+      return false;
+    } catch (SameLabelsException e) {
+      logger.info("Label defined by more units, parsing the whole program");
+      mem.reset();
+      symTab.reset();
+      return false;
+    } catch (MemoryElementNotFoundException e) {
+      mem.reset();
+      symTab.reset();
+      return false;
+    }
 
-                      if (c == '%' && !placeholder) {
-                        logger.info("Expecting on next step a valid placeholder...");
-                        placeholder = true;
-                      }
+    for (int k = 0; k < parsed.size(); ++k) {
+      Parser p = parsed.get(k);
+      halt |= p.halt;
+      numWarning += p.numWarning;
+      warning.getExceptionList().addAll(p.warning.getExceptionList());
+
+      if (recording) {
+        for (LineRecord r : p.records) {
+          r.memoryCount += dataBase[k];
+          r.memoryCountAfter += dataBase[k];
+          r.instrCount += codeBase[k];
+          r.instrCountAfter += codeBase[k];
+          records.add(r);
+        }
+      }
+    }
 
-                      if (c == '\\') {
-                        escape = true;
-                        escaped++;
-                        continue;
-                      }
+    Parser last = parsed.get(parsed.size() - 1);
+    row = firstRow;
+    instrCount = code - 4;
+    memoryCount = data;
+    status = last.status;
+    lastLabel = last.lastLabel;
+    end();
+    return true;
+  }
 
-                      tmpMem.writeByte(to_write, posInWord++);
-                    }
-                  }
-                } catch (StringFormatException ex) {
-                  logger.info("Badly formed string list");
-                  numError++;
-                  // TODO: more descriptive error message
-                  error.add("INVALIDVALUE", row, 0, line);
-                }
+  /** Assembles a unit of a program, leaving pending the instruction labels
+   *  it does not define.
+   * @param lines the lines of the unit
+   * @param firstRow number of lines of the program before the unit
+   * @param status section at the start of the unit
+   * @param recording whether to keep the records of the lines
+   */
+  private void assembleUnit(List<String> lines, int firstRow, int status, boolean recording) throws IOException {
+    begin();
+    row = firstRow;
+    this.status = status;
+    relocations = new ArrayList<Relocation>();
+    records = recording ? new ArrayList<LineRecord>() : null;
+
+    for (String line : lines) {
+      row++;
+      startLine(line);
+      parseLine(line);
+      endLine();
+    }
+  }
 
-                end = line.length();
-              } else if (instr.compareToIgnoreCase(".SPACE") == 0) {
-                int posInWord = 0; //position of byte to write into a doubleword
-                memoryCount++;
+  /** Gives their final addresses to the labels used by a linked unit.
+   * @param unit the parser of the unit
+   * @param codeBase address of the code of the unit
+   * @param dataBase index of the first cell of the unit
+   * @return false if a label is not defined, or a cell label of another
+   * unit is used before its definition
+   */
+  private boolean relocate(Parser unit, int codeBase, int dataBase) throws MemoryElementNotFoundException {
+    Set<Instruction> changed = new HashSet<Instruction>();
 
-                try {
-                  if (isHexNumber(parameters)) {
-                    parameters = Converter.hexToLong(parameters);
-                  }
+    for (Relocation r : unit.relocations) {
+      int address;
 
-                  if (isNumber(parameters)) {
-                    int num = Integer.parseInt(parameters);
+      if (r.cell) {
+        address = symTab.getCell(r.label).getAddress();
 
-                    for (int tmpi = 0; tmpi < num; tmpi++) {
-                      if (tmpi % 8 == 0 && tmpi != 0) {
-                        tmpMem = mem.getCellByIndex(memoryCount);
-                        memoryCount++;
-                        posInWord = 0;
-                      }
+        if (r.external && address >= dataBase * 8) {
+          return false;
+        }
+      } else {
+        address = symTab.getInstructionAddress(r.label);
+      }
 
-                      tmpMem.writeByte(0, posInWord++);
-                    }
-                  } else {
-                    throw new NumberFormatException();
-                  }
-                } catch (NumberFormatException ex) {
-                  numError++;
-                  error.add("INVALIDVALUE", row, i + 1, line);
-                  continue;
-                } catch (IrregularStringOfHexException ex) {
-                  numError++;
-                  error.add("INVALIDVALUE", row, i + 1, line);
-                  continue;
-                }
+      List<Integer> params = r.instr.getParams();
+      params.set(r.param, params.get(r.param) + r.sign * (address - r.contribution));
+      changed.add(r.instr);
+    }
 
-                posInWord ++;
-                end = line.length();
-              } else if (instr.compareToIgnoreCase(".WORD") == 0 || instr.compareToIgnoreCase(".WORD64") == 0) {
-                logger.info("pamword: " + parameters);
-                writeIntegerInMemory(row, i, end, line, parameters, 64, "WORD");
-                end = line.length();
-              } else if (instr.compareToIgnoreCase(".WORD32") == 0) {
-                writeIntegerInMemory(row, i, end, line, parameters, 32, "WORD32");
-                end = line.length();
-              } else if (instr.compareToIgnoreCase(".BYTE") == 0) {
-                writeIntegerInMemory(row, i, end, line, parameters, 8, "BYTE");
-                end = line.length();
-              } else if (instr.compareToIgnoreCase(".WORD16") == 0) {
-                writeIntegerInMemory(row, i, end, line, parameters, 16 , "WORD16");
-                end = line.length();
-              } else if (instr.compareToIgnoreCase(".DOUBLE") == 0) {
-                writeDoubleInMemory(row, i, end, line, parameters);
-                end = line.length();
-              } else {
-                numError++;
-                error.add("INVALIDCODEFORDATA", row, i + 1, line);
-                i = line.length();
-                continue;
-              }
-            }
-          } else if (line.charAt(end) == ':') {
-            logger.info("Processing a label..");
+    for (VoidJump head : unit.voidJumps.values()) {
+      for (VoidJump j = head; j != null; j = j.next) {
+        Integer address = symTab.getInstructionAddress(j.label);
 
-            if (status == 1) {
-              logger.info("in .data section");
-              MemoryElement tmpMem = null;
-              tmpMem = mem.getCellByIndex(memoryCount);
+        if (address == null) {
+          return false;
+        }
 
-              try {
-                symTab.setCellLabel(memoryCount * 8, line.substring(i, end));
-              } catch (SameLabelsException e) {
-                // TODO: errore del parser
-                logger.info("Label " + line.substring(i, end) + " is already assigned");
-              }
-            } else if (status == 2) {
-              logger.info("in .text section");
-              lastLabel = line.substring(i, end);
-            }
+        j.instr.getParams().add(j.isBranch ? address - (codeBase + j.instrCount + 4) : address);
+        changed.add(j.instr);
+      }
+    }
 
-            logger.info("done");
-          } else {
-            if (status != 2) {
-              numError++;
-              error.add("INVALIDCODEFORDATA", row, i + 1, line);
-              i = line.length();
-              continue;
+    for (Instruction instr : changed) {
+      try {
+        instr.pack();
+      } catch (IrregularStringOfBitsException ex) {
+        logger.severe("Irregular string of bits: " + ex.getMessage());
+      }
+    }
 
-            } else if (status == 2) {
-              boolean doPack = true;
-              end++;
-              Instruction tmpInst;
+    return true;
+  }
 
-              // Check for halt-like instructions
-              String temp = cleanFormat(line.substring(i)).toUpperCase();
+  /** Guesses the section a run of lines leaves the parser in, looking only
+   *  at the section directives.
+   * @param status section at the start of the lines
+   */
+  private static int sectionAfter(List<String> lines, int status) {
+    for (String line : lines) {
+      for (String token : line.split(";") [0].split(" ")) {
+        if (token.endsWith(":")) {
+          continue;
+        }
 
-              if (temp.equals("HALT") || temp.equals("SYSCALL 0") || temp.equals("TRAP 0")) {
-                halt = true;
-              }
+        Lexer.Directive directive = Lexer.Directive.lookup(token);
 
-              //timmy
-              for (int timmy = 0; timmy < Array.getLength(deprecateInstruction); timmy++) {
-                if (deprecateInstruction[timmy].toUpperCase().equals(line.substring(i, end).toUpperCase())) {
-                  warning.add("WINMIPS64_NOT_MIPS64", row, i + 1, line);
-                  error.addWarning("WINMIPS64_NOT_MIPS64", row, i + 1, line);
-                  numWarning ++;
-                }
-              }
+        if (directive == Lexer.Directive.DATA) {
+          status = 1;
+        } else if (directive == Lexer.Directive.TEXT || directive == Lexer.Directive.CODE) {
+          status = 2;
+        }
 
-              tmpInst = Instruction.buildInstruction(line.substring(i, end).toUpperCase());
+        break;
+      }
+    }
 
-              if (tmpInst == null) {
-                numError++;
-                error.add("INVALIDCODE", row, i + 1, line);
-                i = line.length();
-                continue;
-              }
+    return status;
+  }
 
+  /** Starts the record of a line, if recording */
+  private void startLine(String line) {
+    if (records == null) {
+      return;
+    }
 
-              String syntax = tmpInst.getSyntax();
-              instrCount += 4;
+    current = new LineRecord(line);
+    current.status = status;
+    current.memoryCount = memoryCount;
+    current.instrCount = instrCount;
+    current.lastLabel = lastLabel;
+    warningsBefore = warning.getExceptionList().size();
+  }
 
-              if (syntax.compareTo("") != 0 && (line.length() < end + 1)) {
-                numError++;
-                error.add("UNKNOWNSYNTAX", row, end, line);
-                i = line.length();
-                continue;
+  /** Completes the record of the current line, if recording.
+   * @return the record
+   */
+  private LineRecord endLine() {
+    LineRecord r = current;
+
+    if (r != null) {
+      r.statusAfter = status;
+      r.memoryCountAfter = memoryCount;
+      r.instrCountAfter = instrCount;
+      r.lastLabelAfter = lastLabel;
+      List<ParserException> all = warning.getExceptionList();
+      r.warnings.addAll(all.subList(warningsBefore, all.size()));
+      records.add(r);
+      current = null;
+    }
+
+    return r;
+  }
+
+  /** Keeps what is needed to assemble again the program just parsed */
+  private void remember(String file) {
+    lastFile = file;
+    lastRecords = records;
+    snapshot = ProgramSnapshot.capture();
+  }
+
+  /** Warnings of the last program, as the parser would raise them */
+  private ParserMultiWarningException lastWarnings() {
+    ParserMultiWarningException w = new ParserMultiWarningException();
+
+    for (LineRecord r : lastRecords) {
+      w.getExceptionList().addAll(r.warnings);
+    }
+
+    w.getExceptionList().addAll(lastTailWarnings);
+    return w.getExceptionList().isEmpty() ? null : w;
+  }
+
+  /** Loads again the last program parsed, assembling only the lines that
+   *  changed. That is possible only if every changed line leaves the parser
+   *  in the same state as before and defines the same labels: the addresses
+   *  of everything else, and so the rest of the program, stay the same.
+   * @param text the new lines of the program
+   * @return false if the program must be parsed from scratch; Memory and
+   * the SymbolTable are empty in that case
+   */
+  private boolean reassemble(List<String> text) throws IOException {
+    if (text.size() != lastRecords.size()) {
+      return false;
+    }
+
+    List<Integer> changed = new ArrayList<Integer>();
+
+    for (int k = 0; k < text.size(); ++k) {
+      if (!text.get(k).equals(lastRecords.get(k).text)) {
+        changed.add(k);
+      }
+    }
+
+    snapshot.restore();
+
+    if (changed.isEmpty()) {
+      return true;
+    }
+
+    logger.info("Assembling again " + changed.size() + " lines");
+    int instructions = mem.getInstructionsNumber();
+    cellLabelRows = new HashMap<String, Integer>();
+
+    for (int k = 0; k < lastRecords.size(); ++k) {
+      for (String label : lastRecords.get(k).cellLabels) {
+        cellLabelRows.put(label, k + 1);
+      }
+    }
+
+    try {
+      // Take away what the old lines produced.
+      for (int k : changed) {
+        LineRecord old = lastRecords.get(k);
+
+        for (String label : old.instrLabels) {
+          symTab.removeInstructionLabel(label);
+        }
+
+        for (String label : old.cellLabels) {
+          symTab.removeCellLabel(label);
+        }
+
+        mem.zero(old.memoryCount * 8L, (old.memoryCountAfter - old.memoryCount) * 8);
+
+        for (int c = old.memoryCount; c < old.memoryCountAfter; ++c) {
+          mem.getCellByIndex(c).setCode("");
+          mem.getCellByIndex(c).setComment("");
+        }
+      }
+
+      numError = 0;
+      numWarning = 0;
+      error = new ParserMultiException();
+      warning = new ParserMultiWarningException();
+      voidJumps = new HashMap<String, VoidJump>();
+      isFirstOutOfMemory = true;
+      isFirstOutOfInstructionMemory = false;
+      records = new ArrayList<LineRecord>();
+      List<LineRecord> updated = new ArrayList<LineRecord>(lastRecords);
+
+      for (int k : changed) {
+        LineRecord old = lastRecords.get(k);
+        status = old.status;
+        memoryCount = old.memoryCount;
+        instrCount = old.instrCount;
+        lastLabel = old.lastLabel;
+        row = k + 1;
+        startLine(text.get(k));
+        parseLine(text.get(k));
+        LineRecord r = endLine();
+
+        if (numError > 0 || !voidJumps.isEmpty() || !r.sameOutputAs(old)) {
+          logger.info("Line " + row + " changed the layout of the program");
+          mem.reset();
+          symTab.reset();
+          return false;
+        }
+
+        updated.set(k, r);
+      }
+
+      status = lastRecords.get(lastRecords.size() - 1).statusAfter;
+      lastRecords = updated;
+      mem.setInstructionsNumber(instructions);
+      snapshot = ProgramSnapshot.capture();
+      return true;
+    } catch (MemoryElementNotFoundException e) {
+      // The cells of the records come from a successful parse.
+      logger.severe("Inconsistent line records: " + e);
+      mem.reset();
+      symTab.reset();
+      return false;
+    } finally {
+      records = null;
+      cellLabelRows = null;
+    }
+  }
+
+  /** Looks up a memory cell by label. When single lines are assembled
+   *  again the symbol table holds the labels of the whole program, so the
+   *  labels defined after the current row are hidden, as they would be
+   *  while parsing the whole file. When a unit is assembled on its own the
+   *  use of the label is recorded, to be relocated by the linker.
+   * @param label the label
+   * @param instr the instruction whose next parameter uses the label
+   * @param negated whether the address of the label is subtracted
+   */
+  private MemoryElement lookupCell(String label, Instruction instr, boolean negated) throws MemoryElementNotFoundException {
+    if (cellLabelRows != null && label != null) {
+      Integer defined = cellLabelRows.get(label.toLowerCase());
+
+      if (defined != null && defined >= row) {
+        throw new MemoryElementNotFoundException();
+      }
+    }
+
+    if (relocations == null || label == null) {
+      return symTab.getCell(label);
+    }
+
+    // The parameter being parsed is the next one of the instruction; a
+    // label of another unit takes address 0 until the units are linked.
+    MemoryElement cell;
+
+    try {
+      cell = symTab.getCell(label);
+      relocations.add(new Relocation(instr, instr.getParams().size(), label, true, false, negated ? -1 : 1, cell.getAddress()));
+    } catch (MemoryElementNotFoundException e) {
+      cell = mem.getCellByIndex(0);
+      relocations.add(new Relocation(instr, instr.getParams().size(), label, true, true, negated ? -1 : 1, 0));
+    }
+
+    return cell;
+  }
+
+  /** Assembles a single line of code, with the state of the parser left
+   *  by the previous lines.
+   * @param line the line
+   */
+  private void parseLine(String line) throws IOException {
+    for (int i = 0; i < line.length(); i++) {
+      if (line.charAt(i) == ';') {  //comments
+        break;
+      }
+
+      if (line.charAt(i) == ' ' || line.charAt(i) == '\t') {
+        continue;
+      }
+
+      int tab = line.indexOf('\t', i);
+      int space = line.indexOf(' ', i);
+
+      if (tab == -1) {
+        tab = line.length();
+      }
+
+      if (space == -1) {
+        space = line.length();
+      }
+
+      int end = Math.min(tab, space) - 1;
+
+      String instr = line.substring(i, end + 1);
+      String parameters = null;
+
+      try {
+        if (line.charAt(i) == '.') {
+          logger.info("Processing " + instr);
+
+          Lexer.Directive directive = Lexer.Directive.lookup(instr);
+
+          if (directive == Lexer.Directive.DATA) {
+            status = 1;
+          } else if (directive == Lexer.Directive.TEXT || directive == Lexer.Directive.CODE) {
+            status = 2;
+          } else {
+            String name = instr.substring(1);   // The name, without the dot.
+
+            if (status != 1) {
+              numError++;
+              error.add(name.toUpperCase() + "INCODE", row, i + 1, line);
+              i = line.length();
+              continue;
+            }
+
+            try {
+              if (!(directive == Lexer.Directive.ASCII || directive == Lexer.Directive.ASCIIZ)) {
+                // We don't want strings to be uppercase, do we?
+                parameters = cleanFormat(line.substring(end + 2));
+                parameters = parameters.toUpperCase();
+                parameters = parameters.split(";") [0];
+                logger.info("parameters: " + parameters);
+              } else {
+                parameters = line.substring(end + 2);
               }
 
-              if (syntax.compareTo("") != 0) {
-                String param = cleanFormat(line.substring(end + 1));
-                param = param.toUpperCase();
-                param = param.split(";") [0].trim();
-                logger.info("param: " + param);
-                int indPar = 0;
+              parameters = parameters.split(";") [0].trim();
+              logger.info("parameters: " + parameters);
+            } catch (StringIndexOutOfBoundsException e) {
+              numWarning++;
+              warning.add("VALUE_MISS", row, i + 1, line);
+              error.addWarning("VALUE_MISS", row, i + 1, line);
+              memoryCount++;
+              i = line.length();
+              continue;
+            }
+
+            if (instr == null) {
+              numWarning++;
+              warning.add("VALUE_MISS", row, i + 1, line);
+              error.addWarning("VALUE_MISS", row, i + 1, line);
+              memoryCount++;
+              i = line.length();
+              continue;
+            }
+
+            MemoryElement tmpMem = null;
+            tmpMem = mem.getCellByIndex(memoryCount);
+            logger.info("line: " + line);
+            String[] comment = (line.substring(i)).split(";", 2);
 
-                for (int z = 0; z < syntax.length(); z++) {
-                  if (syntax.charAt(z) == '%') {
-                    z++;
+            if (Array.getLength(comment) == 2) {
+              logger.info("found comments: " + comment[1]);
+              tmpMem.setComment(comment[1]);
+            }
 
-                    if (syntax.charAt(z) == 'R') {  //register
-                      int endPar;
+            tmpMem.setCode(comment[0]);
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
+            if (directive == Lexer.Directive.ASCII || directive == Lexer.Directive.ASCIIZ) {
+              logger.info(".ascii(z): parameters = " + parameters);
+              boolean auto_terminate = false;
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
+              if (directive == Lexer.Directive.ASCIIZ) {
+                auto_terminate = true;
+              }
+
+              try {
+                List<String> pList = splitStringParameters(parameters, auto_terminate);
+
+                for (String current_string : pList) {
+                  logger.info("Current string: [" + current_string + "]");
+                  int num = current_string.length();
+                  byte[] bytes = new byte[num];
+                  int length = 0;
+                  boolean escape = false;
+                  boolean placeholder = false;
+
+                  for (int tmpi = 0; tmpi < num; tmpi++) {
+                    char c = current_string.charAt(tmpi);
+                    int to_write = (int) c;
+
+                    if (escape) {
+                      switch (c) {
+                      case '0':
+                        to_write = 0;
+                        break;
+                      case 'n':
+                        to_write = 10;
+                        break;
+                      case 't':
+                        to_write = 9;
+                        break;
+                      case '\\':
+                        to_write = 92;
+                        break;
+                      case '"':
+                        to_write = 34;
+                        break;
+                      default:
+                        throw new StringFormatException();
                       }
 
-                      int reg;
+                      escape = false;
+                      c = 0;  // to avoid re-entering the escape if branch.
+                    }
 
-                      if ((reg = isRegister(param.substring(indPar, endPar).trim())) >= 0) {
-                        tmpInst.getParams().add(reg);
-                        indPar = endPar + 1;
-                      } else {
-                        numError++;
-                        error.add("INVALIDREGISTER", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                        tmpInst.getParams().add(0);
-                        i = line.length();
-                        continue;
+                    if (placeholder) {
+                      if (c != '%' && c != 's' && c != 'd' && c != 'i') {
+                        logger.info("Invalid placeholder: %" + c);
+                        // Invalid placeholder
+                        throw new StringFormatException();
                       }
-                    } else if (syntax.charAt(z) == 'F') {  //floating point register
-                      int endPar;
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
+                      placeholder = false;
+                    }
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
-                      }
+                    if (c == '%' && !placeholder) {
+                      placeholder = true;
+                    }
 
-                      int reg;
+                    if (c == '\\') {
+                      escape = true;
+                      continue;
+                    }
 
-                      if ((reg = isRegisterFP(param.substring(indPar, endPar).trim())) >= 0) {
-                        tmpInst.getParams().add(reg);
-                        indPar = endPar + 1;
-                      } else {
-                        numError++;
-                        error.add("INVALIDREGISTER", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                        tmpInst.getParams().add(0);
-                        i = line.length();
-                        continue;
-                      }
+                    if (to_write > 255) {
+                      throw new IrregularWriteOperationException();
                     }
 
-                    else if (syntax.charAt(z) == 'I') {  //immediate
-                      int endPar;
+                    bytes[length++] = (byte) to_write;
+                  }
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
+                  // Each string starts in a new cell, and takes at least one.
+                  mem.writeBytes(memoryCount * 8, bytes, 0, length);
+                  memoryCount += Math.max(1, (length + 7) / 8);
+                }
+              } catch (StringFormatException ex) {
+                logger.info("Badly formed string list");
+                numError++;
+                // TODO: more descriptive error message
+                error.add("INVALIDVALUE", row, 0, line);
+              }
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
+              end = line.length();
+            } else if (directive == Lexer.Directive.SPACE) {
+              memoryCount++;
+
+              try {
+                if (isHexNumber(parameters)) {
+                  parameters = Converter.hexToLong(parameters);
+                }
+
+                if (isNumber(parameters)) {
+                  int num = Integer.parseInt(parameters);
+                  mem.zero((memoryCount - 1) * 8, num);
+                  memoryCount += Math.max(0, (num - 1) / 8);
+                } else {
+                  throw new NumberFormatException();
+                }
+              } catch (NumberFormatException ex) {
+                numError++;
+                error.add("INVALIDVALUE", row, i + 1, line);
+                continue;
+              } catch (IrregularStringOfHexException ex) {
+                numError++;
+                error.add("INVALIDVALUE", row, i + 1, line);
+                continue;
+              }
+
+              end = line.length();
+            } else if (directive == Lexer.Directive.WORD || directive == Lexer.Directive.WORD64) {
+              logger.info("pamword: " + parameters);
+              writeIntegerInMemory(row, i, end, line, parameters, 64, "WORD");
+              end = line.length();
+            } else if (directive == Lexer.Directive.WORD32) {
+              writeIntegerInMemory(row, i, end, line, parameters, 32, "WORD32");
+              end = line.length();
+            } else if (directive == Lexer.Directive.BYTE) {
+              writeIntegerInMemory(row, i, end, line, parameters, 8, "BYTE");
+              end = line.length();
+            } else if (directive == Lexer.Directive.WORD16) {
+              writeIntegerInMemory(row, i, end, line, parameters, 16 , "WORD16");
+              end = line.length();
+            } else if (directive == Lexer.Directive.DOUBLE) {
+              writeDoubleInMemory(row, i, end, line, parameters);
+              end = line.length();
+            } else {
+              numError++;
+              error.add("INVALIDCODEFORDATA", row, i + 1, line);
+              i = line.length();
+              continue;
+            }
+          }
+        } else if (line.charAt(end) == ':') {
+          logger.info("Processing a label..");
+
+          if (status == 1) {
+            logger.info("in .data section");
+            MemoryElement tmpMem = null;
+            tmpMem = mem.getCellByIndex(memoryCount);
+
+            try {
+              symTab.setCellLabel(memoryCount * 8, line.substring(i, end));
+
+              if (current != null) {
+                current.cellLabels.add(line.substring(i, end).toLowerCase());
+              }
+            } catch (SameLabelsException e) {
+              // TODO: errore del parser
+              logger.info("Label " + line.substring(i, end) + " is already assigned");
+            }
+          } else if (status == 2) {
+            logger.info("in .text section");
+            lastLabel = line.substring(i, end);
+          }
+
+          logger.info("done");
+        } else {
+          if (status != 2) {
+            numError++;
+            error.add("INVALIDCODEFORDATA", row, i + 1, line);
+            i = line.length();
+            continue;
+
+          } else if (status == 2) {
+            boolean doPack = true;
+            end++;
+            Instruction tmpInst;
+
+            // Check for halt-like instructions
+            String temp = cleanFormat(line.substring(i)).toUpperCase();
+
+            if (temp.equals("HALT") || temp.equals("SYSCALL 0") || temp.equals("TRAP 0")) {
+              halt = true;
+
+              if (current != null) {
+                current.halt = true;
+              }
+            }
+
+            String mnemonic = line.substring(i, end).toUpperCase();
+
+            if (deprecateInstruction.contains(mnemonic)) {
+              warning.add("WINMIPS64_NOT_MIPS64", row, i + 1, line);
+              error.addWarning("WINMIPS64_NOT_MIPS64", row, i + 1, line);
+              numWarning ++;
+            }
+
+            tmpInst = Instruction.buildInstruction(mnemonic);
+
+            if (tmpInst == null) {
+              numError++;
+              error.add("INVALIDCODE", row, i + 1, line);
+              i = line.length();
+              continue;
+            }
+
+
+            String syntax = tmpInst.getSyntax();
+            instrCount += 4;
+
+            if (syntax.compareTo("") != 0 && (line.length() < end + 1)) {
+              numError++;
+              error.add("UNKNOWNSYNTAX", row, end, line);
+              i = line.length();
+              continue;
+            }
+
+            if (syntax.compareTo("") != 0) {
+              String param = cleanFormat(line.substring(end + 1));
+              param = param.toUpperCase();
+              param = param.split(";") [0].trim();
+              logger.info("param: " + param);
+              int indPar = 0;
+
+              for (int z = 0; z < syntax.length(); z++) {
+                if (syntax.charAt(z) == '%') {
+                  z++;
+
+                  if (syntax.charAt(z) == 'R') {  //register
+                    int endPar;
+
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
+
+                    if (endPar == -1) {
+                      numError++;
+                      error.add("SEPARATORMISS", row, indPar, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
+
+                    int reg;
+
+                    if ((reg = isRegister(param.substring(indPar, endPar).trim())) >= 0) {
+                      tmpInst.getParams().add(reg);
+                      indPar = endPar + 1;
+                    } else {
+                      numError++;
+                      error.add("INVALIDREGISTER", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                      tmpInst.getParams().add(0);
+                      i = line.length();
+                      continue;
+                    }
+                  } else if (syntax.charAt(z) == 'F') {  //floating point register
+                    int endPar;
+
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
+
+                    if (endPar == -1) {
+                      numError++;
+                      error.add("SEPARATORMISS", row, indPar, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
+
+                    int reg;
+
+                    if ((reg = isRegisterFP(param.substring(indPar, endPar).trim())) >= 0) {
+                      tmpInst.getParams().add(reg);
+                      indPar = endPar + 1;
+                    } else {
+                      numError++;
+                      error.add("INVALIDREGISTER", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                      tmpInst.getParams().add(0);
+                      i = line.length();
+                      continue;
+                    }
+                  }
+
+                  else if (syntax.charAt(z) == 'I') {  //immediate
+                    int endPar;
+
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
+
+                    if (endPar == -1) {
+                      numError++;
+                      error.add("SEPARATORMISS", row, indPar, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
+
+                    int imm;
+
+                    if (isImmediate(param.substring(indPar, endPar))) {
+                      if (param.charAt(indPar) == '#') {
+                        indPar++;
                       }
 
-                      int imm;
+                      if (isNumber(param.substring(indPar, endPar))) {
+                        try {
+                          imm = Integer.parseInt(param.substring(indPar, endPar));
 
-                      if (isImmediate(param.substring(indPar, endPar))) {
-                        if (param.charAt(indPar) == '#') {
-                          indPar++;
+                          if (imm < -32768 || imm > 32767) {
+                            throw new NumberFormatException();
+                          }
+                        } catch (NumberFormatException ex) {
+                          imm = 0;
+                          numError++;
+                          error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
                         }
 
-                        if (isNumber(param.substring(indPar, endPar))) {
+                        tmpInst.getParams().add(imm);
+                        indPar = endPar + 1;
+                      } else if (isHexNumber(param.substring(indPar, endPar))) {
+                        try {
                           try {
-                            imm = Integer.parseInt(param.substring(indPar, endPar));
+                            imm = (int) Long.parseLong(Converter.hexToShort(param.substring(indPar, endPar)));
+                            logger.info("imm = " + imm);
 
                             if (imm < -32768 || imm > 32767) {
                               throw new NumberFormatException();
@@ -671,11 +1312,23 @@ public class Parser {
 
                           tmpInst.getParams().add(imm);
                           indPar = endPar + 1;
-                        } else if (isHexNumber(param.substring(indPar, endPar))) {
-                          try {
+                        } catch (IrregularStringOfHexException ex) {
+                          //non ci dovrebbe mai arrivare
+                        }
+                      }
+
+                    } else {
+                      try {
+                        int offset = 0, cc;
+                        MemoryElement tmpMem;
+                        cc = param.indexOf("+", indPar);
+
+                        if (cc != -1) {
+                          tmpMem = lookupCell(param.substring(indPar, cc).trim(), tmpInst, false);
+
+                          if (isNumber(param.substring(cc + 1, endPar))) {
                             try {
-                              imm = (int) Long.parseLong(Converter.hexToShort(param.substring(indPar, endPar)));
-                              logger.info("imm = " + imm);
+                              imm = Integer.parseInt(param.substring(indPar, endPar));
 
                               if (imm < -32768 || imm > 32767) {
                                 throw new NumberFormatException();
@@ -686,21 +1339,38 @@ public class Parser {
                               error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
                             }
 
-                            tmpInst.getParams().add(imm);
+                            tmpInst.getParams().add(tmpMem.getAddress() + imm);
                             indPar = endPar + 1;
-                          } catch (IrregularStringOfHexException ex) {
-                            //non ci dovrebbe mai arrivare
+                          } else if (isHexNumber(param.substring(cc + 1, endPar))) {
+                            try {
+                              try {
+                                imm = (int) Long.parseLong(Converter.hexToLong(param.substring(indPar, endPar)));
+
+                                if (imm < -32768 || imm > 32767) {
+                                  throw new NumberFormatException();
+                                }
+                              } catch (NumberFormatException ex) {
+                                imm = 0;
+                                numError++;
+                                error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                              }
+
+                              tmpInst.getParams().add(tmpMem.getAddress() + imm);
+                              indPar = endPar + 1;
+                            } catch (IrregularStringOfHexException ex) {
+                              logger.severe("Irregular string of bits: " + ex.getMessage());
+                            }
+                          } else {
+                            MemoryElement tmpMem1 = lookupCell(param.substring(cc + 1, endPar).trim(), tmpInst, false);
+                            tmpInst.getParams().add(tmpMem.getAddress() + tmpMem1.getAddress());
                           }
-                        }
 
-                      } else {
-                        try {
-                          int offset = 0, cc;
-                          MemoryElement tmpMem;
-                          cc = param.indexOf("+", indPar);
+                        } else {
+
+                          cc = param.indexOf("-", indPar);
 
                           if (cc != -1) {
-                            tmpMem = symTab.getCell(param.substring(indPar, cc).trim());
+                            tmpMem = lookupCell(param.substring(indPar, cc).trim(), tmpInst, false);
 
                             if (isNumber(param.substring(cc + 1, endPar))) {
                               try {
@@ -715,7 +1385,7 @@ public class Parser {
                                 error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
                               }
 
-                              tmpInst.getParams().add(tmpMem.getAddress() + imm);
+                              tmpInst.getParams().add(tmpMem.getAddress() - imm);
                               indPar = endPar + 1;
                             } else if (isHexNumber(param.substring(cc + 1, endPar))) {
                               try {
@@ -731,520 +1401,450 @@ public class Parser {
                                   error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
                                 }
 
-                                tmpInst.getParams().add(tmpMem.getAddress() + imm);
+                                tmpInst.getParams().add(tmpMem.getAddress() - imm);
                                 indPar = endPar + 1;
                               } catch (IrregularStringOfHexException ex) {
-                                logger.severe("Irregular string of bits: " + ex.getMessage());
+                                //non ci dovrebbe mai arrivare
                               }
                             } else {
-                              MemoryElement tmpMem1 = symTab.getCell(param.substring(cc + 1, endPar).trim());
-                              tmpInst.getParams().add(tmpMem.getAddress() + tmpMem1.getAddress());
+                              MemoryElement tmpMem1 = lookupCell(param.substring(cc + 1, endPar).trim(), tmpInst, true);
+                              tmpInst.getParams().add(tmpMem.getAddress() - tmpMem1.getAddress());
                             }
-
                           } else {
-
-                            cc = param.indexOf("-", indPar);
-
-                            if (cc != -1) {
-                              tmpMem = symTab.getCell(param.substring(indPar, cc).trim());
-
-                              if (isNumber(param.substring(cc + 1, endPar))) {
-                                try {
-                                  imm = Integer.parseInt(param.substring(indPar, endPar));
-
-                                  if (imm < -32768 || imm > 32767) {
-                                    throw new NumberFormatException();
-                                  }
-                                } catch (NumberFormatException ex) {
-                                  imm = 0;
-                                  numError++;
-                                  error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                                }
-
-                                tmpInst.getParams().add(tmpMem.getAddress() - imm);
-                                indPar = endPar + 1;
-                              } else if (isHexNumber(param.substring(cc + 1, endPar))) {
-                                try {
-                                  try {
-                                    imm = (int) Long.parseLong(Converter.hexToLong(param.substring(indPar, endPar)));
-
-                                    if (imm < -32768 || imm > 32767) {
-                                      throw new NumberFormatException();
-                                    }
-                                  } catch (NumberFormatException ex) {
-                                    imm = 0;
-                                    numError++;
-                                    error.add("IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                                  }
-
-                                  tmpInst.getParams().add(tmpMem.getAddress() - imm);
-                                  indPar = endPar + 1;
-                                } catch (IrregularStringOfHexException ex) {
-                                  //non ci dovrebbe mai arrivare
-                                }
-                              } else {
-                                MemoryElement tmpMem1 = symTab.getCell(param.substring(cc + 1, endPar).trim());
-                                tmpInst.getParams().add(tmpMem.getAddress() - tmpMem1.getAddress());
-                              }
-                            } else {
-                              tmpMem = symTab.getCell(param.substring(indPar, endPar).trim());
-                              tmpInst.getParams().add(tmpMem.getAddress());
-                            }
+                            tmpMem = lookupCell(param.substring(indPar, endPar).trim(), tmpInst, false);
+                            tmpInst.getParams().add(tmpMem.getAddress());
                           }
-                        } catch (MemoryElementNotFoundException ex) {
-                          numError++;
-                          error.add("INVALIDIMMEDIATE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                          i = line.length();
-                          tmpInst.getParams().add(0);
-                          continue;
                         }
-                      }
-                    } else if (syntax.charAt(z) == 'U') {  //Unsigned Immediate (5 bit)
-                      int endPar;
-
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
-
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
-                      }
-
-                      int imm;
-
-                      if (isImmediate(param.substring(indPar, endPar))) {
-                        if (param.charAt(indPar) == '#') {
-                          indPar++;
-                        }
-
-                        if (isNumber(param.substring(indPar, endPar))) {
-                          try {
-                            imm = Integer.parseInt(param.substring(indPar, endPar).trim());
-
-                            if (imm < 0) {
-                              numError++;
-                              error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                              i = line.length();
-                              tmpInst.getParams().add(0);
-                              continue;
-                            }
-
-                            if (imm < 0 || imm > 31) {
-                              throw new NumberFormatException();
-                            }
-                          } catch (NumberFormatException ex) {
-                            imm = 0;
-                            numError++;
-                            error.add("5BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                          }
-
-                          tmpInst.getParams().add(imm);
-                          indPar = endPar + 1;
-                        } else if (isHexNumber(param.substring(indPar, endPar).trim())) {
-                          try {
-                            imm = (int) Long.parseLong(Converter.hexToLong(param.substring(indPar, endPar)));
-
-                            if (imm < 0) {
-                              numError++;
-                              error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                              i = line.length();
-                              tmpInst.getParams().add(0);
-                              continue;
-                            }
-
-                            tmpInst.getParams().add(imm);
-                            indPar = endPar + 1;
-
-                            if (imm < 0 || imm > 31) {
-                              throw new NumberFormatException();
-                            }
-                          } catch (NumberFormatException ex) {
-                            imm = 0;
-                            numError++;
-                            error.add("5BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-
-                            tmpInst.getParams().add(imm);
-                            indPar = endPar + 1;
-
-                          } catch (IrregularStringOfHexException ex) {
-                            //non ci dovrebbe mai arrivare
-                          }
-                        }
-
-                      } else {
+                      } catch (MemoryElementNotFoundException ex) {
                         numError++;
                         error.add("INVALIDIMMEDIATE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
                         i = line.length();
                         tmpInst.getParams().add(0);
                         continue;
                       }
-                    } else if (syntax.charAt(z) == 'C') {  //Unsigned Immediate (3 bit)
-                      int endPar;
+                    }
+                  } else if (syntax.charAt(z) == 'U') {  //Unsigned Immediate (5 bit)
+                    int endPar;
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
+                    if (endPar == -1) {
+                      numError++;
+                      error.add("SEPARATORMISS", row, indPar, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
+
+                    int imm;
+
+                    if (isImmediate(param.substring(indPar, endPar))) {
+                      if (param.charAt(indPar) == '#') {
+                        indPar++;
                       }
 
-                      int imm;
+                      if (isNumber(param.substring(indPar, endPar))) {
+                        try {
+                          imm = Integer.parseInt(param.substring(indPar, endPar).trim());
 
-                      if (isImmediate(param.substring(indPar, endPar))) {
-                        if (param.charAt(indPar) == '#') {
-                          indPar++;
-                        }
+                          if (imm < 0) {
+                            numError++;
+                            error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                            i = line.length();
+                            tmpInst.getParams().add(0);
+                            continue;
+                          }
 
-                        if (isNumber(param.substring(indPar, endPar))) {
-                          try {
-                            imm = Integer.parseInt(param.substring(indPar, endPar).trim());
+                          if (imm < 0 || imm > 31) {
+                            throw new NumberFormatException();
+                          }
+                        } catch (NumberFormatException ex) {
+                          imm = 0;
+                          numError++;
+                          error.add("5BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                        }
 
-                            if (imm < 0) {
-                              numError++;
-                              error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                              i = line.length();
-                              tmpInst.getParams().add(0);
-                              continue;
-                            }
+                        tmpInst.getParams().add(imm);
+                        indPar = endPar + 1;
+                      } else if (isHexNumber(param.substring(indPar, endPar).trim())) {
+                        try {
+                          imm = (int) Long.parseLong(Converter.hexToLong(param.substring(indPar, endPar)));
 
-                            if (imm < 0 || imm > 7) {
-                              throw new NumberFormatException();
-                            }
-                          } catch (NumberFormatException ex) {
-                            imm = 0;
+                          if (imm < 0) {
                             numError++;
-                            error.add("3BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                            error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                            i = line.length();
+                            tmpInst.getParams().add(0);
+                            continue;
                           }
 
                           tmpInst.getParams().add(imm);
                           indPar = endPar + 1;
-                        } else if (isHexNumber(param.substring(indPar, endPar).trim())) {
-                          try {
-                            imm = (int) Long.parseLong(Converter.hexToLong(param.substring(indPar, endPar)));
-
-                            if (imm < 0) {
-                              numError++;
-                              error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                              i = line.length();
-                              tmpInst.getParams().add(0);
-                              continue;
-                            }
-
-                            tmpInst.getParams().add(imm);
-                            indPar = endPar + 1;
 
-                            if (imm < 0 || imm > 31) {
-                              throw new NumberFormatException();
-                            }
-                          } catch (NumberFormatException ex) {
-                            imm = 0;
-                            numError++;
-                            error.add("3BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                          if (imm < 0 || imm > 31) {
+                            throw new NumberFormatException();
+                          }
+                        } catch (NumberFormatException ex) {
+                          imm = 0;
+                          numError++;
+                          error.add("5BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
 
-                            tmpInst.getParams().add(imm);
-                            indPar = endPar + 1;
+                          tmpInst.getParams().add(imm);
+                          indPar = endPar + 1;
 
-                          } catch (IrregularStringOfHexException ex) {
-                            //non ci dovrebbe mai arrivare
-                          }
+                        } catch (IrregularStringOfHexException ex) {
+                          //non ci dovrebbe mai arrivare
                         }
-
-                      } else {
-                        numError++;
-                        error.add("INVALIDIMMEDIATE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
                       }
+
+                    } else {
+                      numError++;
+                      error.add("INVALIDIMMEDIATE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
                     }
+                  } else if (syntax.charAt(z) == 'C') {  //Unsigned Immediate (3 bit)
+                    int endPar;
 
-                    else if (syntax.charAt(z) == 'L') {  //Memory Label
-                      int endPar;
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
+                    if (endPar == -1) {
+                      numError++;
+                      error.add("SEPARATORMISS", row, indPar, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
-                      }
+                    int imm;
 
-                      try {
-                        MemoryElement tmpMem;
+                    if (isImmediate(param.substring(indPar, endPar))) {
+                      if (param.charAt(indPar) == '#') {
+                        indPar++;
+                      }
 
-                        if (param.substring(indPar, endPar).equals("")) {
-                          tmpInst.getParams().add(0);
-                        } else if (isNumber(param.substring(indPar, endPar).trim())) {
-                          int tmp = Integer.parseInt(param.substring(indPar, endPar).trim());
+                      if (isNumber(param.substring(indPar, endPar))) {
+                        try {
+                          imm = Integer.parseInt(param.substring(indPar, endPar).trim());
 
-                          //if (tmp<0 || tmp%2!=0 || tmp > org.edumips64.core.CPU.DATALIMIT)
-                          if (tmp < 0 || tmp > org.edumips64.core.CPU.DATALIMIT) {
+                          if (imm < 0) {
                             numError++;
-                            String er = "LABELADDRESSINVALID";
+                            error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                            i = line.length();
+                            tmpInst.getParams().add(0);
+                            continue;
+                          }
 
-                            if (tmp > org.edumips64.core.CPU.DATALIMIT) {
-                              er = "LABELTOOLARGE";
-                            }
+                          if (imm < 0 || imm > 7) {
+                            throw new NumberFormatException();
+                          }
+                        } catch (NumberFormatException ex) {
+                          imm = 0;
+                          numError++;
+                          error.add("3BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                        }
 
-                            error.add(er, row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                        tmpInst.getParams().add(imm);
+                        indPar = endPar + 1;
+                      } else if (isHexNumber(param.substring(indPar, endPar).trim())) {
+                        try {
+                          imm = (int) Long.parseLong(Converter.hexToLong(param.substring(indPar, endPar)));
+
+                          if (imm < 0) {
+                            numError++;
+                            error.add("VALUEISNOTUNSIGNED", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
                             i = line.length();
-                            indPar = endPar + 1;
                             tmpInst.getParams().add(0);
                             continue;
                           }
 
-                          tmpInst.getParams().add(tmp);
-                        } else {
-                          tmpMem = symTab.getCell(param.substring(indPar, endPar).trim());
-                          tmpInst.getParams().add(tmpMem.getAddress());
+                          tmpInst.getParams().add(imm);
+                          indPar = endPar + 1;
 
-                        }
+                          if (imm < 0 || imm > 31) {
+                            throw new NumberFormatException();
+                          }
+                        } catch (NumberFormatException ex) {
+                          imm = 0;
+                          numError++;
+                          error.add("3BIT_IMMEDIATE_TOO_LARGE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
 
-                        indPar = endPar + 1;
-                      } catch (MemoryElementNotFoundException e) {
-                        numError++;
-                        error.add("LABELNOTFOUND", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
-                        i = line.length();
-                        indPar = endPar + 1;
-                        tmpInst.getParams().add(0);
-                        continue;
-                      }
-                    } else if (syntax.charAt(z) == 'E') {  //Instruction Label
-                      int endPar;
+                          tmpInst.getParams().add(imm);
+                          indPar = endPar + 1;
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
+                        } catch (IrregularStringOfHexException ex) {
+                          //non ci dovrebbe mai arrivare
+                        }
                       }
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
-                        tmpInst.getParams().add(0);
-                        continue;
-                      }
+                    } else {
+                      numError++;
+                      error.add("INVALIDIMMEDIATE", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
+                  }
 
-                      Integer labelAddr = symTab.getInstructionAddress(param.substring(indPar, endPar).trim());
+                  else if (syntax.charAt(z) == 'L') {  //Memory Label
+                    int endPar;
 
-                      if (labelAddr != null) {
-                        tmpInst.getParams().add(labelAddr);
-                      } else {
-                        VoidJump tmpVoid = new VoidJump();
-                        tmpVoid.instr = tmpInst;
-                        tmpVoid.row = row;
-                        tmpVoid.line = line;
-                        tmpVoid.column = indPar;
-                        tmpVoid.label = param.substring(indPar, endPar);
-                        voidJump.add(tmpVoid);
-                        doPack = false;
-                      }
-                    } else if (syntax.charAt(z) == 'B') {  //Instruction Label for branch
-                      int endPar;
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
 
-                      if (z != syntax.length() - 1) {
-                        endPar = param.indexOf(syntax.charAt(++z), indPar);
-                      } else {
-                        endPar = param.length();
-                      }
+                    if (endPar == -1) {
+                      numError++;
+                      error.add("SEPARATORMISS", row, indPar, line);
+                      i = line.length();
+                      tmpInst.getParams().add(0);
+                      continue;
+                    }
 
-                      if (endPar == -1) {
-                        numError++;
-                        error.add("SEPARATORMISS", row, indPar, line);
-                        i = line.length();
+                    try {
+                      MemoryElement tmpMem;
+
+                      if (param.substring(indPar, endPar).equals("")) {
                         tmpInst.getParams().add(0);
-                        continue;
-                      }
+                      } else if (isNumber(param.substring(indPar, endPar).trim())) {
+                        int tmp = Integer.parseInt(param.substring(indPar, endPar).trim());
 
-                      Integer labelAddr = symTab.getInstructionAddress(param.substring(indPar, endPar).trim());
+                        //if (tmp<0 || tmp%2!=0 || tmp > org.edumips64.core.CPU.DATALIMIT)
+                        if (tmp < 0 || tmp > org.edumips64.core.CPU.DATALIMIT) {
+                          numError++;
+                          String er = "LABELADDRESSINVALID";
+
+                          if (tmp > org.edumips64.core.CPU.DATALIMIT) {
+                            er = "LABELTOOLARGE";
+                          }
+
+                          error.add(er, row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                          i = line.length();
+                          indPar = endPar + 1;
+                          tmpInst.getParams().add(0);
+                          continue;
+                        }
 
-                      if (labelAddr != null) {
-                        labelAddr -= instrCount + 4;
-                        tmpInst.getParams().add(labelAddr);
+                        tmpInst.getParams().add(tmp);
                       } else {
-                        VoidJump tmpVoid = new VoidJump();
-                        tmpVoid.instr = tmpInst;
-                        tmpVoid.row = row;
-                        tmpVoid.line = line;
-                        tmpVoid.column = indPar;
-                        tmpVoid.label = param.substring(indPar, endPar);
-                        tmpVoid.instrCount = instrCount;
-                        tmpVoid.isBranch = true;
-                        voidJump.add(tmpVoid);
-                        doPack = false;
+                        tmpMem = lookupCell(param.substring(indPar, endPar).trim(), tmpInst, false);
+                        tmpInst.getParams().add(tmpMem.getAddress());
+
                       }
+
+                      indPar = endPar + 1;
+                    } catch (MemoryElementNotFoundException e) {
+                      numError++;
+                      error.add("LABELNOTFOUND", row, line.indexOf(param.substring(indPar, endPar)) + 1, line);
+                      i = line.length();
+                      indPar = endPar + 1;
+                      tmpInst.getParams().add(0);
+                      continue;
                     }
+                  } else if (syntax.charAt(z) == 'E') {  //Instruction Label
+                    int endPar;
 
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
 
-                    else {
+                    if (endPar == -1) {
                       numError++;
-                      error.add("UNKNOWNSYNTAX", row, 1, line);
+                      error.add("SEPARATORMISS", row, indPar, line);
                       i = line.length();
                       tmpInst.getParams().add(0);
                       continue;
                     }
-                  } else {
-                    if (syntax.charAt(z) != param.charAt(indPar++)) {
+
+                    Integer labelAddr = symTab.getInstructionAddress(param.substring(indPar, endPar).trim());
+
+                    if (labelAddr != null) {
+                      if (relocations != null) {
+                        relocations.add(new Relocation(tmpInst, tmpInst.getParams().size(), param.substring(indPar, endPar).trim(), false, false, 1, labelAddr));
+                      }
+
+                      tmpInst.getParams().add(labelAddr);
+                    } else {
+                      VoidJump tmpVoid = new VoidJump();
+                      tmpVoid.instr = tmpInst;
+                      tmpVoid.row = row;
+                      tmpVoid.line = line;
+                      tmpVoid.column = indPar;
+                      tmpVoid.label = param.substring(indPar, endPar).trim();
+                      addVoidJump(tmpVoid);
+                      doPack = false;
+                    }
+                  } else if (syntax.charAt(z) == 'B') {  //Instruction Label for branch
+                    int endPar;
+
+                    if (z != syntax.length() - 1) {
+                      endPar = param.indexOf(syntax.charAt(++z), indPar);
+                    } else {
+                      endPar = param.length();
+                    }
+
+                    if (endPar == -1) {
                       numError++;
-                      error.add("UNKNOWNSYNTAX", row, 1, line);
+                      error.add("SEPARATORMISS", row, indPar, line);
                       i = line.length();
                       tmpInst.getParams().add(0);
                       continue;
                     }
+
+                    Integer labelAddr = symTab.getInstructionAddress(param.substring(indPar, endPar).trim());
+
+                    if (labelAddr != null) {
+                      labelAddr -= instrCount + 4;
+                      tmpInst.getParams().add(labelAddr);
+                    } else {
+                      VoidJump tmpVoid = new VoidJump();
+                      tmpVoid.instr = tmpInst;
+                      tmpVoid.row = row;
+                      tmpVoid.line = line;
+                      tmpVoid.column = indPar;
+                      tmpVoid.label = param.substring(indPar, endPar).trim();
+                      tmpVoid.instrCount = instrCount;
+                      tmpVoid.isBranch = true;
+                      addVoidJump(tmpVoid);
+                      doPack = false;
+                    }
                   }
-                }
 
-                if (i == line.length()) {
-                  continue;
-                }
 
-                try {
-                  if (doPack) {
-                    tmpInst.pack();
+                  else {
+                    numError++;
+                    error.add("UNKNOWNSYNTAX", row, 1, line);
+                    i = line.length();
+                    tmpInst.getParams().add(0);
+                    continue;
+                  }
+                } else {
+                  if (syntax.charAt(z) != param.charAt(indPar++)) {
+                    numError++;
+                    error.add("UNKNOWNSYNTAX", row, 1, line);
+                    i = line.length();
+                    tmpInst.getParams().add(0);
+                    continue;
                   }
-                } catch (IrregularStringOfBitsException ex) {
-                  logger.severe("Irregular string of bits: " + ex.getMessage());
                 }
-              } else {
-                try {
+              }
+
+              if (i == line.length()) {
+                continue;
+              }
+
+              try {
+                if (doPack) {
                   tmpInst.pack();
-                } catch (IrregularStringOfBitsException e) {
                 }
+              } catch (IrregularStringOfBitsException ex) {
+                logger.severe("Irregular string of bits: " + ex.getMessage());
+              }
+            } else {
+              try {
+                tmpInst.pack();
+              } catch (IrregularStringOfBitsException e) {
               }
+            }
 
-              logger.info("line: " + line);
-              String comment[] = line.split(";", 2);
-              tmpInst.setFullName(replaceTab(comment[0].substring(i)));
-              tmpInst.setFullName(replaceTab(comment[0].substring(i)));
-              tmpInst.setFullName(replaceTab(comment[0].substring(i)));
-              tmpInst.setFullName(replaceTab(comment[0].substring(i)));
+            logger.info("line: " + line);
+            String comment[] = line.split(";", 2);
+            tmpInst.setFullName(replaceTab(comment[0].substring(i)));
+            tmpInst.setFullName(replaceTab(comment[0].substring(i)));
+            tmpInst.setFullName(replaceTab(comment[0].substring(i)));
+            tmpInst.setFullName(replaceTab(comment[0].substring(i)));
 
-              if (Array.getLength(comment) == 2)
-                if (Array.getLength(comment) == 2) {
-                  tmpInst.setComment(comment[1]);
-                }
+            if (Array.getLength(comment) == 2)
+              if (Array.getLength(comment) == 2) {
+                tmpInst.setComment(comment[1]);
+              }
 
-              try {
-                mem.addInstruction(tmpInst, instrCount);
-                symTab.setInstructionLabel(instrCount, lastLabel.toUpperCase());
-              } catch (SymbolTableOverflowException ex) {
-                if (isFirstOutOfInstructionMemory) { //is first out of memory?
-                  isFirstOutOfInstructionMemory = false;
-                  numError++;
-                  error.add("OUTOFINSTRUCTIONMEMORY", row, i + 1, line);
-                  i = line.length();
-                  continue;
-                }
-              } catch (SameLabelsException ex) {
+            try {
+              mem.addInstruction(tmpInst, instrCount);
+              symTab.setInstructionLabel(instrCount, lastLabel.toUpperCase());
+              resolveVoidJumps(lastLabel.toUpperCase(), instrCount);
+
+              if (current != null && !lastLabel.equals("")) {
+                current.instrLabels.add(lastLabel.toUpperCase());
+              }
+            } catch (SymbolTableOverflowException ex) {
+              if (isFirstOutOfInstructionMemory) { //is first out of memory?
+                isFirstOutOfInstructionMemory = false;
                 numError++;
-                error.add("SAMELABEL", row, 1, line);
+                error.add("OUTOFINSTRUCTIONMEMORY", row, i + 1, line);
                 i = line.length();
+                continue;
               }
-              // Il finally e' totalmente inutile, ma Ãš bello utilizzarlo per la
-              // prima volta in un programma ;)
-              finally {
-                lastLabel = "";
-              }
-
-              end = line.length();
+            } catch (SameLabelsException ex) {
+              numError++;
+              error.add("SAMELABEL", row, 1, line);
+              i = line.length();
+            }
+            // Il finally e' totalmente inutile, ma Ãš bello utilizzarlo per la
+            // prima volta in un programma ;)
+            finally {
+              lastLabel = "";
             }
-          }
 
-          i = end;
-        } catch (MemoryElementNotFoundException ex) {
-          if (isFirstOutOfMemory) { //is first out of memory?
-            isFirstOutOfMemory = false;
-            numError++;
-            error.add("OUTOFMEMORY", row, i + 1, line);
-            i = line.length();
-            continue;
+            end = line.length();
           }
-        } catch (IrregularWriteOperationException ex) {
-          numError++;
-          error.add("INVALIDVALUE", row, i + 1, line);
-          break;
-        }
-      }
-    }
-
-    for (int i = 0; i < voidJump.size(); i++) {
-      Integer labelAddr = symTab.getInstructionAddress(voidJump.get(i).label.trim());
-
-      if (labelAddr != null) {
-        if (voidJump.get(i).isBranch) {
-          labelAddr -= voidJump.get(i).instrCount + 4;
         }
 
-        voidJump.get(i).instr.getParams().add(labelAddr);
-
-        try {
-          voidJump.get(i).instr.pack();
-        } catch (IrregularStringOfBitsException ex) {
-          logger.severe("Irregular string of bits: " + ex.getMessage());
+        i = end;
+      } catch (MemoryElementNotFoundException ex) {
+        if (isFirstOutOfMemory) { //is first out of memory?
+          isFirstOutOfMemory = false;
+          numError++;
+          error.add("OUTOFMEMORY", row, i + 1, line);
+          i = line.length();
+          continue;
         }
-      } else {
+      } catch (IrregularWriteOperationException ex) {
         numError++;
-        error.add("LABELNOTFOUND", voidJump.get(i).row, voidJump.get(i).column , voidJump.get(i).line);
-        continue;
+        error.add("INVALIDVALUE", row, i + 1, line);
+        break;
       }
     }
+  }
 
-    in.close();
-
-    if (!halt) { //if Halt is not present in code
-      numWarning++;
-      warning.add("HALT_NOT_PRESENT", row, 0, "");
-      error.addWarning("HALT_NOT_PRESENT", row, 0, "");
+  /** Appends a forward reference to the fixup chain of its label */
+  private void addVoidJump(VoidJump jump) {
+    jump.next = voidJumps.get(jump.label);
+    voidJumps.put(jump.label, jump);
+  }
 
-      try {
-        logger.warning("No terminating instruction detected, adding one.");
-        Instruction tmpInst = Instruction.buildInstruction("SYSCALL");
-        tmpInst.getParams().add(0);
-        tmpInst.setFullName("SYSCALL 0");
+  /** Completes and packs every instruction waiting for the given label.
+   * @param label the label just defined
+   * @param address the address of the labelled instruction
+   */
+  private void resolveVoidJumps(String label, int address) {
+    VoidJump j = label.equals("") ? null : voidJumps.remove(label);
 
-        try {
-          tmpInst.pack();
-        } catch (IrregularStringOfBitsException ex) {
-          logger.severe("Irregular string of bits: " + ex.getMessage());
-        }
+    for (; j != null; j = j.next) {
+      if (relocations != null && !j.isBranch) {
+        relocations.add(new Relocation(j.instr, j.instr.getParams().size(), label, false, false, 1, address));
+      }
 
-        mem.addInstruction(tmpInst, (instrCount + 4));
-        symTab.setInstructionLabel((instrCount + 4), "");
-      } catch (SymbolTableOverflowException ex) {
-        if (isFirstOutOfInstructionMemory) { //is first out of memory?
-          isFirstOutOfInstructionMemory = false;
-          numError++;
-          error.add("OUTOFINSTRUCTIONMEMORY", row, 0, "Halt");
-        }
-      } catch (SameLabelsException ex) {
-        logger.severe("Same labels: " + ex);
-      } // impossible
-    }
+      j.instr.getParams().add(j.isBranch ? address - (j.instrCount + 4) : address);
 
-    if (numError > 0) {
-      throw error;
-    } else if (numWarning > 0) {
-      throw warning;
+      try {
+        j.instr.pack();
+      } catch (IrregularStringOfBitsException ex) {
+        logger.severe("Irregular string of bits: " + ex.getMessage());
+      }
     }
   }
 
@@ -1253,25 +1853,7 @@ public class Parser {
    *  @return the cleaned String
    */
   public String cleanFormat(String s) {
-    if (s.length() > 0 && s.charAt(0) != ';' &&  s.charAt(0) != '\n') {
-      //String[] nocomment=s.split(";");
-      //s=nocomment[0];//.toUpperCase();
-      s = s.trim();
-      s = s.replace("\t", " ");
-
-      while (s.contains("  ")) {
-        s = s.replace("  ", " ");
-      }
-
-      s = s.replace(", ", ",");
-      s = s.replace(" ,", ",");
-
-      if (s.length() > 0) {
-        return s;
-      }
-    }
-
-    return null;
+    return Lexer.clean(s);
   }
 
   /** Check if is a valid string for a register
@@ -1333,13 +1915,8 @@ public class Parser {
   register
    */
   private int isAlias(String reg) {
-    for (AliasRegister x : AliasRegister.values()) {
-      if (reg.equalsIgnoreCase(x.name())) {
-        return x.ordinal();
-      }
-    }
-
-    return -1;
+    Integer num = aliases.get(reg.toLowerCase());
+    return num != null ? num : -1;
   }
 
   /** Check if a string is a number
@@ -1433,19 +2010,13 @@ public class Parser {
    *  @param instr params
    */
   private void writeDoubleInMemory(int row,  int i, int end, String line, String instr) throws MemoryElementNotFoundException {
-    Memory mem = Memory.getInstance();
     String value[] = instr.split(",");
     MemoryElement tmpMem = null;
 
     for (int j = 0; j < Array.getLength(value); j++) {
       tmpMem = mem.getCellByIndex(memoryCount);
       memoryCount++;
-      Pattern p = Pattern.compile("-?[0-9]+.[0-9]+");
-      Matcher m = p.matcher(value[j]);
-      boolean b = m.matches();
-      p = Pattern.compile("-?[0-9]+.[0-9]+E-?[0-9]+");
-      m = p.matcher(value[j]);
-      b = b || m.matches();
+      boolean b = Lexer.DOUBLE.matcher(value[j]).matches() || Lexer.DOUBLE_EXP.matcher(value[j]).matches();
 
       //checking for floating point special values
       value[j] = value[j].trim();
@@ -1525,15 +2096,21 @@ public class Parser {
    *  @param name type of data
    */
   private void writeIntegerInMemory(int row,  int i, int end, String line, String instr, int numBit, String name) throws MemoryElementNotFoundException {
-    Memory mem = Memory.getInstance();
     int posInWord = 0; //position of byte to write into a doubleword
     String value[] = instr.split(",");
     MemoryElement tmpMem = null;
+    // Doublewords take a cell each, and are copied in memory in one block.
+    long[] doubleWords = numBit == 64 ? new long[value.length] : null;
+    int firstCell = memoryCount;
 
     for (int j = 0; j < Array.getLength(value); j++) {
       if (j % (64 / numBit) == 0) {
         posInWord = 0;
-        tmpMem = mem.getCellByIndex(memoryCount);
+
+        if (doubleWords == null) {
+          tmpMem = mem.getCellByIndex(memoryCount);
+        }
+
         memoryCount++;
       }
 
@@ -1548,7 +2125,7 @@ public class Parser {
           } else if (numBit == 32) {
             tmpMem.writeWord(num, posInWord);
           } else if (numBit == 64) {
-            tmpMem.writeDoubleWord(num);
+            doubleWords[j] = num;
           }
 
           if ((num < - (Converter.powLong(2, numBit - 1)) || num > (Converter.powLong(2, numBit) - 1)) &&  numBit != 64) {
@@ -1583,7 +2160,7 @@ public class Parser {
               throw new NumberFormatException();
             }
 
-            tmpMem.writeDoubleWord(num);
+            doubleWords[j] = num;
           }
 
           if ((num < - (Converter.powLong(2, numBit - 1)) || num > (Converter.powLong(2, numBit) - 1)) &&  numBit != 64) {
@@ -1607,6 +2184,10 @@ public class Parser {
 
       posInWord += numBit / 8;
     }
+
+    if (doubleWords != null) {
+      mem.writeDoubleWords(firstCell * 8, doubleWords, 0, doubleWords.length);
+    }
   }
 
   private List<String> splitStringParameters(String params, boolean auto_terminate) throws StringFormatException {
@@ -34,7 +34,7 @@ import org.edumips64.utils.*;
 public class ParserException {
 
   private int row, column;
-  private String line, description;
+  private String line, description, code;
   private boolean isError;
 
   /** Create a new instance of ParserException
@@ -47,10 +47,28 @@ public class ParserException {
     this.row = row;
     this.column = column;
     this.line = line;
+    this.code = description;
     this.description = CurrentLocale.getString(description);
 
   }
 
+  /** Returns the untranslated key of the description */
+  public String getCode() {
+    return code;
+  }
+
+  public int getRow() {
+    return row;
+  }
+
+  public int getColumn() {
+    return column;
+  }
+
+  public String getLine() {
+    return line;
+  }
+
   public void setError(boolean iserror) {
     isError = iserror;
   }
@@ -0,0 +1,312 @@
+/* PipelineTraceWriter.java
+ *
+ * Streaming writer of the pipeline trace in the Konata format.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import org.edumips64.core.fpu.FPPipeline;
+import org.edumips64.core.is.Instruction;
+
+import java.io.*;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/** Writes the life of every instruction in the pipeline as a Konata log
+ *  (version 0004), readable by Konata and by other pipeline viewers.
+ *
+ *  The pipeline is sampled at the end of each cycle, and only the changes
+ *  are written: an instruction starts when it first shows up, moves from
+ *  stage to stage (IF, ID, EX, A1-A4, M1-M7, DIV, MEM, WB) on lane 0, and
+ *  retires after WB or is flushed if it leaves the pipeline earlier. The
+ *  stalls that hold it back are drawn on lane 1. Only the instructions in
+ *  flight are kept, so the memory used does not grow with the run.
+ *
+ *  Instructions are matched across cycles by the object found in each
+ *  stage: an instruction never moves backwards, so in a short loop the
+ *  same static instruction can be in flight more than once.
+ */
+public class PipelineTraceWriter implements Closeable {
+  /** Stages of lane 0, as found at the end of a cycle */
+  private static final String[] STAGES = {"IF", "ID", "EX", "A1", "A2", "A3", "A4", "M1", "M2", "M3", "M4", "M5", "M6", "M7", "DIV", "MEM", "WB"};
+  /** Progress of an instruction in each stage */
+  private static final int[] RANKS = {0, 1, 2, 2, 3, 4, 5, 2, 3, 4, 5, 6, 7, 8, 2, 9, 10};
+  private static final int IF = 0, ID = 1, EX = 2, A1 = 3, M1 = 7, DIV = 14, MEM = 15, WB = 16;
+  /** Stages from the most to the least advanced */
+  private static final int[] ORDER = {WB, MEM, 13, 12, 11, 6, 10, 5, 9, 4, 8, A1, M1, DIV, EX, ID, IF};
+  private static final CPU.PipeStatus[] PIPE = {CPU.PipeStatus.IF, CPU.PipeStatus.ID, CPU.PipeStatus.EX};
+
+  /** Names of the stalls on lane 1, by Statistics.Stall ordinal */
+  private static final String[] STALLS = {"RAW", "WAW", "StDiv", "StFun", "StEx", "StMem", "Cache"};
+  /** Stalls that hold back the instruction in ID */
+  private static final Statistics.Stall[] ID_STALLS = {Statistics.Stall.RAW, Statistics.Stall.WAW, Statistics.Stall.DIVIDER,
+                                                        Statistics.Stall.FUNC_UNIT, Statistics.Stall.EX
+                                                       };
+
+  /** A dynamic instruction in flight */
+  private static class Record {
+    long id;
+    Instruction instruction;
+    int stage;
+    /** Stall drawn on lane 1, -1 if none */
+    int stall;
+    boolean seen;
+    Record next;
+  }
+
+  private Writer out;
+  /** Records by stage in the last sampled cycle, and in the current one */
+  private Record[] current, sampled;
+  private Instruction[] found;
+  /** Records ready to be reused */
+  private Record spare;
+  private long lastCycle, ids, retired;
+
+  public PipelineTraceWriter(OutputStream stream) throws IOException {
+    out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 64 * 1024);
+    out.write("Kanata\t0004\n");
+    current = new Record[STAGES.length];
+    sampled = new Record[STAGES.length];
+    found = new Instruction[STAGES.length];
+    lastCycle = -1;
+  }
+
+  /** Opens a trace file, compressed with gzip if its name ends in ".gz" */
+  public PipelineTraceWriter(String filename) throws IOException {
+    this(filename.endsWith(".gz") ? new GZIPOutputStream(new FileOutputStream(filename), 64 * 1024) : new FileOutputStream(filename));
+  }
+
+  /** Records the state of the pipeline at the end of a cycle. If some
+   *  cycles were not sampled, the instructions in flight before them are
+   *  flushed.
+   * @param cycle number of the cycle
+   * @param pipe the integer pipeline
+   * @param fpPipe the FP functional units
+   * @param stallMask stalls of the cycle, as bits of Statistics.Stall ordinals
+   */
+  void sample(long cycle, Map<CPU.PipeStatus, Instruction> pipe, FPPipeline fpPipe, int stallMask) throws IOException {
+    if (lastCycle < 0) {
+      out.write("C=\t" + cycle + "\n");
+    } else {
+      if (cycle > lastCycle + 1) {
+        advance(lastCycle + 1);
+        flushAll();
+      }
+
+      advance(cycle);
+    }
+
+    for (int s = 0; s < PIPE.length; ++s) {
+      found[s] = pipe.get(PIPE[s]);
+    }
+
+    found[MEM] = pipe.get(CPU.PipeStatus.MEM);
+    found[WB] = pipe.get(CPU.PipeStatus.WB);
+
+    for (int s = A1; s <= DIV; ++s) {
+      found[s] = null;
+    }
+
+    if (!fpPipe.isEmpty()) {
+      for (int i = 0; i < 4; ++i) {
+        found[A1 + i] = fpPipe.getInstructionByFuncUnit("ADDER", i + 1);
+      }
+
+      for (int i = 0; i < 7; ++i) {
+        found[M1 + i] = fpPipe.getInstructionByFuncUnit("MULTIPLIER", i + 1);
+      }
+
+      found[DIV] = fpPipe.getInstructionByFuncUnit("DIVIDER", 0);
+    }
+
+    for (int s : ORDER) {
+      Instruction i = found[s];
+
+      if (i == null || i.isBubble()) {
+        continue;
+      }
+
+      Record r = null;
+
+      for (Record c : current) {
+        if (c != null && !c.seen && c.instruction == i && RANKS[c.stage] <= RANKS[s] && (r == null || RANKS[c.stage] > RANKS[r.stage])) {
+          r = c;
+        }
+      }
+
+      if (r == null) {
+        r = start(i, s);
+      } else if (r.stage != s) {
+        write('E', r.id, 0, STAGES[r.stage]);
+        write('S', r.id, 0, STAGES[s]);
+      }
+
+      r.seen = true;
+      r.stage = s;
+      sampled[s] = r;
+    }
+
+    for (int s = 0; s < STAGES.length; ++s) {
+      Record r = current[s];
+
+      if (r != null && !r.seen) {
+        end(r, r.stage == WB);
+      }
+
+      current[s] = null;
+    }
+
+    Record[] t = current;
+    current = sampled;
+    sampled = t;
+
+    for (int s = 0; s < STAGES.length; ++s) {
+      Record r = current[s];
+
+      if (r != null) {
+        r.seen = false;
+        stall(r, stallOf(s, stallMask));
+      }
+    }
+
+    lastCycle = cycle;
+  }
+
+  /** Stall that holds back the instruction of a stage, -1 if none */
+  private static int stallOf(int stage, int stallMask) {
+    if ((stallMask & (1 << Statistics.Stall.CACHE.ordinal())) != 0) {
+      return Statistics.Stall.CACHE.ordinal();
+    }
+
+    if (stage == ID) {
+      for (Statistics.Stall k : ID_STALLS) {
+        if ((stallMask & (1 << k.ordinal())) != 0) {
+          return k.ordinal();
+        }
+      }
+    } else if (stage == EX && (stallMask & (1 << Statistics.Stall.MEMORY.ordinal())) != 0) {
+      return Statistics.Stall.MEMORY.ordinal();
+    }
+
+    return -1;
+  }
+
+  private Record start(Instruction i, int stage) throws IOException {
+    Record r = spare;
+
+    if (r == null) {
+      r = new Record();
+    } else {
+      spare = r.next;
+    }
+
+    r.id = ids++;
+    r.instruction = i;
+    r.stall = -1;
+    out.write("I\t" + r.id + "\t" + r.id + "\t0\n");
+    write('L', r.id, 0, String.format("%08X: %s", i.getAddress(), i.getFullName().trim()));
+    write('S', r.id, 0, STAGES[stage]);
+    return r;
+  }
+
+  private void stall(Record r, int kind) throws IOException {
+    if (r.stall == kind) {
+      return;
+    }
+
+    if (r.stall >= 0) {
+      write('E', r.id, 1, STALLS[r.stall]);
+    }
+
+    if (kind >= 0) {
+      write('S', r.id, 1, STALLS[kind]);
+    }
+
+    r.stall = kind;
+  }
+
+  /** Ends a record in the current cycle, retiring or flushing it */
+  private void end(Record r, boolean retire) throws IOException {
+    stall(r, -1);
+    write('E', r.id, 0, STAGES[r.stage]);
+    out.write("R\t" + r.id + "\t" + (retire ? retired++ : 0) + "\t" + (retire ? 0 : 1) + "\n");
+    r.instruction = null;
+    r.next = spare;
+    spare = r;
+  }
+
+  /** Flushes every instruction in flight in the current cycle */
+  private void flushAll() throws IOException {
+    for (int s = 0; s < STAGES.length; ++s) {
+      if (current[s] != null) {
+        end(current[s], false);
+        current[s] = null;
+      }
+    }
+  }
+
+  private void advance(long cycle) throws IOException {
+    out.write("C\t" + (cycle - lastCycle) + "\n");
+    lastCycle = cycle;
+  }
+
+  private void write(char command, long id, int lane, String text) throws IOException {
+    out.write(command);
+    out.write('\t');
+    out.write(Long.toString(id));
+    out.write('\t');
+    out.write(Integer.toString(lane));
+    out.write('\t');
+    out.write(text);
+    out.write('\n');
+  }
+
+  /** Number of instructions written so far */
+  public long getInstructions() {
+    return ids;
+  }
+
+  /** Number of instructions that retired so far */
+  public long getRetired() {
+    return retired;
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Flushes the instructions still in flight one cycle after the last
+   *  sample, and closes the file */
+  public void close() throws IOException {
+    try {
+      for (Record r : current) {
+        if (r != null) {
+          advance(lastCycle + 1);
+          flushAll();
+          break;
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,356 @@
+/* Profiler.java
+ *
+ * Cycle-attribution profiler of the simulated program.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import org.edumips64.core.fpu.FPPipeline;
+import org.edumips64.core.is.Instruction;
+
+import java.io.*;
+import java.util.*;
+
+/** Hotspot profiler of the simulated program.
+ *
+ *  At the end of every cycle it counts, for each instruction slot of code
+ *  memory, the cycles spent by the instruction in each stage of the
+ *  pipeline (the FP functional units included). Together with the cycles
+ *  and the stalls that Statistics charges to every slot, these counts make
+ *  the profile, which can be aggregated by label region (the instructions
+ *  from a label up to the next one) and written as an annotated listing
+ *  or as folded stacks for flame graph tools.
+ *
+ *  Sampling costs a few lookups per cycle, so the profiler is always on.
+ */
+public class Profiler {
+  /** Places an instruction can be found in at the end of a cycle */
+  public enum Stage {IF, ID, EX, MEM, WB, FP_ADDER, FP_MULTIPLIER, FP_DIVIDER}
+
+  /** Name of the region of the instructions before the first label */
+  public static final String NO_LABEL = "[no label]";
+
+  private static final Stage[] STAGES = Stage.values();
+  private static final CPU.PipeStatus[] PIPE = CPU.PipeStatus.values();
+  private static final Statistics.Stall[] STALLS = Statistics.Stall.values();
+
+  /** Metrics of a label region */
+  public static class Region {
+    public final String label;
+    /** Address of the first instruction of the region */
+    public final int address;
+    public long cycles, executions;
+    private final long[] stages, stalls;
+
+    Region(String label, int address) {
+      this.label = label;
+      this.address = address;
+      stages = new long[STAGES.length];
+      stalls = new long[STALLS.length];
+    }
+
+    public long getStageCycles(Stage stage) {
+      return stages[stage.ordinal()];
+    }
+
+    public long getStalls(Statistics.Stall kind) {
+      return stalls[kind.ordinal()];
+    }
+  }
+
+  private Statistics stats;
+  /** Cycles by stage and slot */
+  private long[][] stageCycles;
+  /** Slots sampled since the last reset */
+  private BitSet recorded;
+
+  Profiler(Statistics stats) {
+    this.stats = stats;
+    stageCycles = new long[STAGES.length][CPU.CODELIMIT];
+    recorded = new BitSet(CPU.CODELIMIT);
+  }
+
+  /** Clears the stage counts of the slots sampled since the last reset */
+  public void reset() {
+    for (int i = recorded.nextSetBit(0); i >= 0; i = recorded.nextSetBit(i + 1)) {
+      for (long[] s : stageCycles) {
+        s[i] = 0;
+      }
+    }
+
+    recorded.clear();
+  }
+
+  /** Counts the instructions found in the pipeline at the end of a cycle */
+  void sample(Map<CPU.PipeStatus, Instruction> pipe, FPPipeline fpPipe) {
+    for (int s = 0; s < PIPE.length; ++s) {
+      count(s, pipe.get(PIPE[s]));
+    }
+
+    if (!fpPipe.isEmpty()) {
+      for (int i = 1; i <= 4; ++i) {
+        count(Stage.FP_ADDER.ordinal(), fpPipe.getInstructionByFuncUnit("ADDER", i));
+      }
+
+      for (int i = 1; i <= 7; ++i) {
+        count(Stage.FP_MULTIPLIER.ordinal(), fpPipe.getInstructionByFuncUnit("MULTIPLIER", i));
+      }
+
+      count(Stage.FP_DIVIDER.ordinal(), fpPipe.getInstructionByFuncUnit("DIVIDER", 0));
+    }
+  }
+
+  private void count(int stage, Instruction i) {
+    int slot = Statistics.slotOf(i);
+
+    if (slot >= 0) {
+      stageCycles[stage][slot]++;
+      recorded.set(slot);
+    }
+  }
+
+  /** Cycles spent in the given stage by the instruction at an address */
+  public long getStageCycles(Stage stage, int address) {
+    return stageCycles[stage.ordinal()][address / 4];
+  }
+
+  /** Share of the cycles of the run charged to the instruction at an
+   *  address, between 0 and 1 */
+  public double getShare(int address) {
+    long cycles = stats.getCycles();
+    return cycles == 0 ? 0 : (double) stats.getCycles(address) / cycles;
+  }
+
+  /** Aggregates the profile by label region.
+   * @return the regions with any cycle or execution, by address
+   */
+  public List<Region> getRegions() {
+    List<Region> regions = new ArrayList<Region>();
+    SymbolTable symTab = SymbolTable.getInstance();
+    int size = Memory.getInstance().getCodeSize();
+    Region r = null;
+
+    for (int i = 0; i < size; ++i) {
+      String label = regionOf(symTab, i * 4);
+
+      if (r == null || !r.label.equals(label)) {
+        if (r != null && (r.cycles > 0 || r.executions > 0)) {
+          regions.add(r);
+        }
+
+        r = new Region(label, i * 4);
+      }
+
+      r.cycles += stats.getCycles(i * 4);
+      r.executions += stats.getExecutions(i * 4);
+
+      for (int s = 0; s < STAGES.length; ++s) {
+        r.stages[s] += stageCycles[s][i];
+      }
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        r.stalls[k] += stats.getStalls(STALLS[k], i * 4);
+      }
+    }
+
+    if (r != null && (r.cycles > 0 || r.executions > 0)) {
+      regions.add(r);
+    }
+
+    return regions;
+  }
+
+  private static String regionOf(SymbolTable symTab, int address) {
+    SymbolTable.Symbol symbol = symTab.getCodeSymbol(address);
+    return symbol == null ? NO_LABEL : symbol.label;
+  }
+
+  /** Formats the hottest regions as text.
+   * @param limit maximum number of regions, 0 for all of them
+   */
+  public String toReport(int limit) {
+    List<Region> regions = getRegions();
+    Collections.sort(regions, new Comparator<Region>() {
+      public int compare(Region a, Region b) {
+        return Long.compare(b.cycles, a.cycles);
+      }
+    });
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-20s %-8s %10s %7s %10s %10s%n", "Region", "Address", "Cycles", "Share", "Execs", "Stalls"));
+    int rows = 0;
+
+    for (Region r : regions) {
+      if (limit > 0 && rows++ == limit) {
+        break;
+      }
+
+      long stalls = 0;
+
+      for (long s : r.stalls) {
+        stalls += s;
+      }
+
+      sb.append(String.format("%-20s %08X %10d %6.2f%% %10d %10d%n", r.label, r.address, r.cycles, percent(r.cycles), r.executions, stalls));
+    }
+
+    sb.append(String.format("%-20s %-8s %10d %6.2f%%%n", "[unattributed]", "", stats.getUnattributedCycles(), percent(stats.getUnattributedCycles())));
+    return sb.toString();
+  }
+
+  /** Writes the program listing annotated with the profile: the cycles
+   *  charged to every instruction with their share of the run, its
+   *  executions, the cycles spent in each stage and the stall cycles of
+   *  each class. Columns of FP units and stall classes that never
+   *  occurred are left out, and every region starts with its totals.
+   */
+  public void writeListing(Writer w) throws IOException {
+    PrintWriter out = new PrintWriter(w);
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+    int size = mem.getCodeSize();
+    List<Stage> stages = new ArrayList<Stage>();
+    List<Statistics.Stall> stalls = new ArrayList<Statistics.Stall>();
+
+    for (Stage s : STAGES) {
+      if (s.ordinal() < PIPE.length || total(stageCycles[s.ordinal()], size) > 0) {
+        stages.add(s);
+      }
+    }
+
+    for (Statistics.Stall k : STALLS) {
+      if (stats.getStalls(k) > 0) {
+        stalls.add(k);
+      }
+    }
+
+    out.printf("; %d cycles, %d instructions, CPI %.3f, %d cycles not charged to any instruction%n", stats.getCycles(),
+               stats.getInstructions(), stats.getCPI(), stats.getUnattributedCycles());
+    out.print(";\n;  Cycles   Share    Execs");
+
+    for (Stage s : stages) {
+      out.printf(" %8s", s.name().replace("FP_", ""));
+    }
+
+    for (Statistics.Stall k : stalls) {
+      out.printf(" %8s", k.name());
+    }
+
+    out.println("  Address  Code");
+    Map<Integer, Region> regions = new HashMap<Integer, Region>();
+
+    for (Region r : getRegions()) {
+      regions.put(r.address, r);
+    }
+
+    String current = null;
+
+    for (int i = 0; i < size; ++i) {
+      int address = i * 4;
+      String region = regionOf(symTab, address);
+
+      if (!region.equals(current)) {
+        current = region;
+        Region r = regions.get(address);
+        out.println(";");
+        out.printf("; %s: %d cycles (%.2f%%), %d executions%n", region, r == null ? 0 : r.cycles, percent(r == null ? 0 : r.cycles),
+                   r == null ? 0 : r.executions);
+      }
+
+      Instruction instr = mem.getInstruction(address);
+
+      if (instr.isBubble()) {
+        continue;
+      }
+
+      long cycles = stats.getCycles(address);
+      out.printf("%9d %6.2f%% %8d", cycles, percent(cycles), stats.getExecutions(address));
+
+      for (Stage s : stages) {
+        out.printf(" %8d", stageCycles[s.ordinal()][i]);
+      }
+
+      for (Statistics.Stall k : stalls) {
+        out.printf(" %8d", stats.getStalls(k, address));
+      }
+
+      String label = instr.getLabel();
+      out.printf("  %08X  %s%s", address, label == null || label.length() == 0 ? "" : label + ": ", instr.getFullName().trim());
+
+      if (instr.getComment() != null && instr.getComment().length() > 0) {
+        out.print(" ;" + instr.getComment());
+      }
+
+      out.println();
+    }
+
+    out.flush();
+
+    if (out.checkError()) {
+      throw new IOException("Error writing the profile listing");
+    }
+  }
+
+  /** Writes the cycles charged to every instruction as folded stacks
+   *  (region;address instruction count), one line per instruction, plus
+   *  a line for the cycles not charged to any instruction, so that the
+   *  counts add up to the cycles of the run.
+   */
+  public void writeFolded(Writer w) throws IOException {
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+    int size = mem.getCodeSize();
+
+    for (int i = 0; i < size; ++i) {
+      long cycles = stats.getCycles(i * 4);
+
+      if (cycles > 0) {
+        w.write(frame(regionOf(symTab, i * 4)) + ";" + String.format("%08X ", i * 4) + frame(mem.getInstruction(i * 4).getFullName().trim()) + " " + cycles + "\n");
+      }
+    }
+
+    if (stats.getUnattributedCycles() > 0) {
+      w.write("[unattributed] " + stats.getUnattributedCycles() + "\n");
+    }
+
+    w.flush();
+  }
+
+  /** Frame names can't hold the separators of the folded format */
+  private static String frame(String s) {
+    return s.replace(';', ':').replace('\n', ' ');
+  }
+
+  private static long total(long[] counts, int size) {
+    long total = 0;
+
+    for (int i = 0; i < size; ++i) {
+      total += counts[i];
+    }
+
+    return total;
+  }
+
+  private double percent(long cycles) {
+    return stats.getCycles() == 0 ? 0 : 100.0 * cycles / stats.getCycles();
+  }
+}
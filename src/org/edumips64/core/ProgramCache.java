@@ -0,0 +1,574 @@
+/* ProgramCache.java
+ *
+ * Persistent cache of assembled programs.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+import org.edumips64.utils.ConfigManager;
+import org.edumips64.utils.ConfigStore;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/** Cache of assembled program images, so that a program run many times is
+ *  parsed only once.
+ *
+ *  Images are keyed by the SHA-1 of the lines the Lexer produces for the
+ *  program, that is of the program and of all the files it includes,
+ *  transitively. An image is only written for programs that parsed without
+ *  errors; the warnings are stored with it and thrown again on load.
+ *
+ *  File format (big endian), one section after the other:
+ *  <pre>
+ *  header       "EMPC", version, CODELIMIT, DATALIMIT
+ *  code         count, then address, mnemonic, parameters, encoding
+ *  data         count, then cell index and contents of the non-zero cells
+ *  symbols      instruction labels and cell labels, with their addresses
+ *  annotations  full name, label and comment of each instruction, then
+ *               index, label, code and comment of the annotated cells
+ *  warnings     count, then key, row, column and line of each warning
+ *  </pre>
+ *  The annotations are only needed by the user interface, but they are
+ *  kept in their own section so that the others stay compact.
+ */
+public class ProgramCache {
+  private static final Logger logger = Logger.getLogger(ProgramCache.class.getName());
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  static final byte[] MAGIC = {'E', 'M', 'P', 'C'};
+  static final int VERSION = 2;
+
+  private final File dir;
+
+  public ProgramCache(File dir) {
+    this.dir = dir;
+  }
+
+  /** Returns the cache configured by the user, or null if it is disabled */
+  public static ProgramCache fromConfig() {
+    ConfigStore config = ConfigManager.getConfig();
+
+    if (!config.getBoolean("programCache")) {
+      return null;
+    }
+
+    return new ProgramCache(new File(config.getString("programCacheDir")));
+  }
+
+  /** Computes the key of a program.
+   * @param lines the lines of the program, as read by the Lexer
+   * @return the key, as hexadecimal digits
+   */
+  public static String key(List<String> lines) throws IOException {
+    MessageDigest digest;
+
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+
+    digest.update(MAGIC);
+    digest.update((byte) VERSION);
+
+    for (String line : lines) {
+      digest.update(line.getBytes(UTF8));
+      digest.update((byte) '\n');
+    }
+
+    StringBuilder sb = new StringBuilder();
+
+    for (byte b : digest.digest()) {
+      sb.append(String.format("%02x", b));
+    }
+
+    return sb.toString();
+  }
+
+  /** Whether there is an image for the given key */
+  public boolean contains(String key) {
+    return file(key).isFile();
+  }
+
+  private File file(String key) {
+    return new File(dir, key + ".emp");
+  }
+
+  /** Loads a cached image in Memory and in the SymbolTable, that are
+   *  expected to be empty.
+   * @param key key of the program
+   * @return false if there is no valid image for the key
+   * @throws ParserMultiWarningException after loading, if the program had
+   * warnings
+   */
+  public boolean load(String key) throws ParserMultiWarningException {
+    File f = file(key);
+
+    if (!f.isFile()) {
+      return false;
+    }
+
+    Image image;
+
+    try {
+      RandomAccessFile raf = new RandomAccessFile(f, "r");
+
+      try {
+        FileChannel channel = raf.getChannel();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        image = Image.read(buffer);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      logger.warning("Could not read cached program " + f + ": " + e);
+      return false;
+    } catch (BufferUnderflowException e) {
+      logger.warning("Corrupted cached program " + f);
+      return false;
+    }
+
+    if (image == null) {
+      logger.warning("Invalid cached program " + f);
+      return false;
+    }
+
+    try {
+      image.install();
+    } catch (Exception e) {
+      // The image was valid when it was written, so this should never happen.
+      logger.warning("Could not install cached program " + f + ": " + e);
+      Memory.getInstance().reset();
+      SymbolTable.getInstance().reset();
+      return false;
+    }
+
+    logger.info("Loaded cached program " + f);
+
+    if (!image.warnings.isEmpty()) {
+      ParserMultiWarningException warning = new ParserMultiWarningException();
+
+      for (ParserException w : image.warnings) {
+        warning.add(w.getCode(), w.getRow(), w.getColumn(), w.getLine());
+      }
+
+      throw warning;
+    }
+
+    return true;
+  }
+
+  /** Stores the program currently in Memory and in the SymbolTable.
+   *  Failures are logged and otherwise ignored.
+   * @param key key of the program
+   * @param warnings warnings raised by the parser, or null
+   */
+  public void store(String key, ParserMultiWarningException warnings) {
+    File f = file(key);
+    File tmp = null;
+
+    try {
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("cannot create " + dir);
+      }
+
+      // Written aside and renamed, so that readers never see half an image.
+      tmp = File.createTempFile(key, ".tmp", dir);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+
+      try {
+        Image.capture(warnings).write(out);
+      } finally {
+        out.close();
+      }
+
+      if (!tmp.renameTo(f)) {
+        f.delete();
+
+        if (!tmp.renameTo(f)) {
+          throw new IOException("cannot rename " + tmp + " to " + f);
+        }
+      }
+
+      logger.info("Stored cached program " + f);
+    } catch (Exception e) {
+      logger.warning("Could not store cached program " + f + ": " + e);
+
+      if (tmp != null) {
+        tmp.delete();
+      }
+    }
+  }
+
+  /** Contents of an image, decoded completely before being installed */
+  private static class Image {
+    int[] addresses, encodings;
+    String[] names, fullNames, instrLabels, instrComments;
+    int[][] params;
+    int[] cells;
+    long[] values;
+    String[] symbolNames;
+    int[] symbolAddresses;
+    int instrSymbols;
+    int[] annotated;
+    String[] cellLabels, cellCodes, cellComments;
+    List<ParserException> warnings = new ArrayList<ParserException>();
+
+    static Image capture(ParserMultiWarningException warnings) throws MemoryElementNotFoundException {
+      Memory mem = Memory.getInstance();
+      SymbolTable symTab = SymbolTable.getInstance();
+      Image image = new Image();
+
+      List<Instruction> code = new ArrayList<Instruction>();
+      List<Integer> codeAddresses = new ArrayList<Integer>();
+      int address = 0;
+
+      for (Instruction i : mem.getInstructions()) {
+        if (!i.isBubble()) {
+          code.add(i);
+          codeAddresses.add(address);
+        }
+
+        address += 4;
+      }
+
+      int n = code.size();
+      image.addresses = new int[n];
+      image.encodings = new int[n];
+      image.names = new String[n];
+      image.fullNames = new String[n];
+      image.instrLabels = new String[n];
+      image.instrComments = new String[n];
+      image.params = new int[n][];
+
+      for (int k = 0; k < n; ++k) {
+        Instruction i = code.get(k);
+        image.addresses[k] = codeAddresses.get(k);
+        image.encodings[k] = (int) i.getRepr().getBits();
+        image.names[k] = i.getName();
+        image.fullNames[k] = i.getFullName();
+        image.instrLabels[k] = i.getLabel();
+        image.instrComments[k] = i.getComment();
+        image.params[k] = new int[i.getParams().size()];
+        int p = 0;
+
+        for (Integer v : i.getParams()) {
+          image.params[k][p++] = v;
+        }
+      }
+
+      List<Integer> used = new ArrayList<Integer>();
+      List<Integer> annotated = new ArrayList<Integer>();
+
+      for (int c = 0; c < CPU.DATALIMIT; ++c) {
+        MemoryElement cell = mem.getCellByIndex(c);
+
+        if (!cell.isZero()) {
+          used.add(c);
+        }
+
+        if (!cell.getLabel().equals("") || !cell.getCode().equals("") || !cell.getComment().equals("")) {
+          annotated.add(c);
+        }
+      }
+
+      image.cells = new int[used.size()];
+      image.values = new long[used.size()];
+
+      for (int k = 0; k < used.size(); ++k) {
+        image.cells[k] = used.get(k);
+        image.values[k] = mem.getCellByIndex(used.get(k)).getBits();
+      }
+
+      Map<String, Integer> instrSymbols = symTab.getInstructionLabels();
+      Map<String, Integer> cellSymbols = symTab.getCellLabels();
+      image.instrSymbols = instrSymbols.size();
+      image.symbolNames = new String[instrSymbols.size() + cellSymbols.size()];
+      image.symbolAddresses = new int[image.symbolNames.length];
+      int s = 0;
+
+      for (Map<String, Integer> symbols : Arrays.asList(instrSymbols, cellSymbols)) {
+        for (Map.Entry<String, Integer> e : symbols.entrySet()) {
+          image.symbolNames[s] = e.getKey();
+          image.symbolAddresses[s++] = e.getValue();
+        }
+      }
+
+      image.annotated = new int[annotated.size()];
+      image.cellLabels = new String[annotated.size()];
+      image.cellCodes = new String[annotated.size()];
+      image.cellComments = new String[annotated.size()];
+
+      for (int k = 0; k < annotated.size(); ++k) {
+        MemoryElement cell = mem.getCellByIndex(annotated.get(k));
+        image.annotated[k] = annotated.get(k);
+        image.cellLabels[k] = cell.getLabel();
+        image.cellCodes[k] = cell.getCode();
+        image.cellComments[k] = cell.getComment();
+      }
+
+      if (warnings != null) {
+        image.warnings.addAll(warnings.getExceptionList());
+      }
+
+      return image;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(CPU.CODELIMIT);
+      out.writeInt(CPU.DATALIMIT);
+
+      out.writeInt(addresses.length);
+
+      for (int k = 0; k < addresses.length; ++k) {
+        out.writeInt(addresses[k]);
+        writeString(out, names[k]);
+        out.writeInt(params[k].length);
+
+        for (int p : params[k]) {
+          out.writeInt(p);
+        }
+
+        out.writeInt(encodings[k]);
+      }
+
+      out.writeInt(cells.length);
+
+      for (int k = 0; k < cells.length; ++k) {
+        out.writeInt(cells[k]);
+        out.writeLong(values[k]);
+      }
+
+      out.writeInt(instrSymbols);
+      out.writeInt(symbolNames.length - instrSymbols);
+
+      for (int k = 0; k < symbolNames.length; ++k) {
+        writeString(out, symbolNames[k]);
+        out.writeInt(symbolAddresses[k]);
+      }
+
+      for (int k = 0; k < addresses.length; ++k) {
+        writeString(out, fullNames[k]);
+        writeString(out, instrLabels[k]);
+        writeString(out, instrComments[k]);
+      }
+
+      out.writeInt(annotated.length);
+
+      for (int k = 0; k < annotated.length; ++k) {
+        out.writeInt(annotated[k]);
+        writeString(out, cellLabels[k]);
+        writeString(out, cellCodes[k]);
+        writeString(out, cellComments[k]);
+      }
+
+      out.writeInt(warnings.size());
+
+      for (ParserException w : warnings) {
+        writeString(out, w.getCode());
+        out.writeInt(w.getRow());
+        out.writeInt(w.getColumn());
+        writeString(out, w.getLine());
+      }
+    }
+
+    /** Decodes an image.
+     * @return the image, or null if the buffer does not hold a valid image
+     * for this build of the simulator
+     */
+    static Image read(ByteBuffer in) {
+      byte[] magic = new byte[MAGIC.length];
+      in.get(magic);
+
+      if (!Arrays.equals(magic, MAGIC) || in.getInt() != VERSION || in.getInt() != CPU.CODELIMIT || in.getInt() != CPU.DATALIMIT) {
+        return null;
+      }
+
+      Image image = new Image();
+      int n = count(in, CPU.CODELIMIT);
+      image.addresses = new int[n];
+      image.encodings = new int[n];
+      image.names = new String[n];
+      image.fullNames = new String[n];
+      image.instrLabels = new String[n];
+      image.instrComments = new String[n];
+      image.params = new int[n][];
+
+      for (int k = 0; k < n; ++k) {
+        image.addresses[k] = in.getInt();
+        image.names[k] = readString(in);
+        image.params[k] = new int[count(in, 16)];
+
+        for (int p = 0; p < image.params[k].length; ++p) {
+          image.params[k][p] = in.getInt();
+        }
+
+        image.encodings[k] = in.getInt();
+      }
+
+      int m = count(in, CPU.DATALIMIT);
+      image.cells = new int[m];
+      image.values = new long[m];
+
+      for (int k = 0; k < m; ++k) {
+        image.cells[k] = in.getInt();
+        image.values[k] = in.getLong();
+      }
+
+      image.instrSymbols = count(in, CPU.CODELIMIT);
+      int symbols = image.instrSymbols + count(in, CPU.DATALIMIT * 8);
+      image.symbolNames = new String[symbols];
+      image.symbolAddresses = new int[symbols];
+
+      for (int k = 0; k < symbols; ++k) {
+        image.symbolNames[k] = readString(in);
+        image.symbolAddresses[k] = in.getInt();
+      }
+
+      for (int k = 0; k < n; ++k) {
+        image.fullNames[k] = readString(in);
+        image.instrLabels[k] = readString(in);
+        image.instrComments[k] = readString(in);
+      }
+
+      int a = count(in, CPU.DATALIMIT);
+      image.annotated = new int[a];
+      image.cellLabels = new String[a];
+      image.cellCodes = new String[a];
+      image.cellComments = new String[a];
+
+      for (int k = 0; k < a; ++k) {
+        image.annotated[k] = in.getInt();
+        image.cellLabels[k] = readString(in);
+        image.cellCodes[k] = readString(in);
+        image.cellComments[k] = readString(in);
+      }
+
+      int w = count(in, Integer.MAX_VALUE);
+
+      for (int k = 0; k < w; ++k) {
+        String code = readString(in);
+        int row = in.getInt();
+        int column = in.getInt();
+        image.warnings.add(new ParserWarning(code, row, column, readString(in)));
+      }
+
+      return in.hasRemaining() ? null : image;
+    }
+
+    /** Fills Memory and the SymbolTable with the contents of the image */
+    void install() throws Exception {
+      Memory mem = Memory.getInstance();
+      SymbolTable symTab = SymbolTable.getInstance();
+
+      for (int k = 0; k < addresses.length; ++k) {
+        Instruction i = Instruction.buildInstruction(names[k]);
+
+        if (i == null) {
+          throw new IllegalArgumentException("unknown instruction " + names[k]);
+        }
+
+        for (int p : params[k]) {
+          i.getParams().add(p);
+        }
+
+        i.getRepr().setBits(encodings[k] & 0xFFFFFFFFL);
+        i.setFullName(fullNames[k]);
+        i.setComment(instrComments[k]);
+        mem.addInstruction(i, addresses[k]);
+      }
+
+      for (int k = 0; k < cells.length; ++k) {
+        mem.getCellByIndex(cells[k]).setBits(values[k]);
+      }
+
+      for (int k = 0; k < symbolNames.length; ++k) {
+        if (k < instrSymbols) {
+          symTab.setInstructionLabel(symbolAddresses[k], symbolNames[k]);
+        } else {
+          symTab.setCellLabel(symbolAddresses[k], symbolNames[k]);
+        }
+      }
+
+      // The labels shown by the user interface are the last ones given to
+      // each instruction or cell, that the symbol table does not record.
+      for (int k = 0; k < addresses.length; ++k) {
+        mem.getInstruction(addresses[k]).setLabel(instrLabels[k]);
+      }
+
+      for (int k = 0; k < annotated.length; ++k) {
+        MemoryElement cell = mem.getCellByIndex(annotated[k]);
+        cell.setLabel(cellLabels[k]);
+        cell.setCode(cellCodes[k]);
+        cell.setComment(cellComments[k]);
+      }
+    }
+
+    private static int count(ByteBuffer in, int max) {
+      int n = in.getInt();
+
+      if (n < 0 || n > max) {
+        throw new BufferUnderflowException();
+      }
+
+      return n;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+      if (s == null) {
+        out.writeInt(-1);
+        return;
+      }
+
+      byte[] bytes = s.getBytes(UTF8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+      int length = in.getInt();
+
+      if (length < 0) {
+        return null;
+      }
+
+      if (length > in.remaining()) {
+        throw new BufferUnderflowException();
+      }
+
+      byte[] bytes = new byte[length];
+      in.get(bytes);
+      return new String(bytes, UTF8);
+    }
+  }
+}
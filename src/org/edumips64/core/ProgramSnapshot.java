@@ -0,0 +1,107 @@
+/* ProgramSnapshot.java
+ *
+ * Contents of the memory right after a program is assembled.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import org.edumips64.core.is.Instruction;
+
+import java.util.*;
+
+/** Contents of Memory and of the SymbolTable right after a program was
+ *  assembled, put back when the same program is loaded again.
+ *
+ *  The instructions are shared with the snapshot rather than copied: like
+ *  the instructions of a loop, they are executed many times and keep no
+ *  state from an execution to the next one.
+ */
+class ProgramSnapshot {
+  private Instruction[] instructions;
+  /** Indexes of the cells the program wrote, and their contents */
+  private int[] cells;
+  private long[] values;
+  private String[] labels, codes, comments;
+  private Map<String, Integer> instrLabels, cellLabels;
+  private int instructionsNumber;
+
+  private ProgramSnapshot() {}
+
+  static ProgramSnapshot capture() {
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+    ProgramSnapshot s = new ProgramSnapshot();
+    s.instructions = mem.getInstructions().subList(0, mem.getCodeSize()).toArray(new Instruction[0]);
+
+    // Memory is reset before a program is loaded, so the cells the
+    // program wrote are all there is to keep.
+    BitSet written = mem.getWrittenCells();
+    int n = written.cardinality();
+    s.cells = new int[n];
+    s.values = new long[n];
+    s.labels = new String[n];
+    s.codes = new String[n];
+    s.comments = new String[n];
+
+    try {
+      for (int c = written.nextSetBit(0), k = 0; c >= 0; c = written.nextSetBit(c + 1), ++k) {
+        MemoryElement cell = mem.getCellByIndex(c);
+        s.cells[k] = c;
+        s.values[k] = cell.getBits();
+        s.labels[k] = cell.getLabel();
+        s.codes[k] = cell.getCode();
+        s.comments[k] = cell.getComment();
+      }
+    } catch (MemoryElementNotFoundException e) {
+      // Cannot happen: the indexes are within DATALIMIT.
+      throw new IllegalStateException(e);
+    }
+
+    s.instrLabels = new HashMap<String, Integer>(symTab.getInstructionLabels());
+    s.cellLabels = new HashMap<String, Integer>(symTab.getCellLabels());
+    s.instructionsNumber = mem.getInstructionsNumber();
+    return s;
+  }
+
+  void restore() {
+    Memory mem = Memory.getInstance();
+
+    // Only clears what was written since the last reset, usually nothing.
+    mem.reset();
+    mem.setInstructions(instructions);
+
+    try {
+      for (int k = 0; k < cells.length; ++k) {
+        MemoryElement cell = mem.getCellByIndex(cells[k]);
+        cell.setBits(values[k]);
+        cell.setLabel(labels[k]);
+        cell.setCode(codes[k]);
+        cell.setComment(comments[k]);
+      }
+    } catch (MemoryElementNotFoundException e) {
+      // Cannot happen: the indexes are within DATALIMIT.
+      throw new IllegalStateException(e);
+    }
+
+    mem.setInstructionsNumber(instructionsNumber);
+    SymbolTable.getInstance().restore(instrLabels, cellLabels);
+  }
+}
@@ -0,0 +1,112 @@
+/* StateCheckpointReader.java
+ *
+ * Reader of the checkpoints of the state digest.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import java.io.*;
+
+/** Reads the checkpoints written by StateCheckpointWriter one at a time,
+ *  so that files of any length can be compared in constant memory.
+ */
+public class StateCheckpointReader implements Closeable {
+  private DataInputStream in;
+  private int interval;
+  private long cycle, digest;
+
+  public StateCheckpointReader(InputStream stream) throws IOException {
+    in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+
+    for (byte b : StateCheckpointWriter.MAGIC) {
+      if (in.read() != b) {
+        throw new IOException("Not a state checkpoint file");
+      }
+    }
+
+    int version = in.read();
+
+    if (version != StateCheckpointWriter.VERSION) {
+      throw new IOException("Unsupported state checkpoint version " + version);
+    }
+
+    interval = (int) readVarLong(in.read());
+  }
+
+  public StateCheckpointReader(String filename) throws IOException {
+    this(new FileInputStream(filename));
+  }
+
+  /** Moves to the next checkpoint.
+   * @return false at the end of the file
+   */
+  public boolean next() throws IOException {
+    int b = in.read();
+
+    if (b == -1) {
+      return false;
+    }
+
+    cycle += readVarLong(b);
+    digest = in.readLong();
+    return true;
+  }
+
+  /** Cycles between two checkpoints of the run */
+  public int getInterval() {
+    return interval;
+  }
+
+  /** Cycle of the current checkpoint */
+  public long getCycle() {
+    return cycle;
+  }
+
+  /** State digest of the current checkpoint */
+  public long getDigest() {
+    return digest;
+  }
+
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private long readVarLong(int b) throws IOException {
+    long v = 0;
+    int shift = 0;
+
+    while (true) {
+      if (b == -1 || shift > 63) {
+        throw new EOFException("Truncated state checkpoint file");
+      }
+
+      v |= (long)(b & 0x7F) << shift;
+      shift += 7;
+
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+
+      b = in.read();
+    }
+  }
+}
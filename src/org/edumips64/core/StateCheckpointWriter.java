@@ -0,0 +1,103 @@
+/* StateCheckpointWriter.java
+ *
+ * Writer of the checkpoints of the state digest.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import java.io.*;
+
+/** Writes the state digest of a run every given number of cycles.
+ *
+ *  File format: the 4 bytes "EMSC", one version byte and the varint of the
+ *  interval, then one record per checkpoint: the varint of the cycles since
+ *  the previous checkpoint and the 8 bytes of the digest, most significant
+ *  first. The last record is the end of the run, whatever its cycle.
+ */
+public class StateCheckpointWriter implements Closeable {
+  static final byte[] MAGIC = {'E', 'M', 'S', 'C'};
+  static final int VERSION = 1;
+
+  private DataOutputStream out;
+  private int interval;
+  private long lastCycle, records;
+
+  public StateCheckpointWriter(OutputStream stream, int interval) throws IOException {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Bad checkpoint interval " + interval);
+    }
+
+    out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+    out.write(MAGIC);
+    out.write(VERSION);
+    this.interval = interval;
+    writeVarLong(interval);
+  }
+
+  public StateCheckpointWriter(String filename, int interval) throws IOException {
+    this(new FileOutputStream(filename), interval);
+  }
+
+  /** Cycles between two checkpoints */
+  public int getInterval() {
+    return interval;
+  }
+
+  /** Whether a cycle is due for a checkpoint */
+  public boolean isDue(long cycle) {
+    return cycle % interval == 0;
+  }
+
+  /** Appends a checkpoint.
+   * @param cycle the cycle just completed
+   * @param digest the state digest at the end of the cycle
+   */
+  public void write(long cycle, long digest) throws IOException {
+    writeVarLong(cycle - lastCycle);
+    out.writeLong(digest);
+    lastCycle = cycle;
+    records++;
+  }
+
+  /** Cycle of the last checkpoint written */
+  public long getLastCycle() {
+    return lastCycle;
+  }
+
+  /** Number of checkpoints written so far */
+  public long getRecords() {
+    return records;
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeVarLong(long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int)((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+
+    out.write((int) v);
+  }
+}
@@ -0,0 +1,96 @@
+/* StateDigest.java
+ *
+ * Incremental digest of the architectural state.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Digest of the architectural state of the CPU: GPRs, FPRs, FCSR, HI, LO,
+ *  PC and data memory.
+ *
+ *  The digest is the XOR of a hash of every location holding a value other
+ *  than zero, so it does not depend on the order of the writes and each
+ *  write updates it in constant time, removing the hash of the old value
+ *  and adding the one of the new value. A zeroed machine has digest 0.
+ */
+public class StateDigest {
+  /** First location of each part of the state; memory cells follow */
+  static final int GPR = 0, FPR = 32, FCSR = 64, HI = 65, LO = 66, PC = 67, MEMORY = 128;
+
+  private long value;
+  private List<FixedBitSet> tracked;
+  private List<Integer> locations;
+
+  StateDigest() {
+    tracked = new ArrayList<FixedBitSet>();
+    locations = new ArrayList<Integer>();
+  }
+
+  /** Adds a bit set to the state, at the given location */
+  void track(FixedBitSet bits, int location) {
+    value ^= hash(location, bits.getBits());
+    bits.track(this, location);
+    tracked.add(bits);
+    locations.add(location);
+  }
+
+  /** A location of the state changed from old to current */
+  void update(int location, long old, long current) {
+    value ^= hash(location, old) ^ hash(location, current);
+  }
+
+  /** The digest of the current state */
+  public long getValue() {
+    return value;
+  }
+
+  /** Computes the digest of the current state from scratch, reading every
+   *  location; it must be equal to getValue().
+   */
+  public long recompute() {
+    long v = 0;
+
+    for (int i = 0; i < tracked.size(); ++i) {
+      v ^= hash(locations.get(i), tracked.get(i).getBits());
+    }
+
+    return v;
+  }
+
+  static long hash(int location, long bits) {
+    if (bits == 0) {
+      return 0;
+    }
+
+    // Finalizer of MurmurHash3
+    long h = bits ^ (location + 1) * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
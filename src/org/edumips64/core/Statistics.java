@@ -23,6 +23,661 @@
 
 package org.edumips64.core;
 
-/** Class that contains informations about the CPU inner working */
+import org.edumips64.core.is.Instruction;
+
+import java.io.*;
+import java.util.*;
+
+/** Class that contains informations about the CPU inner working: a
+ *  registry of the metrics of the run, kept in 64-bit counters.
+ *
+ *  Besides the totals (cycles, instructions, stalls of every class) it
+ *  counts the executions of every opcode and, for every instruction slot
+ *  of code memory, the executions, the cycles charged to the instruction
+ *  and its stalls of every class. Consecutive stall cycles of the same
+ *  class make a stall, whose length goes in the histogram of its class.
+ *
+ *  A cycle is charged to the instruction held back by a stall that freezes
+ *  the pipeline (every class but MEMORY) if any, otherwise to the
+ *  instruction completing WB; cycles with neither (filling and draining
+ *  the pipeline, bubbles after jumps) are counted as unattributed.
+ *
+ *  The CPU reports every event through a package-private method that does
+ *  a constant amount of work; the views (snapshots, deltas, JSON and CSV)
+ *  are built on demand. When the program marks a region of interest
+ *  (SYSCALL 6 and 7) only the cycles inside it are recorded.
+ */
 public class Statistics {
+  /** Classes of stall cycles */
+  public enum Stall {
+    /** Read after write hazard */
+    RAW,
+    /** Write after write hazard */
+    WAW,
+    /** The FP divider is busy */
+    DIVIDER,
+    /** The FP adder or multiplier is busy */
+    FUNC_UNIT,
+    /** The EX stage is busy */
+    EX,
+    /** Two instructions want to enter MEM; does not freeze the pipeline */
+    MEMORY,
+    /** The pipeline waits for the caches */
+    CACHE
+  }
+
+  /** Stalls at least this long share the last bucket of the histograms */
+  public static final int MAX_STALL_LENGTH = 32;
+
+  private static final Stall[] STALLS = Stall.values();
+
+  /** Metrics of a single instruction slot */
+  public static class Entry {
+    public final int address;
+    /** Nearest label at or before the instruction, with the offset from it */
+    public final String symbol;
+    public final String instruction;
+    public final long executions, cycles;
+    private final long[] stalls;
+
+    Entry(int address, String symbol, String instruction, long executions, long cycles, long[] stalls) {
+      this.address = address;
+      this.symbol = symbol;
+      this.instruction = instruction;
+      this.executions = executions;
+      this.cycles = cycles;
+      this.stalls = stalls;
+    }
+
+    public long getStalls(Stall kind) {
+      return stalls[kind.ordinal()];
+    }
+
+    /** Cycles charged to the instruction per execution */
+    public double getCPI() {
+      return executions == 0 ? 0 : (double) cycles / executions;
+    }
+  }
+
+  private long cycles, instructions, unattributed;
+  private long[] stalls;
+  private Map<String, long[]> opcodes;
+  private long[] executions, slotCycles;
+  /** Stall cycles by class and slot */
+  private long[][] slotStalls;
+  /** Number of stalls by class and length */
+  private long[][] stallLengths;
+  /** Length of the stall of each class still going on */
+  private int[] runs;
+  /** Slots with any metric since the last reset */
+  private BitSet recorded;
+
+  /** Events of the current cycle */
+  private int stallMask, stalledSlot, retiredSlot;
+  /** Whether events are recorded; cleared outside the region of interest */
+  private boolean recording;
+
+  public Statistics() {
+    stalls = new long[STALLS.length];
+    opcodes = new HashMap<String, long[]>();
+    executions = new long[CPU.CODELIMIT];
+    slotCycles = new long[CPU.CODELIMIT];
+    slotStalls = new long[STALLS.length][CPU.CODELIMIT];
+    stallLengths = new long[STALLS.length][MAX_STALL_LENGTH + 1];
+    runs = new int[STALLS.length];
+    recorded = new BitSet(CPU.CODELIMIT);
+    stalledSlot = retiredSlot = -1;
+    recording = true;
+  }
+
+  /** Slot of code memory of an instruction, -1 for bubbles and for
+   *  instructions not stored in code memory */
+  static int slotOf(Instruction i) {
+    if (i == null || i.isBubble() || i.getAddress() < 0) {
+      return -1;
+    }
+
+    int slot = i.getAddress() / 4;
+    return slot < CPU.CODELIMIT ? slot : -1;
+  }
+
+  /** Clears the metrics, touching only the slots recorded since the last
+   *  reset */
+  public void reset() {
+    for (int i = recorded.nextSetBit(0); i >= 0; i = recorded.nextSetBit(i + 1)) {
+      executions[i] = 0;
+      slotCycles[i] = 0;
+
+      for (long[] s : slotStalls) {
+        s[i] = 0;
+      }
+    }
+
+    recorded.clear();
+    cycles = instructions = unattributed = 0;
+    Arrays.fill(stalls, 0);
+    Arrays.fill(runs, 0);
+
+    for (long[] h : stallLengths) {
+      Arrays.fill(h, 0);
+    }
+
+    opcodes.clear();
+    stallMask = 0;
+    stalledSlot = retiredSlot = -1;
+    recording = true;
+  }
+
+  /** Starts or stops recording the events, between two cycles. Stopping
+   *  ends the stalls still going on, so that a stall never spans two
+   *  regions of interest.
+   */
+  void setRecording(boolean recording) {
+    if (!recording) {
+      for (int k = 0; k < STALLS.length; ++k) {
+        if (runs[k] > 0) {
+          stallLengths[k][Math.min(runs[k], MAX_STALL_LENGTH)]++;
+          runs[k] = 0;
+        }
+      }
+    }
+
+    this.recording = recording;
+  }
+
+  /** Whether the events of the current cycle are recorded */
+  public boolean isRecording() {
+    return recording;
+  }
+
+  // Events, reported by the CPU ---------------------------------------------
+
+  /** A new cycle starts */
+  void startCycle() {
+    if (!recording) {
+      return;
+    }
+
+    cycles++;
+    stallMask = 0;
+    stalledSlot = -1;
+    retiredSlot = -1;
+  }
+
+  /** An instruction completes WB */
+  void retire(Instruction i) {
+    if (!recording) {
+      return;
+    }
+
+    instructions++;
+    long[] count = opcodes.get(i.getName());
+
+    if (count == null) {
+      count = new long[1];
+      opcodes.put(i.getName(), count);
+    }
+
+    count[0]++;
+    int slot = slotOf(i);
+
+    if (slot >= 0) {
+      executions[slot]++;
+      recorded.set(slot);
+      retiredSlot = slot;
+    }
+  }
+
+  /** A stall of the given class holds back an instruction in this cycle */
+  void stall(Stall kind, Instruction culprit) {
+    stall(kind, slotOf(culprit));
+  }
+
+  /** A stall of the given class holds back the instruction of the given
+   *  slot (-1 if unknown) in this cycle */
+  void stall(Stall kind, int slot) {
+    if (!recording) {
+      return;
+    }
+
+    int k = kind.ordinal();
+    stalls[k]++;
+    stallMask |= 1 << k;
+
+    if (slot >= 0) {
+      slotStalls[k][slot]++;
+      recorded.set(slot);
+    }
+
+    if (kind != Stall.MEMORY && stalledSlot < 0) {
+      stalledSlot = slot;
+    }
+  }
+
+  /** The cycle is over: charges it and updates the stall lengths */
+  void endCycle() {
+    if (!recording) {
+      return;
+    }
+
+    boolean frozen = (stallMask & ~(1 << Stall.MEMORY.ordinal())) != 0;
+    int slot = frozen ? stalledSlot : retiredSlot;
+
+    if (slot >= 0) {
+      slotCycles[slot]++;
+      recorded.set(slot);
+    } else {
+      unattributed++;
+    }
+
+    for (int k = 0; k < STALLS.length; ++k) {
+      if ((stallMask & (1 << k)) != 0) {
+        runs[k]++;
+      } else if (runs[k] > 0) {
+        stallLengths[k][Math.min(runs[k], MAX_STALL_LENGTH)]++;
+        runs[k] = 0;
+      }
+    }
+  }
+
+  /** Classes of the stalls of the last recorded cycle, as a mask of bits
+   *  indexed by Stall ordinal */
+  int getCycleStalls() {
+    return stallMask;
+  }
+
+  // Totals --------------------------------------------------------------------
+
+  public long getCycles() {
+    return cycles;
+  }
+
+  public long getInstructions() {
+    return instructions;
+  }
+
+  public long getStalls(Stall kind) {
+    return stalls[kind.ordinal()];
+  }
+
+  /** Cycles per instruction of the run so far */
+  public double getCPI() {
+    return instructions == 0 ? 0 : (double) cycles / instructions;
+  }
+
+  /** Cycles not charged to any instruction */
+  public long getUnattributedCycles() {
+    return unattributed;
+  }
+
+  public long getExecutions(int address) {
+    return executions[address / 4];
+  }
+
+  /** Cycles charged to the instruction at the given address */
+  public long getCycles(int address) {
+    return slotCycles[address / 4];
+  }
+
+  public long getStalls(Stall kind, int address) {
+    return slotStalls[kind.ordinal()][address / 4];
+  }
+
+  /** Copies the current metrics, along with the text and the symbol of
+   *  the instructions they refer to.
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  /** Formats the metrics as text.
+   * @param limit maximum number of instructions listed, 0 for all of them
+   */
+  public String toReport(int limit) {
+    return snapshot().toReport(limit);
+  }
+
+  /** Immutable copy of the metrics at a point of the run.
+   *
+   *  The stalls still going on are counted in the histograms with their
+   *  length so far; the delta of two snapshots holds the metrics of the
+   *  cycles between them.
+   */
+  public static class Snapshot {
+    private long cycles, instructions, unattributed;
+    private long[] stalls;
+    private Map<String, Long> opcodes;
+    private long[][] stallLengths;
+    private List<Entry> entries;
+
+    private Snapshot() {
+    }
+
+    Snapshot(Statistics s) {
+      cycles = s.cycles;
+      instructions = s.instructions;
+      unattributed = s.unattributed;
+      stalls = s.stalls.clone();
+      opcodes = new TreeMap<String, Long>();
+
+      for (Map.Entry<String, long[]> e : s.opcodes.entrySet()) {
+        opcodes.put(e.getKey(), e.getValue()[0]);
+      }
+
+      stallLengths = new long[STALLS.length][];
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        stallLengths[k] = s.stallLengths[k].clone();
+
+        if (s.runs[k] > 0) {
+          stallLengths[k][Math.min(s.runs[k], MAX_STALL_LENGTH)]++;
+        }
+      }
+
+      Memory mem = Memory.getInstance();
+      SymbolTable symTab = SymbolTable.getInstance();
+      entries = new ArrayList<Entry>();
+
+      for (int i = s.recorded.nextSetBit(0); i >= 0; i = s.recorded.nextSetBit(i + 1)) {
+        long[] st = new long[STALLS.length];
+
+        for (int k = 0; k < STALLS.length; ++k) {
+          st[k] = s.slotStalls[k][i];
+        }
+
+        SymbolTable.Symbol symbol = symTab.getCodeSymbol(i * 4);
+        Instruction instr = mem.getInstruction(i * 4);
+        entries.add(new Entry(i * 4, symbol == null ? "" : symbol.toString(), instr.isBubble() ? "" : instr.getFullName(),
+                              s.executions[i], s.slotCycles[i], st));
+      }
+    }
+
+    public long getCycles() {
+      return cycles;
+    }
+
+    public long getInstructions() {
+      return instructions;
+    }
+
+    public long getStalls(Stall kind) {
+      return stalls[kind.ordinal()];
+    }
+
+    public double getCPI() {
+      return instructions == 0 ? 0 : (double) cycles / instructions;
+    }
+
+    public long getUnattributedCycles() {
+      return unattributed;
+    }
+
+    /** Executions of every opcode, in alphabetical order */
+    public Map<String, Long> getOpcodeCounts() {
+      return Collections.unmodifiableMap(opcodes);
+    }
+
+    /** Number of stalls of the given class by length; the last bucket
+     *  holds the stalls of MAX_STALL_LENGTH cycles or more */
+    public long[] getStallLengths(Stall kind) {
+      return stallLengths[kind.ordinal()].clone();
+    }
+
+    /** Metrics of the instructions that have any, by address */
+    public List<Entry> getEntries() {
+      return Collections.unmodifiableList(entries);
+    }
+
+    /** Metrics of the cycles between an earlier snapshot and this one.
+     *  A stall going on at the earlier snapshot is moved to its final
+     *  length in the histogram.
+     */
+    public Snapshot delta(Snapshot earlier) {
+      Snapshot d = new Snapshot();
+      d.cycles = cycles - earlier.cycles;
+      d.instructions = instructions - earlier.instructions;
+      d.unattributed = unattributed - earlier.unattributed;
+      d.stalls = new long[STALLS.length];
+      d.stallLengths = new long[STALLS.length][MAX_STALL_LENGTH + 1];
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        d.stalls[k] = stalls[k] - earlier.stalls[k];
+
+        for (int l = 0; l <= MAX_STALL_LENGTH; ++l) {
+          d.stallLengths[k][l] = stallLengths[k][l] - earlier.stallLengths[k][l];
+        }
+      }
+
+      d.opcodes = new TreeMap<String, Long>();
+
+      for (Map.Entry<String, Long> e : opcodes.entrySet()) {
+        Long before = earlier.opcodes.get(e.getKey());
+        long n = e.getValue() - (before == null ? 0 : before);
+
+        if (n != 0) {
+          d.opcodes.put(e.getKey(), n);
+        }
+      }
+
+      Map<Integer, Entry> before = new HashMap<Integer, Entry>();
+
+      for (Entry e : earlier.entries) {
+        before.put(e.address, e);
+      }
+
+      d.entries = new ArrayList<Entry>();
+
+      for (Entry e : entries) {
+        Entry b = before.get(e.address);
+
+        if (b == null) {
+          d.entries.add(e);
+          continue;
+        }
+
+        long[] st = new long[STALLS.length];
+        boolean any = e.executions != b.executions || e.cycles != b.cycles;
+
+        for (int k = 0; k < STALLS.length; ++k) {
+          st[k] = e.stalls[k] - b.stalls[k];
+          any |= st[k] != 0;
+        }
+
+        if (any) {
+          d.entries.add(new Entry(e.address, e.symbol, e.instruction, e.executions - b.executions, e.cycles - b.cycles, st));
+        }
+      }
+
+      return d;
+    }
+
+    /** Formats the metrics as text.
+     * @param limit maximum number of instructions listed, by decreasing
+     *              cycles; 0 for all of them
+     */
+    public String toReport(int limit) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("%d cycles, %d instructions, CPI %.3f, %d cycles not charged to any instruction%n", cycles, instructions,
+                              getCPI(), unattributed));
+      sb.append(String.format("%nStalls:%n"));
+
+      for (Stall k : STALLS) {
+        long[] h = stallLengths[k.ordinal()];
+        long n = 0, longest = 0;
+
+        for (int l = 1; l <= MAX_STALL_LENGTH; ++l) {
+          n += h[l];
+          longest = h[l] > 0 ? l : longest;
+        }
+
+        sb.append(String.format("%-10s %12d cycles in %10d stalls, longest %s%n", k, stalls[k.ordinal()], n,
+                                longest == MAX_STALL_LENGTH ? MAX_STALL_LENGTH + "+" : String.valueOf(longest)));
+      }
+
+      sb.append(String.format("%nOpcodes:%n"));
+
+      for (Map.Entry<String, Long> e : opcodes.entrySet()) {
+        sb.append(String.format("%-10s %12d%n", e.getKey(), e.getValue()));
+      }
+
+      List<Entry> sorted = new ArrayList<Entry>(entries);
+      Collections.sort(sorted, new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+          return Long.compare(b.cycles, a.cycles);
+        }
+      });
+
+      sb.append(String.format("%n%-8s %-20s %-24s %10s %10s %7s", "Address", "Symbol", "Instruction", "Execs", "Cycles", "CPI"));
+
+      for (Stall k : STALLS) {
+        sb.append(String.format(" %9s", k));
+      }
+
+      sb.append(String.format("%n"));
+      int rows = 0;
+
+      for (Entry e : sorted) {
+        if (limit > 0 && rows++ == limit) {
+          break;
+        }
+
+        sb.append(String.format("%08X %-20s %-24s %10d %10d %7.2f", e.address, e.symbol, e.instruction, e.executions, e.cycles, e.getCPI()));
+
+        for (long st : e.stalls) {
+          sb.append(String.format(" %9d", st));
+        }
+
+        sb.append(String.format("%n"));
+      }
+
+      return sb.toString();
+    }
+
+    /** Writes the metrics as a JSON object */
+    public void writeJSON(Writer w) throws IOException {
+      w.write("{\n");
+      w.write("  \"cycles\": " + cycles + ",\n");
+      w.write("  \"instructions\": " + instructions + ",\n");
+      w.write("  \"cpi\": " + String.format(Locale.ROOT, "%.6f", getCPI()) + ",\n");
+      w.write("  \"unattributedCycles\": " + unattributed + ",\n");
+      w.write("  \"stalls\": {");
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        w.write((k > 0 ? ", " : "") + quote(STALLS[k].name()) + ": " + stalls[k]);
+      }
+
+      w.write("},\n  \"stallLengths\": {");
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        w.write((k > 0 ? "," : "") + "\n    " + quote(STALLS[k].name()) + ": {");
+        boolean first = true;
+
+        for (int l = 1; l <= MAX_STALL_LENGTH; ++l) {
+          if (stallLengths[k][l] != 0) {
+            w.write((first ? "" : ", ") + quote(bucket(l)) + ": " + stallLengths[k][l]);
+            first = false;
+          }
+        }
+
+        w.write("}");
+      }
+
+      w.write("\n  },\n  \"opcodes\": {");
+      boolean first = true;
+
+      for (Map.Entry<String, Long> e : opcodes.entrySet()) {
+        w.write((first ? "" : ", ") + quote(e.getKey()) + ": " + e.getValue());
+        first = false;
+      }
+
+      w.write("},\n  \"perInstruction\": [");
+
+      for (int i = 0; i < entries.size(); ++i) {
+        Entry e = entries.get(i);
+        w.write((i > 0 ? "," : "") + "\n    {\"address\": " + e.address + ", \"symbol\": " + quote(e.symbol) + ", \"instruction\": "
+                + quote(e.instruction) + ", \"executions\": " + e.executions + ", \"cycles\": " + e.cycles + ", \"stalls\": {");
+
+        for (int k = 0; k < STALLS.length; ++k) {
+          w.write((k > 0 ? ", " : "") + quote(STALLS[k].name()) + ": " + e.stalls[k]);
+        }
+
+        w.write("}}");
+      }
+
+      w.write("\n  ]\n}\n");
+      w.flush();
+    }
+
+    /** Writes the metrics as CSV, one metric per row: section, key,
+     *  metric, value. */
+    public void writeCSV(Writer w) throws IOException {
+      w.write("section,key,metric,value\n");
+      w.write("total,,cycles," + cycles + "\n");
+      w.write("total,,instructions," + instructions + "\n");
+      w.write("total,,cpi," + String.format(Locale.ROOT, "%.6f", getCPI()) + "\n");
+      w.write("total,,unattributedCycles," + unattributed + "\n");
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        w.write("stall," + STALLS[k] + ",cycles," + stalls[k] + "\n");
+      }
+
+      for (int k = 0; k < STALLS.length; ++k) {
+        for (int l = 1; l <= MAX_STALL_LENGTH; ++l) {
+          if (stallLengths[k][l] != 0) {
+            w.write("stallLength," + STALLS[k] + "," + bucket(l) + "," + stallLengths[k][l] + "\n");
+          }
+        }
+      }
+
+      for (Map.Entry<String, Long> e : opcodes.entrySet()) {
+        w.write("opcode," + csv(e.getKey()) + ",executions," + e.getValue() + "\n");
+      }
+
+      for (Entry e : entries) {
+        String key = String.format("%08X", e.address);
+        w.write("instruction," + key + ",text," + csv(e.instruction) + "\n");
+        w.write("instruction," + key + ",symbol," + csv(e.symbol) + "\n");
+        w.write("instruction," + key + ",executions," + e.executions + "\n");
+        w.write("instruction," + key + ",cycles," + e.cycles + "\n");
+
+        for (int k = 0; k < STALLS.length; ++k) {
+          if (e.stalls[k] != 0) {
+            w.write("instruction," + key + ",stall" + STALLS[k] + "," + e.stalls[k] + "\n");
+          }
+        }
+      }
+
+      w.flush();
+    }
+
+    private static String bucket(int length) {
+      return length == MAX_STALL_LENGTH ? MAX_STALL_LENGTH + "+" : String.valueOf(length);
+    }
+  }
+
+  static String quote(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+
+    return sb.append('"').toString();
+  }
+
+  static String csv(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+      return s;
+    }
+
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
 }
@@ -43,10 +43,92 @@ public class SymbolTable {
 
   private Memory mem = null;
 
+  /** Label of an address space nearest to an address, at or before it */
+  public static class Symbol {
+    public final String label;
+    /** Address of the label */
+    public final int address;
+    /** Distance of the address from the label */
+    public final int offset;
+
+    Symbol(String label, int address, int offset) {
+      this.label = label;
+      this.address = address;
+      this.offset = offset;
+    }
+
+    /** Formats the symbol as label or label+0xoffset */
+    public String toString() {
+      return offset == 0 ? label : label + "+0x" + Integer.toHexString(offset);
+    }
+  }
+
+  /** Labels of an address space sorted by address, one for each address
+   *  (the first in alphabetical order when more labels share it), so that
+   *  the label preceding an address is found by a binary search.
+   */
+  private static class Index {
+    final int[] addresses;
+    final String[] labels;
+    final int limit;
+
+    Index(Map<String, Integer> symbols, int limit) {
+      List<Map.Entry<String, Integer>> sorted = new ArrayList<Map.Entry<String, Integer>>(symbols.entrySet());
+      Collections.sort(sorted, new Comparator<Map.Entry<String, Integer>>() {
+        public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+          int c = Integer.compare(a.getValue(), b.getValue());
+          return c != 0 ? c : a.getKey().compareTo(b.getKey());
+        }
+      });
+
+      int[] addr = new int[sorted.size()];
+      String[] names = new String[sorted.size()];
+      int n = 0;
+
+      for (Map.Entry<String, Integer> e : sorted) {
+        if (n == 0 || addr[n - 1] != e.getValue()) {
+          addr[n] = e.getValue();
+          names[n] = e.getKey();
+          n++;
+        }
+      }
+
+      addresses = Arrays.copyOf(addr, n);
+      labels = Arrays.copyOf(names, n);
+      this.limit = limit;
+    }
+
+    Symbol lookup(long address) {
+      if (address < 0 || address >= limit) {
+        return null;
+      }
+
+      int k = Arrays.binarySearch(addresses, (int) address);
+
+      if (k < 0) {
+        k = -k - 2;
+
+        if (k < 0) {
+          return null;
+        }
+      }
+
+      return new Symbol(labels[k], addresses[k], (int) address - addresses[k]);
+    }
+  }
+  /** Indexes of the labels, or null if the labels changed since they were built */
+  private Index codeIndex, dataIndex;
+
   private SymbolTable() {
+    this(Memory.getInstance());
+  }
+
+  /** Creates a symbol table for the labels of the given memory, apart from
+   *  the one of the CPU. */
+  SymbolTable(Memory mem) {
     mem_labels = new HashMap<String, Integer>();
     instr_labels = new HashMap<String, Integer>();
-    mem = Memory.getInstance();
+    this.mem = mem;
   }
 
   public void setCellLabel(int address, String label) throws SameLabelsException, MemoryElementNotFoundException {
@@ -58,6 +140,7 @@ public class SymbolTable {
       }
 
       mem_labels.put(label, address);
+      dataIndex = null;
       MemoryElement temp = mem.getCellByAddress(address);
       // TODO: attualmente la cella  si prende l'ultima etichetta
       temp.setLabel(label);
@@ -111,9 +194,14 @@ public class SymbolTable {
       }
 
       instr_labels.put(label, address);
+      codeIndex = null;
       Instruction temp = mem.getInstruction(address);
-      // TODO: attualmente l'istruzione si prende l'ultima etichetta
-      temp.setLabel(label);
+
+      // The empty slots of code memory share the same bubble.
+      if (!temp.isBubble()) {
+        // TODO: attualmente l'istruzione si prende l'ultima etichetta
+        temp.setLabel(label);
+      }
     }
   }
 
@@ -127,11 +215,74 @@ public class SymbolTable {
     return null;
   }
 
+  /** Finds the instruction label nearest to a code address, at or before
+   *  it, in O(log n) time once the labels stop changing.
+   * @param address the code address
+   * @return the symbol, or null if no label precedes the address
+   */
+  public Symbol getCodeSymbol(long address) {
+    if (codeIndex == null) {
+      codeIndex = new Index(instr_labels, CPU.CODELIMIT * 4);
+    }
+
+    return codeIndex.lookup(address);
+  }
+
+  /** Finds the memory cell label nearest to a data address, at or before
+   *  it, in O(log n) time once the labels stop changing.
+   * @param address the data address
+   * @return the symbol, or null if no label precedes the address
+   */
+  public Symbol getDataSymbol(long address) {
+    if (dataIndex == null) {
+      dataIndex = new Index(mem_labels, CPU.DATALIMIT * 8);
+    }
+
+    return dataIndex.lookup(address);
+  }
+
+  /** Labels of the instructions, with their addresses */
+  Map<String, Integer> getInstructionLabels() {
+    return Collections.unmodifiableMap(instr_labels);
+  }
+
+  /** Labels of the memory cells, with their addresses */
+  Map<String, Integer> getCellLabels() {
+    return Collections.unmodifiableMap(mem_labels);
+  }
+
+  /** Removes the label of an instruction */
+  void removeInstructionLabel(String label) {
+    instr_labels.remove(label);
+    codeIndex = null;
+  }
+
+  /** Removes the label of a memory cell, and takes it off the cell */
+  void removeCellLabel(String label) throws MemoryElementNotFoundException {
+    Integer address = mem_labels.remove(label);
+    dataIndex = null;
+
+    if (address != null && label.equals(mem.getCellByAddress(address).getLabel())) {
+      mem.getCellByAddress(address).setLabel("");
+    }
+  }
+
+  /** Replaces all the labels */
+  void restore(Map<String, Integer> instructions, Map<String, Integer> cells) {
+    instr_labels.clear();
+    instr_labels.putAll(instructions);
+    mem_labels.clear();
+    mem_labels.putAll(cells);
+    codeIndex = null;
+    dataIndex = null;
+  }
 
   /** This method resets the symbol table */
   public void reset() {
     instr_labels.clear();
     mem_labels.clear();
+    codeIndex = null;
+    dataIndex = null;
     // TODO: eliminare individualmente le label dalle celle e dalle
     // istruzioni?
   }
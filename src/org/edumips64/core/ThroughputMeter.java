@@ -0,0 +1,208 @@
+/* ThroughputMeter.java
+ *
+ * Measures the speed of the simulator.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/** Measures how fast the simulator runs: simulated cycles and instructions
+ *  per second spent in CPU.step(), and the rate at which the stepping
+ *  thread allocates memory, when the JVM can tell it (through the HotSpot
+ *  extension of ThreadMXBean).
+ *
+ *  Only the time spent inside step() is counted, so that the rates do not
+ *  depend on the sleep interval or on the refresh of the GUI. Besides the
+ *  totals of the run, the rates of the last WINDOW_NANOS of stepping are
+ *  kept, to show the current speed while a long program runs. The meter is
+ *  cleared when a run starts, and keeps the figures of the last run after
+ *  the CPU halts or is reset.
+ */
+public class ThroughputMeter {
+  /** Stepping time after which the recent rates are updated */
+  public static final long WINDOW_NANOS = 500 * 1000 * 1000L;
+
+  private static ThreadMXBean threads;
+  private static boolean allocationSupported;
+
+  static {
+    try {
+      threads = ManagementFactory.getThreadMXBean();
+
+      if (threads instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+
+        if (bean.isThreadAllocatedMemorySupported() && !bean.isThreadAllocatedMemoryEnabled()) {
+          bean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        allocationSupported = bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+      }
+    } catch (Throwable e) {
+      // Not a HotSpot JVM, or no access to the management interface.
+      allocationSupported = false;
+    }
+  }
+
+  /** Totals of the run */
+  private long nanos, cycles, instructions, allocated;
+  /** Totals of the current window */
+  private long windowNanos, windowCycles, windowInstructions, windowAllocated;
+  /** Rates of the last complete window, negative before the first one */
+  private double recentCycles, recentInstructions, recentAllocation;
+
+  /** State at the start of the current step */
+  private long stepStart, allocatedStart, cyclesStart, instructionsStart;
+
+  public ThroughputMeter() {
+    reset();
+  }
+
+  /** Clears the figures, at the start of a run */
+  public void reset() {
+    nanos = cycles = instructions = allocated = 0;
+    windowNanos = windowCycles = windowInstructions = windowAllocated = 0;
+    recentCycles = recentInstructions = recentAllocation = -1;
+  }
+
+  /** Whether the allocation rate can be measured on this JVM */
+  public static boolean isAllocationSupported() {
+    return allocationSupported;
+  }
+
+  /** Bytes allocated so far by the current thread, or 0 if not supported */
+  private static long allocatedBytes() {
+    if (!allocationSupported) {
+      return 0;
+    }
+
+    return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /** Called by the CPU before a step.
+   * @param cycles cycles executed so far
+   * @param instructions instructions executed so far
+   */
+  void stepStarted(long cycles, long instructions) {
+    cyclesStart = cycles;
+    instructionsStart = instructions;
+    allocatedStart = allocatedBytes();
+    stepStart = System.nanoTime();
+  }
+
+  /** Called by the CPU after a step, even if it threw an exception.
+   * @param cycles cycles executed so far
+   * @param instructions instructions executed so far
+   */
+  void stepFinished(long cycles, long instructions) {
+    long elapsed = System.nanoTime() - stepStart;
+    long bytes = allocatedBytes() - allocatedStart;
+    // A reset during the step may have cleared the counters.
+    long c = Math.max(0, cycles - cyclesStart);
+    long i = Math.max(0, instructions - instructionsStart);
+
+    nanos += elapsed;
+    this.cycles += c;
+    this.instructions += i;
+    allocated += bytes;
+
+    windowNanos += elapsed;
+    windowCycles += c;
+    windowInstructions += i;
+    windowAllocated += bytes;
+
+    if (windowNanos >= WINDOW_NANOS) {
+      recentCycles = rate(windowCycles, windowNanos);
+      recentInstructions = rate(windowInstructions, windowNanos);
+      recentAllocation = rate(windowAllocated, windowNanos);
+      windowNanos = windowCycles = windowInstructions = windowAllocated = 0;
+    }
+  }
+
+  private static double rate(long count, long nanos) {
+    return nanos == 0 ? 0 : count * 1e9 / nanos;
+  }
+
+  /** Time spent stepping the CPU during the run, in nanoseconds */
+  public long getBusyNanos() {
+    return nanos;
+  }
+
+  public long getCycles() {
+    return cycles;
+  }
+
+  public long getInstructions() {
+    return instructions;
+  }
+
+  /** Bytes allocated while stepping, or -1 if it cannot be measured */
+  public long getAllocatedBytes() {
+    return allocationSupported ? allocated : -1;
+  }
+
+  /** Simulated cycles per second over the whole run */
+  public double getCyclesPerSecond() {
+    return rate(cycles, nanos);
+  }
+
+  /** Executed instructions per second over the whole run */
+  public double getInstructionsPerSecond() {
+    return rate(instructions, nanos);
+  }
+
+  /** Allocated bytes per second over the whole run, or -1 if unknown */
+  public double getAllocationRate() {
+    return allocationSupported ? rate(allocated, nanos) : -1;
+  }
+
+  /** Simulated cycles per second in the last window, or over the whole run
+   *  if it is still shorter than a window.
+   */
+  public double getRecentCyclesPerSecond() {
+    return recentCycles < 0 ? getCyclesPerSecond() : recentCycles;
+  }
+
+  public double getRecentInstructionsPerSecond() {
+    return recentInstructions < 0 ? getInstructionsPerSecond() : recentInstructions;
+  }
+
+  public double getRecentAllocationRate() {
+    if (!allocationSupported) {
+      return -1;
+    }
+
+    return recentAllocation < 0 ? getAllocationRate() : recentAllocation;
+  }
+
+  public String toString() {
+    String s = String.format("%d cycles, %d instructions in %.3f s: %.0f cycles/s, %.0f instructions/s", cycles, instructions,
+                             nanos / 1e9, getCyclesPerSecond(), getInstructionsPerSecond());
+
+    if (allocationSupported) {
+      s += String.format(", %.1f MB/s allocated", getAllocationRate() / 1e6);
+    }
+
+    return s;
+  }
+}
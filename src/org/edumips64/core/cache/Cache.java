@@ -0,0 +1,347 @@
+/* Cache.java
+ *
+ * Set-associative cache model.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core.cache;
+
+import java.util.Random;
+
+/** One level of a set-associative cache. Only tags and state are modeled
+ *  (data always comes from Memory), which is all that is needed to compute
+ *  hits, misses and latencies.
+ *
+ *  Latencies are in cycles: an access costs the hit latency of this level,
+ *  plus on a miss the cost of fetching the block from the next level (or
+ *  from memory) and, for write-back caches, of writing back a dirty victim.
+ *  There is no write buffer, so write-through writes wait for the next level.
+ */
+public class Cache {
+  public enum Replacement {LRU, FIFO, RANDOM}
+  public enum WritePolicy {WRITE_BACK, WRITE_THROUGH}
+
+  private final String name;
+  private final int blockSize, assoc, sets, hitLatency;
+  private final Replacement replacement;
+  private final WritePolicy writePolicy;
+  private final boolean writeAllocate;
+
+  /** Next level of the hierarchy, null if the next level is memory */
+  private final Cache next;
+  private final int memoryLatency;
+
+  // Per-line state, indexed by set * assoc + way.
+  private final long[] tags;
+  private final long[] stamps;
+  private final boolean[] valid, dirty;
+  /** Lines made valid since the last reset, the only ones to invalidate */
+  private final int[] filled;
+  private int filledCount;
+  private long clock;
+  private final Random random;
+
+  // Statistics, counted only while recording
+  private long reads, writes, readMisses, writeMisses, writebacks, evictions;
+  private boolean recording = true;
+
+  /** Creates a cache level.
+   * @param name name of the level, used in reports
+   * @param size capacity in bytes
+   * @param blockSize block size in bytes, a power of two
+   * @param assoc number of ways
+   * @param hitLatency cycles needed by a hit
+   * @param replacement replacement policy
+   * @param writePolicy write-back or write-through
+   * @param writeAllocate whether write misses allocate a block
+   * @param next next level, or null if the next level is memory
+   * @param memoryLatency cycles needed by a memory access, used when next is null
+   */
+  public Cache(String name, int size, int blockSize, int assoc, int hitLatency, Replacement replacement,
+               WritePolicy writePolicy, boolean writeAllocate, Cache next, int memoryLatency) {
+    if (blockSize <= 0 || Integer.bitCount(blockSize) != 1 || assoc <= 0 || size <= 0 || size % (blockSize * assoc) != 0) {
+      throw new IllegalArgumentException(name + ": size must be a multiple of block size * associativity, and the block size a power of two");
+    }
+
+    this.name = name;
+    this.blockSize = blockSize;
+    this.assoc = assoc;
+    this.sets = size / (blockSize * assoc);
+    this.hitLatency = hitLatency;
+    this.replacement = replacement;
+    this.writePolicy = writePolicy;
+    this.writeAllocate = writeAllocate;
+    this.next = next;
+    this.memoryLatency = memoryLatency;
+
+    tags = new long[sets * assoc];
+    stamps = new long[sets * assoc];
+    valid = new boolean[sets * assoc];
+    dirty = new boolean[sets * assoc];
+    filled = new int[sets * assoc];
+    random = new Random(0);
+  }
+
+  /** Invalidates all the lines and clears the statistics. Lines never go
+   *  back to invalid between two resets, so only the ones filled since the
+   *  last reset are touched. */
+  public void reset() {
+    for (int k = 0; k < filledCount; ++k) {
+      valid[filled[k]] = false;
+      dirty[filled[k]] = false;
+    }
+
+    filledCount = 0;
+    clock = 0;
+    random.setSeed(0);
+    resetStatistics();
+  }
+
+  public void resetStatistics() {
+    reads = writes = readMisses = writeMisses = writebacks = evictions = 0;
+    recording = true;
+  }
+
+  /** Starts or stops counting the accesses; the lines are updated anyway,
+   *  so that the cache stays warm outside the region of interest. */
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+
+  /** Performs an access.
+   * @param address the byte address
+   * @param write true for a store, false for a load or a fetch
+   * @return the latency of the access, in cycles
+   */
+  public int access(long address, boolean write) {
+    long block = address / blockSize;
+    int set = (int)(block % sets);
+    long tag = block / sets;
+    int base = set * assoc;
+    clock++;
+
+    if (recording) {
+      if (write) {
+        writes++;
+      } else {
+        reads++;
+      }
+    }
+
+    for (int i = base; i < base + assoc; ++i) {
+      if (valid[i] && tags[i] == tag) {
+        if (replacement == Replacement.LRU) {
+          stamps[i] = clock;
+        }
+
+        if (!write) {
+          return hitLatency;
+        }
+
+        if (writePolicy == WritePolicy.WRITE_BACK) {
+          dirty[i] = true;
+          return hitLatency;
+        }
+
+        return hitLatency + nextLevel(address, true);
+      }
+    }
+
+    // Miss
+    if (recording) {
+      if (write) {
+        writeMisses++;
+      } else {
+        readMisses++;
+      }
+    }
+
+    if (write && !writeAllocate) {
+      return hitLatency + nextLevel(address, true);
+    }
+
+    return allocate(address, write, true);
+  }
+
+  /** Installs a block that was prefetched outside of this cache. Counted as
+   *  an access that hits, and only the cost of evicting the victim and of a
+   *  write-through store is paid.
+   * @param address the byte address
+   * @param write true if the block is installed by a store
+   * @return the latency of the access, in cycles
+   */
+  public int install(long address, boolean write) {
+    clock++;
+
+    if (recording) {
+      if (write) {
+        writes++;
+      } else {
+        reads++;
+      }
+    }
+
+    return allocate(address, write, false);
+  }
+
+  private int allocate(long address, boolean write, boolean fetch) {
+    long block = address / blockSize;
+    int set = (int)(block % sets);
+    long tag = block / sets;
+    int base = set * assoc;
+    int latency = hitLatency;
+    int victim = chooseVictim(base);
+
+    if (valid[victim]) {
+      if (recording) {
+        evictions++;
+      }
+
+      if (dirty[victim]) {
+        if (recording) {
+          writebacks++;
+        }
+
+        latency += nextLevel((tags[victim] * sets + set) * blockSize, true);
+      }
+    } else {
+      filled[filledCount++] = victim;
+    }
+
+    if (fetch) {
+      latency += nextLevel(address, false);
+    }
+
+    valid[victim] = true;
+    tags[victim] = tag;
+    stamps[victim] = clock;
+    dirty[victim] = write && writePolicy == WritePolicy.WRITE_BACK;
+
+    if (write && writePolicy == WritePolicy.WRITE_THROUGH) {
+      latency += nextLevel(address, true);
+    }
+
+    return latency;
+  }
+
+  /** Tells whether the block containing the address is present, without
+   *  touching the replacement state or the statistics. */
+  public boolean contains(long address) {
+    long block = address / blockSize;
+    int base = (int)(block % sets) * assoc;
+    long tag = block / sets;
+
+    for (int i = base; i < base + assoc; ++i) {
+      if (valid[i] && tags[i] == tag) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private int chooseVictim(int base) {
+    int victim = base;
+
+    for (int i = base; i < base + assoc; ++i) {
+      if (!valid[i]) {
+        return i;
+      }
+
+      if (stamps[i] < stamps[victim]) {
+        victim = i;
+      }
+    }
+
+    if (replacement == Replacement.RANDOM) {
+      victim = base + random.nextInt(assoc);
+    }
+
+    return victim;
+  }
+
+  private int nextLevel(long address, boolean write) {
+    if (next == null) {
+      return memoryLatency;
+    }
+
+    return next.access(address, write);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Cycles needed to access the next level (or memory) for a block that
+   *  is not in this cache, e.g. by a prefetch. */
+  public int fetchFromNext(long address) {
+    return nextLevel(address, false);
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public Cache getNext() {
+    return next;
+  }
+
+  public long getReads() {
+    return reads;
+  }
+
+  public long getWrites() {
+    return writes;
+  }
+
+  public long getAccesses() {
+    return reads + writes;
+  }
+
+  public long getReadMisses() {
+    return readMisses;
+  }
+
+  public long getWriteMisses() {
+    return writeMisses;
+  }
+
+  public long getMisses() {
+    return readMisses + writeMisses;
+  }
+
+  public long getWritebacks() {
+    return writebacks;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  public double getMissRate() {
+    long accesses = getAccesses();
+    return accesses == 0 ? 0 : (double) getMisses() / accesses;
+  }
+
+  public String toString() {
+    return String.format("%-4s %10d accesses %10d misses (%5.2f%%) %8d writebacks", name, getAccesses(), getMisses(),
+                         getMissRate() * 100, writebacks);
+  }
+}
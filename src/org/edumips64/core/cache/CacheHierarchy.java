@@ -0,0 +1,363 @@
+/* CacheHierarchy.java
+ *
+ * Instruction and data cache hierarchy of the CPU.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core.cache;
+
+import org.edumips64.utils.ConfigManager;
+import org.edumips64.utils.ConfigStore;
+
+import java.util.logging.Logger;
+
+/** The caches seen by the CPU: a split first level (L1I for fetches, L1D
+ *  for loads and stores) backed by an optional unified L2, backed in turn
+ *  by a memory with a fixed latency. An optional prefetcher watches the
+ *  data accesses and brings blocks from the next level into a prefetch
+ *  buffer, looked up on L1D misses.
+ *
+ *  The caches are blocking: the CPU asks for the latency of every fetch and
+ *  data access and freezes the whole pipeline for the cycles exceeding the
+ *  one that the stage takes anyway. Code and data live in separate address
+ *  spaces, so instruction addresses are moved above the data ones before
+ *  entering the unified L2.
+ *
+ *  The geometry is read from the configuration every time the hierarchy is
+ *  reset; when the cache is disabled every access takes a single cycle.
+ */
+public class CacheHierarchy {
+  private static final Logger logger = Logger.getLogger(CacheHierarchy.class.getName());
+
+  /** Offset added to instruction addresses in the unified levels */
+  static final long CODE_SPACE = 1L << 48;
+
+  private static CacheHierarchy instance;
+
+  private boolean enabled;
+  private Cache l1i, l1d, l2;
+  /** Configuration the caches were built from, null if not built */
+  private String geometry;
+  private Prefetcher prefetcher;
+  private PrefetchBuffer prefetchBuffer;
+
+  /** Cycle of the data access being served, used to time the prefetches */
+  private long now;
+
+  // Data access statistics
+  private long dataAccesses, dataLatency;
+  private boolean recording = true;
+
+  private CacheHierarchy() {
+    reset();
+  }
+
+  public static CacheHierarchy getInstance() {
+    if (instance == null) {
+      instance = new CacheHierarchy();
+    }
+
+    return instance;
+  }
+
+  /** Rebuilds the caches from the current configuration, or just resets
+   *  them if the configuration did not change. All the lines are invalid
+   *  and the statistics are cleared. */
+  public void reset() {
+    ConfigStore config = ConfigManager.getConfig();
+    enabled = config.getBoolean("cacheEnabled");
+    String key = geometry(config);
+
+    try {
+      if (key.equals(geometry)) {
+        l1i.reset();
+        l1d.reset();
+
+        if (l2 != null) {
+          l2.reset();
+        }
+
+        if (prefetcher != null) {
+          prefetcher.reset();
+          prefetchBuffer.reset();
+        }
+      } else {
+        geometry = null;
+        int memoryLatency = config.getInt("cacheMemoryLatency");
+        l2 = null;
+
+        if (config.getBoolean("cacheL2Enabled")) {
+          l2 = build(config, "L2", null, memoryLatency);
+        }
+
+        l1i = build(config, "L1I", l2, memoryLatency);
+        l1d = build(config, "L1D", l2, memoryLatency);
+        prefetcher = Prefetcher.create(config.getString("cachePrefetcher"), l1d.getBlockSize(), config.getInt("cachePrefetchDegree"),
+                                       config.getInt("cachePrefetchTableSize"), config.getInt("cacheStreamBuffers"));
+        prefetchBuffer = null;
+
+        if (prefetcher != null) {
+          prefetcher.attach(this);
+          prefetchBuffer = new PrefetchBuffer(config.getInt("cachePrefetchBufferSize"));
+        }
+
+        geometry = key;
+      }
+    } catch (IllegalArgumentException e) {
+      logger.warning("Invalid cache configuration, disabling the cache: " + e.getMessage());
+      enabled = false;
+      l1i = l1d = l2 = null;
+      prefetcher = null;
+      prefetchBuffer = null;
+    }
+
+    now = 0;
+    dataAccesses = dataLatency = 0;
+    recording = true;
+  }
+
+  /** Starts or stops counting the accesses in the statistics of every
+   *  level; the contents of the caches are updated anyway. */
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+
+    for (Cache c : new Cache[] {l1i, l1d, l2}) {
+      if (c != null) {
+        c.setRecording(recording);
+      }
+    }
+
+    if (prefetchBuffer != null) {
+      prefetchBuffer.setRecording(recording);
+    }
+  }
+
+  /** Describes the configuration of the caches that build() reads, and of
+   *  the prefetcher */
+  private static String geometry(ConfigStore config) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(config.getInt("cacheMemoryLatency")).append(config.getBoolean("cacheL2Enabled"));
+
+    for (String level : new String[] {"L1I", "L1D", "L2"}) {
+      String prefix = "cache" + level;
+      sb.append('/').append(config.getInt(prefix + "Size")).append(',').append(config.getInt(prefix + "BlockSize"))
+      .append(',').append(config.getInt(prefix + "Assoc")).append(',').append(config.getInt(prefix + "Latency"))
+      .append(',').append(config.getString(prefix + "Replacement"));
+
+      if (!level.equals("L1I")) {
+        sb.append(',').append(config.getString(prefix + "WritePolicy")).append(',').append(config.getBoolean(prefix + "WriteAllocate"));
+      }
+    }
+
+    sb.append('/').append(config.getString("cachePrefetcher")).append(',').append(config.getInt("cachePrefetchDegree"))
+    .append(',').append(config.getInt("cachePrefetchTableSize")).append(',').append(config.getInt("cacheStreamBuffers"))
+    .append(',').append(config.getInt("cachePrefetchBufferSize"));
+    return sb.toString();
+  }
+
+  private static Cache build(ConfigStore config, String level, Cache next, int memoryLatency) {
+    String prefix = "cache" + level;
+    Cache.WritePolicy writePolicy = Cache.WritePolicy.WRITE_BACK;
+    boolean writeAllocate = true;
+
+    // The instruction cache is never written.
+    if (!level.equals("L1I")) {
+      String policy = config.getString(prefix + "WritePolicy");
+
+      if (policy.equalsIgnoreCase("WT")) {
+        writePolicy = Cache.WritePolicy.WRITE_THROUGH;
+      } else if (!policy.equalsIgnoreCase("WB")) {
+        throw new IllegalArgumentException(level + ": unknown write policy " + policy);
+      }
+
+      writeAllocate = config.getBoolean(prefix + "WriteAllocate");
+    }
+
+    Cache.Replacement replacement;
+
+    try {
+      replacement = Cache.Replacement.valueOf(config.getString(prefix + "Replacement").toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(level + ": unknown replacement policy " + config.getString(prefix + "Replacement"));
+    }
+
+    return new Cache(level, config.getInt(prefix + "Size"), config.getInt(prefix + "BlockSize"), config.getInt(prefix + "Assoc"),
+                     config.getInt(prefix + "Latency"), replacement, writePolicy, writeAllocate, next, memoryLatency);
+  }
+
+  /** Whether the caches are modeled at all */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Instruction fetch.
+   * @param address address of the instruction
+   * @return the number of stall cycles caused by the access
+   */
+  public int fetch(long address) {
+    if (!enabled) {
+      return 0;
+    }
+
+    return stalls(l1i.access(address + CODE_SPACE, false));
+  }
+
+  /** Data load.
+   * @param pc address of the load instruction
+   * @param address the byte address
+   * @param cycle current CPU cycle
+   * @return the number of stall cycles caused by the access
+   */
+  public int load(long pc, long address, long cycle) {
+    return data(pc, address, false, cycle);
+  }
+
+  /** Data store.
+   * @param pc address of the store instruction
+   * @param address the byte address
+   * @param cycle current CPU cycle
+   * @return the number of stall cycles caused by the access
+   */
+  public int store(long pc, long address, long cycle) {
+    return data(pc, address, true, cycle);
+  }
+
+  private int data(long pc, long address, boolean write, long cycle) {
+    if (!enabled) {
+      return 0;
+    }
+
+    now = cycle;
+    int latency;
+    boolean miss = false, prefetchHit = false;
+
+    if (prefetchBuffer != null && !l1d.contains(address)) {
+      int wait = prefetchBuffer.take(address / l1d.getBlockSize(), cycle);
+      prefetchHit = wait != -1;
+
+      if (prefetchHit) {
+        latency = l1d.install(address, write) + wait;
+      } else {
+        miss = true;
+        latency = l1d.access(address, write);
+      }
+    } else {
+      latency = l1d.access(address, write);
+    }
+
+    if (prefetcher != null) {
+      prefetcher.observe(pc, address, miss, prefetchHit);
+    }
+
+    if (recording) {
+      dataAccesses++;
+      dataLatency += latency;
+    }
+
+    return stalls(latency);
+  }
+
+  /** Brings the block containing the address into the prefetch buffer,
+   *  unless it is already cached or on its way. */
+  void prefetch(long address) {
+    long block = address / l1d.getBlockSize();
+
+    if (l1d.contains(address) || prefetchBuffer.contains(block)) {
+      prefetchBuffer.drop();
+      return;
+    }
+
+    prefetchBuffer.insert(block, now + l1d.fetchFromNext(address));
+  }
+
+  // The first cycle of an access overlaps with the pipeline stage.
+  private static int stalls(int latency) {
+    return Math.max(0, latency - 1);
+  }
+
+  public Cache getL1I() {
+    return l1i;
+  }
+
+  public Cache getL1D() {
+    return l1d;
+  }
+
+  /** @return the L2 cache, or null if there is no L2 */
+  public Cache getL2() {
+    return l2;
+  }
+
+  /** @return the data prefetcher, or null if there is none */
+  public Prefetcher getPrefetcher() {
+    return prefetcher;
+  }
+
+  /** @return the prefetch buffer, or null if there is no prefetcher */
+  public PrefetchBuffer getPrefetchBuffer() {
+    return prefetchBuffer;
+  }
+
+  /** Average latency of loads and stores, in cycles */
+  public double getAverageDataLatency() {
+    return dataAccesses == 0 ? 0 : (double) dataLatency / dataAccesses;
+  }
+
+  /** Fraction of the L1D misses that the prefetcher turned into hits in
+   *  the prefetch buffer */
+  public double getPrefetchCoverage() {
+    if (prefetchBuffer == null) {
+      return 0;
+    }
+
+    long covered = prefetchBuffer.getUseful();
+    long total = covered + l1d.getMisses();
+    return total == 0 ? 0 : (double) covered / total;
+  }
+
+  /** Formats the statistics of all the levels, one per line. */
+  public String toReport() {
+    if (!enabled) {
+      return "";
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(l1i).append('\n');
+    sb.append(l1d).append('\n');
+
+    if (l2 != null) {
+      sb.append(l2).append('\n');
+    }
+
+    sb.append(String.format("Average data access latency: %.2f cycles%n", getAverageDataLatency()));
+
+    if (prefetcher != null) {
+      PrefetchBuffer pb = prefetchBuffer;
+      sb.append(String.format("Prefetcher %s: %d issued, %d dropped, %d useful, %d late (%d cycles), %d evicted unused%n",
+                              prefetcher.getName(), pb.getIssued(), pb.getDropped(), pb.getUseful(), pb.getLate(), pb.getLateCycles(),
+                              pb.getEvicted()));
+      sb.append(String.format("Prefetch coverage %.2f%%, accuracy %.2f%%, timeliness %.2f%%%n", getPrefetchCoverage() * 100,
+                              pb.getAccuracy() * 100, pb.getTimeliness() * 100));
+    }
+
+    return sb.toString();
+  }
+}
@@ -0,0 +1,52 @@
+/* NextLinePrefetcher.java
+ *
+ * Next-line data prefetcher.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core.cache;
+
+/** Tagged next-line prefetcher: a miss, or the first use of a prefetched
+ *  block, requests the following blocks. */
+class NextLinePrefetcher extends Prefetcher {
+  NextLinePrefetcher(int blockSize, int degree) {
+    super(blockSize, degree);
+  }
+
+  public void observe(long pc, long address, boolean miss, boolean prefetchHit) {
+    if (!miss && !prefetchHit) {
+      return;
+    }
+
+    long block = address / blockSize;
+
+    for (int i = 1; i <= degree; ++i) {
+      issue((block + i) * blockSize);
+    }
+  }
+
+  public void reset() {
+  }
+
+  public String getName() {
+    return "next-line";
+  }
+}
@@ -0,0 +1,177 @@
+/* PrefetchBuffer.java
+ *
+ * Buffer holding the prefetched blocks until their first use.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core.cache;
+
+import java.util.Arrays;
+
+/** Small fully associative buffer, with FIFO replacement, where prefetched
+ *  blocks wait until a load or store uses them (and moves them to the L1
+ *  data cache) or until they are pushed out by newer prefetches. Keeping
+ *  them out of the cache means that a useless prefetch never evicts useful
+ *  data, and makes the usefulness of every prefetch easy to account for.
+ *
+ *  Every entry holds the cycle when its data arrives, so that a demand
+ *  access that comes earlier (a late prefetch) only saves part of the miss
+ *  latency.
+ */
+public class PrefetchBuffer {
+  private final long[] blocks, ready;
+  private final boolean[] valid;
+  private int next;
+
+  // Statistics, counted only while recording
+  private long issued, dropped, useful, late, lateCycles, evicted;
+  private boolean recording = true;
+
+  public PrefetchBuffer(int entries) {
+    if (entries <= 0) {
+      throw new IllegalArgumentException("the prefetch buffer must have at least one entry");
+    }
+
+    blocks = new long[entries];
+    ready = new long[entries];
+    valid = new boolean[entries];
+  }
+
+  public void reset() {
+    Arrays.fill(valid, false);
+    next = 0;
+    issued = dropped = useful = late = lateCycles = evicted = 0;
+    recording = true;
+  }
+
+  public void setRecording(boolean recording) {
+    this.recording = recording;
+  }
+
+  public boolean contains(long block) {
+    return find(block) != -1;
+  }
+
+  /** Adds a prefetched block.
+   * @param block block number
+   * @param readyCycle cycle when the data arrives
+   */
+  void insert(long block, long readyCycle) {
+    if (valid[next] && recording) {
+      evicted++;
+    }
+
+    blocks[next] = block;
+    ready[next] = readyCycle;
+    valid[next] = true;
+    next = (next + 1) % blocks.length;
+
+    if (recording) {
+      issued++;
+    }
+  }
+
+  /** Counts a request for a block that was already cached or in flight. */
+  void drop() {
+    if (recording) {
+      dropped++;
+    }
+  }
+
+  /** Removes a block used by a demand access.
+   * @param block block number
+   * @param cycle cycle of the demand access
+   * @return the cycles the access still has to wait for the data, or -1 if the block is not in the buffer
+   */
+  int take(long block, long cycle) {
+    int i = find(block);
+
+    if (i == -1) {
+      return -1;
+    }
+
+    valid[i] = false;
+    int wait = (int) Math.max(0, ready[i] - cycle);
+
+    if (!recording) {
+      return wait;
+    }
+
+    useful++;
+
+    if (wait > 0) {
+      late++;
+      lateCycles += wait;
+    }
+
+    return wait;
+  }
+
+  private int find(long block) {
+    for (int i = 0; i < blocks.length; ++i) {
+      if (valid[i] && blocks[i] == block) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /** Prefetches sent to the next level */
+  public long getIssued() {
+    return issued;
+  }
+
+  /** Prefetch requests discarded because the block was already cached or in flight */
+  public long getDropped() {
+    return dropped;
+  }
+
+  /** Prefetched blocks used by a load or a store */
+  public long getUseful() {
+    return useful;
+  }
+
+  /** Useful prefetches whose data arrived after the demand access */
+  public long getLate() {
+    return late;
+  }
+
+  /** Cycles waited by the demand accesses for late prefetches */
+  public long getLateCycles() {
+    return lateCycles;
+  }
+
+  /** Prefetched blocks pushed out of the buffer before being used */
+  public long getEvicted() {
+    return evicted;
+  }
+
+  /** Fraction of the issued prefetches that were used */
+  public double getAccuracy() {
+    return issued == 0 ? 0 : (double) useful / issued;
+  }
+
+  /** Fraction of the useful prefetches that arrived in time */
+  public double getTimeliness() {
+    return useful == 0 ? 0 : (double)(useful - late) / useful;
+  }
+}
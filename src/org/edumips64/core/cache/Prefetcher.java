@@ -0,0 +1,92 @@
+/* Prefetcher.java
+ *
+ * Base class of the data prefetchers.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core.cache;
+
+/** A hardware data prefetcher. The cache hierarchy shows every load and
+ *  store to the prefetcher after the L1 data cache has been looked up; the
+ *  prefetcher in turn asks for blocks with issue(), which the hierarchy
+ *  fetches from the next level into the prefetch buffer without stalling
+ *  the pipeline.
+ */
+public abstract class Prefetcher {
+  private CacheHierarchy hierarchy;
+
+  /** Block size of the cache being prefetched into, in bytes */
+  protected final int blockSize;
+
+  /** Number of blocks requested ahead of the current access */
+  protected final int degree;
+
+  protected Prefetcher(int blockSize, int degree) {
+    this.blockSize = blockSize;
+    this.degree = Math.max(1, degree);
+  }
+
+  /** Builds a prefetcher by name.
+   * @param name "nextline", "stride" or "stream"; "none" or an empty string for no prefetcher
+   * @param blockSize block size of the L1 data cache
+   * @param degree blocks requested ahead of the current access
+   * @param tableSize entries of the reference prediction table
+   * @param streams number of stream buffers
+   * @return the prefetcher, or null for no prefetcher
+   */
+  public static Prefetcher create(String name, int blockSize, int degree, int tableSize, int streams) {
+    if (name == null || name.isEmpty() || name.equalsIgnoreCase("none")) {
+      return null;
+    } else if (name.equalsIgnoreCase("nextline")) {
+      return new NextLinePrefetcher(blockSize, degree);
+    } else if (name.equalsIgnoreCase("stride")) {
+      return new StridePrefetcher(blockSize, degree, tableSize);
+    } else if (name.equalsIgnoreCase("stream")) {
+      return new StreamBufferPrefetcher(blockSize, degree, streams);
+    }
+
+    throw new IllegalArgumentException("unknown prefetcher " + name);
+  }
+
+  void attach(CacheHierarchy hierarchy) {
+    this.hierarchy = hierarchy;
+  }
+
+  /** Requests the block containing the given address. */
+  protected void issue(long address) {
+    if (address >= 0) {
+      hierarchy.prefetch(address);
+    }
+  }
+
+  /** Observes a data access.
+   * @param pc address of the load or store instruction
+   * @param address the byte address accessed
+   * @param miss whether the access missed both the L1 data cache and the prefetch buffer
+   * @param prefetchHit whether the block was found in the prefetch buffer
+   */
+  public abstract void observe(long pc, long address, boolean miss, boolean prefetchHit);
+
+  /** Forgets everything that was learnt. */
+  public abstract void reset();
+
+  public abstract String getName();
+}
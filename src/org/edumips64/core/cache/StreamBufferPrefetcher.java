@@ -0,0 +1,110 @@
+/* StreamBufferPrefetcher.java
+ *
+ * Stream buffer data prefetcher.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core.cache;
+
+import java.util.Arrays;
+
+/** Stream buffers (Jouppi). A miss that does not belong to any stream
+ *  allocates the least recently used buffer and requests the blocks that
+ *  follow it; every use of a block of a stream requests more blocks at the
+ *  tail, so that each buffer keeps "degree" blocks ahead of the accesses.
+ *
+ *  The prefetched blocks are held in the shared prefetch buffer of the
+ *  hierarchy: a stream only remembers the window of blocks it requested.
+ */
+class StreamBufferPrefetcher extends Prefetcher {
+  private final long[] heads, tails, lastUse;
+  private final boolean[] valid;
+  private long clock;
+
+  StreamBufferPrefetcher(int blockSize, int degree, int streams) {
+    super(blockSize, degree);
+
+    if (streams <= 0) {
+      throw new IllegalArgumentException("there must be at least one stream buffer");
+    }
+
+    heads = new long[streams];
+    tails = new long[streams];
+    lastUse = new long[streams];
+    valid = new boolean[streams];
+  }
+
+  public void observe(long pc, long address, boolean miss, boolean prefetchHit) {
+    if (!miss && !prefetchHit) {
+      return;
+    }
+
+    long block = address / blockSize;
+    int stream = -1;
+    clock++;
+
+    for (int i = 0; i < heads.length; ++i) {
+      if (valid[i] && block >= heads[i] && block < tails[i]) {
+        stream = i;
+        break;
+      }
+    }
+
+    if (stream == -1) {
+      if (!miss) {
+        return;
+      }
+
+      // Allocate the least recently used buffer to a new stream.
+      stream = 0;
+
+      for (int i = 0; i < heads.length; ++i) {
+        if (!valid[i]) {
+          stream = i;
+          break;
+        }
+
+        if (lastUse[i] < lastUse[stream]) {
+          stream = i;
+        }
+      }
+
+      valid[stream] = true;
+      tails[stream] = block + 1;
+    }
+
+    heads[stream] = block + 1;
+    lastUse[stream] = clock;
+
+    while (tails[stream] - heads[stream] < degree) {
+      issue(tails[stream]++ * blockSize);
+    }
+  }
+
+  public void reset() {
+    Arrays.fill(valid, false);
+    clock = 0;
+  }
+
+  public String getName() {
+    return "stream";
+  }
+}
@@ -0,0 +1,114 @@
+/* StridePrefetcher.java
+ *
+ * Stride data prefetcher based on a reference prediction table.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.core.cache;
+
+import java.util.Arrays;
+
+/** Stride prefetcher with a direct-mapped reference prediction table
+ *  indexed by the PC of the load or store (Chen and Baer). Every entry
+ *  remembers the last address and stride of its instruction and a state
+ *  that becomes STEADY once the same stride has been seen twice in a row;
+ *  only steady entries issue prefetches.
+ */
+class StridePrefetcher extends Prefetcher {
+  private static final byte INITIAL = 0, TRANSIENT = 1, STEADY = 2, NO_PREDICTION = 3;
+
+  private final long[] tags, lastAddresses, strides;
+  private final byte[] states;
+  private final boolean[] valid;
+
+  StridePrefetcher(int blockSize, int degree, int tableSize) {
+    super(blockSize, degree);
+
+    if (tableSize <= 0) {
+      throw new IllegalArgumentException("the reference prediction table must have at least one entry");
+    }
+
+    tags = new long[tableSize];
+    lastAddresses = new long[tableSize];
+    strides = new long[tableSize];
+    states = new byte[tableSize];
+    valid = new boolean[tableSize];
+  }
+
+  public void observe(long pc, long address, boolean miss, boolean prefetchHit) {
+    int i = (int)((pc / 4) % tags.length);
+
+    if (!valid[i] || tags[i] != pc) {
+      valid[i] = true;
+      tags[i] = pc;
+      lastAddresses[i] = address;
+      strides[i] = 0;
+      states[i] = INITIAL;
+      return;
+    }
+
+    long stride = address - lastAddresses[i];
+    boolean correct = stride == strides[i];
+
+    switch (states[i]) {
+    case INITIAL:
+      states[i] = correct ? STEADY : TRANSIENT;
+      break;
+    case TRANSIENT:
+      states[i] = correct ? STEADY : NO_PREDICTION;
+      break;
+    case STEADY:
+      // Keep the stride: a single irregular access does not change it.
+      if (!correct) {
+        states[i] = INITIAL;
+      }
+      break;
+    default:
+      states[i] = correct ? TRANSIENT : NO_PREDICTION;
+    }
+
+    if (!correct && states[i] != INITIAL) {
+      strides[i] = stride;
+    }
+
+    lastAddresses[i] = address;
+
+    if (states[i] == STEADY && strides[i] != 0) {
+      long block = address / blockSize;
+
+      for (int d = 1; d <= degree; ++d) {
+        long target = address + strides[i] * d;
+
+        if (target / blockSize != block) {
+          issue(target);
+        }
+      }
+    }
+  }
+
+  public void reset() {
+    Arrays.fill(valid, false);
+  }
+
+  public String getName() {
+    return "stride";
+  }
+}
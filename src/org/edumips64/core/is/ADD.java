@@ -38,11 +38,8 @@ import org.edumips64.utils.*;
  *
  */
 class ADD extends ALU_RType {
-  final String OPCODE_VALUE = "100000";
-
 
   public ADD() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "ADD";
   }
 
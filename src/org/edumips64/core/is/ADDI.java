@@ -38,9 +38,7 @@ import org.edumips64.utils.*;
  */
 
 class ADDI extends ALU_IType {
-  final String OPCODE_VALUE = "001000";
   ADDI() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "ADDI";
   }
 
@@ -40,9 +40,7 @@ import org.edumips64.utils.IrregularStringOfBitsException;
  * @author Lorenzo Sciuto - Erik UrzÃ¬ - Giorgio Scibilia
  */
 public class ADDU extends ALU_RType {
-  final String OPCODE_VALUE = "100001";
   public ADDU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "ADDU";
   }
 
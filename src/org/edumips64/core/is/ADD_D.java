@@ -39,13 +39,9 @@ import java.math.*;
  *</pre>
  */
 class ADD_D extends FPArithmeticInstructions {
-  String OPCODE_VALUE = "000000";
-  String FMT_FIELD = "10001"; //DOUBLE IS 17
   String NAME = "ADD.D";
 
   public ADD_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     super.name = NAME;
   }
 
@@ -53,4 +49,9 @@ class ADD_D extends FPArithmeticInstructions {
   protected String doFPArith(String operand1, String operand2) throws FPInvalidOperationException, FPUnderflowException, FPOverflowException, FPDivideByZeroException, IrregularStringOfBitsException {
     return FPInstructionUtils.doubleSum(operand1, operand2);
   }
+
+  /** Stages of the FP adder */
+  public int getLatency() {
+    return 4;
+  }
 }
@@ -37,25 +37,12 @@ public abstract class ALUInstructions extends Instruction {
   public void IF() {
     Dinero din = Dinero.getInstance();
 
-    try {
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    din.IF(cpu.getLastPC().getValue());
   }
   public abstract void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, WAWException;
   public abstract void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException, IrregularWriteOperationException, DivisionByZeroException, FPInvalidOperationException, FPUnderflowException, FPOverflowException, FPDivideByZeroException, FPInvalidOperationException;
   public abstract void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException;
   public abstract void WB() throws IrregularStringOfBitsException;
-  public abstract void pack() throws IrregularStringOfBitsException;
-
 
 }
 
-
-
-
-
-
-
-
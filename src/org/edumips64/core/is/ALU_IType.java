@@ -36,13 +36,6 @@ public class ALU_IType extends ComputationalInstructions {
   final static int RT_FIELD = 0;
   final static int RS_FIELD = 1;
   final static int IMM_FIELD = 2;
-  final static int RT_FIELD_INIT = 11;
-  final static int RS_FIELD_INIT = 6;
-  final static int IMM_FIELD_INIT = 16;
-  final static int RT_FIELD_LENGTH = 5;
-  final static int RS_FIELD_LENGTH = 5;
-  final static int IMM_FIELD_LENGTH = 16;
-  String OPCODE_VALUE = "";
 
   private static final Logger logger = Logger.getLogger(ALU_IType.class.getName());
 
@@ -88,12 +81,6 @@ public class ALU_IType extends ComputationalInstructions {
     cpu.getRegister(params.get(RT_FIELD)).decrWriteSemaphore();
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, 0);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(IMM_FIELD_LENGTH, params.get(IMM_FIELD)), IMM_FIELD_INIT);
-  }
   public static void main(String[] args) {
 //DEBUGGING DADDI DADDUI ANDI
     //ANDI ins =new ANDI();
@@ -39,14 +39,6 @@ public abstract class ALU_RType extends ComputationalInstructions {
   final static int RD_FIELD = 0;
   final static int RS_FIELD = 1;
   final static int RT_FIELD = 2;
-  final static int RD_FIELD_INIT = 16;
-  final static int RS_FIELD_INIT = 6;
-  final static int RT_FIELD_INIT = 11;
-  final static int RD_FIELD_LENGTH = 5;
-  final static int RS_FIELD_LENGTH = 5;
-  final static int RT_FIELD_LENGTH = 5;
-  String OPCODE_VALUE = "";
-  final static int OPCODE_VALUE_INIT = 26;
   private static final Logger logger = Logger.getLogger(ALU_RType.class.getName());
   public ALU_RType() {
     syntax = "%R,%R,%R";
@@ -107,14 +99,6 @@ public abstract class ALU_RType extends ComputationalInstructions {
 
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RD_FIELD_LENGTH, params.get(RD_FIELD)), RD_FIELD_INIT);
-  }
-
   public static void main(String[] args) {
 //DEBUGGING DADD DADDU DSUB DSUBU
     //DSUB ins=new DSUB();
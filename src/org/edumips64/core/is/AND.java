@@ -39,10 +39,8 @@ import org.edumips64.utils.*;
  * @author  Trubia Massimo, Russo Daniele
  */
 public class AND extends ALU_RType {
-  public String OPCODE_VALUE = "100100";
 
   public AND() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "AND";
   }
 
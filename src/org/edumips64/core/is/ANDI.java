@@ -38,10 +38,8 @@ import org.edumips64.utils.*;
   * @author Trubia Massimo, Russo Daniele
  */
 class ANDI extends ALU_IType {
-  final String OPCODE_VALUE = "001100";
 
   public ANDI() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "ANDI";
   }
   //since this operation is carried out with zero padding of immediate, against sign_extend(immediate) methodology
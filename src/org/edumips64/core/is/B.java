@@ -35,12 +35,10 @@ import org.edumips64.utils.*;
  */
 
 public class B extends FlowControl_IType {
-  final String OPCODE_VALUE = "000100";
   final static int OFFSET_FIELD = 0;
 
   /** Creates a new instance of B */
   public B() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%B";
     name = "B";
   }
@@ -61,35 +59,7 @@ public class B extends FlowControl_IType {
     bs_temp.writeDoubleWord(-4);
     pc_old = InstructionsUtils.twosComplementSum(pc_old, bs_temp.getBinString());
 
-    // Updating History Table
-    // cpu.addDecisionLocalShiftRegister(ShiftRegister.branchDecision.Taken);
-    cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.Taken);
-    cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.Taken);
-
-    if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-        cpu.predictionKnown++;
-        if (predictedDecision == ShiftRegister.branchDecision.Taken) {
-            cpu.predictionSuccessful++;
-            if (cpu.getSelectGlobalFlag() == true) {
-              cpu.decrementPredictorSelectionCounter();
-            } else {
-              cpu.incrementPredictorSelectionCounter();
-            }
-        } else {
-            cpu.predictionUnsuccessful++;
-            if (cpu.getSelectGlobalFlag() == true) {
-              cpu.incrementPredictorSelectionCounter();
-            } else {
-              cpu.decrementPredictorSelectionCounter();
-            }
-        }
-    }
-    else {
-        cpu.predictionUnknown++;
-    }
-
-    // Printing History Table
-    // cpu.printLocalHistoryTable();
+    resolveBranch(true, cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD), BranchTrace.Kind.UNCONDITIONAL);
 
     //updating program counter
     pc_new = InstructionsUtils.twosComplementSum(pc_old, offset);
@@ -98,9 +68,4 @@ public class B extends FlowControl_IType {
     throw new JumpException();
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(OFFSET_FIELD_LENGTH, params.get(OFFSET_FIELD) / 4), OFFSET_FIELD_INIT);
-  }
-
 }
@@ -35,13 +35,9 @@ import org.edumips64.utils.*;
  */
 
 public class BC1F extends FPConditionalBranchesInstructions {
-  static String ND_FIELD = "0";
-  static String TF_FIELD = "0";
   static String NAME = "BC1F";
 
   public BC1F() {
-    super.ND_FIELD = ND_FIELD;
-    super.TF_FIELD = TF_FIELD;
     super.name = NAME;
   }
 
@@ -53,7 +49,11 @@ public class BC1F extends FPConditionalBranchesInstructions {
     bs.writeHalf(params.get(OFFSET_FIELD));
     String offset = bs.getBinString();
 
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
+
     if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.FP_CONDITIONAL);
+
       String pc_new = "";
       Register pc = cpu.getPC();
       String pc_old = cpu.getPC().getBinString();
@@ -68,6 +68,8 @@ public class BC1F extends FPConditionalBranchesInstructions {
       pc.setBits(pc_new, 0);
 
       throw new JumpException();
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.FP_CONDITIONAL);
     }
   }
 
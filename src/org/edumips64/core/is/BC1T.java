@@ -36,13 +36,9 @@ import org.edumips64.utils.*;
  */
 
 public class BC1T extends FPConditionalBranchesInstructions {
-  static String ND_FIELD = "0";
-  static String TF_FIELD = "1";
   static String NAME = "BC1T";
 
   public BC1T() {
-    super.ND_FIELD = ND_FIELD;
-    super.TF_FIELD = TF_FIELD;
     super.name = NAME;
   }
 
@@ -54,7 +50,11 @@ public class BC1T extends FPConditionalBranchesInstructions {
     bs.writeHalf(params.get(OFFSET_FIELD));
     String offset = bs.getBinString();
 
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
+
     if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.FP_CONDITIONAL);
+
       String pc_new = "";
       Register pc = cpu.getPC();
       String pc_old = cpu.getPC().getBinString();
@@ -69,6 +69,8 @@ public class BC1T extends FPConditionalBranchesInstructions {
       pc.setBits(pc_new, 0);
 
       throw new JumpException();
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.FP_CONDITIONAL);
     }
   }
 
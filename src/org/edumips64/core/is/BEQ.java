@@ -35,11 +35,9 @@ import org.edumips64.utils.*;
  */
 
 public class BEQ extends FlowControl_IType {
-  final String OPCODE_VALUE = "000100";
 
   /** Creates a new instance of BEQ */
   public BEQ() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%R,%B";
     name = "BEQ";
   }
@@ -58,41 +56,15 @@ public class BEQ extends FlowControl_IType {
     String offset = bs.getBinString();
     boolean condition = rs.equals(rt);
 
-    if (condition) {
-      // Updating Local Shift Register
-
-      cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.Taken);
-      cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.Taken);
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
 
-      if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.Taken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
+    if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.CONDITIONAL);
 
       String pc_new = "";
       Register pc = cpu.getPC();
       String pc_old = cpu.getPC().getBinString();
 
-      // System.out.println("PC is " + pc.toString());
-
-      // System.out.println("Old PC is " + cpu.getLastPC().toString());
-
       //subtracting 4 to the pc_old temporary variable using bitset64 safe methods
       BitSet64 bs_temp = new BitSet64();
       bs_temp.writeDoubleWord(-4);
@@ -101,36 +73,10 @@ public class BEQ extends FlowControl_IType {
       //updating program counter
       pc_new = InstructionsUtils.twosComplementSum(pc_old, offset);
       pc.setBits(pc_new, 0);
-      // System.out.println("PC after adding offset is " + pc.toString());
 
       throw new JumpException();
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.CONDITIONAL);
     }
-    else {
-        // Updating Local Shift Register
-        cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.NotTaken);
-        cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.NotTaken);
-        // Checking if the predicted decision is in accordance of what got taken
-        if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.NotTaken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
-    }
-    // Adding decision to the Local History Table
-    }
+  }
 }
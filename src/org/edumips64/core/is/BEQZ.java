@@ -37,11 +37,9 @@ import org.edumips64.utils.*;
  */
 public class BEQZ extends FlowControl_IType {
   protected final static int OFFSET_FIELD = 1;
-  public String OPCODE_VALUE = "000110";
 
   /** Creates a new instance of BEQZ */
   public BEQZ() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%B";
     name = "BEQZ";
   }
@@ -61,31 +59,10 @@ public class BEQZ extends FlowControl_IType {
     String offset = bs.getBinString();
     boolean condition = rs.equals(zero);
 
-    if (condition) {
-      // Updating localShiftRegister with the latest decision
-      cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.Taken);
-      cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.Taken);
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
 
-      if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.Taken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
+    if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.CONDITIONAL);
 
       String pc_new = "";
       Register pc = cpu.getPC();
@@ -101,39 +78,8 @@ public class BEQZ extends FlowControl_IType {
       pc.setBits(pc_new, 0);
 
       throw new JumpException();
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.CONDITIONAL);
     }
-    else {
-        // Updating localShiftRegister with the NotTaken Decision
-        cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.NotTaken);
-        cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.NotTaken);
-        
-        if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.NotTaken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
-  }
-  // Updating localHistory Table
-  }
-    public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, 0/*params.get(RS_FIELD)*/), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RS_FIELD) /* 0*/), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(OFFSET_FIELD_LENGTH, params.get(OFFSET_FIELD) / 4), OFFSET_FIELD_INIT);
   }
 }
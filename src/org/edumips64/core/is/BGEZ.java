@@ -34,13 +34,10 @@ import org.edumips64.utils.*;
  */
 
 public class BGEZ extends FlowControl_IType {
-  final String OPCODE_VALUE = "000001";
   final static int OFFSET_FIELD = 1;
-  final String RT_VALUE = "00001";
 
   /** Creates a new instance of BGEZ */
   public BGEZ() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%B";
     name = "BGEZ";
   }
@@ -58,7 +55,11 @@ public class BGEZ extends FlowControl_IType {
     String offset = bs.getBinString();
     boolean condition = rs.charAt(0) == '0';
 
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
+
     if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.CONDITIONAL);
+
       String pc_new = "";
       Register pc = cpu.getPC();
       String pc_old = cpu.getPC().getBinString();
@@ -73,13 +74,9 @@ public class BGEZ extends FlowControl_IType {
       pc.setBits(pc_new, 0);
 
       throw new JumpException();
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.CONDITIONAL);
     }
   }
-  public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-    repr.setBits(RT_VALUE, RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(OFFSET_FIELD_LENGTH, params.get(OFFSET_FIELD) / 4), OFFSET_FIELD_INIT);
-  }
 
 }
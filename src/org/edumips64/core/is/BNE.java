@@ -35,10 +35,8 @@ import org.edumips64.utils.*;
  */
 
 public class BNE extends FlowControl_IType {
-  final String OPCODE_VALUE = "000101";
 
   public BNE() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%R,%B";
     name = "BNE";
   }
@@ -57,31 +55,10 @@ public class BNE extends FlowControl_IType {
     String offset = bs.getBinString();
     boolean condition = !rs.equals(rt);
 
-    if (condition) {
-      // Updating Local Shift Register
-      cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.Taken);
-      cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.Taken);
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
 
-      if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.Taken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
+    if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.CONDITIONAL);
 
       String pc_new = "";
       Register pc = cpu.getPC();
@@ -97,32 +74,8 @@ public class BNE extends FlowControl_IType {
       pc.setBits(pc_new, 0);
 
       throw new JumpException();
-    }
-    else {
-        // Updating Local Shift Register
-        cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.NotTaken);
-        cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.NotTaken);
-
-        if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.NotTaken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.CONDITIONAL);
     }
   }
 
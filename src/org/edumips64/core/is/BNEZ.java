@@ -34,12 +34,10 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 public class BNEZ extends FlowControl_IType {
-  public String OPCODE_VALUE = "000111";
   protected final int OFFSET_FIELD = 1;
 
   /** Creates a new instance of BEQZ */
   public BNEZ() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%B";
     name = "BNEZ";
   }
@@ -59,31 +57,10 @@ public class BNEZ extends FlowControl_IType {
     String offset = bs.getBinString();
     boolean condition = ! rs.equals(zero);
 
-    if (condition) {
-      // Updating local shift register
-      cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.Taken);
-      cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.Taken);
+    long target = cpu.getPC().getValue() - 4 + params.get(OFFSET_FIELD);
 
-      if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.Taken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
+    if (condition) {
+      resolveBranch(true, target, BranchTrace.Kind.CONDITIONAL);
 
       String pc_new = "";
       Register pc = cpu.getPC();
@@ -99,39 +76,8 @@ public class BNEZ extends FlowControl_IType {
       pc.setBits(pc_new, 0);
 
       throw new JumpException();
+    } else {
+      resolveBranch(false, target, BranchTrace.Kind.CONDITIONAL);
     }
-    else {
-        // Updating local shift register with decision not taken
-        cpu.updateLocalHistoryTable(instPC, ShiftRegister.branchDecision.NotTaken);
-        cpu.updateGlobalHistoryRegister(ShiftRegister.branchDecision.NotTaken);
-
-        if (predictedDecision != ShiftRegister.branchDecision.Unknown) {
-          cpu.predictionKnown++;
-          if (predictedDecision == ShiftRegister.branchDecision.NotTaken) {
-              cpu.predictionSuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.decrementPredictorSelectionCounter();
-              } else {
-                cpu.incrementPredictorSelectionCounter();
-              }
-          } else {
-              cpu.predictionUnsuccessful++;
-              if (cpu.getSelectGlobalFlag() == true) {
-                cpu.incrementPredictorSelectionCounter();
-              } else {
-                cpu.decrementPredictorSelectionCounter();
-              }
-          }
-      } else {
-          cpu.predictionUnknown++;
-      }
-  }
-  }
-  public void pack() throws IrregularStringOfBitsException {
-
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, 0/*params.get(RS_FIELD)*/), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RS_FIELD) /*0*/), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(OFFSET_FIELD_LENGTH, params.get(OFFSET_FIELD) / 4), OFFSET_FIELD_INIT);
   }
 }
@@ -36,19 +36,14 @@ import org.edumips64.utils.*;
  * @author Andrea Spadaccini
  */
 public class BREAK extends Instruction {
-  final String OPCODE_VALUE = "000000"; // SPECIAL
   public BREAK() {
     name = "BREAK";
   }
   public void IF() throws BreakException {
     Dinero din = Dinero.getInstance();
 
-    try {
-      CPU cpu = CPU.getInstance();
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    CPU cpu = CPU.getInstance();
+    din.IF(cpu.getLastPC().getValue());
 
     throw new BreakException();
   }
@@ -64,10 +59,4 @@ public class BREAK extends Instruction {
   public void WB() throws HaltException, IrregularStringOfBitsException {
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, 0);
-    /* The MIPS64 ISA specification requires the last 6 bits to be 01101 in
-     * the BREAK instruction. */
-    repr.setBits("001101", 25);
-  }
 }
@@ -37,13 +37,9 @@ import java.math.*;
  *</pre>
  */
 class CVT_D_L extends FPConversionFCSRInstructions {
-  static String OPCODE_VALUE = "100101";
-  static String FMT_FIELD = "10101"; //LONG IS 21
   static String NAME = "CVT.D.L";
 
   public CVT_D_L() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     super.name = NAME;
   }
 
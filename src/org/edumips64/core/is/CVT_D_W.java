@@ -37,13 +37,9 @@ import java.math.*;
  *</pre>
  */
 class CVT_D_W extends FPConversionFCSRInstructions {
-  static String OPCODE_VALUE = "100101";
-  static String FMT_FIELD = "10100"; //WORD IS 20
   static String NAME = "CVT.D.W";
 
   public CVT_D_W() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     super.name = NAME;
   }
 
@@ -31,31 +31,23 @@ package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.core.fpu.*;
 import org.edumips64.utils.*;
+import java.util.List;
 
 public abstract class ComputationalInstructions extends Instruction {
   protected static CPU cpu = CPU.getInstance();
   public void IF() {
     Dinero din = Dinero.getInstance();
 
-    try {
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    din.IF(cpu.getLastPC().getValue());
   }
   public abstract void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, WAWException;
   public abstract void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException, IrregularWriteOperationException, DivisionByZeroException, FPInvalidOperationException, FPUnderflowException, FPOverflowException, FPDivideByZeroException, FPInvalidOperationException;
   public abstract void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException;
   public abstract void WB() throws IrregularStringOfBitsException;
-  public abstract void pack() throws IrregularStringOfBitsException;
-
 
+  /** The first register of the syntax is the destination */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    syntaxDataflow(reads, writes, true);
+  }
 }
 
-
-
-
-
-
-
-
@@ -37,11 +37,8 @@ import org.edumips64.utils.*;
  *
  */
 class DADD extends ALU_RType {
-  final String OPCODE_VALUE = "101100";
-
 
   public DADD() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "DADD";
   }
 
@@ -37,9 +37,7 @@ import org.edumips64.utils.*;
  */
 
 class DADDI extends ALU_IType {
-  final String OPCODE_VALUE = "011000";
   DADDI() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "DADDI";
   }
 
@@ -40,9 +40,7 @@ import org.edumips64.utils.*;
  */
 
 class DADDIU extends ALU_IType {
-  final String OPCODE_VALUE = "011001";
   DADDIU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "DADDIU";
   }
 
@@ -50,10 +50,8 @@ class DIV extends ALU_RType {
   final static int RT_FIELD = 1;
   final static int LO_REG = 2;
   final static int HI_REG = 3;
-  final String OPCODE_VALUE = "011010";
 
   public DIV() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%R";
     name = "DIV";
   }
@@ -158,10 +156,11 @@ class DIV extends ALU_RType {
     lo.decrWriteSemaphore();
     hi.decrWriteSemaphore();
   }
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
+
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    reads.add(params.get(RS_FIELD));
+    reads.add(params.get(RT_FIELD));
+    writes.add(HI_REGISTER);
+    writes.add(LO_REGISTER);
   }
 }
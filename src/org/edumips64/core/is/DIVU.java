@@ -48,10 +48,8 @@ class DIVU extends ALU_RType {
   final static int RT_FIELD = 1;
   final static int LO_REG = 2;
   final static int HI_REG = 3;
-  final String OPCODE_VALUE = "011011";
 
   public DIVU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%R";
     name = "DIVU";
   }
@@ -137,14 +135,6 @@ class DIVU extends ALU_RType {
     lo.decrWriteSemaphore();
     hi.decrWriteSemaphore();
   }
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-  }
-
-
 
   public static void main(String[] args) {
     DDIV ins = new DDIV();
@@ -171,4 +161,11 @@ class DIVU extends ALU_RType {
       e.printStackTrace();
     }
   }
+
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    reads.add(params.get(RS_FIELD));
+    reads.add(params.get(RT_FIELD));
+    writes.add(HI_REGISTER);
+    writes.add(LO_REGISTER);
+  }
 }
@@ -37,14 +37,9 @@ import java.math.*;
  *</pre>
  */
 class DIV_D extends FPArithmeticInstructions {
-  final String OPCODE_VALUE = "000011";
-  String FMT_FIELD = "10001"; //DOUBLE IS 17
   String NAME = "DIV.D";
 
-
   public DIV_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     name = NAME;
   }
 
@@ -52,4 +47,9 @@ class DIV_D extends FPArithmeticInstructions {
   protected String doFPArith(String operand1, String operand2) throws FPInvalidOperationException, FPUnderflowException, FPOverflowException, FPDivideByZeroException, IrregularStringOfBitsException {
     return FPInstructionUtils.doubleDivision(operand1, operand2);
   }
+
+  /** Stages of the FP divider */
+  public int getLatency() {
+    return 24;
+  }
 }
@@ -37,15 +37,12 @@ import java.math.*;
  *</pre>
  */
 class DMFC1 extends FPMoveFromInstructions {
-  String OPCODE_VALUE = "00001";
   String NAME = "DMFC1";
 
   public DMFC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     super.name = NAME;
   }
 
-
   public void EX() throws IrregularStringOfBitsException {
     //getting values from temporary registers
     String value = TRfp[FS_FIELD].getBinString();
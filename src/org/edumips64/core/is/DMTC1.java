@@ -37,11 +37,9 @@ import java.math.*;
  *</pre>
  */
 class DMTC1 extends FPMoveToInstructions {
-  String OPCODE_VALUE = "00101";
   String NAME = "DMTC1";
 
   public DMTC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     super.name = NAME;
   }
 
@@ -46,13 +46,11 @@ import java.util.*;
 class DMULT extends ALU_RType {
   final int RS_FIELD = 0;
   final int RT_FIELD = 1;
-  final String OPCODE_VALUE = "011100";
 
   String lo;
   String hi;
 
   public DMULT() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R,%R";
     name = "DMULT";
   }
@@ -117,14 +115,6 @@ class DMULT extends ALU_RType {
     lo.decrWriteSemaphore();
     hi.decrWriteSemaphore();
   }
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-  }
-
-
 
   public static void main(String[] args) {
     DMULT ins = new DMULT();
@@ -151,4 +141,11 @@ class DMULT extends ALU_RType {
       e.printStackTrace();
     }
   }
+
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    reads.add(params.get(RS_FIELD));
+    reads.add(params.get(RT_FIELD));
+    writes.add(HI_REGISTER);
+    writes.add(LO_REGISTER);
+  }
 }
@@ -41,15 +41,7 @@ public class DSLL extends ALU_RType {
   final int RD_FIELD = 0;
   final int RT_FIELD = 1;
   final int SA_FIELD = 2;
-  final int RD_FIELD_INIT = 16;
-  final int RT_FIELD_INIT = 11;
-  final int SA_FIELD_INIT = 21;
-  final int RD_FIELD_LENGTH = 5;
-  final int RT_FIELD_LENGTH = 5;
-  final int SA_FIELD_LENGTH = 5;
-  final String OPCODE_VALUE = "111000";
   DSLL() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "DSLL";
     syntax = "%R,%R,%U";
   }
@@ -89,11 +81,4 @@ public class DSLL extends ALU_RType {
       doWB();
     }
   }
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(SA_FIELD_LENGTH, params.get(SA_FIELD)), SA_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RD_FIELD_LENGTH, params.get(RD_FIELD)), RD_FIELD_INIT);
-  }
 }
@@ -35,10 +35,8 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 public class DSUB extends ALU_RType {
-  final String OPCODE_VALUE = "101110";
   /** Creates a new instance of DSUB */
   public DSUB() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "DSUB";
   }
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException {
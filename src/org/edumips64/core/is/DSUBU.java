@@ -37,9 +37,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 public class DSUBU extends ALU_RType {
-  final String OPCODE_VALUE = "101111";
   public DSUBU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "DSUBU";
   }
 
@@ -38,19 +38,6 @@ public abstract class FPArithmeticInstructions extends ComputationalInstructions
   final static int FD_FIELD = 0;
   final static int FS_FIELD = 1;
   final static int FT_FIELD = 2;
-  static String COP1_FIELD = "010001";
-  final static int COP1_FIELD_INIT = 0;
-  final static int FD_FIELD_INIT = 21;
-  final static int FS_FIELD_INIT = 16;
-  final static int FT_FIELD_INIT = 11;
-  final static int FD_FIELD_LENGTH = 5;
-  final static int FS_FIELD_LENGTH = 5;
-  final static int FT_FIELD_LENGTH = 5;
-  final static int OPCODE_VALUE_INIT = 26;
-  final static int FMT_FIELD_INIT = 6;
-
-  String OPCODE_VALUE = "";
-  String FMT_FIELD = "";
 
   public FPArithmeticInstructions() {
     syntax = "%F,%F,%F";
@@ -133,14 +120,4 @@ public abstract class FPArithmeticInstructions extends ComputationalInstructions
 
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(FS_FIELD_LENGTH, params.get(FS_FIELD)), FS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FT_FIELD_LENGTH, params.get(FT_FIELD)), FT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FD_FIELD_LENGTH, params.get(FD_FIELD)), FD_FIELD_INIT);
-    repr.setBits(COP1_FIELD, COP1_FIELD_INIT);
-    repr.setBits(FMT_FIELD, FMT_FIELD_INIT);
-  }
-
 }
@@ -40,19 +40,6 @@ public abstract class FPC_cond_DInstructions extends ComputationalInstructions {
   final static int CC_FIELD = 0;
   final static int FS_FIELD = 1;
   final static int FT_FIELD = 2;
-  static String COP1_FIELD = "010001";
-  static String CONST_FIELD = "0011";
-  final static int COP1_FIELD_INIT = 0;
-  final static int CONST_FIELD_INIT = 24;
-  final static int CC_FIELD_INIT = 21;
-  final static int FS_FIELD_INIT = 16;
-  final static int FT_FIELD_INIT = 11;
-  final static int CC_FIELD_LENGTH = 3;
-  final static int FS_FIELD_LENGTH = 5;
-  final static int FT_FIELD_LENGTH = 5;
-  final static int COND_VALUE_INIT = 28;
-  final static int FMT_FIELD_INIT = 6;
-  static String FMT_FIELD = "10001"; // 17 is for double
 
   String COND_VALUE = "";
 
@@ -120,15 +107,4 @@ public abstract class FPC_cond_DInstructions extends ComputationalInstructions {
   public void MEM() {}
   public void WB() {};
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(COP1_FIELD, COP1_FIELD_INIT);
-    repr.setBits(FMT_FIELD, FMT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FT_FIELD_LENGTH, params.get(FT_FIELD)), FT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FS_FIELD_LENGTH, params.get(FS_FIELD)), FS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(CC_FIELD_LENGTH, params.get(CC_FIELD)), CC_FIELD_INIT);
-    repr.setBits(CONST_FIELD, CONST_FIELD_INIT);
-    repr.setBits(COND_VALUE, COND_VALUE_INIT);
-  }
-
 }
@@ -25,6 +25,7 @@
 package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
+import java.util.List;
 
 /**This is the base class of the conditional move to and from instructions
  *
@@ -33,23 +34,8 @@ import org.edumips64.utils.*;
 
 public abstract class FPConditionalCC_DMoveInstructions extends ComputationalInstructions {
   final static int FD_FIELD = 0;
-  final static int FD_FIELD_INIT = 21;
-  final static int FD_FIELD_LENGTH = 5;
   final static int FS_FIELD = 1;
-  final static int FS_FIELD_INIT = 16;
-  final static int FS_FIELD_LENGTH = 5;
   final static int CC_FIELD = 2;
-  final static int CC_FIELD_INIT = 11;
-  final static int CC_FIELD_LENGTH = 3;
-  static String COP1_FIELD = "010001";
-  static int COP1_FIELD_INIT = 0;
-  static int MOVCF_FIELD_INIT = 26;
-  static String MOVCF_FIELD_VALUE = "010001";
-  static String ZERO_FIELD = "0";
-  final static int ZERO_FIELD_INIT = 14;
-  static String FMT_FIELD = "10001"; //17 for double
-  static int FMT_FIELD_INIT = 6;
-  final static int TF_FIELD_INIT = 15;
   static CPU cpu = CPU.getInstance();
 
   int TF_FIELD_VALUE;
@@ -100,22 +86,10 @@ public abstract class FPConditionalCC_DMoveInstructions extends ComputationalIns
     cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of params list to the "repr" 32 binary value
-    repr.setBits(COP1_FIELD, COP1_FIELD_INIT);
-    repr.setBits(FMT_FIELD, FMT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(CC_FIELD_LENGTH, params.get(CC_FIELD)), CC_FIELD_INIT);
-    repr.setBits(ZERO_FIELD, ZERO_FIELD_INIT);
-    repr.setBits(String.valueOf(TF_FIELD_VALUE), TF_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FS_FIELD_LENGTH, params.get(FS_FIELD)), FS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FD_FIELD_LENGTH, params.get(FD_FIELD)), FD_FIELD_INIT);
-    repr.setBits(MOVCF_FIELD_VALUE, MOVCF_FIELD_INIT);
+  /** The destination is read too, since it is kept if nothing is moved */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    super.dataflow(reads, writes);
+    reads.add(FP_REGISTERS + params.get(FD_FIELD));
   }
-
 }
 
-
-
-
-
-
@@ -25,6 +25,7 @@
 package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
+import java.util.List;
 
 /**This is the base class of the move to and from instructions
  *
@@ -33,22 +34,10 @@ import org.edumips64.utils.*;
 
 public abstract class FPConditionalZerosMoveInstructions extends ComputationalInstructions {
   final static int FD_FIELD = 0;
-  final static int FD_FIELD_INIT = 21;
-  final static int FD_FIELD_LENGTH = 5;
   final static int FS_FIELD = 1;
-  final static int FS_FIELD_INIT = 16;
-  final static int FS_FIELD_LENGTH = 5;
   final static int RT_FIELD = 2;
-  final static int RT_FIELD_INIT = 11;
-  final static int RT_FIELD_LENGTH = 5;
-  static String COP1_FIELD = "010001";
-  static int COP1_FIELD_INIT = 0;
-  static int OPCODE_VALUE_INIT = 26;
-  static int FMT_FIELD_INIT = 6;
   static CPU cpu = CPU.getInstance();
 
-  String OPCODE_VALUE = "";
-  String FMT_FIELD = "";
   public FPConditionalZerosMoveInstructions() {
     this.syntax = "%F,%F,%R";
     this.paramCount = 3;
@@ -91,20 +80,10 @@ public abstract class FPConditionalZerosMoveInstructions extends ComputationalIn
     cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of params list to the "repr" 32 binary value
-    repr.setBits(COP1_FIELD, COP1_FIELD_INIT);
-    repr.setBits(FMT_FIELD, FMT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FS_FIELD_LENGTH, params.get(FS_FIELD)), FS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FD_FIELD_LENGTH, params.get(FD_FIELD)), FD_FIELD_INIT);
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
+  /** The destination is read too, since it is kept if nothing is moved */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    super.dataflow(reads, writes);
+    reads.add(FP_REGISTERS + params.get(FD_FIELD));
   }
-
 }
 
-
-
-
-
-
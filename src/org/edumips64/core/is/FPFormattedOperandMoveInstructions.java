@@ -34,21 +34,9 @@ import org.edumips64.core.fpu.*;
 
 public abstract class FPFormattedOperandMoveInstructions extends ComputationalInstructions {
   final static int FD_FIELD = 0;
-  final static int FD_FIELD_INIT = 21;
-  final static int FD_FIELD_LENGTH = 5;
   final static int FS_FIELD = 1;
-  final static int FS_FIELD_INIT = 16;
-  final static int FS_FIELD_LENGTH = 5;
-  static String COP1_FIELD = "010001";
-  static int COP1_FIELD_INIT = 0;
-  static int OPCODE_VALUE_INIT = 26;
-  static int FMT_FIELD_INIT = 6;
-  static String ZERO_FIELD = "00000";
-  static int ZERO_FIELD_INIT = 11;
   static CPU cpu = CPU.getInstance();
 
-  String OPCODE_VALUE = "";
-  String FMT_FIELD = "";
   public FPFormattedOperandMoveInstructions() {
     this.syntax = "%F,%F";
     this.paramCount = 2;
@@ -89,20 +77,5 @@ public abstract class FPFormattedOperandMoveInstructions extends ComputationalIn
     cpu.getRegisterFP(params.get(FD_FIELD)).decrWriteSemaphore();
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of params list to the "repr" 32 binary value
-    repr.setBits(COP1_FIELD, COP1_FIELD_INIT);
-    repr.setBits(FMT_FIELD, FMT_FIELD_INIT);
-    repr.setBits(ZERO_FIELD, ZERO_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FS_FIELD_LENGTH, params.get(FS_FIELD)), FS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FD_FIELD_LENGTH, params.get(FD_FIELD)), FD_FIELD_INIT);
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-  }
-
 }
 
-
-
-
-
-
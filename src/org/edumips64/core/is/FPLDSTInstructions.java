@@ -33,8 +33,6 @@ import org.edumips64.utils.*;
 
 public abstract class FPLDSTInstructions extends LDSTInstructions {
   final static int FT_FIELD = 0;
-  final static int FT_FIELD_INIT = 11;
-  final static int FT_FIELD_LENGTH = 5;
   public FPLDSTInstructions() {
     this.syntax = "%F,%L(%R)";
     this.paramCount = 3;
@@ -43,13 +41,6 @@ public abstract class FPLDSTInstructions extends LDSTInstructions {
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException {}
   public void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {}
   public void WB() throws IrregularStringOfBitsException {}
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of params list to the "repr" 32 binary value
-    repr.setBits(OPCODE_VALUE, 0);
-    repr.setBits(Converter.intToBin(BASE_FIELD_LENGTH, params.get(BASE_FIELD)), BASE_FIELD_INIT);
-    repr.setBits(Converter.intToBin(FT_FIELD_LENGTH, params.get(FT_FIELD)), FT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(OFFSET_FIELD_LENGTH, params.get(OFFSET_FIELD)), OFFSET_FIELD_INIT);
-  }
 
   // FP Instructions don't use the doMEM method, let's provide an empty
   // implementation.
@@ -79,5 +79,10 @@ public abstract class FPLoading extends FPLDSTInstructions {
     cpu.getRegisterFP(params.get(FT_FIELD)).setBits(TR[LMD_REGISTER].getBinString(), 0);
     cpu.getRegisterFP(params.get(FT_FIELD)).decrWriteSemaphore();
   }
+
+  /** The value is available after MEM */
+  public int getLatency() {
+    return 2;
+  }
 }
 
@@ -25,6 +25,7 @@
 package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
+import java.util.List;
 
 /**This is the base class of the move to and from instructions
  *
@@ -73,6 +74,11 @@ public abstract class FPMoveToInstructions extends FPMoveToAndFromInstructions {
     cpu.getRegisterFP(params.get(FS_FIELD)).decrWriteSemaphore();
 
   }
+
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    reads.add(params.get(RT_FIELD));
+    writes.add(FP_REGISTERS + params.get(FS_FIELD));
+  }
 }
 
 
@@ -53,4 +53,7 @@ public abstract class FPStoring extends FPLDSTInstructions {
 
   public void WB() throws IrregularStringOfBitsException {}
 
+  public boolean isStore() {
+    return true;
+  }
 }
@@ -28,7 +28,9 @@ package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
 import org.edumips64.core.ShiftRegister;
+import java.io.IOException;
 import java.util.logging.Logger;
+import java.util.List;
 
 /**This is the base class for FlowControl instructions
  *
@@ -37,31 +39,87 @@ import java.util.logging.Logger;
 public abstract class FlowControlInstructions extends Instruction {
   protected static CPU cpu = CPU.getInstance();
   protected String instPC;
+  protected long instAddress;
   protected ShiftRegister.branchDecision predictedDecision;
+  protected ShiftRegister.branchDecision localDecision, globalDecision;
+  protected boolean predictedGlobal;
   private static final Logger logger = Logger.getLogger(FlowControlInstructions.class.getName());
   public void IF() {
     instPC = cpu.getLastPC().toString();
-    // Predicting Whether this branch is taken or not
-    if (cpu.getSelectGlobalFlag()) {
+    instAddress = cpu.getLastPC().getValue();
+    // Predicting Whether this branch is taken or not. Both components are
+    // queried so that their accuracy can be tracked per branch.
+    predictedGlobal = cpu.getSelectGlobalFlag();
+    localDecision = cpu.predictFromLocalPatternTable(instPC);
+    globalDecision = cpu.predictFromGlobalPatternTable();
+
+    if (predictedGlobal) {
       logger.info("Predicting from Global Branch Predictor");
-      predictedDecision = cpu.predictFromGlobalPatternTable();
+      predictedDecision = globalDecision;
     } else {
       logger.info("Predicting from Local Branch Predictor");
-      predictedDecision = cpu.predictFromLocalPatternTable(instPC);
+      predictedDecision = localDecision;
     }
     // cpu.printLocalTables()
     Dinero din = Dinero.getInstance();
 
-    try {
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
+    din.IF(cpu.getLastPC().getValue());
+  }
+  /** Called by the subclasses in ID, once the outcome of the branch is known.
+   *  Trains the branch predictor and updates its statistics for the branches
+   *  whose direction is predicted, and sends the branch to the branch trace
+   *  writer, if any. Outside the region of interest the predictor is
+   *  trained but neither the statistics nor the trace are updated.
+   * @param taken whether the branch is taken
+   * @param target the address of the branch target
+   * @param kind the class of this branch instruction
+   */
+  protected void resolveBranch(boolean taken, long target, BranchTrace.Kind kind) {
+    boolean recording = cpu.isInROI();
+
+    if (kind.isPredicted()) {
+      BranchPredictor.Outcome outcome = cpu.getBranchPredictor().resolve(instPC, predictedDecision, taken);
+
+      if (recording) {
+        cpu.getBranchStatistics().record(instAddress, taken, predictedGlobal, localDecision, globalDecision);
+        count(outcome);
+      }
+    }
+
+    BranchTraceWriter trace = cpu.getBranchTraceWriter();
+
+    if (trace != null && recording) {
+      try {
+        trace.write(instAddress, target, taken, kind);
+      } catch (IOException e) {
+        logger.severe("Cannot write the branch trace, disabling it: " + e.getMessage());
+        cpu.setBranchTraceWriter(null);
+      }
+    }
+  }
+
+  private void count(BranchPredictor.Outcome outcome) {
+    switch (outcome) {
+      case HIT:
+        cpu.predictionKnown++;
+        cpu.predictionSuccessful++;
+        break;
+      case MISS:
+        cpu.predictionKnown++;
+        cpu.predictionUnsuccessful++;
+        break;
+      default:
+        cpu.predictionUnknown++;
     }
   }
+
   public abstract void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException, TwosComplementSumException;
   public abstract void EX() throws IrregularStringOfBitsException, IntegerOverflowException, IrregularWriteOperationException;
   public abstract void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException;
   public abstract void WB() throws IrregularStringOfBitsException;
-  public abstract void pack() throws IrregularStringOfBitsException;
 
+  /** Branches only read their registers */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    syntaxDataflow(reads, writes, false);
+  }
 }
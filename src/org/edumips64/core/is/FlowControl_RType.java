@@ -35,11 +35,6 @@ import org.edumips64.utils.*;
  */
 public class FlowControl_RType extends FlowControlInstructions {
   final static int RS_FIELD = 0;
-  final static int OPCODE_VALUE_INIT = 26;
-  final static int RS_FIELD_INIT = 6;
-  final static int RS_FIELD_LENGTH = 5;
-  final static int OPCODE_VALUE_LENGTH = 6;
-  String OPCODE_VALUE = "";
   /** Creates a new instance of FlowControl_JType */
   public FlowControl_RType() {
     this.syntax = "%R";
@@ -58,11 +53,4 @@ public class FlowControl_RType extends FlowControlInstructions {
   public void WB() throws IrregularStringOfBitsException {
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, params.get(RS_FIELD)), RS_FIELD_INIT);
-  }
-
-
 }
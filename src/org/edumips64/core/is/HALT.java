@@ -38,19 +38,14 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 public class HALT extends Instruction {
-  final String OPCODE_VALUE = "000001";
   public HALT() {
     name = "HALT";
   }
   public void IF() {
     Dinero din = Dinero.getInstance();
 
-    try {
-      CPU cpu = CPU.getInstance();
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    CPU cpu = CPU.getInstance();
+    din.IF(cpu.getLastPC().getValue());
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException, HaltException {
     CPU.getInstance().setStatus(CPU.CPUStatus.STOPPING);
@@ -67,8 +62,4 @@ public class HALT extends Instruction {
     throw new HaltException();
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, 0);
-  }
-
 }
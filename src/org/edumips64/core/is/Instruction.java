@@ -39,6 +39,16 @@ public abstract class Instruction {
   protected String syntax;
   protected String name;
   protected String comment;
+
+  /** Instruction factories indexed by mnemonic. Must be initialized before
+   *  the other static fields, whose initialization builds instructions. */
+  private static final Map<String, InstructionEnumerator> mnemonics = new HashMap<String, InstructionEnumerator>();
+  static {
+    for (InstructionEnumerator op : InstructionEnumerator.values()) {
+      mnemonics.put(op.name(), op);
+    }
+  }
+
   protected static Memory memory = Memory.getInstance();
   //protected static CPU cpu;
   protected Register[] TR; //is not static because each instruction has got its own registers
@@ -48,6 +58,17 @@ public abstract class Instruction {
   protected String label;
   protected static final Logger logger = Logger.getLogger(Instruction.class.getName());
   protected Integer serialNumber;
+  /** Address in code memory, -1 if the instruction is not stored there */
+  protected int address = -1;
+
+  /** Locations of the dataflow between instructions: the GPRs, then the
+   *  FPRs from FP_REGISTERS, HI, LO and the eight FP condition codes from
+   *  CONDITION_CODES */
+  public static final int FP_REGISTERS = 32, HI_REGISTER = 64, LO_REGISTER = 65, CONDITION_CODES = 66, DATAFLOW_REGISTERS = 74;
+
+  /** Registers read and written, computed from the parameters the first
+   *  time they are asked for */
+  private int[] readRegisters, writtenRegisters;
 
 
   /** Creates a new instance of Instruction */
@@ -58,9 +79,12 @@ public abstract class Instruction {
     repr = new BitSet32();
     syntax = "";
     repr.reset(false);
-    //generating a serial number for the current instruction
-    serialNumber = ConfigManager.getConfig().getInt("serialNumber");
-    ConfigManager.getConfig().putInt("serialNumber", serialNumber + 1);
+    //generating a serial number for the current instruction; the units of
+    //a program are assembled by many threads at once
+    synchronized (Instruction.class) {
+      serialNumber = ConfigManager.getConfig().getInt("serialNumber");
+      ConfigManager.getConfig().putInt("serialNumber", serialNumber + 1);
+    }
 
     //initialization of temporary registers
     for (int i = 0; i < TR.length; i++) {
@@ -87,19 +111,10 @@ public abstract class Instruction {
    *
    */
   public static Instruction buildInstruction(String name) {
-    Instruction returnedObject = null;
     //If the name of the requested instruction has got a dot, the instruction is FP and an
     //underscore takes the place of the dot because classes names cannot contain dots
-    name = name.replaceAll("\\.", "_");
-
-    for (InstructionEnumerator op : InstructionEnumerator.values()) {
-      if (op.name().equals(name)) {
-        returnedObject = op.getObject();
-        break;
-      }
-    }
-
-    return returnedObject;
+    InstructionEnumerator op = mnemonics.get(name.replace('.', '_'));
+    return op != null ? op.getObject() : null;
   }
 
   public enum InstructionEnumerator {
@@ -686,10 +701,13 @@ public abstract class Instruction {
   /**
    * <pre>
    * Builds the binary encoding of instructions.
-   * Every instruction is represented by a 32 bit field
+   * Every instruction is represented by a 32 bit field, built from the
+   * parameters through the table of InstructionEncoding.
    * </pre>
    **/
-  public abstract void pack() throws IrregularStringOfBitsException;
+  public void pack() throws IrregularStringOfBitsException {
+    repr.setBits(InstructionEncoding.encode(this));
+  }
 
   /**
    * <pre>
@@ -830,6 +848,18 @@ public abstract class Instruction {
     label = value;
   }
 
+  /** Gets the address of the instruction in code memory, set when it is
+   *  stored there; -1 for instructions that never were (e.g. bubbles).
+   */
+  public int getAddress() {
+    return address;
+  }
+
+  /** Sets the address of the instruction in code memory. Invoked by Memory. */
+  public void setAddress(int value) {
+    address = value;
+  }
+
   /**<pre>
    * The repr field of the passed instruction is compared with the repr field
    * of this instruction. If they are identical then true is returned else false is returned
@@ -865,4 +895,92 @@ public abstract class Instruction {
   public boolean isBubble() {
     return name == " ";
   }
+
+  /** Registers read by the instruction, as dataflow locations (see
+   *  FP_REGISTERS), each listed once. R0 is never included.
+   * @return the registers read
+   */
+  public int[] getReadRegisters() {
+    if (readRegisters == null) {
+      computeDataflow();
+    }
+
+    return readRegisters;
+  }
+
+  /** Registers written by the instruction, as dataflow locations (see
+   *  FP_REGISTERS). R0 is never included.
+   * @return the registers written
+   */
+  public int[] getWrittenRegisters() {
+    if (writtenRegisters == null) {
+      computeDataflow();
+    }
+
+    return writtenRegisters;
+  }
+
+  /** Cycles from the start of the execution of the instruction to its
+   *  result, without stalls. */
+  public int getLatency() {
+    return 1;
+  }
+
+  /** Adds the registers read and written by the instruction to the lists,
+   *  as dataflow locations. By default an instruction touches no register.
+   */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {}
+
+  /** Adds the register parameters of the syntax to the lists: the first
+   *  one is written if firstWritten is true, the others are read.
+   */
+  protected void syntaxDataflow(List<Integer> reads, List<Integer> writes, boolean firstWritten) {
+    boolean first = true;
+
+    for (int k = syntax.indexOf('%'), p = 0; k >= 0 && k + 1 < syntax.length() && p < params.size(); k = syntax.indexOf('%', k + 1), ++p) {
+      int location;
+
+      switch (syntax.charAt(k + 1)) {
+      case 'R':
+        location = params.get(p);
+        break;
+      case 'F':
+        location = FP_REGISTERS + params.get(p);
+        break;
+      case 'C':
+        location = CONDITION_CODES + params.get(p);
+        break;
+      default:
+        continue;
+      }
+
+      if (first && firstWritten) {
+        writes.add(location);
+      } else {
+        reads.add(location);
+      }
+
+      first = false;
+    }
+  }
+
+  private void computeDataflow() {
+    List<Integer> reads = new ArrayList<Integer>(), writes = new ArrayList<Integer>();
+    dataflow(reads, writes);
+    readRegisters = toLocations(reads);
+    writtenRegisters = toLocations(writes);
+  }
+
+  private static int[] toLocations(List<Integer> registers) {
+    Set<Integer> unique = new LinkedHashSet<Integer>(registers);
+    unique.remove(0);
+    int[] locations = new int[unique.size()];
+    int i = 0;
+
+    for (int location : unique) {
+      locations[i++] = location;
+    }
+
+    return locations;
+  }
 }
@@ -0,0 +1,366 @@
+/* InstructionEncoding.java
+ *
+ * Table-driven MIPS64 instruction encoder and decoder.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package org.edumips64.core.is;
+
+import java.util.*;
+
+/** Encodes instructions into their 32-bit machine word and decodes machine
+ *  words back into instructions, driven by a single table shared by every
+ *  Instruction subclass.
+ *
+ *  Each row of the table gives the mnemonic, the bit pattern of the
+ *  instruction (most significant bit first, spaces are ignored) and the
+ *  fields holding the parameters, in the order they appear in the syntax
+ *  of the instruction. In the pattern '0' and '1' are fixed bits, while a
+ *  letter marks the bits of a field:
+ *  <pre>
+ *  s, t, d   registers (rs, rt, rd or fs, ft, fd)
+ *  a         shift amount
+ *  c         FP condition code
+ *  x         SYSCALL code
+ *  i         signed 16-bit immediate or memory offset
+ *  o         signed branch offset, in instructions (the parameter is in bytes)
+ *  j         jump target, in instructions (the parameter is in bytes)
+ *  </pre>
+ *
+ *  Aliases share their encoding with the instruction listed first, which is
+ *  the one the decoder returns; pseudo-instructions are encoded as the
+ *  instruction they stand for (e.g. BEQZ as BEQ with RT = R0), and the
+ *  decoder returns the most specific row matching a word.
+ */
+public class InstructionEncoding {
+  private static final String[][] TABLE = {
+    // ALU R-Type
+    {"ADD",     "000000 sssss ttttt ddddd 00000 100000", "dst"},
+    {"ADDU",    "000000 sssss ttttt ddddd 00000 100001", "dst"},
+    {"SUB",     "000000 sssss ttttt ddddd 00000 100010", "dst"},
+    {"SUBU",    "000000 sssss ttttt ddddd 00000 100011", "dst"},
+    {"AND",     "000000 sssss ttttt ddddd 00000 100100", "dst"},
+    {"OR",      "000000 sssss ttttt ddddd 00000 100101", "dst"},
+    {"XOR",     "000000 sssss ttttt ddddd 00000 100110", "dst"},
+    {"SLT",     "000000 sssss ttttt ddddd 00000 101010", "dst"},
+    {"SLTU",    "000000 sssss ttttt ddddd 00000 101011", "dst"},
+    {"DADD",    "000000 sssss ttttt ddddd 00000 101100", "dst"},
+    {"DADDU",   "000000 sssss ttttt ddddd 00000 101101", "dst"},
+    {"DSUB",    "000000 sssss ttttt ddddd 00000 101110", "dst"},
+    {"DSUBU",   "000000 sssss ttttt ddddd 00000 101111", "dst"},
+    {"MOVZ",    "000000 sssss ttttt ddddd 00000 001010", "dst"},
+    {"MOVN",    "000000 sssss ttttt ddddd 00000 001011", "dst"},
+    {"SLLV",    "000000 sssss ttttt ddddd 00000 000100", "dts"},
+    {"SRLV",    "000000 sssss ttttt ddddd 00000 000110", "dts"},
+    {"SRAV",    "000000 sssss ttttt ddddd 00000 000111", "dts"},
+    {"DSLLV",   "000000 sssss ttttt ddddd 00000 010100", "dts"},
+    {"DSRLV",   "000000 sssss ttttt ddddd 00000 010110", "dts"},
+    {"DSRAV",   "000000 sssss ttttt ddddd 00000 010111", "dts"},
+    {"NOP",     "000000 00000 00000 00000 00000 000000", ""},
+    {"SLL",     "000000 00000 ttttt ddddd aaaaa 000000", "dta"},
+    {"SRL",     "000000 00000 ttttt ddddd aaaaa 000010", "dta"},
+    {"SRA",     "000000 00000 ttttt ddddd aaaaa 000011", "dta"},
+    {"DSLL",    "000000 00000 ttttt ddddd aaaaa 111000", "dta"},
+    {"DSRL",    "000000 00000 ttttt ddddd aaaaa 111010", "dta"},
+    {"DSRA",    "000000 00000 ttttt ddddd aaaaa 111011", "dta"},
+    {"MFHI",    "000000 00000 00000 ddddd 00000 010000", "d"},
+    {"MFLO",    "000000 00000 00000 ddddd 00000 010010", "d"},
+    {"MULT",    "000000 sssss ttttt 00000 00000 011000", "st"},
+    {"MULTU",   "000000 sssss ttttt 00000 00000 011001", "st"},
+    {"DIV",     "000000 sssss ttttt 00000 00000 011010", "st"},
+    {"DIVU",    "000000 sssss ttttt 00000 00000 011011", "st"},
+    {"DMULT",   "000000 sssss ttttt 00000 00000 011100", "st"},
+    {"DMULTU",  "000000 sssss ttttt 00000 00000 011101", "st"},
+    {"DDIV",    "000000 sssss ttttt 00000 00000 011110", "st"},
+    {"DDIVU",   "000000 sssss ttttt 00000 00000 011111", "st"},
+
+    // ALU I-Type
+    {"ADDI",    "001000 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"ADDIU",   "001001 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"SLTI",    "001010 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"SLTIU",   "001011 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"ANDI",    "001100 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"ORI",     "001101 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"XORI",    "001110 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"LUI",     "001111 00000 ttttt iiiiiiiiiiiiiiii", "ti"},
+    {"DADDI",   "011000 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"DADDIU",  "011001 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+    {"DADDUI",  "011001 sssss ttttt iiiiiiiiiiiiiiii", "tsi"},
+
+    // Loads and stores
+    {"LB",      "100000 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LH",      "100001 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LW",      "100011 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LBU",     "100100 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LHU",     "100101 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LWU",     "100111 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LD",      "110111 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"SB",      "101000 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"SH",      "101001 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"SW",      "101011 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"SD",      "111111 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LWC1",    "110001 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"SWC1",    "111001 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"LDC1",    "110101 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"L.D",     "110101 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"SDC1",    "111101 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+    {"S.D",     "111101 sssss ttttt iiiiiiiiiiiiiiii", "tis"},
+
+    // Flow control
+    {"J",       "000010 jjjjjjjjjjjjjjjjjjjjjjjjjj", "j"},
+    {"JAL",     "000011 jjjjjjjjjjjjjjjjjjjjjjjjjj", "j"},
+    {"JR",      "000000 sssss 00000 00000 00000 001000", "s"},
+    {"JALR",    "000000 sssss 00000 11111 00000 001001", "s"},
+    {"BEQ",     "000100 sssss ttttt oooooooooooooooo", "sto"},
+    {"BNE",     "000101 sssss ttttt oooooooooooooooo", "sto"},
+    {"B",       "000100 00000 00000 oooooooooooooooo", "o"},
+    {"BEQZ",    "000100 sssss 00000 oooooooooooooooo", "so"},
+    {"BNEZ",    "000101 sssss 00000 oooooooooooooooo", "so"},
+    {"BGEZ",    "000001 sssss 00001 oooooooooooooooo", "so"},
+
+    // Special instructions
+    {"HALT",    "000001 00000 00000 0000000000000000", ""},
+    {"SYSCALL", "000000 xxxxxxxxxxxxxxxxxxxx 001100", "x"},
+    {"TRAP",    "000000 xxxxxxxxxxxxxxxxxxxx 001100", "x"},
+    {"BREAK",   "000000 00000000000000000000 001101", ""},
+
+    // FPU
+    {"ADD.D",   "010001 10001 ttttt sssss ddddd 000000", "dst"},
+    {"SUB.D",   "010001 10001 ttttt sssss ddddd 000001", "dst"},
+    {"MUL.D",   "010001 10001 ttttt sssss ddddd 000010", "dst"},
+    {"DIV.D",   "010001 10001 ttttt sssss ddddd 000011", "dst"},
+    {"MOV.D",   "010001 10001 00000 sssss ddddd 000110", "ds"},
+    {"MOVZ.D",  "010001 10001 ttttt sssss ddddd 010010", "dst"},
+    {"MOVN.D",  "010001 10001 ttttt sssss ddddd 010011", "dst"},
+    {"MOVF.D",  "010001 10001 ccc00 sssss ddddd 010001", "dsc"},
+    {"MOVT.D",  "010001 10001 ccc01 sssss ddddd 010001", "dsc"},
+    {"C.EQ.D",  "010001 10001 ttttt sssss ccc00 110010", "cst"},
+    {"C.LT.D",  "010001 10001 ttttt sssss ccc00 110100", "cst"},
+    {"CVT.L.D", "010001 10001 00000 sssss ddddd 100101", "ds"},
+    {"CVT.W.D", "010001 10001 00000 sssss ddddd 100100", "ds"},
+    {"CVT.D.L", "010001 10101 00000 sssss ddddd 100001", "ds"},
+    {"CVT.D.W", "010001 10100 00000 sssss ddddd 100001", "ds"},
+    {"BC1F",    "010001 01000 ccc00 oooooooooooooooo", "co"},
+    {"BC1T",    "010001 01000 ccc01 oooooooooooooooo", "co"},
+    {"MFC1",    "010001 00000 ttttt sssss 00000000000", "ts"},
+    {"DMFC1",   "010001 00001 ttttt sssss 00000000000", "ts"},
+    {"MTC1",    "010001 00100 ttttt sssss 00000000000", "ts"},
+    {"DMTC1",   "010001 00101 ttttt sssss 00000000000", "ts"},
+  };
+
+  /** A parameter of an instruction, stored in a field of its machine word */
+  private static class Field {
+    final int shift, length;
+    final boolean signed;
+    final int scale;
+
+    Field(char kind, int shift, int length) {
+      this.shift = shift;
+      this.length = length;
+      signed = kind == 'i' || kind == 'o';
+      scale = kind == 'o' || kind == 'j' ? 2 : 0;
+    }
+
+    int encode(int param) {
+      return ((param >> scale) & ((1 << length) - 1)) << shift;
+    }
+
+    int decode(int word) {
+      int value = (word >>> shift) & ((1 << length) - 1);
+
+      if (signed) {
+        value = (value << (32 - length)) >> (32 - length);
+      }
+
+      return value << scale;
+    }
+  }
+
+  /** A row of the table, compiled */
+  private static class Encoding {
+    final String name;
+    final int match, mask;
+    final Field[] fields;
+
+    Encoding(String name, String pattern, String params) {
+      this.name = name;
+      pattern = pattern.replace(" ", "");
+
+      if (pattern.length() != 32) {
+        throw new IllegalArgumentException("Bad encoding for " + name);
+      }
+
+      int match = 0, mask = 0;
+
+      for (int bit = 0; bit < 32; ++bit) {
+        char c = pattern.charAt(31 - bit);
+
+        if (c == '0' || c == '1') {
+          mask |= 1 << bit;
+          match |= (c - '0') << bit;
+        }
+      }
+
+      this.match = match;
+      this.mask = mask;
+      fields = new Field[params.length()];
+
+      for (int k = 0; k < fields.length; ++k) {
+        char kind = params.charAt(k);
+        int first = pattern.indexOf(kind);
+        int last = pattern.lastIndexOf(kind);
+        fields[k] = new Field(kind, 31 - last, last - first + 1);
+      }
+    }
+  }
+
+  private static final Map<String, Encoding> byName = new HashMap<String, Encoding>();
+
+  /** Candidates for every primary opcode, the most specific ones first */
+  private static final Encoding[][] byOpcode = new Encoding[64][];
+
+  static {
+    List<List<Encoding>> buckets = new ArrayList<List<Encoding>>();
+
+    for (int op = 0; op < 64; ++op) {
+      buckets.add(new ArrayList<Encoding>());
+    }
+
+    for (String[] row : TABLE) {
+      Encoding e = new Encoding(row[0], row[1], row[2]);
+      byName.put(e.name, e);
+      buckets.get(e.match >>> 26).add(e);
+    }
+
+    for (int op = 0; op < 64; ++op) {
+      List<Encoding> bucket = buckets.get(op);
+      Collections.sort(bucket, new Comparator<Encoding>() {
+        public int compare(Encoding a, Encoding b) {
+          return Integer.bitCount(b.mask) - Integer.bitCount(a.mask);
+        }
+      });
+      byOpcode[op] = bucket.toArray(new Encoding[bucket.size()]);
+    }
+  }
+
+  private InstructionEncoding() {}
+
+  /** Checks whether an instruction has a machine encoding.
+   * @param name the mnemonic, as returned by Instruction.getName()
+   */
+  public static boolean isEncodable(String name) {
+    return byName.containsKey(name);
+  }
+
+  /** Encodes an instruction; missing parameters are taken as zero.
+   * @param name the mnemonic, as returned by Instruction.getName()
+   * @param params the parameters, in the order of the syntax
+   * @return the machine word
+   */
+  public static int encode(String name, List<Integer> params) {
+    Encoding e = byName.get(name);
+
+    if (e == null) {
+      throw new IllegalArgumentException("No encoding for " + name);
+    }
+
+    int word = e.match;
+
+    for (int k = 0; k < e.fields.length && k < params.size(); ++k) {
+      word |= e.fields[k].encode(params.get(k));
+    }
+
+    return word;
+  }
+
+  public static int encode(Instruction i) {
+    return encode(i.getName(), i.getParams());
+  }
+
+  /** Decodes a machine word into a new, packed instruction, whose full name
+   *  is rebuilt from the syntax of the instruction: branch offsets are shown
+   *  in bytes, relative to the next instruction.
+   * @param word the machine word
+   * @return the instruction, or null if the word is not a known encoding
+   */
+  public static Instruction decode(int word) {
+    for (Encoding e : byOpcode[word >>> 26]) {
+      if ((word & e.mask) != e.match) {
+        continue;
+      }
+
+      Instruction i = Instruction.buildInstruction(e.name);
+      List<Integer> params = i.getParams();
+
+      for (Field f : e.fields) {
+        params.add(f.decode(word));
+      }
+
+      i.getRepr().setBits(word);
+      i.setFullName(format(e.name, i.getSyntax(), params));
+      return i;
+    }
+
+    return null;
+  }
+
+  /** Gets the mnemonic a machine word decodes to, without building the instruction.
+   * @return the mnemonic, or null if the word is not a known encoding
+   */
+  public static String getName(int word) {
+    for (Encoding e : byOpcode[word >>> 26]) {
+      if ((word & e.mask) == e.match) {
+        return e.name;
+      }
+    }
+
+    return null;
+  }
+
+  private static String format(String name, String syntax, List<Integer> params) {
+    StringBuilder sb = new StringBuilder(name);
+    int p = 0;
+
+    if (syntax.length() > 0) {
+      sb.append(' ');
+    }
+
+    for (int k = 0; k < syntax.length(); ++k) {
+      char c = syntax.charAt(k);
+
+      if (c != '%') {
+        sb.append(c);
+        continue;
+      }
+
+      char kind = syntax.charAt(++k);
+
+      if (kind == 'R') {
+        sb.append('R');
+      } else if (kind == 'F') {
+        sb.append('F');
+      }
+
+      sb.append(params.get(p++));
+    }
+
+    return sb.toString();
+  }
+}
@@ -37,11 +37,9 @@ import org.edumips64.utils.*;
  */
 
 public class J extends FlowControl_JType {
-  final String OPCODE_VALUE = "000010";
 
   /** Creates a new instance of J */
   public J() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "J";
   }
 
@@ -54,6 +52,7 @@ public class J extends FlowControl_JType {
     String pc_significant = pc_all.substring(0, 36);
     String pc_new = pc_significant + instr_index;
     pc.setBits(pc_new, 0);
+    resolveBranch(true, cpu.getPC().getValue(), BranchTrace.Kind.JUMP);
     throw new JumpException();
   }
 
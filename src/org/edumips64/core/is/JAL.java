@@ -25,6 +25,7 @@
 package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
+import java.util.List;
 /**
  * <pre>
  *      Syntax: JAL target
@@ -37,12 +38,10 @@ import org.edumips64.utils.*;
  */
 
 public class JAL extends FlowControl_JType {
-  final String OPCODE_VALUE = "000011";
   final int PC_VALUE = 0;
 
   /** Creates a new instance of J */
   public JAL() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "JAL";
   }
 
@@ -58,6 +57,7 @@ public class JAL extends FlowControl_JType {
     String pc_significant = pc_all.substring(0, 36);
     String pc_new = pc_significant + instr_index;
     pc.setBits(pc_new, 0);
+    resolveBranch(true, cpu.getPC().getValue(), BranchTrace.Kind.CALL);
 
     if (enableForwarding) {
       doWB();
@@ -83,5 +83,8 @@ public class JAL extends FlowControl_JType {
     cpu.getRegister(31).decrWriteSemaphore();
   }
 
-
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    super.dataflow(reads, writes);
+    writes.add(31);
+  }
 }
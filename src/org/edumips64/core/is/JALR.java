@@ -25,6 +25,7 @@
 package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
+import java.util.List;
 /**
  * <pre>
  *      Syntax: JALR rs
@@ -37,9 +38,7 @@ import org.edumips64.utils.*;
 
 public class JALR extends FlowControl_RType {
   final int PC_VALUE = 0;
-  final String OPCODE_VALUE = "001001";
   public JALR() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "JALR";
   }
 
@@ -48,6 +47,7 @@ public class JALR extends FlowControl_RType {
     cpu.getRegister(31).incrWriteSemaphore();  //deadlock !!!
     TR[PC_VALUE].writeDoubleWord(cpu.getPC().getValue() - 4);
     cpu.getPC().setBits(cpu.getRegister(params.get(RS_FIELD)).getBinString(), 0);
+    resolveBranch(true, cpu.getPC().getValue(), BranchTrace.Kind.CALL_REGISTER);
 
     if (enableForwarding) {
       doWB();
@@ -73,6 +73,10 @@ public class JALR extends FlowControl_RType {
     cpu.getRegister(31).decrWriteSemaphore();  //deadlock!!!
   }
 
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    super.dataflow(reads, writes);
+    writes.add(31);
+  }
 }
 
 
@@ -35,15 +35,14 @@ import org.edumips64.utils.*;
  */
 
 public class JR extends FlowControl_RType {
-  final  String OPCODE_VALUE = "001000";
   public JR() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "JR";
 
   }
 
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, JumpException {
     cpu.getPC().setBits(cpu.getRegister(params.get(RS_FIELD)).getBinString(), 0);
+    resolveBranch(true, cpu.getPC().getValue(), BranchTrace.Kind.JUMP_REGISTER);
     throw new JumpException();
   }
 
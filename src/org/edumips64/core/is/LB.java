@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LB extends Loading {
-  final String OPCODE_VALUE = "100000";
   public LB() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LB";
     this.memoryOpSize = 1;
   }
@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LBU extends Loading {
-  final String OPCODE_VALUE = "100100";
   public LBU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LBU";
     this.memoryOpSize = 1;
   }
@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LD extends Loading {
-  final String OPCODE_VALUE = "110111";
   public LD() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LD";
     this.memoryOpSize = 8;
   }
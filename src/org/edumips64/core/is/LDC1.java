@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
 
  */
 class LDC1 extends FPLoading {
-  String OPCODE_VALUE = "110111";
   public LDC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LDC1";
   }
   public void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
@@ -47,7 +45,8 @@ class LDC1 extends FPLoading {
     long address = TR[OFFSET_PLUS_BASE].getValue();
     //For the trace file
     Dinero din = Dinero.getInstance();
-    din.Load(Converter.binToHex(Converter.positiveIntToBin(64, address)), 8);
+    din.Load(address, 8);
+    cpu.accessDataCache(instAddress, address, false);
 
     MemoryElement memEl = memory.getCellByAddress(address);
     //reading from the memory element and saving values on LMD register
@@ -28,6 +28,7 @@ import org.edumips64.core.*;
 import org.edumips64.utils.*;
 
 import java.util.logging.Logger;
+import java.util.List;
 
 /**This is the base class of Load store instructions
  *
@@ -41,12 +42,6 @@ public abstract class LDSTInstructions extends Instruction {
   final static int BASE_FIELD = 2;
   final static int LMD_REGISTER = 3;
   final static int OFFSET_PLUS_BASE = 4;
-  final static int RT_FIELD_INIT = 11;
-  final static int OFFSET_FIELD_INIT = 16;
-  final static int BASE_FIELD_INIT = 6;
-  final static int RT_FIELD_LENGTH = 5;
-  final static int OFFSET_FIELD_LENGTH = 16;
-  final static int BASE_FIELD_LENGTH = 5;
 
   // Logger instance
   private static final Logger logger = Logger.getLogger(LDSTInstructions.class.getName());
@@ -60,9 +55,11 @@ public abstract class LDSTInstructions extends Instruction {
   // Memory address with which the instruction is operating
   protected long address;
 
+  // Address of the instruction itself, saved in IF
+  protected long instAddress;
+
   protected MemoryElement memEl;
 
-  String OPCODE_VALUE = "";
   public LDSTInstructions() {
     this.syntax = "%R,%L(%R)";
     this.paramCount = 3;
@@ -72,11 +69,8 @@ public abstract class LDSTInstructions extends Instruction {
 
   }
   public void IF() {
-    try {
-      dinero.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    instAddress = cpu.getLastPC().getValue();
+    dinero.IF(instAddress);
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException, WAWException {};
 
@@ -109,11 +103,19 @@ public abstract class LDSTInstructions extends Instruction {
   // execution of doMEM();
   public abstract void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException;
   public void WB() throws IrregularStringOfBitsException {};
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of params list to the "repr" 32 binary value
-    repr.setBits(OPCODE_VALUE, 0);
-    repr.setBits(Converter.intToBin(BASE_FIELD_LENGTH, params.get(BASE_FIELD)), BASE_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(OFFSET_FIELD_LENGTH, params.get(OFFSET_FIELD)), OFFSET_FIELD_INIT);
+
+  /** Whether the instruction writes memory rather than reading it */
+  public boolean isStore() {
+    return false;
+  }
+
+  /** Address of the last access to memory, computed in EX */
+  public long getMemoryAddress() {
+    return address;
+  }
+
+  /** Loads write their first register, stores read it */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    syntaxDataflow(reads, writes, !isStore());
   }
 }
@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LH extends Loading {
-  final String OPCODE_VALUE = "100001";
   public LH() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LH";
     this.memoryOpSize = 2;
   }
@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LHU extends Loading {
-  final String OPCODE_VALUE = "100101";
   public LHU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LHU";
     this.memoryOpSize = 2;
   }
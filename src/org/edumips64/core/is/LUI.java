@@ -37,17 +37,9 @@ import org.edumips64.utils.*;
 class LUI extends ALU_IType {
   final static int RT_FIELD = 0;
   final static int IMM_FIELD = 1;
-  final static int RT_FIELD_INIT = 11;
-  final static int RS_FIELD_INIT = 6;
-  final static int IMM_FIELD_INIT = 16;
-  final static int RT_FIELD_LENGTH = 5;
-  final static int RS_FIELD_LENGTH = 5;
-  final static int IMM_FIELD_LENGTH = 16;
-  final String OPCODE_VALUE = "001111";
 
   public LUI() {
     syntax = "%R,%I";
-    //super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LUI";
   }
 
@@ -71,11 +63,5 @@ class LUI extends ALU_IType {
       doWB();
     }
   }
-  public void pack() throws IrregularStringOfBitsException {
-    repr.setBits(OPCODE_VALUE, 0);
-    repr.setBits(Converter.intToBin(RS_FIELD_LENGTH, 0), RS_FIELD_INIT);
-    repr.setBits(Converter.intToBin(RT_FIELD_LENGTH, params.get(RT_FIELD)), RT_FIELD_INIT);
-    repr.setBits(Converter.intToBin(IMM_FIELD_LENGTH, params.get(IMM_FIELD)), IMM_FIELD_INIT);
-  }
 
 }
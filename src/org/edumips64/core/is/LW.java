@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LW extends Loading {
-  final String OPCODE_VALUE = "100011";
   public LW() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LW";
     this.memoryOpSize = 4;
   }
@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class LWU extends Loading {
-  final String OPCODE_VALUE = "100111";
   public LWU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "LWU";
     this.memoryOpSize = 4;
   }
@@ -60,7 +60,7 @@ public abstract class Loading extends LDSTInstructions {
     super.EX();
 
     // Save memory access for Dinero trace file
-    dinero.Load(Converter.binToHex(Converter.positiveIntToBin(64, address)), memoryOpSize);
+    dinero.Load(address, memoryOpSize);
   }
 
   public void WB() throws IrregularStringOfBitsException {
@@ -70,6 +70,7 @@ public abstract class Loading extends LDSTInstructions {
   }
 
   public void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
+    cpu.accessDataCache(instAddress, address, false);
     memEl = memory.getCellByAddress(address);
     doMEM();
 
@@ -83,5 +84,10 @@ public abstract class Loading extends LDSTInstructions {
     cpu.getRegister(params.get(RT_FIELD)).setBits(TR[LMD_REGISTER].getBinString(), 0);
     cpu.getRegister(params.get(RT_FIELD)).decrWriteSemaphore();
   }
+
+  /** The value is available after MEM */
+  public int getLatency() {
+    return 2;
+  }
 }
 
@@ -37,15 +37,12 @@ import java.math.*;
  *</pre>
  */
 class MFC1 extends FPMoveFromInstructions {
-  String OPCODE_VALUE = "00000";
   String NAME = "MFC1";
 
   public MFC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     super.name = NAME;
   }
 
-
   public void EX() throws IrregularStringOfBitsException, IrregularWriteOperationException {
     //getting values from temporary registers
     String value = TRfp[FS_FIELD].getBinString();
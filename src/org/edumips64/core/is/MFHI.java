@@ -44,10 +44,8 @@ import java.util.*;
 class MFHI extends ALU_RType {
   final int RD_FIELD = 0;
   final int HI_REG = 1;
-  final String OPCODE_VALUE = "010000";
 
   public MFHI() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R";
     name = "MFHI";
   }
@@ -80,10 +78,9 @@ class MFHI extends ALU_RType {
     cpu.getRegister(params.get(RD_FIELD)).setBits(TR[HI_REG].getBinString(), 0);
     cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
   }
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RD_FIELD_LENGTH, params.get(RD_FIELD)), RD_FIELD_INIT);
-  }
 
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    reads.add(HI_REGISTER);
+    writes.add(params.get(RD_FIELD));
+  }
 }
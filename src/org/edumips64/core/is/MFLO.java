@@ -43,10 +43,8 @@ import java.util.*;
 class MFLO extends ALU_RType {
   final int RD_FIELD = 0;
   final int LO_REG = 1;
-  final String OPCODE_VALUE = "010010";
 
   public MFLO() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     syntax = "%R";
     name = "MFLO";
   }
@@ -77,12 +75,9 @@ class MFLO extends ALU_RType {
     cpu.getRegister(params.get(RD_FIELD)).setBits(TR[LO_REG].getBinString(), 0);
     cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
   }
-  public void pack() throws IrregularStringOfBitsException {
-    //conversion of instruction parameters of "params" list to the "repr" form (32 binary value)
-    repr.setBits(OPCODE_VALUE, OPCODE_VALUE_INIT);
-    repr.setBits(Converter.intToBin(RD_FIELD_LENGTH, params.get(RD_FIELD)), RD_FIELD_INIT);
-  }
-
-
 
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    reads.add(LO_REGISTER);
+    writes.add(params.get(RD_FIELD));
+  }
 }
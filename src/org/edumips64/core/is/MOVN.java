@@ -29,6 +29,7 @@ import org.edumips64.core.*;
 import org.edumips64.utils.*;
 
 import java.util.logging.Logger;
+import java.util.List;
 
 /**
  * <pre>
@@ -41,15 +42,12 @@ import java.util.logging.Logger;
  *
  */
 class MOVN extends ALU_RType {
-  final String OPCODE_VALUE = "001011";
   private static final Logger logger = Logger.getLogger(MOVN.class.getName());
 
   // Skip the Write Back if the predicate (RT != 0) is false
   private boolean skipWB = false;
 
-
   public MOVN() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "MOVN";
   }
 
@@ -76,4 +74,10 @@ class MOVN extends ALU_RType {
     // We must unlock the register in both cases.
     cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
   }
+
+  /** The destination is read too, since it is kept if nothing is moved */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    super.dataflow(reads, writes);
+    reads.add(params.get(RD_FIELD));
+  }
 }
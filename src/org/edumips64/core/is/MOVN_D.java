@@ -37,13 +37,9 @@ import java.math.*;
  *</pre>
  */
 class MOVN_D extends FPConditionalZerosMoveInstructions {
-  String OPCODE_VALUE = "010011";
-  String FMT_FIELD = "10001"; //DOUBLE IS 17
   String NAME = "MOVN.D";
 
   public MOVN_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     super.name = NAME;
   }
 
@@ -27,6 +27,7 @@ package org.edumips64.core.is;
 import org.edumips64.core.*;
 import org.edumips64.utils.*;
 import java.util.logging.Logger;
+import java.util.List;
 
 /**
  * <pre>
@@ -38,14 +39,12 @@ import java.util.logging.Logger;
  * @author Trubia Massimo, Russo Daniele
  */
 class MOVZ extends ALU_RType {
-  final String OPCODE_VALUE = "001010";
   private static final Logger logger = Logger.getLogger(MOVZ.class.getName());
 
   // Skip the Write Back if the predicate (RT == 0) is false
   private boolean skipWB = false;
 
   public MOVZ() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "MOVZ";
   }
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException {
@@ -71,4 +70,10 @@ class MOVZ extends ALU_RType {
     // We must unlock the register in both cases.
     cpu.getRegister(params.get(RD_FIELD)).decrWriteSemaphore();
   }
+
+  /** The destination is read too, since it is kept if nothing is moved */
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    super.dataflow(reads, writes);
+    reads.add(params.get(RD_FIELD));
+  }
 }
@@ -37,13 +37,9 @@ import java.math.*;
  *</pre>
  */
 class MOVZ_D extends FPConditionalZerosMoveInstructions {
-  String OPCODE_VALUE = "010010";
-  String FMT_FIELD = "10001"; //DOUBLE IS 17
   String NAME = "MOVZ.D";
 
   public MOVZ_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     super.name = NAME;
   }
 
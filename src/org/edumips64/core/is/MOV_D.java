@@ -37,14 +37,10 @@ import java.math.*;
  *</pre>
  */
 class MOV_D extends FPFormattedOperandMoveInstructions {
-  String OPCODE_VALUE = "000110";
   String NAME = "MOV.D";
-  String FMT_FIELD = "10001";
 
   public MOV_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     super.name = NAME;
-    super.FMT_FIELD = FMT_FIELD;
   }
 
   public void EX() throws IrregularStringOfBitsException {
@@ -37,11 +37,9 @@ import java.math.*;
  *</pre>
  */
 class MTC1 extends FPMoveToInstructions {
-  String OPCODE_VALUE = "00100";
   String NAME = "MTC1";
 
   public MTC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     super.name = NAME;
   }
 
@@ -42,11 +42,7 @@ public class NOP extends Instruction {
   public void IF() {
     Dinero din = Dinero.getInstance();
 
-    try {
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    din.IF(cpu.getLastPC().getValue());
   }
   public void ID() throws RAWException, IrregularWriteOperationException, IrregularStringOfBitsException, TwosComplementSumException, HaltException {
 
@@ -61,7 +57,4 @@ public class NOP extends Instruction {
   public void WB() throws IrregularStringOfBitsException {
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-  }
-
 }
@@ -42,14 +42,11 @@ import org.edumips64.utils.IrregularStringOfBitsException;
  * @author Trubia Massimo, Russo Daniele
  */
 public class OR extends ALU_RType {
-  public String OPCODE_VALUE = "100101";
   /** Creates a new instance of OR */
   public OR() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "OR";
   }
 
-
   public void EX()
   throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException {
     //getting strings from temporary registers
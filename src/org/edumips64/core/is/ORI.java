@@ -37,9 +37,7 @@ import org.edumips64.utils.*;
  */
 
 class ORI extends ALU_IType {
-  final String OPCODE_VALUE = "001101";
   ORI() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "ORI";
   }
   //since this operation is carried out with zero padding of immediate, against sign_extend(immediate) methodology
@@ -35,9 +35,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class SB extends Storing {
-  final String OPCODE_VALUE = "101000";
   public SB() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "SB";
     this.memoryOpSize = 1;
   }
@@ -33,9 +33,7 @@ import org.edumips64.utils.*;
  */
 public class SDC1 extends FPStoring {
 
-  String OPCODE_VALUE = "111101";
   public SDC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "SDC1";
   }
 
@@ -45,7 +43,8 @@ public class SDC1 extends FPStoring {
       long address = TR[OFFSET_PLUS_BASE].getValue();
       //For the trace file
       Dinero din = Dinero.getInstance();
-      din.Store(Converter.binToHex(Converter.positiveIntToBin(64, address)), 8);
+      din.Store(address, 8);
+      cpu.accessDataCache(instAddress, address, true);
       MemoryElement memEl = memory.getCellByAddress(address);
       //writing on the memory element the RT register
       memEl.setBits(TR[RT_FIELD].getBinString(), 0);
@@ -38,9 +38,7 @@ import org.edumips64.utils.*;
  * @author IS Group
  */
 class SH extends Storing {
-  final String OPCODE_VALUE = "101001";
   public SH() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "SH";
     this.memoryOpSize = 2;
   }
@@ -38,9 +38,7 @@ import org.edumips64.utils.IrregularStringOfBitsException;
 * @author Trubia Massimo, Russo Daniele
 */
 public class SLT extends ALU_RType {
-  final String OPCODE_VALUE = "101010";
   public SLT() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "SLT";
   }
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException {
@@ -40,9 +40,7 @@ import org.edumips64.utils.*;
  */
 
 class SLTIU extends ALU_IType {
-  final String OPCODE_VALUE = "001011";
   SLTIU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "SLTIU";
   }
 
@@ -39,11 +39,8 @@ import org.edumips64.utils.*;
  *
  */
 class SLTU extends ALU_RType {
-  final String OPCODE_VALUE = "101011";
-
 
   public SLTU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "SLTU";
   }
 
@@ -41,16 +41,8 @@ public class SRAV extends ALU_RType {
   final int RD_FIELD = 0;
   final int RT_FIELD = 1;
   final int RS_FIELD = 2;
-  final int RD_FIELD_INIT = 11;
-  final int RT_FIELD_INIT = 16;
-  final int RS_FIELD_INIT = 21;
-  final int RD_FIELD_LENGTH = 5;
-  final int RT_FIELD_LENGTH = 5;
-  final int RS_FIELD_LENGTH = 5;
-  final String OPCODE_VALUE = "000111";
 
   SRAV() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "SRAV";
     syntax = "%R,%R,%R";
   }
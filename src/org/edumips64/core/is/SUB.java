@@ -38,10 +38,8 @@ import org.edumips64.utils.*;
  * @author Sciuto Lorenzo - UrzÃ¬ Erik - Giorgio Scibilia
  */
 public class SUB extends ALU_RType {
-  final String OPCODE_VALUE = "100010";
 
   public SUB() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "SUB";
   }
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException {
@@ -37,9 +37,7 @@ import org.edumips64.utils.*;
  * @author Sciuto Lorenzo - UrzÃ¬ Erik - Giorgio Scibilia
  */
 public class SUBU extends ALU_RType {
-  final String OPCODE_VALUE = "100011";
   public SUBU() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "SUBU";
   }
 
@@ -37,14 +37,9 @@ import java.math.*;
  *</pre>
  */
 class SUB_D extends FPArithmeticInstructions {
-  final String OPCODE_VALUE = "000001";
-  String FMT_FIELD = "10001"; //DOUBLE IS 17
   String NAME = "SUB.D";
 
-
   public SUB_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
-    super.FMT_FIELD = FMT_FIELD;
     super.name = NAME;
   }
 
@@ -52,4 +47,9 @@ class SUB_D extends FPArithmeticInstructions {
   protected String doFPArith(String operand1, String operand2) throws FPInvalidOperationException, FPUnderflowException, FPOverflowException, FPDivideByZeroException, IrregularStringOfBitsException {
     return FPInstructionUtils.doubleSubtraction(operand1, operand2);
   }
+
+  /** Stages of the FP adder */
+  public int getLatency() {
+    return 4;
+  }
 }
@@ -36,9 +36,7 @@ import org.edumips64.utils.*;
  * @author Trubia Massimo, Russo Daniele
  */
 class SW extends Storing {
-  final String OPCODE_VALUE = "101011";
   public SW() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "SW";
     this.memoryOpSize = 4;
   }
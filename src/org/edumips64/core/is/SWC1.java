@@ -34,20 +34,18 @@ import org.edumips64.utils.*;
  *               To store a word from an FPR to memory
  */
 class SWC1 extends FPStoring {
-  final String OPCODE_VALUE = "111001";
   public SWC1() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "SWC1";
   }
 
-
   public void MEM() throws IrregularStringOfBitsException, NotAlignException, MemoryElementNotFoundException, AddressErrorException, IrregularWriteOperationException {
 
     //restoring the address from the temporary register
     long address = TR[OFFSET_PLUS_BASE].getValue();
     //For the trace file
     Dinero din = Dinero.getInstance();
-    din.Store(Converter.binToHex(Converter.positiveIntToBin(64, address)), 4);
+    din.Store(address, 4);
+    cpu.accessDataCache(instAddress, address, true);
     MemoryElement memEl = memory.getCellByAddress(address);
     //writing on the memory element the RT register
     memEl.writeWord(TR[RT_FIELD].readWord(0), (int)(address % 8));
@@ -61,9 +59,5 @@ class SWC1 extends FPStoring {
   public void WB() throws IrregularStringOfBitsException {
   }
 
-
-
-
-
 }
 
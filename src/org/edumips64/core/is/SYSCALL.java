@@ -24,6 +24,7 @@ import org.edumips64.core.*;
 import org.edumips64.utils.*;
 import java.util.logging.Logger;
 import java.io.IOException;
+import java.util.List;
 
 /** SYSCALL instruction, used to issue system calls.
  *
@@ -32,10 +33,21 @@ import java.io.IOException;
 public class SYSCALL extends Instruction {
   private static final Logger logger = Logger.getLogger(SYSCALL.class.getName());
 
-  String OPCODE_VALUE = "000000";
-  String FINAL_VALUE = "001100";
+  /** Begins the region of interest: statistics and traces are recorded
+   *  from the cycle after the one in which the SYSCALL completes WB */
+  public static final int ROI_BEGIN = 6;
+  /** Ends the region of interest, from the cycle after WB */
+  public static final int ROI_END = 7;
+  /** Reads the performance counter whose number is in R14 into R1 */
+  public static final int READ_COUNTER = 8;
+  /** Stores all the performance counters, one doubleword each, from the
+   *  address in R14; R1 gets the number of counters */
+  public static final int STORE_COUNTERS = 9;
+
+  private static final CPU.Counter[] COUNTERS = CPU.Counter.values();
+
   private int syscall_n;
-  private int return_value;
+  private long return_value;
   private long address;
 
   private Dinero din;
@@ -53,12 +65,8 @@ public class SYSCALL extends Instruction {
     syscall_n = params.get(0);
     logger.info("SYSCALL (" + this.hashCode() + ") -> IF");
 
-    try {
-      CPU cpu = CPU.getInstance();
-      din.IF(Converter.binToHex(Converter.intToBin(64, cpu.getLastPC().getValue())));
-    } catch (IrregularStringOfBitsException e) {
-      e.printStackTrace();
-    }
+    CPU cpu = CPU.getInstance();
+    din.IF(cpu.getLastPC().getValue());
 
     logger.info("SYSCALL (" + this.hashCode() + ") n = " + syscall_n);
   }
@@ -67,7 +75,7 @@ public class SYSCALL extends Instruction {
     if (syscall_n == 0) {
       logger.info("Stopping CPU due to SYSCALL (" + this.hashCode() + ")");
       CPU.getInstance().setStatus(CPU.CPUStatus.STOPPING);
-    } else if ((syscall_n > 0) && (syscall_n <= 5)) {
+    } else if (returnsValue()) {
       CPU cpu = CPU.getInstance();
       Register r14 = cpu.getRegister(14);
 
@@ -81,12 +89,35 @@ public class SYSCALL extends Instruction {
       r1.incrWriteSemaphore();
       address = r14.getValue();
       logger.info("SYSCALL (" + this.hashCode() + "): locked register R14. Value = " + address);
+    } else if (syscall_n == ROI_BEGIN || syscall_n == ROI_END) {
+      logger.info("SYSCALL (" + this.hashCode() + "): region of interest marker");
     } else {
       // TODO: invalid syscall
       logger.info("INVALID SYSCALL (" + this.hashCode() + ")");
     }
   }
 
+  /** Whether the system call reads R14 and writes R1 */
+  private boolean returnsValue() {
+    return returnsValue(syscall_n);
+  }
+
+  private static boolean returnsValue(int n) {
+    return (n > 0 && n <= 5) || n == READ_COUNTER || n == STORE_COUNTERS;
+  }
+
+  protected void dataflow(List<Integer> reads, List<Integer> writes) {
+    if (returnsValue(getNumber())) {
+      reads.add(14);
+      writes.add(1);
+    }
+  }
+
+  /** Number of the system call */
+  public int getNumber() {
+    return params.get(0);
+  }
+
   public void EX() throws IrregularStringOfBitsException, IntegerOverflowException, TwosComplementSumException, IrregularWriteOperationException {
     logger.info("SYSCALL (" + this.hashCode() + ") -> EX");
   }
@@ -105,7 +136,7 @@ public class SYSCALL extends Instruction {
 
       // Memory access for the string and the flags (note the <=)
       for (int i = (int) address; i <= flags_address; i += 8) {
-        din.Load(Converter.binToHex(Converter.positiveIntToBin(64, i)), 8);
+        din.Load(i, 8);
       }
 
       logger.info("We must open " + filename + " with flags " + flags);
@@ -173,7 +204,7 @@ public class SYSCALL extends Instruction {
       int format_string_address = (int) tempMemCell.getValue();
 
       // Recording in the tracefile the last memory access
-      din.Load(Converter.binToHex(Converter.positiveIntToBin(64, address)), 8);
+      din.Load(address, 8);
 
       // Fetching the format string
       String format_string = fetchString(format_string_address);
@@ -189,7 +220,7 @@ public class SYSCALL extends Instruction {
       t1 += 8 - (t1 % 8);
 
       for (int i = format_string_address; i < t1; i += 8) {
-        din.Load(Converter.binToHex(Converter.positiveIntToBin(64, i)), 8);
+        din.Load(i, 8);
       }
 
       int oldIndex = 0;
@@ -219,7 +250,7 @@ public class SYSCALL extends Instruction {
           t2 += 8 - (t2 % 8);
 
           for (int i = str_address; i < t2; i += 8) {
-            din.Load(Converter.binToHex(Converter.positiveIntToBin(64, i)), 8);
+            din.Load(i, 8);
           }
 
           logger.info("Got " + param);
@@ -231,7 +262,7 @@ public class SYSCALL extends Instruction {
           MemoryElement memCell = memory.getCellByAddress(next_param_address);
 
           // Tracefile entry for this memory access
-          din.Load(Converter.binToHex(Converter.positiveIntToBin(64, next_param_address)), 8);
+          din.Load(next_param_address, 8);
 
           Long val = memCell.getValue();
           next_param_address += 8;
@@ -262,6 +293,25 @@ public class SYSCALL extends Instruction {
       }
 
       return_value = temp.length();
+    } else if (syscall_n == READ_COUNTER) {
+      // long read_counter(int counter)
+      return_value = address >= 0 && address < COUNTERS.length ? CPU.getInstance().readCounter(COUNTERS[(int) address]) : -1;
+      logger.info("SYSCALL (" + this.hashCode() + "): counter " + address + " = " + return_value);
+    } else if (syscall_n == STORE_COUNTERS) {
+      // int store_counters(long* buf)
+      long[] values = new long[COUNTERS.length];
+
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = CPU.getInstance().readCounter(COUNTERS[i]);
+      }
+
+      memory.writeDoubleWords(address, values, 0, values.length);
+
+      for (int i = 0; i < values.length; ++i) {
+        din.Store(address - address % 8 + i * 8, 8);
+      }
+
+      return_value = values.length;
     }
   }
 
@@ -297,7 +347,7 @@ public class SYSCALL extends Instruction {
       logger.info("Stopped CPU due to SYSCALL (" + this.hashCode() + ")");
       CPU.getInstance().setStatus(CPU.CPUStatus.HALTED);
       throw new HaltException();
-    } else if (syscall_n > 0 && syscall_n <= 5) {
+    } else if (returnsValue()) {
       logger.info("SYSCALL (" + this.hashCode() + "): setting R1 to " + return_value);
       Register r1 = CPU.getInstance().getRegister(1);
       logger.info("SYSCALL (" + this.hashCode() + "): got R1");
@@ -305,17 +355,11 @@ public class SYSCALL extends Instruction {
       logger.info("SYSCALL (" + this.hashCode() + "): set R1 to " + return_value);
       r1.decrWriteSemaphore();
       logger.info("SYSCALL (" + this.hashCode() + "): decremented write semaphore");
+    } else if (syscall_n == ROI_BEGIN || syscall_n == ROI_END) {
+      CPU.getInstance().markROI(syscall_n == ROI_BEGIN);
     }
 
     logger.info("SYSCALL (" + this.hashCode() + ") exiting from WB. n = " + syscall_n);
   }
 
-  public void pack() throws IrregularStringOfBitsException {
-    /* First 6 bits -> 000000 (SPECIAL) */
-    repr.setBits(OPCODE_VALUE, 0);
-    /* Next 20 bits -> binary value of the immediate parameter. */
-    repr.setBits(Converter.intToBin(20, params.get(0)), 6);
-    /* Last 6 bits -> 001100 (SYSCALL) */
-    repr.setBits(FINAL_VALUE, 26);
-  }
 }
@@ -34,12 +34,9 @@ import org.edumips64.utils.*;
  */
 public class S_D extends SDC1 {
 
-  final String OPCODE_VALUE = "111101";
   public S_D() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "S.D";
   }
 
-
 }
 
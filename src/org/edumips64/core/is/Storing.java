@@ -67,10 +67,11 @@ public abstract class Storing extends LDSTInstructions {
     super.EX();
 
     // Save memory access for Dinero trace file
-    dinero.Store(Converter.binToHex(Converter.positiveIntToBin(64, address)), memoryOpSize);
+    dinero.Store(address, memoryOpSize);
   }
 
   public void MEM() throws IrregularStringOfBitsException, MemoryElementNotFoundException, NotAlignException, AddressErrorException, IrregularWriteOperationException {
+    cpu.accessDataCache(instAddress, address, true);
     memEl = memory.getCellByAddress(address);
 
     if (enableForwarding) {
@@ -105,4 +106,8 @@ public abstract class Storing extends LDSTInstructions {
       e.printStackTrace();
     }
   }
+
+  public boolean isStore() {
+    return true;
+  }
 }
@@ -39,11 +39,9 @@ import org.edumips64.utils.IrregularStringOfBitsException;
  * </pre>
  */
 public class XOR extends ALU_RType {
-  public String OPCODE_VALUE = "100110";
 
   /** Creates a new instance of XOR */
   public XOR() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     name = "XOR";
   }
 
@@ -38,9 +38,7 @@ import org.edumips64.utils.*;
  */
 
 class XORI extends ALU_IType {
-  final String OPCODE_VALUE = "001110";
   XORI() {
-    super.OPCODE_VALUE = OPCODE_VALUE;
     this.name = "XORI";
   }
 
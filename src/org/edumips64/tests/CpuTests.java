@@ -25,6 +25,8 @@
  */
 package org.edumips64.tests;
 
+import org.edumips64.BranchReplay;
+import org.edumips64.StateBisect;
 import org.edumips64.core.*;
 import org.edumips64.core.is.*;
 import org.edumips64.ui.CycleBuilder;
@@ -32,11 +34,20 @@ import org.edumips64.utils.ConfigStore;
 import org.edumips64.utils.ConfigManager;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.*;
 import org.junit.rules.ErrorCollector;
@@ -60,10 +71,14 @@ public class CpuTests {
    * after the execution of a test case.
    */
   class CpuTestStatus {
-    int cycles;
-    int instructions;
-    int rawStalls, wawStalls, memStalls;
+    long cycles;
+    long instructions;
+    long rawStalls, wawStalls, memStalls;
     String traceFile;
+    List<BranchStatistics.Entry> branches;
+    long cacheStalls;
+    long dataCacheAccesses, usefulPrefetches, issuedPrefetches;
+    long roiCycles, roiInstructions, fetches;
 
     public CpuTestStatus(CPU cpu, String dineroTrace) {
       cycles = cpu.getCycles();
@@ -72,6 +87,20 @@ public class CpuTests {
       rawStalls = cpu.getRAWStalls();
       memStalls = cpu.getStructuralStallsMemory();
       traceFile = dineroTrace;
+      branches = cpu.getBranchStatistics().getReport(BranchStatistics.SortKey.ADDRESS);
+      cacheStalls = cpu.getCacheStalls();
+      roiCycles = cpu.getStatistics().getCycles();
+      roiInstructions = cpu.getStatistics().getInstructions();
+
+      if (cpu.getCacheHierarchy().isEnabled()) {
+        dataCacheAccesses = cpu.getCacheHierarchy().getL1D().getAccesses();
+        fetches = cpu.getCacheHierarchy().getL1I().getAccesses();
+
+        if (cpu.getCacheHierarchy().getPrefetchBuffer() != null) {
+          usefulPrefetches = cpu.getCacheHierarchy().getPrefetchBuffer().getUseful();
+          issuedPrefetches = cpu.getCacheHierarchy().getPrefetchBuffer().getIssued();
+        }
+      }
 
       log.warning("Got " + cycles + " cycles, " + instructions + " instructions, " + rawStalls + " RAW Stalls and " + wawStalls + " WAW stalls.");
     }
@@ -132,9 +161,13 @@ public class CpuTests {
    * @param testPath path of the test code.
    */
   protected CpuTestStatus runMipsTest(String testPath) throws Exception {
+    return runMipsProgram(testsLocation + testPath);
+  }
+
+  /** Executes a MIPS64 program given its full path. */
+  protected CpuTestStatus runMipsProgram(String testPath) throws Exception {
     log.warning("================================= Starting test " + testPath);
     cpu.reset();
-    testPath = testsLocation + testPath;
     CycleBuilder builder = new CycleBuilder();
 
     try {
@@ -190,8 +223,8 @@ public class CpuTests {
     return statuses;
   }
 
-  private void runForwardingTest(String path, int expected_cycles_with_forwarding,
-                                 int expected_cycles_without_forwarding, int expected_instructions) throws Exception {
+  private void runForwardingTest(String path, long expected_cycles_with_forwarding,
+                                 long expected_cycles_without_forwarding, long expected_instructions) throws Exception {
     Map<ForwardingStatus, CpuTestStatus> statuses = runMipsTestWithAndWithoutForwarding(path);
 
     collector.checkThat("Cycles with forwarding (" + path + ")", statuses.get(ForwardingStatus.ENABLED).cycles, equalTo(expected_cycles_with_forwarding));
@@ -225,11 +258,11 @@ public class CpuTests {
   @Test
   public void testHalt() throws Exception {
       CpuTestStatus status = runMipsTest("halt.s");
-      collector.checkThat(status.cycles, equalTo(6));
-      collector.checkThat(status.instructions, equalTo(1));
-      collector.checkThat(status.memStalls, equalTo(0));
-      collector.checkThat(status.rawStalls, equalTo(0));
-      collector.checkThat(status.wawStalls, equalTo(0));
+      collector.checkThat(status.cycles, equalTo(6L));
+      collector.checkThat(status.instructions, equalTo(1L));
+      collector.checkThat(status.memStalls, equalTo(0L));
+      collector.checkThat(status.rawStalls, equalTo(0L));
+      collector.checkThat(status.wawStalls, equalTo(0L));
   }
 
   /* Tests for instruction SYSCALL. */
@@ -309,16 +342,16 @@ public class CpuTests {
     Map<ForwardingStatus, CpuTestStatus> statuses = runMipsTestWithAndWithoutForwarding(filename);
 
     // With forwarding
-    collector.checkThat(filename + ": cycles with forwarding.", statuses.get(ForwardingStatus.ENABLED).cycles, equalTo(20));
-    collector.checkThat(filename + ": instructions with forwarding.", statuses.get(ForwardingStatus.ENABLED).instructions, equalTo(5));
-    collector.checkThat(filename + ": WAW stalls with forwarding." ,statuses.get(ForwardingStatus.ENABLED).wawStalls, equalTo(7));
-    collector.checkThat(filename + ": RAW stalls with forwarding.", statuses.get(ForwardingStatus.ENABLED).rawStalls, equalTo(1));
+    collector.checkThat(filename + ": cycles with forwarding.", statuses.get(ForwardingStatus.ENABLED).cycles, equalTo(20L));
+    collector.checkThat(filename + ": instructions with forwarding.", statuses.get(ForwardingStatus.ENABLED).instructions, equalTo(5L));
+    collector.checkThat(filename + ": WAW stalls with forwarding." ,statuses.get(ForwardingStatus.ENABLED).wawStalls, equalTo(7L));
+    collector.checkThat(filename + ": RAW stalls with forwarding.", statuses.get(ForwardingStatus.ENABLED).rawStalls, equalTo(1L));
 
     // Without forwarding
-    collector.checkThat(filename + ": cycles without forwarding.", statuses.get(ForwardingStatus.DISABLED).cycles, equalTo(21));
-    collector.checkThat(filename + ": instructions without forwarding.", statuses.get(ForwardingStatus.DISABLED).instructions, equalTo(5));
-    collector.checkThat(filename + ": WAW stalls without forwarding." ,statuses.get(ForwardingStatus.DISABLED).wawStalls, equalTo(7));
-    collector.checkThat(filename + ": RAW stalls without forwarding.", statuses.get(ForwardingStatus.DISABLED).rawStalls, equalTo(2));
+    collector.checkThat(filename + ": cycles without forwarding.", statuses.get(ForwardingStatus.DISABLED).cycles, equalTo(21L));
+    collector.checkThat(filename + ": instructions without forwarding.", statuses.get(ForwardingStatus.DISABLED).instructions, equalTo(5L));
+    collector.checkThat(filename + ": WAW stalls without forwarding." ,statuses.get(ForwardingStatus.DISABLED).wawStalls, equalTo(7L));
+    collector.checkThat(filename + ": RAW stalls without forwarding.", statuses.get(ForwardingStatus.DISABLED).rawStalls, equalTo(2L));
   }
 
   @Test
@@ -331,7 +364,7 @@ public class CpuTests {
     Map<ForwardingStatus, CpuTestStatus> statuses = runMipsTestWithAndWithoutForwarding("fpu-mul.s");
 
     // Same behaviour with and without forwarding.
-    int expected_cycles = 43, expected_instructions = 32, expected_mem_stalls = 6;
+    long expected_cycles = 43, expected_instructions = 32, expected_mem_stalls = 6;
     collector.checkThat(statuses.get(ForwardingStatus.ENABLED).cycles, equalTo(expected_cycles));
     collector.checkThat(statuses.get(ForwardingStatus.ENABLED).instructions, equalTo(expected_instructions));
     collector.checkThat(statuses.get(ForwardingStatus.ENABLED).memStalls, equalTo(expected_mem_stalls));
@@ -408,6 +441,728 @@ public class CpuTests {
     runTestAndCompareTracefileWithGolden("tracefile-st.s");
   }
 
+  /* The streaming Dinero sink must produce the same trace as the in-memory
+   * one, both in din format and in the compressed binary format. */
+  @Test
+  public void testStreamingTracefile() throws Exception {
+    String path = "tracefile-ldst.s";
+    String golden = new Scanner(new File(testsLocation + path + ".xdin.golden")).useDelimiter("\\A").next();
+    File tmp = File.createTempFile("edumips64", "xdin");
+    tmp.deleteOnExit();
+
+    try {
+      config.putString("dineroStreamFile", tmp.getAbsolutePath());
+      config.putString("dineroStreamFormat", "xdin");
+      config.putBoolean("dineroStreamGzip", false);
+      runMipsTest(path);
+      String trace = new Scanner(tmp).useDelimiter("\\A").next();
+      collector.checkThat("Streamed din trace differs from the golden one.", trace, equalTo(golden));
+
+      config.putString("dineroStreamFormat", "binary");
+      config.putBoolean("dineroStreamGzip", true);
+      runMipsTest(path);
+      StringWriter decoded = new StringWriter();
+      Dinero.binaryToXdin(new GZIPInputStream(new FileInputStream(tmp)), decoded);
+      collector.checkThat("Binary trace differs from the golden one.", decoded.toString(), equalTo(golden));
+    } finally {
+      config.putString("dineroStreamFile", "");
+      config.putString("dineroStreamFormat", "xdin");
+      config.putBoolean("dineroStreamGzip", false);
+    }
+  }
+
+  /* A blocking cache freezes the whole pipeline: the run must take exactly
+   * the cache stalls more than without caches, and every load and store of
+   * the Dinero trace must go through the L1 data cache. */
+  @Test
+  public void testCacheStalls() throws Exception {
+    String path = "tracefile-ldst.s";
+    CpuTestStatus noCache = runMipsTest(path);
+
+    try {
+      config.putBoolean("cacheEnabled", true);
+      CpuTestStatus withCache = runMipsTest(path);
+      String trace = new Scanner(new File(withCache.traceFile)).useDelimiter("\\A").next();
+      int dataAccesses = 0;
+
+      for (String line : trace.split("\n")) {
+        if (line.startsWith("r ") || line.startsWith("w ")) {
+          dataAccesses++;
+        }
+      }
+
+      collector.checkThat("No cache stalls without caches", noCache.cacheStalls, equalTo(0L));
+      collector.checkThat("Cold caches must stall", withCache.cacheStalls > 0, equalTo(true));
+      collector.checkThat("Cycles", withCache.cycles, equalTo(noCache.cycles + withCache.cacheStalls));
+      collector.checkThat("Instructions", withCache.instructions, equalTo(noCache.instructions));
+      collector.checkThat("L1D accesses", withCache.dataCacheAccesses, equalTo((long) dataAccesses));
+    } finally {
+      config.putBoolean("cacheEnabled", false);
+    }
+  }
+
+  /* On a strided walk through an array every prefetcher must be useful and
+   * must save cycles with respect to the plain caches. A reset must make
+   * the prefetcher forget what it learnt, so a second run is the same. */
+  @Test
+  public void testPrefetchers() throws Exception {
+    String path = "prefetch-stream.s";
+
+    try {
+      config.putBoolean("cacheEnabled", true);
+      CpuTestStatus noPrefetch = runMipsTest(path);
+
+      for (String prefetcher : new String[] {"nextline", "stride", "stream"}) {
+        config.putString("cachePrefetcher", prefetcher);
+        CpuTestStatus s = runMipsTest(path);
+        collector.checkThat("Useful prefetches (" + prefetcher + ")", s.usefulPrefetches > 0, equalTo(true));
+        collector.checkThat("Issued prefetches (" + prefetcher + ")", s.issuedPrefetches >= s.usefulPrefetches, equalTo(true));
+        collector.checkThat("Cycles (" + prefetcher + ")", s.cycles < noPrefetch.cycles, equalTo(true));
+        collector.checkThat("Instructions (" + prefetcher + ")", s.instructions, equalTo(noPrefetch.instructions));
+        collector.checkThat("L1D accesses (" + prefetcher + ")", s.dataCacheAccesses, equalTo(noPrefetch.dataCacheAccesses));
+        CpuTestStatus again = runMipsTest(path);
+        collector.checkThat("Cycles again (" + prefetcher + ")", again.cycles, equalTo(s.cycles));
+        collector.checkThat("Issued prefetches again (" + prefetcher + ")", again.issuedPrefetches, equalTo(s.issuedPrefetches));
+      }
+    } finally {
+      config.putBoolean("cacheEnabled", false);
+      config.putString("cachePrefetcher", "none");
+    }
+  }
+
+  /** Dumps the instructions and the data memory, with their annotations. */
+  private String dumpMemory() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    Memory mem = Memory.getInstance();
+
+    for (Instruction i : mem.getInstructions()) {
+      if (!i.isBubble()) {
+        sb.append(i.getName() + " " + i.getParams() + " " + i.getRepr().getHexString() + " " + i.getFullName() + " " + i.getLabel() + " " + i.getComment() + "\n");
+      }
+    }
+
+    for (int c = 0; c < mem.getMemorySize(); ++c) {
+      MemoryElement cell = mem.getCellByIndex(c);
+      sb.append(cell.getHexString() + " " + cell.getLabel() + " " + cell.getCode() + " " + cell.getComment() + "\n");
+    }
+
+    sb.append(mem.getInstructionsNumber() + " instructions\n");
+    return sb.toString();
+  }
+
+  /** Loads a program, given its full path, and dumps the memory. */
+  private String parseAndDump(String path) throws Exception {
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(path);
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      return dumpMemory();
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /* A program loaded from the program cache must be identical to the parsed
+   * one, and must run in the same way. Loading another program in between
+   * makes the parser forget the last one, that it would otherwise reuse. */
+  @Test
+  public void testProgramCache() throws Exception {
+    File dir = File.createTempFile("edumips64", "cache");
+    dir.delete();
+    String path = "test-strlen.s";
+    CpuTestStatus parsed = runMipsTest(path);
+    String parsedMemory = parseAndDump(testsLocation + path);
+
+    try {
+      config.putBoolean("programCache", true);
+      config.putString("programCacheDir", dir.getAbsolutePath());
+      runMipsTest(path);
+      collector.checkThat("Stored images", dir.list().length, equalTo(1));
+
+      runMipsTest("halt.s");
+      collector.checkThat("Memory", parseAndDump(testsLocation + path), equalTo(parsedMemory));
+      runMipsTest("halt.s");
+      CpuTestStatus loaded = runMipsTest(path);
+
+      collector.checkThat("Cycles", loaded.cycles, equalTo(parsed.cycles));
+      collector.checkThat("Instructions", loaded.instructions, equalTo(parsed.instructions));
+      collector.checkThat("RAW stalls", loaded.rawStalls, equalTo(parsed.rawStalls));
+    } finally {
+      config.putBoolean("programCache", false);
+
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+
+      dir.delete();
+    }
+  }
+
+  private static void writeProgram(File f, String... lines) throws Exception {
+    java.io.PrintWriter out = new java.io.PrintWriter(f, "ISO-8859-1");
+
+    try {
+      for (String line : lines) {
+        out.println(line);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /* Reloading an edited program must give the same memory as parsing it
+   * from scratch, whether the edit allows to assemble only the changed
+   * lines or not. */
+  @Test
+  public void testIncrementalAssembly() throws Exception {
+    File f = File.createTempFile("edumips64", ".s");
+    f.deleteOnExit();
+    String path = f.getAbsolutePath();
+    writeProgram(f, ".data", "a: .word 5", "b: .word 7", "res: .space 8", ".code",
+                 "ld r1, a(r0)", "ld r2, b(r0)", "loop: dadd r3, r1, r2", "sd r3, res(r0)", "syscall 0");
+    runMipsProgram(path);
+
+    // Same layout: only the changed lines are assembled again.
+    writeProgram(f, ".data", "a: .word 5", "b: .word 9 ; changed", "res: .space 8", ".code",
+                 "ld r1, a(r0)", "ld r2, b(r0)", "loop: dsub r3, r1, r2", "sd r3, res(r0)", "syscall 0");
+    String incremental = parseAndDump(path);
+    CpuTestStatus incrementalStatus = runMipsProgram(path);
+    runMipsTest("halt.s");
+    collector.checkThat("Memory after a local edit", incremental, equalTo(parseAndDump(path)));
+    runMipsTest("halt.s");
+    CpuTestStatus full = runMipsProgram(path);
+    collector.checkThat("Cycles", incrementalStatus.cycles, equalTo(full.cycles));
+    collector.checkThat("Instructions", incrementalStatus.instructions, equalTo(full.instructions));
+
+    // Different layouts: the program is parsed again.
+    writeProgram(f, ".data", "a: .word 5", "b: .word 9, 10", "res: .space 8", ".code",
+                 "ld r1, a(r0)", "ld r2, b(r0)", "dsub r3, r1, r2", "sd r3, res(r0)", "syscall 0");
+    String changed = parseAndDump(path);
+    runMipsTest("halt.s");
+    collector.checkThat("Memory after moving the data", changed, equalTo(parseAndDump(path)));
+  }
+
+  /* A program split across included files is assembled one unit at a
+   * time and linked: it must give the same memory as the same lines in a
+   * single file, also when reloaded after an edit, and a cell label used
+   * before its definition in another unit must still be an error. */
+  @Test
+  public void testIncludeUnits() throws Exception {
+    File dir = File.createTempFile("edumips64", "units");
+    dir.delete();
+    dir.mkdir();
+    File main = new File(dir, "main.s");
+    File lib = new File(dir, "lib.s");
+    File flat = new File(dir, "flat.s");
+    String[] head = {".data", "a: .word 5", "res: .space 8", ".code", "ld r1, a(r0)", "jal double", "sd r1, res(r0)", "j back"};
+    String[] tail = {"back: ld r3, k(r0)", "dadd r1, r1, r3", "sd r1, res(r0)", "syscall 0"};
+    String[] body = {".data", "k: .word 3", ".code", "double: dadd r1, r1, r1", "ld r2, a(r0)", "beq r1, r0, back", "jr r31"};
+
+    try {
+      writeProgram(main, concat(head, new String[] {"#include lib.s"}, tail));
+      writeProgram(lib, body);
+      writeProgram(flat, concat(head, body, tail));
+      String linked = parseAndDump(main.getAbsolutePath());
+      collector.checkThat("Memory", linked, equalTo(parseAndDump(flat.getAbsolutePath())));
+      CpuTestStatus units = runMipsProgram(main.getAbsolutePath());
+      CpuTestStatus whole = runMipsProgram(flat.getAbsolutePath());
+      collector.checkThat("Cycles", units.cycles, equalTo(whole.cycles));
+      collector.checkThat("Instructions", units.instructions, equalTo(whole.instructions));
+
+      // The line records of the units let the parser assemble again only
+      // the edited line.
+      body[4] = "ld r2, k(r0)";
+      writeProgram(lib, body);
+      writeProgram(flat, concat(head, body, tail));
+      String reloaded = parseAndDump(main.getAbsolutePath());
+      runMipsTest("halt.s");
+      collector.checkThat("Memory after an edit", reloaded, equalTo(parseAndDump(flat.getAbsolutePath())));
+
+      writeProgram(main, ".data", "#include lib.s", "late: .word 1", ".code", "syscall 0");
+      writeProgram(lib, ".code", "ld r1, late(r0)", ".data");
+
+      try {
+        parseAndDump(main.getAbsolutePath());
+        collector.addError(new AssertionError("Label used before its definition"));
+      } catch (ParserMultiException e) {
+        collector.checkThat("Errors", e.hasErrors(), equalTo(true));
+      }
+    } finally {
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+
+      dir.delete();
+    }
+  }
+
+  /* A program of more than 256 instructions split across included files
+   * must still fit the code memory once linked, rather than being parsed
+   * again as a whole. */
+  @Test
+  public void testIncludeUnitsLarge() throws Exception {
+    File dir = File.createTempFile("edumips64", "units");
+    dir.delete();
+    dir.mkdir();
+    File main = new File(dir, "main.s");
+    File lib = new File(dir, "lib.s");
+    File flat = new File(dir, "flat.s");
+    String[] head = new String[151];
+    String[] body = new String[151];
+    head[0] = ".code";
+    body[0] = ".code";
+
+    for (int i = 1; i < 151; ++i) {
+      head[i] = "daddi r1, r1, " + i;
+      body[i] = "daddi r2, r2, " + i;
+    }
+
+    String[] tail = {"syscall 0"};
+    final List<String> messages = new ArrayList<String>();
+    Handler handler = new Handler() {
+      public void publish(java.util.logging.LogRecord r) {
+        messages.add(r.getMessage());
+      }
+      public void flush() {}
+      public void close() {}
+    };
+    Logger parserLogger = Logger.getLogger(Parser.class.getName());
+
+    try {
+      writeProgram(main, concat(head, new String[] {"#include lib.s"}, tail));
+      writeProgram(lib, body);
+      writeProgram(flat, concat(head, body, tail));
+      parserLogger.addHandler(handler);
+      String linked = parseAndDump(main.getAbsolutePath());
+      parserLogger.removeHandler(handler);
+
+      for (String m : messages) {
+        collector.checkThat(m, m.contains("whole program"), equalTo(false));
+      }
+
+      collector.checkThat("Memory", linked, equalTo(parseAndDump(flat.getAbsolutePath())));
+      CpuTestStatus units = runMipsProgram(main.getAbsolutePath());
+      collector.checkThat("Instructions", units.instructions, equalTo(301L));
+    } finally {
+      parserLogger.removeHandler(handler);
+
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+
+      dir.delete();
+    }
+  }
+
+  private static String[] concat(String[]... parts) {
+    List<String> lines = new ArrayList<String>();
+
+    for (String[] p : parts) {
+      lines.addAll(Arrays.asList(p));
+    }
+
+    return lines.toArray(new String[lines.size()]);
+  }
+
+  /* The symbol of every code and data address must be the nearest label
+   * at or before it, as found scanning the memory. */
+  @Test
+  public void testSymbolIndex() throws Exception {
+    cpu.reset();
+    parser.parse(testsLocation + "test-strcmp.s");
+    Memory mem = Memory.getInstance();
+    SymbolTable symTab = SymbolTable.getInstance();
+    String label = null;
+    int labelAddress = 0;
+
+    for (int a = 0; a < mem.getInstructionsNumber() * 4; a += 4) {
+      String instrLabel = mem.getInstruction(a).getLabel();
+
+      if (instrLabel != null && !instrLabel.equals("")) {
+        label = instrLabel;
+        labelAddress = a;
+      }
+
+      SymbolTable.Symbol s = symTab.getCodeSymbol(a);
+      collector.checkThat("Code symbol of " + a, s == null ? null : s.label, equalTo(label));
+
+      if (s != null) {
+        collector.checkThat("Code offset of " + a, s.offset, equalTo(a - labelAddress));
+      }
+    }
+
+    label = null;
+
+    for (int a = 0; a < mem.getMemorySize() * 8; ++a) {
+      String cellLabel = mem.getCellByAddress(a).getLabel();
+
+      if (a % 8 == 0 && !cellLabel.equals("")) {
+        label = cellLabel;
+        labelAddress = a;
+      }
+
+      SymbolTable.Symbol s = symTab.getDataSymbol(a);
+      collector.checkThat("Data symbol of " + a, s == null ? null : s.label, equalTo(label));
+
+      if (s != null) {
+        collector.checkThat("Data offset of " + a, s.offset, equalTo(a - labelAddress));
+      }
+    }
+
+    collector.checkThat(symTab.getCodeSymbol(-4), nullValue());
+    collector.checkThat(symTab.getDataSymbol(mem.getMemorySize() * 8), nullValue());
+    cpu.reset();
+    symTab.reset();
+    collector.checkThat(symTab.getCodeSymbol(0), nullValue());
+  }
+
+  /* A reset clears only what the last run touched, and must leave the
+   * machine as a new one: empty memory, and FCSR status bits cleared
+   * without changing the enables and the rounding mode. */
+  @Test
+  public void testReset() throws Exception {
+    runMipsTest("test-strcmp.s");
+    parser.parse(testsLocation + "test-strcmp.s");
+    String enables = cpu.getFCSR();
+
+    for (int cc = 0; cc < 8; ++cc) {
+      cpu.setFCSRConditionCode(cc, 1);
+    }
+
+    for (String tag : new String[] {"V", "Z", "O", "U"}) {
+      cpu.setFCSRFlags(tag, 1);
+      cpu.setFCSRCause(tag, 1);
+    }
+
+    cpu.reset();
+    collector.checkThat("FCSR", cpu.getFCSR(), equalTo(enables));
+    Memory mem = Memory.getInstance();
+
+    for (Instruction i : mem.getInstructions()) {
+      collector.checkThat("Empty code slot", i.isBubble(), equalTo(true));
+    }
+
+    for (int c = 0; c < mem.getMemorySize(); ++c) {
+      MemoryElement cell = mem.getCellByIndex(c);
+      collector.checkThat("Cell " + c, cell.getValue() + cell.getLabel() + cell.getCode() + cell.getComment(), equalTo("0"));
+    }
+
+    collector.checkThat(mem.getInstructionsNumber(), equalTo(0));
+    collector.checkThat(cpu.getBranchStatistics().getReport(BranchStatistics.SortKey.ADDRESS).isEmpty(), equalTo(true));
+  }
+
+  /* Reading memory, as the views and the snapshots of the parser do, must
+   * not leave cells to clear: only the cells written by the parser and by
+   * the program are reset. */
+  @Test
+  public void testWrittenCells() throws Exception {
+    cpu.reset();
+    Memory mem = Memory.getInstance();
+    collector.checkThat("Written after a reset", mem.getWrittenCells().isEmpty(), equalTo(true));
+    parser.parse(testsLocation + "test-strlen.s");
+    java.util.BitSet parsed = mem.getWrittenCells();
+
+    for (int c = 0; c < mem.getMemorySize(); ++c) {
+      MemoryElement cell = mem.getCellByIndex(c);
+
+      if (!parsed.get(c)) {
+        collector.checkThat("Cell " + c, cell.getValue() + cell.getLabel() + cell.getCode() + cell.getComment(), equalTo("0"));
+      }
+    }
+
+    // The data of the program takes the first 11 cells.
+    collector.checkThat("Written by the parser", parsed.cardinality(), equalTo(11));
+    collector.checkThat("Written after reading", mem.getWrittenCells(), equalTo(parsed));
+
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      // The program ended.
+    }
+
+    // The program only stores in strlen_params, written by the parser too.
+    collector.checkThat("Written after the run", mem.getWrittenCells(), equalTo(parsed));
+    cpu.reset();
+    collector.checkThat("Written after the reset", mem.getWrittenCells().isEmpty(), equalTo(true));
+  }
+
+  /* Every instruction must decode to an instruction with the same encoding
+   * and parameters; aliases decode to the instruction they stand for. */
+  @Test
+  public void testInstructionEncoding() throws Exception {
+    for (Instruction.InstructionEnumerator op : Instruction.InstructionEnumerator.values()) {
+      Instruction i = Instruction.buildInstruction(op.name());
+
+      if (i.isBubble()) {
+        continue;
+      }
+
+      String syntax = i.getSyntax();
+
+      for (int k = syntax.indexOf('%'), n = 1; k >= 0; k = syntax.indexOf('%', k + 1), n++) {
+        // Condition codes are 3 bits wide; everything else takes multiples of 4.
+        i.getParams().add(syntax.charAt(k + 1) == 'C' ? n : 4 * n);
+      }
+
+      i.pack();
+      int word = (int) i.getRepr().getBits();
+      Instruction decoded = InstructionEncoding.decode(word);
+      collector.checkThat("Decoding of " + i.getName(), decoded, notNullValue());
+
+      if (decoded != null) {
+        collector.checkThat("Parameters of " + i.getName(), decoded.getParams(), equalTo(i.getParams()));
+        collector.checkThat("Encoding of " + i.getName(), InstructionEncoding.encode(decoded), equalTo(word));
+      }
+    }
+
+    collector.checkThat(InstructionEncoding.encode("DADD", java.util.Arrays.asList(3, 1, 2)), equalTo(0x0022182C));
+    collector.checkThat(InstructionEncoding.encode("SLLV", java.util.Arrays.asList(1, 2, 3)), equalTo(0x00620804));
+    collector.checkThat(InstructionEncoding.encode("LD", java.util.Arrays.asList(1, 8, 2)), equalTo(0xDC410008));
+    collector.checkThat(InstructionEncoding.encode("BEQ", java.util.Arrays.asList(1, 2, -8)), equalTo(0x1022FFFE));
+    collector.checkThat(InstructionEncoding.encode("ADD.D", java.util.Arrays.asList(2, 4, 6)), equalTo(0x46262080));
+    collector.checkThat(InstructionEncoding.decode(0x1022FFFE).getFullName(), equalTo("BEQ R1,R2,-8"));
+    collector.checkThat(InstructionEncoding.decode(0x7C000000), nullValue());
+  }
+
+  /* A program saved as binary images must run like its source. */
+  @Test
+  public void testBinaryImage() throws Exception {
+    String path = "test-strlen.s";
+    File code = File.createTempFile("edumips64", BinaryImage.CODE_EXTENSION);
+    File data = new File(BinaryImage.dataFile(code.getAbsolutePath()));
+    code.deleteOnExit();
+    data.deleteOnExit();
+
+    CpuTestStatus parsed = runMipsTest(path);
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(testsLocation + path);
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      BinaryImage.save(code.getAbsolutePath(), data.getAbsolutePath());
+    } finally {
+      cpu.reset();
+    }
+
+    CpuTestStatus loaded = runMipsProgram(code.getAbsolutePath());
+    collector.checkThat("Cycles", loaded.cycles, equalTo(parsed.cycles));
+    collector.checkThat("Instructions", loaded.instructions, equalTo(parsed.instructions));
+    collector.checkThat("RAW stalls", loaded.rawStalls, equalTo(parsed.rawStalls));
+  }
+
+  /** Writes a big-endian MIPS64 ELF executable with a code segment, a data
+   *  segment at address 0 and a symbol table of functions and objects. */
+  private static void writeElf(File f, long codeAddress, int[] code, long[] data, String[] names, long[] values,
+                               boolean[] functions) throws Exception {
+    ByteBuffer strtab = ByteBuffer.allocate(1024);
+    ByteBuffer symtab = ByteBuffer.allocate(24 * (names.length + 1));
+    strtab.put((byte) 0);
+    symtab.position(24);
+
+    for (int k = 0; k < names.length; ++k) {
+      symtab.putInt(strtab.position()).put((byte)(functions[k] ? 2 : 1)).put((byte) 0).putShort((short) 1);
+      symtab.putLong(values[k]).putLong(0);
+      strtab.put(names[k].getBytes("US-ASCII")).put((byte) 0);
+    }
+
+    int codeOffset = 64 + 2 * 56, dataOffset = codeOffset + code.length * 4;
+    int symOffset = dataOffset + data.length * 8, strOffset = symOffset + symtab.capacity();
+    int shOffset = strOffset + strtab.position();
+    ByteBuffer elf = ByteBuffer.allocate(shOffset + 3 * 64);
+    elf.put(new byte[] {0x7F, 'E', 'L', 'F', 2, 2, 1});
+    elf.position(16);
+    elf.putShort((short) 2).putShort((short) 8).putInt(1).putLong(codeAddress).putLong(64).putLong(shOffset);
+    elf.putInt(0).putShort((short) 64).putShort((short) 56).putShort((short) 2).putShort((short) 64).putShort((short) 3).putShort((short) 0);
+    elf.putInt(1).putInt(5).putLong(codeOffset).putLong(codeAddress).putLong(codeAddress).putLong(code.length * 4).putLong(code.length * 4).putLong(4);
+    elf.putInt(1).putInt(6).putLong(dataOffset).putLong(0).putLong(0).putLong(data.length * 8).putLong(data.length * 8).putLong(8);
+
+    for (int word : code) {
+      elf.putInt(word);
+    }
+
+    for (long value : data) {
+      elf.putLong(value);
+    }
+
+    elf.put(symtab.array()).put(strtab.array(), 0, strtab.position());
+    elf.position(shOffset + 64);
+    elf.putInt(0).putInt(2).putLong(0).putLong(0).putLong(symOffset).putLong(symtab.capacity()).putInt(2).putInt(1).putLong(8).putLong(24);
+    elf.putInt(0).putInt(3).putLong(0).putLong(0).putLong(strOffset).putLong(strtab.position()).putInt(0).putInt(0).putLong(1).putLong(0);
+
+    FileOutputStream out = new FileOutputStream(f);
+
+    try {
+      out.write(elf.array());
+    } finally {
+      out.close();
+    }
+  }
+
+  /* A program linked far from address 0 must run like its source once
+   * loaded from an ELF executable, and its symbols must be imported. */
+  @Test
+  public void testElfLoader() throws Exception {
+    String path = "test-strlen.s";
+    CpuTestStatus parsed = runMipsTest(path);
+    cpu.reset();
+    int[] code, words;
+    long[] data = new long[CPU.DATALIMIT];
+    int strlen, eduStr;
+    String strlenLabel, eduStrLabel;
+    long base = 0x120001000L;
+
+    try {
+      try {
+        parser.parse(testsLocation + path);
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      Memory mem = Memory.getInstance();
+      code = new int[mem.getInstructionsNumber()];
+      words = new int[code.length];
+
+      for (int k = 0; k < code.length; ++k) {
+        Instruction i = mem.getInstruction(k * 4);
+        code[k] = words[k] = (int) i.getRepr().getBits();
+
+        // Link the absolute jumps at the address of the code segment.
+        if (i.getName().equals("JAL") || i.getName().equals("J")) {
+          code[k] = (code[k] & 0xFC000000) | (int)(((base + i.getParams().get(0)) >> 2) & 0x3FFFFFF);
+        }
+      }
+
+      for (int k = 0; k < data.length; ++k) {
+        data[k] = mem.getCellByIndex(k).getBits();
+      }
+
+      strlen = SymbolTable.getInstance().getInstructionAddress("STRLEN");
+      eduStr = SymbolTable.getInstance().getCell("EDU_STR").getAddress();
+      strlenLabel = mem.getInstruction(strlen).getLabel();
+      eduStrLabel = mem.getCellByAddress(eduStr).getLabel();
+    } finally {
+      cpu.reset();
+    }
+
+    File f = File.createTempFile("edumips64", ".elf");
+    f.deleteOnExit();
+    writeElf(f, base, code, data, new String[] {"main", "strlen", "edu_str"},
+             new long[] {base, base + strlen, eduStr}, new boolean[] {true, true, false});
+
+    try {
+      parser.parse(f.getAbsolutePath());
+    } catch (ParserMultiWarningException e) {
+      collector.checkThat("Errors", e.hasErrors(), equalTo(false));
+    }
+
+    collector.checkThat("Function", SymbolTable.getInstance().getInstructionAddress("STRLEN"), equalTo(strlen));
+    collector.checkThat("Object", SymbolTable.getInstance().getCell("EDU_STR").getAddress(), equalTo(eduStr));
+    Memory mem = Memory.getInstance();
+    collector.checkThat("Function label", mem.getInstruction(strlen).getLabel(), equalTo(strlenLabel));
+    collector.checkThat("Object label", mem.getCellByAddress(eduStr).getLabel(), equalTo(eduStrLabel));
+    String emptyLabel = mem.getInstruction(code.length * 4).getLabel();
+    collector.checkThat("Empty slot label", emptyLabel == null || emptyLabel.isEmpty(), equalTo(true));
+
+    // The relocated jumps are encoded with their target in the program.
+    for (int k = 0; k < words.length; ++k) {
+      collector.checkThat("Word " + k, (int) mem.getInstruction(k * 4).getRepr().getBits(), equalTo(words[k]));
+    }
+
+    CpuTestStatus loaded = runMipsProgram(f.getAbsolutePath());
+    collector.checkThat("Cycles", loaded.cycles, equalTo(parsed.cycles));
+    collector.checkThat("Instructions", loaded.instructions, equalTo(parsed.instructions));
+  }
+
+  /* Truncated executables are reported as invalid, not with unchecked
+   * exceptions. */
+  @Test
+  public void testElfLoaderTruncated() throws Exception {
+    File f = File.createTempFile("edumips64", ".elf");
+    f.deleteOnExit();
+    writeElf(f, 0, new int[] {0x0000000C}, new long[] {1, 2}, new String[] {"main"}, new long[] {0}, new boolean[] {true});
+    byte[] elf = java.nio.file.Files.readAllBytes(f.toPath());
+    File truncated = File.createTempFile("edumips64", ".elf");
+    truncated.deleteOnExit();
+
+    // Inside the program headers, inside the code segment, inside the section headers.
+    for (int length : new int[] {100, 64 + 2 * 56 + 2, elf.length - 10}) {
+      FileOutputStream out = new FileOutputStream(truncated);
+
+      try {
+        out.write(elf, 0, length);
+      } finally {
+        out.close();
+      }
+
+      String code = null;
+
+      try {
+        parser.parse(truncated.getAbsolutePath());
+      } catch (ParserMultiException e) {
+        collector.checkThat("Errors at " + length, e.hasErrors(), equalTo(true));
+        code = e.getError(0).getCode();
+      } finally {
+        cpu.reset();
+      }
+
+      collector.checkThat("Error at " + length, code, equalTo("INVALIDELF"));
+    }
+  }
+
+  /* Big-endian data is laid out for doubleword accesses: smaller loads read
+   * the mirrored bytes, and the loader warns about it. */
+  @Test
+  public void testElfLoaderBigEndianData() throws Exception {
+    File f = File.createTempFile("edumips64", ".elf");
+    f.deleteOnExit();
+    // The second doubleword holds the string "EduMIPS" as stored in the file.
+    long string = ByteBuffer.wrap("EduMIPS\0".getBytes("US-ASCII")).getLong();
+    writeElf(f, 0, new int[] {0x0000000C}, new long[] {0x0102030405060708L, string}, new String[] {"main"}, new long[] {0},
+             new boolean[] {true});
+    String warning = null;
+
+    try {
+      try {
+        parser.parse(f.getAbsolutePath());
+      } catch (ParserMultiWarningException e) {
+        collector.checkThat("Errors", e.hasErrors(), equalTo(false));
+        warning = e.getError(0).getCode();
+      }
+
+      collector.checkThat(warning, equalTo("ELFBIGENDIAN"));
+      Memory mem = Memory.getInstance();
+      MemoryElement value = mem.getCellByIndex(0), text = mem.getCellByIndex(1);
+      collector.checkThat(value.getBits(), equalTo(0x0102030405060708L));
+      // A big-endian machine would load 0x01020304.
+      collector.checkThat(value.readWord(0), equalTo(0x05060708));
+      collector.checkThat(value.readByteUnsigned(0), equalTo(0x08));
+      // The first character of the string is the last byte of its doubleword.
+      collector.checkThat(text.readByteUnsigned(7), equalTo((int) 'E'));
+      collector.checkThat(text.readByteUnsigned(0), equalTo(0));
+    } finally {
+      cpu.reset();
+    }
+  }
+
   /* Issue #36: StringIndexOutOfBoundsException raised at run-time. */
   @Test(expected = AddressErrorException.class)
   public void testNegativeAddress() throws Exception {
@@ -420,4 +1175,551 @@ public class CpuTests {
     runForwardingTest("issue51-halt.s", 12, 18, 6);
     runForwardingTest("issue51-syscall0.s", 12, 18, 6);
   }
+
+  /* Replaying a recorded branch trace through a predictor with the default
+   * geometry must give the same statistics as the simulation. */
+  @Test
+  public void testBranchTraceReplay() throws Exception {
+    File tmp = File.createTempFile("edumips64", "embt");
+    tmp.deleteOnExit();
+
+    cpu.getBranchPredictor().reset();
+    cpu.resetBranchPredictionStatistics();
+    BranchTraceWriter writer = new BranchTraceWriter(tmp.getAbsolutePath());
+    cpu.setBranchTraceWriter(writer);
+
+    try {
+      runMipsTest("test-strlen.s");
+    } finally {
+      cpu.setBranchTraceWriter(null);
+      writer.close();
+    }
+
+    BranchTrace trace = BranchTrace.read(tmp.getAbsolutePath());
+    collector.checkThat((long) trace.size(), equalTo(writer.getRecords()));
+
+    BranchReplay.Result r = BranchReplay.replay(trace, new BranchPredictor());
+    collector.checkThat(r.hits, equalTo(cpu.predictionSuccessful));
+    collector.checkThat(r.misses, equalTo(cpu.predictionUnsuccessful));
+    collector.checkThat(r.unknown, equalTo(cpu.predictionUnknown));
+    collector.checkThat(r.hits + r.misses + r.unknown > 0, equalTo(true));
+  }
+
+  /* The per-branch statistics must add up to the global prediction counters. */
+  @Test
+  public void testBranchStatistics() throws Exception {
+    long known = cpu.predictionKnown, unknown = cpu.predictionUnknown, misses = cpu.predictionUnsuccessful;
+    CpuTestStatus status = runMipsTest("test-strlen.s");
+    long executions = 0, mispredictions = 0;
+
+    for (BranchStatistics.Entry e : status.branches) {
+      executions += e.executions;
+      mispredictions += e.mispredictions;
+    }
+
+    collector.checkThat(executions, equalTo(cpu.predictionKnown - known + cpu.predictionUnknown - unknown));
+    collector.checkThat(mispredictions, equalTo(cpu.predictionUnsuccessful - misses));
+    collector.checkThat(status.branches.isEmpty(), equalTo(false));
+  }
+
+  /* The throughput meter counts every cycle and instruction of the run, and
+   * keeps them after the reset that follows it. */
+  @Test
+  public void testThroughputMeter() throws Exception {
+    CpuTestStatus status = runMipsTest("test-strlen.s");
+    ThroughputMeter meter = cpu.getThroughputMeter();
+
+    collector.checkThat(meter.getCycles(), equalTo(status.cycles));
+    collector.checkThat(meter.getInstructions(), equalTo(status.instructions));
+    collector.checkThat(meter.getBusyNanos() > 0, equalTo(true));
+    collector.checkThat(meter.getCyclesPerSecond() > meter.getInstructionsPerSecond(), equalTo(true));
+    collector.checkThat(meter.getAllocatedBytes() != 0, equalTo(true));
+  }
+
+  /* Every cycle of the run is charged once, every execution is counted by
+   * opcode and by instruction, and the delta of two snapshots holds the
+   * cycles between them. */
+  @Test
+  public void testStatistics() throws Exception {
+    Statistics stats = cpu.getStatistics();
+    Statistics.Snapshot middle = null, end = null;
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(testsLocation + "forwarding.s");
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+      try {
+        while (true) {
+          cpu.step();
+
+          if (stats.getCycles() == 8) {
+            middle = stats.snapshot();
+          }
+        }
+      } catch (HaltException e) {
+        end = stats.snapshot();
+      }
+
+      collector.checkThat(end.getCycles(), equalTo(cpu.getCycles()));
+      collector.checkThat(end.getInstructions(), equalTo(cpu.getInstructions()));
+      collector.checkThat(end.getStalls(Statistics.Stall.RAW), equalTo(cpu.getRAWStalls()));
+
+      long cycles = end.getUnattributedCycles(), executions = 0, raw = 0, opcodes = 0;
+
+      for (Statistics.Entry e : end.getEntries()) {
+        cycles += e.cycles;
+        executions += e.executions;
+        raw += e.getStalls(Statistics.Stall.RAW);
+      }
+
+      for (long n : end.getOpcodeCounts().values()) {
+        opcodes += n;
+      }
+
+      collector.checkThat(cycles, equalTo(end.getCycles()));
+      collector.checkThat(executions, equalTo(end.getInstructions()));
+      collector.checkThat(opcodes, equalTo(end.getInstructions()));
+      collector.checkThat(raw, equalTo(end.getStalls(Statistics.Stall.RAW)));
+      collector.checkThat(raw > 0, equalTo(true));
+
+      long[] lengths = end.getStallLengths(Statistics.Stall.RAW);
+      long stallCycles = 0;
+
+      for (int l = 1; l < lengths.length; ++l) {
+        stallCycles += l * lengths[l];
+      }
+
+      collector.checkThat(stallCycles, equalTo(end.getStalls(Statistics.Stall.RAW)));
+
+      Statistics.Snapshot delta = end.delta(middle);
+      collector.checkThat(delta.getCycles(), equalTo(end.getCycles() - 8));
+      collector.checkThat(delta.getInstructions(), equalTo(end.getInstructions() - middle.getInstructions()));
+
+      StringWriter json = new StringWriter(), csv = new StringWriter();
+      end.writeJSON(json);
+      end.writeCSV(csv);
+      collector.checkThat(json.toString().contains("\"cycles\": " + end.getCycles() + ","), equalTo(true));
+      collector.checkThat(csv.toString().contains("total,,cycles," + end.getCycles() + "\n"), equalTo(true));
+    } finally {
+      cpu.reset();
+    }
+
+    collector.checkThat(stats.getCycles(), equalTo(0L));
+    collector.checkThat(stats.snapshot().getEntries().isEmpty(), equalTo(true));
+  }
+
+  /* The profile adds up to the cycles of the run, and an instruction held
+   * in ID by a RAW stall is seen in ID for each of the stall cycles. */
+  @Test
+  public void testProfiler() throws Exception {
+    Statistics stats = cpu.getStatistics();
+    Profiler profiler = cpu.getProfiler();
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(testsLocation + "forwarding.s");
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+      try {
+        while (true) {
+          cpu.step();
+        }
+      } catch (HaltException e) {
+      }
+
+      long cycles = stats.getUnattributedCycles(), executions = 0;
+
+      for (Profiler.Region r : profiler.getRegions()) {
+        cycles += r.cycles;
+        executions += r.executions;
+      }
+
+      collector.checkThat(cycles, equalTo(stats.getCycles()));
+      collector.checkThat(executions, equalTo(stats.getInstructions()));
+
+      for (int i = 0; i < cpu.getMemory().getCodeSize(); ++i) {
+        long raw = stats.getStalls(Statistics.Stall.RAW, i * 4);
+        collector.checkThat(profiler.getStageCycles(Profiler.Stage.ID, i * 4) >= raw, equalTo(true));
+
+        if (stats.getExecutions(i * 4) > 0) {
+          collector.checkThat(profiler.getStageCycles(Profiler.Stage.WB, i * 4) >= stats.getExecutions(i * 4), equalTo(true));
+        }
+      }
+
+      StringWriter folded = new StringWriter();
+      profiler.writeFolded(folded);
+      long foldedCycles = 0;
+
+      for (String line : folded.toString().split("\n")) {
+        foldedCycles += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+      }
+
+      collector.checkThat(foldedCycles, equalTo(stats.getCycles()));
+
+      StringWriter listing = new StringWriter();
+      profiler.writeListing(listing);
+      collector.checkThat(listing.toString().toLowerCase().contains("syscall 0"), equalTo(true));
+    } finally {
+      cpu.reset();
+    }
+
+    collector.checkThat(profiler.getStageCycles(Profiler.Stage.WB, 0), equalTo(0L));
+  }
+
+  /* Statistics, branch statistics and cache statistics cover only the
+   * cycles between SYSCALL 6 and SYSCALL 7; the fast mode skips the caches
+   * outside of them. */
+  @Test
+  public void testRegionOfInterest() throws Exception {
+    CpuTestStatus status = runMipsTest("roi.s");
+
+    collector.checkThat(status.instructions, equalTo(36L));
+    collector.checkThat(status.roiInstructions, equalTo(31L));
+    collector.checkThat(status.roiCycles < status.cycles, equalTo(true));
+    collector.checkThat(status.branches.size(), equalTo(1));
+    // The first BNEZ is decoded while SYSCALL 6 is in WB, before the region.
+    collector.checkThat(status.branches.get(0).executions, equalTo(9L));
+
+    try {
+      config.putBoolean("cacheEnabled", true);
+      CpuTestStatus warm = runMipsTest("roi.s");
+      config.putBoolean("roiFastMode", true);
+      CpuTestStatus fast = runMipsTest("roi.s");
+
+      collector.checkThat(warm.roiInstructions, equalTo(31L));
+      collector.checkThat(fast.roiInstructions, equalTo(31L));
+      collector.checkThat(warm.fetches > 0 && warm.fetches <= warm.roiCycles, equalTo(true));
+      collector.checkThat(fast.fetches, equalTo(warm.fetches));
+      // Outside the region the fast mode never waits for the caches, inside
+      // it finds them cold.
+      collector.checkThat(fast.cycles - fast.roiCycles < warm.cycles - warm.roiCycles, equalTo(true));
+      collector.checkThat(fast.roiCycles >= warm.roiCycles, equalTo(true));
+    } finally {
+      config.putBoolean("cacheEnabled", false);
+      config.putBoolean("roiFastMode", false);
+    }
+  }
+
+  /* The program reads the cycle counter around a loop and stores all the
+   * counters in memory; the stored values match the statistics. */
+  @Test
+  public void testPerformanceCounters() throws Exception {
+    Memory mem = cpu.getMemory();
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(testsLocation + "perf-counters.s");
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+      try {
+        while (true) {
+          cpu.step();
+        }
+      } catch (HaltException e) {
+      }
+
+      long before = mem.getCellByAddress(0).getValue(), after = mem.getCellByAddress(8).getValue();
+      long[] counters = new long[CPU.Counter.values().length];
+
+      for (int i = 0; i < counters.length; ++i) {
+        counters[i] = mem.getCellByAddress(32 + i * 8).getValue();
+      }
+
+      collector.checkThat(before > 0, equalTo(true));
+      collector.checkThat(after - before > 10, equalTo(true));
+      collector.checkThat(mem.getCellByAddress(16).getValue(), equalTo(-1L));
+      collector.checkThat(mem.getCellByAddress(24).getValue(), equalTo((long) counters.length));
+      collector.checkThat(counters[CPU.Counter.CYCLES.ordinal()] > after, equalTo(true));
+      collector.checkThat(counters[CPU.Counter.CYCLES.ordinal()] < cpu.getStatistics().getCycles(), equalTo(true));
+      collector.checkThat(counters[CPU.Counter.INSTRUCTIONS.ordinal()] < cpu.getStatistics().getInstructions(), equalTo(true));
+      collector.checkThat(counters[CPU.Counter.RAW_STALLS.ordinal()] <= cpu.getStatistics().getStalls(Statistics.Stall.RAW), equalTo(true));
+      collector.checkThat(counters[CPU.Counter.BRANCH_MISPREDICTIONS.ordinal()],
+                          equalTo(cpu.getBranchStatistics().getMispredictions()));
+      collector.checkThat(counters[CPU.Counter.L1D_MISSES.ordinal()], equalTo(0L));
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /* Every instruction of the pipeline trace starts and ends once, the ones
+   * that retire are the ones counted by the CPU, and the FP stages and the
+   * stalls show up. */
+  @Test
+  public void testPipelineTrace() throws Exception {
+    ConfigStore config = ConfigManager.getConfig();
+    File tmp = File.createTempFile("edumips64", ".kanata");
+    tmp.deleteOnExit();
+
+    try {
+      config.putString("pipelineTraceFile", tmp.getAbsolutePath());
+
+      for (String program : new String[] {"fpu-waw.s", "forwarding.s"}) {
+        CpuTestStatus status = runMipsTest(program);
+        collector.checkThat(cpu.getPipelineTraceWriter(), nullValue());
+        Scanner scanner = new Scanner(tmp, "UTF-8");
+        Map<String, Integer> stages = new HashMap<String, Integer>();
+        long started = 0, retired = 0, flushed = 0, rawStalls = 0, wawStalls = 0;
+
+        try {
+          collector.checkThat(scanner.nextLine(), equalTo("Kanata\t0004"));
+
+          while (scanner.hasNextLine()) {
+            String[] fields = scanner.nextLine().split("\t");
+
+            if (fields[0].equals("I")) {
+              started++;
+            } else if (fields[0].equals("R")) {
+              if (fields[3].equals("0")) {
+                retired++;
+              } else {
+                flushed++;
+              }
+            } else if (fields[0].equals("S") && fields[2].equals("0")) {
+              Integer n = stages.get(fields[3]);
+              stages.put(fields[3], n == null ? 1 : n + 1);
+            } else if (fields[0].equals("S") && fields[3].equals("RAW")) {
+              rawStalls++;
+            } else if (fields[0].equals("S") && fields[3].equals("WAW")) {
+              wawStalls++;
+            }
+          }
+        } finally {
+          scanner.close();
+        }
+
+        collector.checkThat(started, equalTo(retired + flushed));
+        collector.checkThat(retired, equalTo(status.instructions));
+        collector.checkThat((long) stages.get("WB"), equalTo(status.instructions));
+        collector.checkThat(rawStalls > 0, equalTo(status.rawStalls > 0));
+        collector.checkThat(wawStalls > 0, equalTo(status.wawStalls > 0));
+
+        if (program.startsWith("fpu")) {
+          collector.checkThat(stages.get("M1"), equalTo(stages.get("M7")));
+          collector.checkThat(stages.get("M7") > 0, equalTo(true));
+        }
+      }
+    } finally {
+      config.putString("pipelineTraceFile", "");
+    }
+  }
+
+  /* The digest kept up to date by the writes always matches the one
+   * computed from scratch; checkpoints of the same program agree whatever
+   * the interval, and differ from the ones of another program. */
+  @Test
+  public void testStateDigest() throws Exception {
+    StateDigest digest = cpu.getStateDigest();
+    cpu.reset();
+    long initial = digest.getValue();
+
+    try {
+      try {
+        parser.parse(testsLocation + "memtest.s");
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      collector.checkThat(digest.getValue(), equalTo(digest.recompute()));
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+      try {
+        while (true) {
+          cpu.step();
+          collector.checkThat(digest.getValue(), equalTo(digest.recompute()));
+        }
+      } catch (HaltException e) {
+      }
+    } finally {
+      cpu.reset();
+    }
+
+    collector.checkThat(digest.getValue(), equalTo(initial));
+
+    File fine = File.createTempFile("edumips64", ".emsc");
+    File coarse = File.createTempFile("edumips64", ".emsc");
+    File other = File.createTempFile("edumips64", ".emsc");
+    fine.deleteOnExit();
+    coarse.deleteOnExit();
+    other.deleteOnExit();
+
+    long records = StateBisect.record(testsLocation + "memtest.s", fine.getAbsolutePath(), 1);
+    StateBisect.record(testsLocation + "memtest.s", coarse.getAbsolutePath(), 16);
+    StateBisect.record(testsLocation + "forwarding.s", other.getAbsolutePath(), 1);
+
+    StateBisect.Result same = StateBisect.compare(fine.getAbsolutePath(), coarse.getAbsolutePath());
+    collector.checkThat(same.isEqual(), equalTo(true));
+    collector.checkThat(same.lastEqual, equalTo(records));
+    collector.checkThat(same.compared, equalTo(records / 16 + (records % 16 == 0 ? 0 : 1)));
+
+    StateBisect.Result different = StateBisect.compare(fine.getAbsolutePath(), other.getAbsolutePath());
+    collector.checkThat(different.isEqual(), equalTo(false));
+    collector.checkThat(different.firstDifferent, equalTo(different.lastEqual + 1));
+  }
+
+  /* Dataflow limit of a program with a known dependence chain. */
+  @Test
+  public void testDataflow() throws Exception {
+    DataflowAnalyzer dataflow = cpu.getDataflowAnalyzer();
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(testsLocation + "dataflow.s");
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      Instruction dadd = Memory.getInstance().getInstruction(8);
+      collector.checkThat(dadd.getReadRegisters(), equalTo(new int[] {1}));
+      collector.checkThat(dadd.getWrittenRegisters(), equalTo(new int[] {3}));
+      Instruction sd = Memory.getInstance().getInstruction(24);
+      collector.checkThat(sd.getReadRegisters(), equalTo(new int[] {3}));
+      collector.checkThat(sd.getWrittenRegisters(), equalTo(new int[0]));
+      collector.checkThat(Memory.getInstance().getInstruction(28).getWrittenRegisters(), equalTo(new int[] {4}));
+
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+      try {
+        while (true) {
+          cpu.step();
+        }
+      } catch (HaltException e) {
+      }
+
+      Statistics stats = cpu.getStatistics();
+      collector.checkThat(dataflow.getInstructions(), equalTo(stats.getInstructions()));
+      collector.checkThat(dataflow.getHeight(), equalTo(9L));
+      collector.checkThat(dataflow.getIPC() >= (double) stats.getInstructions() / stats.getCycles(), equalTo(true));
+
+      for (int address : new int[] {0, 8, 12, 16, 20, 24, 28, 32}) {
+        collector.checkThat(dataflow.getCriticalCount(address), equalTo(1L));
+      }
+
+      for (int address : new int[] {4, 36, 40}) {
+        collector.checkThat(dataflow.getCriticalCount(address), equalTo(0L));
+      }
+
+      List<DataflowAnalyzer.Chain> chains = dataflow.getLongestChains();
+      collector.checkThat(chains.size(), equalTo(1));
+      collector.checkThat(chains.get(0).cycles, equalTo(9L));
+      collector.checkThat(chains.get(0).instructions, equalTo(8));
+    } finally {
+      cpu.reset();
+    }
+
+    collector.checkThat(dataflow.getInstructions(), equalTo(0L));
+  }
+
+  /* Reuse distances, strides and heatmap of a strided loop. */
+  @Test
+  public void testLocality() throws Exception {
+    LocalityAnalyzer locality = cpu.getLocalityAnalyzer();
+    cpu.reset();
+
+    try {
+      try {
+        parser.parse(testsLocation + "locality.s");
+      } catch (ParserMultiWarningException e) {
+        if (e.hasErrors()) {
+          throw e;
+        }
+      }
+
+      cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+      try {
+        while (true) {
+          cpu.step();
+        }
+      } catch (HaltException e) {
+      }
+
+      collector.checkThat(locality.getBlockSize(), equalTo(32));
+      collector.checkThat(locality.getFetch().getAccesses(), equalTo(cpu.getStatistics().getInstructions()));
+
+      LocalityAnalyzer.ReuseDistance data = locality.getData();
+      collector.checkThat(data.getAccesses(), equalTo(32L));
+      collector.checkThat(data.getColdMisses(), equalTo(4L));
+      collector.checkThat(data.getAccesses(0), equalTo(24L));
+      collector.checkThat(data.getAccesses(3), equalTo(4L));
+      collector.checkThat(data.getMisses(4), equalTo(4L));
+      collector.checkThat(data.getMisses(2), equalTo(8L));
+      collector.checkThat(data.getHistogram()[0], equalTo(24L));
+      collector.checkThat(data.getHistogram()[2], equalTo(4L));
+
+      long[] reads = locality.getReads();
+
+      for (int b = 0; b < 4; ++b) {
+        collector.checkThat(reads[b], equalTo(8L));
+      }
+
+      collector.checkThat(reads[4], equalTo(0L));
+      collector.checkThat(locality.getWrites()[0], equalTo(0L));
+
+      List<LocalityAnalyzer.Stride> strides = locality.getStrides();
+      collector.checkThat(strides.size(), equalTo(1));
+      collector.checkThat(strides.get(0).address, equalTo(12));
+      collector.checkThat(strides.get(0).accesses, equalTo(32L));
+      collector.checkThat(strides.get(0).stride, equalTo(8L));
+      collector.checkThat(strides.get(0).repeated, equalTo(28L));
+
+      StringWriter json = new StringWriter();
+      locality.writeJSON(json);
+      collector.checkThat(json.toString().contains("\"missRatio\": {\"32\": 0.250000, \"64\": 0.250000, \"128\": 0.125000"), equalTo(true));
+    } finally {
+      cpu.reset();
+    }
+
+    collector.checkThat(locality.getData().getAccesses(), equalTo(0L));
+  }
+
+  /* The stack distances of the Fenwick tree match the ones of an explicit
+   * LRU stack, also after the times are renumbered. */
+  @Test
+  public void testReuseDistance() {
+    LocalityAnalyzer.ReuseDistance rd = new LocalityAnalyzer.ReuseDistance(16);
+    List<Integer> stack = new ArrayList<Integer>();
+    Random random = new Random(42);
+
+    for (int i = 0; i < 5000; ++i) {
+      int block = random.nextInt(4) == 0 ? random.nextInt(16) : random.nextInt(5);
+      int expected = stack.indexOf(block);
+      collector.checkThat(rd.access(block), equalTo(expected));
+
+      if (expected >= 0) {
+        stack.remove(expected);
+      }
+
+      stack.add(0, block);
+    }
+
+    collector.checkThat(rd.getAccesses(), equalTo(5000L));
+    collector.checkThat(rd.getColdMisses(), equalTo(16L));
+  }
 }
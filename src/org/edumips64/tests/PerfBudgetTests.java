@@ -0,0 +1,222 @@
+/* PerfBudgetTests.java
+ *
+ * Performance budget of the EduMIPS64 CPU: these tests fail when the
+ * simulator runs the reference programs slower than the recorded baseline.
+ *
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.edumips64.tests;
+
+import org.edumips64.core.*;
+import org.edumips64.core.is.*;
+import org.edumips64.utils.ConfigManager;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Runs every reference program over and over for a warmup period and then
+ *  for a measurement period, and compares the simulated cycles per second,
+ *  as measured by the ThroughputMeter of the CPU, with the baseline stored
+ *  in perf-baseline.properties. The budget of a program is its baseline
+ *  times the tolerance of the file, which absorbs the noise of shared
+ *  machines.
+ *
+ *  The throughputs depend on the machine, so these tests are not part of
+ *  "ant test" but of "ant perftest". With -Dedumips64.perf.record=true
+ *  (-Dperf.record=true for ant) the tests never fail, and a copy of the
+ *  baseline file with the measured throughputs is written to the file named
+ *  by edumips64.perf.output, to be reviewed before replacing the baseline.
+ */
+@RunWith(JUnit4.class)
+public class PerfBudgetTests {
+  public static String baselineFile = CpuTests.testsLocation + "perf-baseline.properties";
+  public static String outputFile = System.getProperty("edumips64.perf.output", "perf-baseline.properties");
+  private final static Logger log = Logger.getLogger(PerfBudgetTests.class.getName());
+
+  static final long WARMUP_NANOS = 500 * 1000 * 1000L;
+  static final long MEASUREMENT_NANOS = 1000 * 1000 * 1000L;
+
+  private static Properties baseline;
+  private static Properties measured;
+  private static boolean record;
+
+  private CPU cpu;
+  private Parser parser;
+
+  @BeforeClass
+  public static void setup() throws IOException {
+    // Disable logs of level lesser than WARNING.
+    Logger rootLogger = log.getParent();
+
+    for (Handler h : rootLogger.getHandlers()) {
+      h.setLevel(java.util.logging.Level.SEVERE);
+    }
+
+    baseline = new Properties();
+    InputStream in = new FileInputStream(baselineFile);
+
+    try {
+      baseline.load(in);
+    } finally {
+      in.close();
+    }
+
+    measured = new Properties();
+    record = Boolean.getBoolean("edumips64.perf.record");
+  }
+
+  @AfterClass
+  public static void recordBaseline() throws IOException {
+    if (!record || measured.isEmpty()) {
+      return;
+    }
+
+    // Rewrite the file line by line, to keep its comments.
+    List<String> lines = new ArrayList<String>();
+    BufferedReader r = new BufferedReader(new FileReader(baselineFile));
+
+    try {
+      String line;
+
+      while ((line = r.readLine()) != null) {
+        String key = line.split("=")[0].trim();
+
+        if (measured.containsKey(key)) {
+          line = key + " = " + measured.getProperty(key);
+          measured.remove(key);
+        }
+
+        lines.add(line);
+      }
+    } finally {
+      r.close();
+    }
+
+    for (String key : measured.stringPropertyNames()) {
+      lines.add(key + " = " + measured.getProperty(key));
+    }
+
+    PrintWriter w = new PrintWriter(new FileWriter(outputFile));
+
+    try {
+      for (String line : lines) {
+        w.println(line);
+      }
+    } finally {
+      w.close();
+    }
+
+    log.warning("New baseline written to " + outputFile);
+  }
+
+  @Before
+  public void testSetup() {
+    ConfigManager.setConfig(ConfigManager.getTmpConfig());
+    cpu = CPU.getInstance();
+    cpu.reset();
+    parser = Parser.getInstance();
+    Instruction.setEnableForwarding(true);
+  }
+
+  /** Runs a program to HALT, leaving its figures in the throughput meter */
+  private void run(String path) throws Exception {
+    cpu.reset();
+
+    try {
+      parser.parse(path);
+    } catch (ParserMultiWarningException e) {
+      if (e.hasErrors()) {
+        throw e;
+      }
+    }
+
+    cpu.setStatus(CPU.CPUStatus.RUNNING);
+
+    try {
+      while (true) {
+        cpu.step();
+      }
+    } catch (HaltException e) {
+      // Done.
+    } finally {
+      cpu.reset();
+    }
+  }
+
+  /** Measures the simulated cycles per second of a program */
+  private double measure(String path) throws Exception {
+    long start = System.nanoTime();
+
+    while (System.nanoTime() - start < WARMUP_NANOS) {
+      run(path);
+    }
+
+    long cycles = 0, nanos = 0;
+    start = System.nanoTime();
+
+    while (System.nanoTime() - start < MEASUREMENT_NANOS) {
+      run(path);
+      cycles += cpu.getThroughputMeter().getCycles();
+      nanos += cpu.getThroughputMeter().getBusyNanos();
+    }
+
+    return cycles * 1e9 / nanos;
+  }
+
+  private void checkBudget(String program) throws Exception {
+    double rate = measure(CpuTests.testsLocation + program);
+    log.warning(String.format("%s: %.0f cycles/s", program, rate));
+
+    if (record) {
+      measured.setProperty(program, String.format("%.0f", rate));
+      return;
+    }
+
+    String value = baseline.getProperty(program);
+    Assert.assertNotNull("No baseline for " + program + " in " + baselineFile, value);
+    double budget = Double.parseDouble(value) * Double.parseDouble(baseline.getProperty("tolerance", "1"));
+
+    Assert.assertTrue(String.format("%s runs at %.0f cycles/s, below its budget of %.0f cycles/s", program, rate, budget),
+                      rate >= budget);
+  }
+
+  @Test
+  public void testStrlenBudget() throws Exception {
+    checkBudget("test-strlen.s");
+  }
+
+  @Test
+  public void testForwardingBudget() throws Exception {
+    checkBudget("forwarding.s");
+  }
+
+  @Test
+  public void testFPUBudget() throws Exception {
+    checkBudget("fpu-waw.s");
+  }
+}
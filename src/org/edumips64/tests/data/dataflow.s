@@ -0,0 +1,20 @@
+; dataflow.s - dependence chain for the dataflow limit analysis
+; The chain goes from the first instruction through the additions, the
+; store and the load to the last addition: 8 instructions and 9 cycles on
+; the ideal machine (loads take 2 cycles, everything else 1).
+
+        .data
+val:    .space 8
+
+        .code
+        daddi   r1, r0, 1
+        daddi   r2, r0, 2
+        dadd    r3, r1, r1
+        dadd    r3, r3, r1
+        dadd    r3, r3, r1
+        dadd    r3, r3, r1
+        sd      r3, val(r0)
+        ld      r4, val(r0)
+        dadd    r5, r4, r2
+        daddi   r6, r0, 3
+        syscall 0
@@ -0,0 +1,19 @@
+; locality.s - two passes over a 128 bytes array, one doubleword at a time
+; With 32 bytes blocks the loads touch 4 blocks: 4 cold misses, then every
+; block is reused at distance 0 three times per pass, and at distance 3
+; at the start of the second pass.
+
+        .data
+arr:    .space 128
+
+        .code
+        daddi   r3, r0, 2
+outer:  daddi   r1, r0, 0
+        daddi   r2, r0, 16
+inner:  ld      r4, arr(r1)
+        daddi   r1, r1, 8
+        daddi   r2, r2, -1
+        bne     r2, r0, inner
+        daddi   r3, r3, -1
+        bne     r3, r0, outer
+        syscall 0
@@ -0,0 +1,32 @@
+; Performance counters: reads the cycle counter around a loop with
+; SYSCALL 8, then stores all the counters with SYSCALL 9.
+
+    .data
+before:   .space 8
+after:    .space 8
+invalid:  .space 8
+stored:   .space 8
+counters: .space 80
+
+    .code
+    daddi   r14, r0, 0
+    syscall 8
+    sd      r1, before(r0)
+
+    daddi   r2, r0, 5
+loop:
+    daddi   r2, r2, -1
+    bnez    r2, loop
+
+    daddi   r14, r0, 0
+    syscall 8
+    sd      r1, after(r0)
+
+    daddi   r14, r0, 99
+    syscall 8
+    sd      r1, invalid(r0)
+
+    daddi   r14, r0, counters
+    syscall 9
+    sd      r1, stored(r0)
+    syscall 0
@@ -0,0 +1,15 @@
+; Test for the data prefetchers.
+;
+; Walks an array with a stride of 32 bytes (one L1D block with the default
+; configuration), so that every load misses without a prefetcher.
+        .data
+array:  .space 2048
+
+        .code
+        daddi   r1, r0, array
+        daddi   r2, r0, 64
+loop:   ld      r3, 0(r1)
+        daddi   r1, r1, 32
+        daddi   r2, r2, -1
+        bnez    r2, loop
+        syscall 0
@@ -0,0 +1,15 @@
+; Region of interest: only the loop between SYSCALL 6 and SYSCALL 7 is
+; measured. Inside the region 31 instructions complete: 10 iterations of
+; 3 instructions, and SYSCALL 7 itself.
+
+    .code
+    daddi   r1, r0, 0
+    daddi   r2, r0, 10
+    syscall 6
+loop:
+    daddi   r1, r1, 1
+    slt     r4, r1, r2
+    bnez    r4, loop
+    syscall 7
+    daddi   r5, r0, 5
+    syscall 0
@@ -56,12 +56,19 @@ public class CPUGUIThread extends Thread {
   /** Sleep interval between cycles in verbose mode */
   private int sleep_interval;
 
+  /** Whether the cycles outside the region of interest are not shown */
+  private boolean roiFastMode;
+
   private CPU cpu;
   private GUIFrontend front;
   private JFrame f;
 
   private static final Logger logger = Logger.getLogger(CPUGUIThread.class.getName());
 
+  /** Milliseconds between two updates of the speed in the status bar */
+  private static final long THROUGHPUT_REFRESH = 500;
+  private long lastThroughput;
+
   public CPUGUIThread() {
     externalStop = false;
     cpu = CPU.getInstance();
@@ -77,6 +84,7 @@ public class CPUGUIThread extends Thread {
     ConfigStore config = ConfigManager.getConfig();
     sleep_interval = config.getInt("sleep_interval");
     verbose = config.getBoolean("verbose");
+    roiFastMode = config.getBoolean("roiFastMode");
     masked = config.getBoolean("syncexc-masked");
     terminate = config.getBoolean("syncexc-terminate");
     logger.info("Terminate = " + terminate + "; masked = " + masked);
@@ -96,6 +104,18 @@ public class CPUGUIThread extends Thread {
     nStep = n;
   }
 
+  /** Shows the speed of the simulation in the status bar, at most every
+   * THROUGHPUT_REFRESH milliseconds unless forced.
+   */
+  private void showThroughput(boolean force) {
+    long now = System.currentTimeMillis();
+
+    if (force || now - lastThroughput >= THROUGHPUT_REFRESH) {
+      lastThroughput = now;
+      Main.getSB().setThroughput(cpu.getThroughputMeter());
+    }
+  }
+
   private synchronized void haltCPU() {
     logger.info("Halting the CPU.");
     front.updateComponents();
@@ -128,7 +148,9 @@ public class CPUGUIThread extends Thread {
 
         if (nStep < 0) {
           while (true) {
-            if (verbose && (sleep_interval != 0)) {
+            boolean shown = verbose && (cpu.isInROI() || !roiFastMode);
+
+            if (shown && (sleep_interval != 0)) {
               // logger.info("Waiting for " + sleep_interval + " milliseconds...");
               sleep(sleep_interval);
             }
@@ -142,9 +164,10 @@ public class CPUGUIThread extends Thread {
 
             try {
               cpu.step();
+              showThroughput(false);
               front.updateComponents();
 
-              if (verbose) {
+              if (shown) {
                 front.represent();
               }
             } catch (StoppedCPUException ex) {
@@ -226,6 +249,7 @@ public class CPUGUIThread extends Thread {
 
             try {
               cpu.step();
+              showThroughput(false);
               front.updateComponents();
 
               if (verbose) {
@@ -303,6 +327,7 @@ public class CPUGUIThread extends Thread {
         }
 
         Main.setStopStatus(false);
+        showThroughput(true);
         Main.stopPB();
       }
     } catch (InterruptedException e) {
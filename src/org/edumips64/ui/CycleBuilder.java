@@ -39,13 +39,15 @@ public class CycleBuilder {
   List<CycleElement> elementsList;
 
   // Stalls counters.
-  int RAWStalls, WAWStalls, structStallsEX, structStallsDivider, structStallsFuncUnit;
+  long RAWStalls, WAWStalls, structStallsEX, structStallsDivider, structStallsFuncUnit;
   // Used to understand if the EX instruction is in structural stall (memory).
-  int memoryStalls;
+  long memoryStalls;
+  // Used to understand if the whole pipeline was waiting for the caches.
+  long cacheStalls;
   // Groups five stalls (EXNotAvailable, FuncUnitNotAvailable,
   // DividerNotAvailable, RAW, WAW), in order to understand if a new
   // instruction has to be added to "elementsList"
-  int inputStructuralStalls;
+  long inputStructuralStalls;
 
   public CycleBuilder() {
     cpu = CPU.getInstance();
@@ -82,10 +84,21 @@ public class CycleBuilder {
 
   public void step() {
     Map<CPU.PipeStatus, Instruction> pipeline = cpu.getPipeline();
-    curTime = cpu.getCycles();
+    // The time diagram is indexed by int, like the Swing views that show it.
+    curTime = (int) cpu.getCycles();
 
     if (oldTime != curTime) {
-      if (curTime > 0) {
+      if (curTime > 0 && cacheStalls != cpu.getCacheStalls()) {
+        // The pipeline was frozen by a cache miss: every instruction in
+        // flight stays where it is.
+        synchronized (elementsList) {
+          for (CycleElement el : elementsList) {
+            if (el.getUpdateTime() == curTime - 1 && !el.isFinalized()) {
+              el.addState("StC");
+            }
+          }
+        }
+      } else if (curTime > 0) {
         int index; //used for searching instructions by serial number into "elementsList"
         instr[0] = pipeline.get(CPU.PipeStatus.IF);
         instr[1] = pipeline.get(CPU.PipeStatus.ID);
@@ -346,6 +359,7 @@ public class CycleBuilder {
 
   private void updateStalls() {
     memoryStalls = cpu.getMemoryStalls();
+    cacheStalls = cpu.getCacheStalls();
     RAWStalls = cpu.getRAWStalls();
     WAWStalls = cpu.getWAWStalls();
     structStallsEX = cpu.getStructuralStallsEX();
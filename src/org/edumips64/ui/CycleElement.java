@@ -74,7 +74,7 @@ public class CycleElement {
   * @param stat the current stage in pipeline of the instruction.
   */
   public void addState(String newState) {
-    String lastState = states.getLast();
+    String lastState = getLastState();
 
     if (!validateStateTransition(lastState, newState)) {
       logger.severe("State " + newState + " is not allowed after state " + lastState);
@@ -90,7 +90,21 @@ public class CycleElement {
     return states;
   }
 
+  /**
+  * @return the last stage of the instruction, ignoring the cycles spent
+  * waiting for the caches ("StC")
+  */
   public String getLastState() {
+    Iterator<String> it = states.descendingIterator();
+
+    while (it.hasNext()) {
+      String state = it.next();
+
+      if (!"StC".equals(state)) {
+        return state;
+      }
+    }
+
     return states.getLast();
   }
 
@@ -127,6 +141,11 @@ public class CycleElement {
   }
 
   private static boolean validateStateTransition(String curState, String nextState) {
+    // A cache stall freezes the whole pipeline, whatever the stage.
+    if ("StC".equals(nextState)) {
+      return true;
+    }
+
     if (!allowedTransitions.containsKey(curState)) {
       // Don't check states that are not in the map.
       return true;
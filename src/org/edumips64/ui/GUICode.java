@@ -30,12 +30,14 @@ import java.util.*;
 import javax.swing.*;
 import javax.swing.table.*;
 /**
-* This class draws the code memory representation in a window with five columns.
+* This class draws the code memory representation in a window with six columns.
 */
 public class GUICode extends GUIComponent {
   CodePanel codePanel;
   String memoryAddress[] = new String[CPU.CODELIMIT];
   private static int ifIndex, idIndex, exIndex, memIndex, wbIndex, A1Index, A2Index, A3Index, A4Index, M1Index, M2Index, M3Index, M4Index, M5Index, M6Index, M7Index, DIVIndex;
+  /** Most cycles charged to a single instruction, the top of the heat scale */
+  private static long maxCycles;
 
   public GUICode() {
     super();
@@ -69,6 +71,9 @@ public class GUICode extends GUIComponent {
     TableColumn column4 = codePanel.theTable.getColumnModel().getColumn(4);
     column4.setCellRenderer(new MyTableCellRenderer());
 
+    TableColumn column5 = codePanel.theTable.getColumnModel().getColumn(5);
+    column5.setCellRenderer(new MyTableCellRenderer());
+
     Instruction ifInstruction = cpu.getPipeline().get(CPU.PipeStatus.IF);
     ifIndex = cpu.getMemory().getInstructionIndex(ifInstruction);
     if ((ifInstruction != null) && ifInstruction.isBubble()) {
@@ -92,6 +97,12 @@ public class GUICode extends GUIComponent {
     M7Index = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("MULTIPLIER", 7));
     DIVIndex = cpu.getMemory().getInstructionIndex(cpu.getInstructionByFuncUnit("DIVIDER", 0));
 
+    maxCycles = 0;
+
+    for (int i = 0; i < cpu.getMemory().getCodeSize(); ++i) {
+      maxCycles = Math.max(maxCycles, cpu.getStatistics().getCycles(i * 4));
+    }
+
   }
 
   public void draw() {
@@ -124,14 +135,15 @@ public class GUICode extends GUIComponent {
       theTable.getColumnModel().getColumn(2).setPreferredWidth(80);
       theTable.getColumnModel().getColumn(3).setPreferredWidth(200);
       theTable.getColumnModel().getColumn(4).setPreferredWidth(200);
+      theTable.getColumnModel().getColumn(5).setPreferredWidth(70);
 
       scrollTable = new JScrollPane(theTable);
       add(scrollTable, BorderLayout.CENTER);
     }
 
     class MyTableModel extends AbstractTableModel {
-      private String[] columnLocaleStrings = {"ADDRESS", "HEXREPR", "LABEL", "INSTRUCTION", "COMMENT"};
-      private Class[] columnClasses = {String.class, String.class, String.class, String.class, String.class};
+      private String[] columnLocaleStrings = {"ADDRESS", "HEXREPR", "LABEL", "INSTRUCTION", "COMMENT", "HEAT"};
+      private Class[] columnClasses = {String.class, String.class, String.class, String.class, String.class, String.class};
       private String memoryAddress[];
 
       public MyTableModel(String[] memoryAddress) {
@@ -183,6 +195,14 @@ public class GUICode extends GUIComponent {
             return "";
           }
 
+        case 5:
+
+          if (cpu.getStatistics().getCycles(row * 4) > 0) {
+            return String.format("%5.1f%%", cpu.getProfiler().getShare(row * 4) * 100);
+          } else {
+            return "";
+          }
+
         default:
           return new Object();
         }
@@ -250,6 +270,23 @@ public class GUICode extends GUIComponent {
         label.setFont(f);
       }
 
+      // The heat column shades from white to red with the cycles charged to
+      // the instruction, instead of showing the pipeline stages.
+      if (column == 5) {
+        label.setText((String) codePanel.tableModel.getValueAt(row, column));
+        label.setFont(f);
+        label.setHorizontalAlignment(SwingConstants.RIGHT);
+        long cycles = cpu.getStatistics().getCycles(row * 4);
+
+        if (cycles > 0 && maxCycles > 0) {
+          int level = (int)(255 - 200 * cycles / maxCycles);
+          label.setOpaque(true);
+          label.setBackground(new Color(255, level, level));
+        }
+
+        return label;
+      }
+
       if (rowTable == ifIndex) {
         label.setOpaque(true);
         label.setBackground(config.getColor("IFColor"));
@@ -111,6 +111,8 @@ public class GUIConfig extends JDialog {
 
     addRow(panel, row++, "forwarding", new JCheckBox());
     addRow(panel, row++, "n_step", new JNumberField());
+    addRow(panel, row++, "cacheEnabled", new JCheckBox());
+    addRow(panel, row++, "cacheMemoryLatency", new JNumberField());
 
     // fill remaining vertical space
     grid_add(panel, new JPanel(), gbl, gbc, 0, 1, 0, row, GridBagConstraints.REMAINDER, 1);
@@ -136,6 +138,8 @@ public class GUIConfig extends JDialog {
     addRow(panel, row++, "sleep_interval", new JNumberField());
     addRow(panel, row++, "syncexc-masked", new JCheckBox());
     addRow(panel, row++, "syncexc-terminate", new JCheckBox());
+    addRow(panel, row++, "programCache", new JCheckBox());
+    addRow(panel, row++, "roiFastMode", new JCheckBox());
 
     // fill remaining vertical space
     grid_add(panel, new JPanel(), gbl, gbc, 0, 1, 0, row, GridBagConstraints.REMAINDER, 1);
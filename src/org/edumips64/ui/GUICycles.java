@@ -142,7 +142,7 @@ public class GUICycles extends GUIComponent {
           g.drawString(st, 15 + (elementTime + column - 1) * 30, 20 + row * 15);
           column++;
 
-          if ((!st.equals(" ")) && (!st.equals("RAW"))) {
+          if ((!st.equals(" ")) && (!st.equals("RAW")) && (!st.equals("StC"))) {
             pre = st;
           }
         }
@@ -174,6 +174,9 @@ public class GUICycles extends GUIComponent {
         return config.getColor("IDColor");
       } else if (st.equals("WAW") || st.equals("StDiv") || st.equals("StEx") || st.equals("StFun")) {
         return config.getColor("IDColor");
+      } else if (st.equals("StC")) {
+        // Waiting for the caches: the instruction stays in its stage.
+        return getColorByState(pre, pre);
       } else if (st.equals(" ")) {
         if (pre.equals("IF")) {
           return config.getColor("IFColor");
@@ -22,6 +22,8 @@
  */
 
 package org.edumips64.ui;
+import org.edumips64.core.BranchStatistics;
+import org.edumips64.core.cache.*;
 import org.edumips64.utils.*;
 
 import java.awt.BorderLayout;
@@ -29,7 +31,10 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Container;
 import java.awt.Font;
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 
 /**
 * This class shows the statistics
@@ -39,8 +44,12 @@ public class GUIStatistics extends GUIComponent {
 
   StatPanel statPanel;
   JScrollPane jsp;
-  private int nCycles, nInstructions, rawStalls, codeSize, WAWStalls, dividerStalls, memoryStalls;
+  private long nCycles, nInstructions, rawStalls, WAWStalls, dividerStalls, memoryStalls, cacheStalls;
+  private int codeSize;
+  private Cache[] caches = new Cache[3];
+  private String prefetchSummary = " ";
   private float cpi;
+  private List<BranchStatistics.Entry> branches = new ArrayList<BranchStatistics.Entry>();
 
   public GUIStatistics() {
     super();
@@ -48,7 +57,7 @@ public class GUIStatistics extends GUIComponent {
 
     jsp = new JScrollPane(statPanel);
     jsp.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
-    jsp.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+    jsp.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
   }
 
@@ -57,7 +66,8 @@ public class GUIStatistics extends GUIComponent {
     JList statList;
     String [] statistics = {" Execution", " 0 Cycles", " 0 Instructions", " ", " Stalls", " 0 RAW Stalls", " 0 WAW Stalls",
                             " 0 WAR Stalls", " 0 Structural Stalls(Divider not available)", "0 Structural Stalls (Memory not available)", " 0 Branch Taken Stalls", " 0 Branch Misprediction Stalls",
-                            " Code Size", " 0 Bytes", "FPU info", "FCSR", "FCSRGroups", "FCSRMnemonics", "FCSRValues"
+                            " Code Size", " 0 Bytes", "FPU info", "FCSR", "FCSRGroups", "FCSRMnemonics", "FCSRValues",
+                            " Cache", " 0 Cache Stalls", "L1I", "L1D", "L2", "Prefetch"
                            };
     public StatPanel() {
       super();
@@ -67,6 +77,93 @@ public class GUIStatistics extends GUIComponent {
       statList.setFixedCellWidth(400) ;
       statList.setCellRenderer(new MyListCellRenderer());
       add(statList, BorderLayout.WEST);
+
+      // Per-branch statistics, sortable by clicking on the column headers.
+      branchModel = new BranchTableModel();
+      branchTable = new JTable(branchModel);
+      branchTable.setAutoCreateRowSorter(true);
+      branchTable.setFont(new Font("Monospaced", Font.PLAIN, 12));
+      JLabel title = new JLabel(" " + CurrentLocale.getString("BRANCHES"));
+      title.setFont(new Font("Monospaced", Font.PLAIN, 12));
+      title.setForeground(Color.red);
+      JPanel branchPanel = new JPanel(new BorderLayout());
+      branchPanel.setBackground(Color.WHITE);
+      branchPanel.add(title, BorderLayout.NORTH);
+      JPanel tablePanel = new JPanel(new BorderLayout());
+      tablePanel.add(branchTable.getTableHeader(), BorderLayout.NORTH);
+      tablePanel.add(branchTable, BorderLayout.CENTER);
+      branchPanel.add(tablePanel, BorderLayout.CENTER);
+      add(branchPanel, BorderLayout.SOUTH);
+      add(localityPanel, BorderLayout.CENTER);
+    }
+  }
+
+  LocalityPanel localityPanel = new LocalityPanel();
+
+  BranchTableModel branchModel;
+  JTable branchTable;
+
+  class BranchTableModel extends AbstractTableModel {
+    private final String[] columns = {"ADDRESS", "LABEL", "INSTRUCTION", "BRANCH_EXECUTIONS", "BRANCH_TAKEN", "BRANCH_MISPREDICTIONS",
+                                      "BRANCH_MISPREDICTION_RATE", "BRANCH_LOCAL_MISSES", "BRANCH_GLOBAL_MISSES", "BRANCH_GLOBAL_CHOSEN"
+                                     };
+
+    public int getColumnCount() {
+      return columns.length;
+    }
+
+    public int getRowCount() {
+      return branches.size();
+    }
+
+    public String getColumnName(int col) {
+      return CurrentLocale.getString(columns[col]);
+    }
+
+    public Class<?> getColumnClass(int col) {
+      switch (col) {
+      case 0:
+      case 1:
+      case 2:
+        return String.class;
+      case 4:
+      case 6:
+      case 9:
+        return Double.class;
+      default:
+        return Long.class;
+      }
+    }
+
+    public Object getValueAt(int row, int col) {
+      BranchStatistics.Entry e = branches.get(row);
+
+      switch (col) {
+      case 0:
+        return String.format("%08X", e.address);
+      case 1:
+        return e.symbol;
+      case 2:
+        return e.instruction;
+      case 3:
+        return e.executions;
+      case 4:
+        return percent(e.getTakenRate());
+      case 5:
+        return e.mispredictions;
+      case 6:
+        return percent(e.getMispredictionRate());
+      case 7:
+        return e.localMisses;
+      case 8:
+        return e.globalMisses;
+      default:
+        return percent(e.getGlobalChosenRate());
+      }
+    }
+
+    private Double percent(double rate) {
+      return Math.round(rate * 1000) / 10.0;
     }
   }
 
@@ -76,8 +173,9 @@ public class GUIStatistics extends GUIComponent {
   }
 
   public void update() {
-    nCycles = cpu.getCycles();
-    nInstructions = cpu.getInstructions();
+    // Like the stalls, cycles and instructions cover the region of interest.
+    nCycles = cpu.getStatistics().getCycles();
+    nInstructions = cpu.getStatistics().getInstructions();
 
     if (nInstructions > 0) {
       cpi = (float) nCycles / (float) nInstructions;
@@ -88,9 +186,33 @@ public class GUIStatistics extends GUIComponent {
     WAWStalls = cpu.getWAWStalls();
     dividerStalls = cpu.getStructuralStallsDivider();
     memoryStalls = cpu.getStructuralStallsMemory();
+    cacheStalls = cpu.getCacheStalls();
+    CacheHierarchy hierarchy = cpu.getCacheHierarchy();
+
+    if (hierarchy.isEnabled()) {
+      caches[0] = hierarchy.getL1I();
+      caches[1] = hierarchy.getL1D();
+      caches[2] = hierarchy.getL2();
+    } else {
+      caches[0] = caches[1] = caches[2] = null;
+    }
+
+    PrefetchBuffer pb = hierarchy.getPrefetchBuffer();
+
+    if (hierarchy.isEnabled() && pb != null) {
+      prefetchSummary = String.format(" %s: %.1f%% %s, %.1f%% %s, %.1f%% %s", hierarchy.getPrefetcher().getName(),
+                                      hierarchy.getPrefetchCoverage() * 100, CurrentLocale.getString("PREFETCH_COVERAGE"),
+                                      pb.getAccuracy() * 100, CurrentLocale.getString("PREFETCH_ACCURACY"),
+                                      pb.getTimeliness() * 100, CurrentLocale.getString("PREFETCH_TIMELINESS"));
+    } else {
+      prefetchSummary = " ";
+    }
+    branches = cpu.getBranchStatistics().getReport(BranchStatistics.SortKey.ADDRESS);
+    localityPanel.update(cpu.getLocalityAnalyzer());
   }
 
   public void draw() {
+    branchModel.fireTableDataChanged();
     cont.repaint();
   }
 
@@ -195,6 +317,27 @@ public class GUIStatistics extends GUIComponent {
       case 18:
         label.setText(" " + cpu.getFCSR());
         return label;
+      case 19:
+        label.setText(" " + CurrentLocale.getString("CACHE"));
+        label.setForeground(Color.red);
+        return label;
+      case 20:
+        if (caches[0] == null) {
+          label.setText(" " + CurrentLocale.getString("CACHE_DISABLED"));
+        } else {
+          label.setText(" " + cacheStalls + " " + CurrentLocale.getString("CACHE_STALLS"));
+        }
+        return label;
+      case 21:
+      case 22:
+      case 23:
+        Cache c = caches[index - 21];
+        label.setText(c == null ? " " : " " + c.getName() + " " + c.getMisses() + "/" + c.getAccesses() + " " +
+                      CurrentLocale.getString("CACHE_MISSES") + String.format(" (%.2f%%)", c.getMissRate() * 100));
+        return label;
+      case 24:
+        label.setText(prefetchSummary);
+        return label;
       }
 
       return label;
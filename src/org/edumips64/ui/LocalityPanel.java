@@ -0,0 +1,170 @@
+/* LocalityPanel.java
+ *
+ * Panel with the heatmaps, the reuse distances and the miss ratio curve of the locality analysis.
+ * (c) 2016 EduMIPS64 project
+ *
+ * This file is part of the EduMIPS64 project, and is released under the GNU
+ * General Public License.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package org.edumips64.ui;
+
+import org.edumips64.core.LocalityAnalyzer;
+import org.edumips64.utils.CurrentLocale;
+
+import java.awt.*;
+import javax.swing.JPanel;
+
+/** Draws the results of the LocalityAnalyzer: the heatmaps of data and code
+ *  memory (one cell per block, darker for more accesses), the reuse
+ *  distance histograms and the miss ratio of a fully associative LRU cache
+ *  of every size.
+ *
+ *  The values are copied by update(), called by the thread that runs the
+ *  CPU, and drawn later by the event dispatch thread.
+ */
+class LocalityPanel extends JPanel {
+  private static final int COLUMNS = 16, CELL = 9, LINE = 14;
+  private static final Color DATA = new Color(200, 40, 40), FETCH = new Color(0, 120, 240);
+  private static final Font FONT = new Font("Monospaced", Font.PLAIN, 12);
+
+  private int blockSize;
+  private long[] dataHeat = new long[0], fetchHeat = new long[0];
+  private long[] dataHist = new long[0], fetchHist = new long[0];
+  private long dataCold, fetchCold;
+  private double[] dataMiss = new double[0], fetchMiss = new double[0];
+
+  LocalityPanel() {
+    setBackground(Color.WHITE);
+  }
+
+  void update(LocalityAnalyzer locality) {
+    long[] reads = locality.getReads(), writes = locality.getWrites();
+
+    for (int i = 0; i < reads.length; ++i) {
+      reads[i] += writes[i];
+    }
+
+    LocalityAnalyzer.ReuseDistance data = locality.getData(), fetch = locality.getFetch();
+    double[] dm = new double[Integer.numberOfTrailingZeros(reads.length) + 1];
+    double[] fm = new double[dm.length];
+
+    for (int k = 0; k < dm.length; ++k) {
+      dm[k] = data.getMissRatio(1 << k);
+      fm[k] = fetch.getMissRatio(1 << k);
+    }
+
+    synchronized (this) {
+      blockSize = locality.getBlockSize();
+      dataHeat = reads;
+      fetchHeat = locality.getFetches();
+      dataHist = data.getHistogram();
+      fetchHist = fetch.getHistogram();
+      dataCold = data.getColdMisses();
+      fetchCold = fetch.getColdMisses();
+      dataMiss = dm;
+      fetchMiss = fm;
+    }
+
+    Dimension size = new Dimension(2 * COLUMNS * CELL + 140, LINE * (8 + dataHist.length + dm.length) + CELL * (reads.length / COLUMNS + 1));
+
+    if (!size.equals(getPreferredSize())) {
+      setPreferredSize(size);
+      revalidate();
+    }
+  }
+
+  protected synchronized void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    g.setFont(FONT);
+    g.setColor(Color.red);
+    int y = LINE;
+    g.drawString(CurrentLocale.getString("LOCALITY") + " (" + blockSize + " " + CurrentLocale.getString("BYTES") + ")", 4, y);
+    y += LINE;
+    int x2 = COLUMNS * CELL + 30;
+    g.setColor(Color.black);
+    g.drawString(CurrentLocale.getString("LOCALITY_DATA"), 4, y);
+    g.drawString(CurrentLocale.getString("LOCALITY_FETCH"), x2, y);
+    y += 4;
+    int rows = Math.max(drawHeatmap(g, dataHeat, DATA, 4, y), drawHeatmap(g, fetchHeat, FETCH, x2, y));
+    y += rows * CELL + 2 * LINE;
+
+    // Reuse distances: one bar per bucket and stream, scaled to the
+    // largest bucket.
+    g.setColor(Color.black);
+    g.drawString(CurrentLocale.getString("LOCALITY_REUSE"), 4, y);
+    long max = Math.max(1, Math.max(dataCold, fetchCold));
+
+    for (long c : dataHist) {
+      max = Math.max(max, c);
+    }
+
+    for (long c : fetchHist) {
+      max = Math.max(max, c);
+    }
+
+    int barWidth = 2 * COLUMNS * CELL - 60;
+
+    for (int b = 0; b <= Math.max(dataHist.length, fetchHist.length); ++b) {
+      boolean cold = b == Math.max(dataHist.length, fetchHist.length);
+      long d = cold ? dataCold : b < dataHist.length ? dataHist[b] : 0;
+      long f = cold ? fetchCold : b < fetchHist.length ? fetchHist[b] : 0;
+      y += LINE;
+      g.setColor(Color.black);
+      g.drawString(cold ? "cold" : LocalityAnalyzer.ReuseDistance.bucketName(b), 4, y);
+      g.setColor(DATA);
+      g.fillRect(80, y - LINE + 3, (int)(barWidth * d / max), LINE / 2 - 1);
+      g.setColor(FETCH);
+      g.fillRect(80, y - LINE / 2 + 2, (int)(barWidth * f / max), LINE / 2 - 1);
+    }
+
+    y += 2 * LINE;
+    g.setColor(Color.black);
+    g.drawString(CurrentLocale.getString("LOCALITY_MISS_RATIO"), 4, y);
+
+    for (int k = 0; k < Math.max(dataMiss.length, fetchMiss.length); ++k) {
+      y += LINE;
+      g.setColor(Color.black);
+      g.drawString(String.format("%6d", blockSize << k), 4, y);
+      g.setColor(DATA);
+      g.drawString(k < dataMiss.length ? String.format("%6.2f%%", dataMiss[k] * 100) : "", 80, y);
+      g.setColor(FETCH);
+      g.drawString(k < fetchMiss.length ? String.format("%6.2f%%", fetchMiss[k] * 100) : "", 160, y);
+    }
+  }
+
+  /** Draws a heatmap and returns the number of its rows */
+  private int drawHeatmap(Graphics g, long[] counts, Color hot, int x, int y) {
+    long max = 0;
+
+    for (long c : counts) {
+      max = Math.max(max, c);
+    }
+
+    for (int i = 0; i < counts.length; ++i) {
+      int level = LocalityAnalyzer.shade(counts[i], max, 255);
+      g.setColor(new Color(hot.getRed(), hot.getGreen(), hot.getBlue(), level));
+      g.fillRect(x + (i % COLUMNS) * CELL, y + (i / COLUMNS) * CELL, CELL - 1, CELL - 1);
+    }
+
+    g.setColor(Color.lightGray);
+    int rows = (counts.length + COLUMNS - 1) / COLUMNS;
+    g.drawRect(x - 1, y - 1, COLUMNS * CELL, rows * CELL);
+    return rows;
+  }
+}
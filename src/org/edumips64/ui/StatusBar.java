@@ -30,6 +30,7 @@ import javax.swing.*;
 import java.awt.event.*;
 import java.io.*;
 
+import org.edumips64.core.ThroughputMeter;
 import org.edumips64.utils.*;
 
 /** StatusBar class
@@ -38,6 +39,7 @@ import org.edumips64.utils.*;
 
 public class StatusBar {
   private JLabel statusLabel;
+  private JLabel throughputLabel;
   private JProgressBar pb;
   private Box box;
   private Component sbComponent;
@@ -46,6 +48,8 @@ public class StatusBar {
     statusLabel = new JLabel();
     statusLabel.setText(CurrentLocale.getString("StatusBar.WELCOME") + " " + org.edumips64.Main.VERSION);
 
+    throughputLabel = new JLabel();
+
     pb = new JProgressBar(0, 10);
     pb.setMaximumSize(new Dimension(30, 10));
     //pb.setIndeterminate(true);
@@ -55,6 +59,8 @@ public class StatusBar {
     box.setBorder(BorderFactory.createLoweredBevelBorder());
     box.add(statusLabel);
     box.add(Box.createHorizontalGlue());
+    box.add(throughputLabel);
+    box.add(Box.createHorizontalStrut(10));
     box.add(pb);
 
     //sbComponent = statusLabel;
@@ -76,5 +82,17 @@ public class StatusBar {
   public void setText(String text) {
     statusLabel.setText(text);
   }
+
+  /** Shows the current speed of the simulation */
+  public void setThroughput(ThroughputMeter meter) {
+    String text = String.format("%,.0f %s, %,.0f %s", meter.getRecentCyclesPerSecond(), CurrentLocale.getString("StatusBar.CYCLESPERSECOND"),
+                                meter.getRecentInstructionsPerSecond(), CurrentLocale.getString("StatusBar.INSTRUCTIONSPERSECOND"));
+
+    if (ThroughputMeter.isAllocationSupported()) {
+      text += String.format(", %.1f %s", meter.getRecentAllocationRate() / 1e6, CurrentLocale.getString("StatusBar.ALLOCATIONRATE"));
+    }
+
+    throughputLabel.setText(text);
+  }
 }
 
@@ -24,7 +24,24 @@ public class ConfigManager {
     // encapsulated in some way.
     defaults.put("lastdir", System.getProperty("user.dir"));
     defaults.put("dineroIV", "dineroIV");
+    // Streaming Dinero trace: file name (empty to keep the trace in memory),
+    // format ("xdin" or "binary") and gzip compression.
+    defaults.put("dineroStreamFile", "");
+    defaults.put("dineroStreamFormat", "xdin");
+    defaults.put("dineroStreamGzip", false);
+    // Pipeline trace in the Konata format (empty to disable it).
+    defaults.put("pipelineTraceFile", "");
+    // Digest of the architectural state written every stateCheckpointInterval
+    // cycles (empty file name to disable it).
+    defaults.put("stateCheckpointFile", "");
+    defaults.put("stateCheckpointInterval", 1000);
+    // Block size, in bytes, of the reuse distances and of the heatmap of the
+    // locality analysis.
+    defaults.put("localityBlockSize", 32);
     defaults.put("serialNumber", 0);
+    // Cache of assembled programs, keyed by the hash of their source.
+    defaults.put("programCache", false);
+    defaults.put("programCacheDir", System.getProperty("user.home") + File.separator + ".edumips64" + File.separator + "cache");
 
     // Colors.
     defaults.put("IFColor", Color.yellow.getRGB());
@@ -47,6 +64,43 @@ public class ConfigManager {
     defaults.put("n_step", 4);
     defaults.put("sleep_interval", 10);
     defaults.put("show_aliases", false);
+    // Outside the region of interest (SYSCALL 6 - SYSCALL 7) skip the caches
+    // and the refresh of the GUI.
+    defaults.put("roiFastMode", false);
+
+    // Cache hierarchy: split L1 (instructions and data) and an optional
+    // unified L2. Sizes are in bytes, latencies in cycles; replacement is
+    // "LRU", "FIFO" or "RANDOM", write policy "WB" or "WT".
+    defaults.put("cacheEnabled", false);
+    defaults.put("cacheMemoryLatency", 30);
+    defaults.put("cacheL1ISize", 4096);
+    defaults.put("cacheL1IBlockSize", 32);
+    defaults.put("cacheL1IAssoc", 2);
+    defaults.put("cacheL1ILatency", 1);
+    defaults.put("cacheL1IReplacement", "LRU");
+    defaults.put("cacheL1DSize", 4096);
+    defaults.put("cacheL1DBlockSize", 32);
+    defaults.put("cacheL1DAssoc", 2);
+    defaults.put("cacheL1DLatency", 1);
+    defaults.put("cacheL1DReplacement", "LRU");
+    defaults.put("cacheL1DWritePolicy", "WB");
+    defaults.put("cacheL1DWriteAllocate", true);
+    defaults.put("cacheL2Enabled", true);
+    defaults.put("cacheL2Size", 32768);
+    defaults.put("cacheL2BlockSize", 64);
+    defaults.put("cacheL2Assoc", 8);
+    defaults.put("cacheL2Latency", 6);
+    defaults.put("cacheL2Replacement", "LRU");
+    defaults.put("cacheL2WritePolicy", "WB");
+    defaults.put("cacheL2WriteAllocate", true);
+    // Data prefetcher: "none", "nextline", "stride" or "stream". The degree
+    // is the number of blocks requested ahead (the depth of each stream
+    // buffer for "stream").
+    defaults.put("cachePrefetcher", "none");
+    defaults.put("cachePrefetchDegree", 2);
+    defaults.put("cachePrefetchTableSize", 64);
+    defaults.put("cacheStreamBuffers", 4);
+    defaults.put("cachePrefetchBufferSize", 16);
 
     // FPU exceptions defaults.
     defaults.put("INVALID_OPERATION", true);